@@ -0,0 +1,175 @@
+package net.javaguides.banking.archive;
+
+import jakarta.annotation.PostConstruct;
+import net.javaguides.banking.entity.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 已封存 (移出 transactions 資料表) 的交易紀錄。
+ * <p>
+ * 封存依 ID 區間由舊到新進行，因此封存檔中的 ID 一定小於資料表中剩下的 ID：
+ * 依 ID 由新到舊的查詢先讀資料表，不足一頁時再依序往舊的封存檔讀取即可。
+ * 沒有任何封存檔時所有方法都直接返回，不會讀取磁碟。
+ */
+@Component
+public class TransactionArchive {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionArchive.class);
+
+    static final String SUFFIX = ".arc";
+
+    private static final Comparator<Transaction> NEWEST_FIRST = Comparator.comparing(Transaction::getTimestamp)
+            .thenComparing(Transaction::getId).reversed();
+
+    private final Path directory;
+
+    // 依 maxId 由新到舊，整個清單替換以便讀取時不需要加鎖
+    private volatile List<TransactionArchiveFile> files = List.of();
+
+    public TransactionArchive(@Value("${banking.archive.dir:archive}") String directory) {
+        this.directory = Paths.get(directory);
+    }
+
+    @PostConstruct
+    void load() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        List<TransactionArchiveFile> loaded = new ArrayList<>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path path : paths) {
+                loaded.add(TransactionArchiveFile.open(path));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("無法載入交易紀錄封存檔:" + directory, e);
+        }
+        loaded.sort(Comparator.comparingLong(TransactionArchiveFile::getMaxId).reversed());
+        files = List.copyOf(loaded);
+        logger.info("載入{}個交易紀錄封存檔", loaded.size());
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    synchronized void register(TransactionArchiveFile file) {
+        List<TransactionArchiveFile> updated = new ArrayList<>(files);
+        updated.add(file);
+        updated.sort(Comparator.comparingLong(TransactionArchiveFile::getMaxId).reversed());
+        files = List.copyOf(updated);
+    }
+
+    public boolean hasFiles() {
+        return !files.isEmpty();
+    }
+
+    public boolean hasAccount(Long accountId) {
+        for (TransactionArchiveFile file : files) {
+            if (file.contains(accountId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long count(Long accountId) {
+        long total = 0;
+        for (TransactionArchiveFile file : files) {
+            total += file.count(accountId);
+        }
+        return total;
+    }
+
+    /**
+     * 依 ID 由新到舊跳過 offset 筆後取 limit 筆；只讀取實際需要的檔案區塊，跳過的檔案只看索引中的筆數。
+     */
+    public List<Transaction> findPageByIdDesc(Long accountId, long offset, int limit) {
+        List<Transaction> page = new ArrayList<>(limit);
+        long skip = offset;
+        for (TransactionArchiveFile file : files) {
+            int count = file.count(accountId);
+            if (count == 0) {
+                continue;
+            }
+            if (skip >= count) {
+                skip -= count;
+                continue;
+            }
+            List<Transaction> rows = new ArrayList<>(read(file, accountId));
+            rows.sort(Comparator.comparing(Transaction::getId).reversed());
+            for (int i = (int) skip; i < rows.size() && page.size() < limit; i++) {
+                page.add(rows.get(i));
+            }
+            skip = 0;
+            if (page.size() == limit) {
+                break;
+            }
+        }
+        return page;
+    }
+
+    /**
+     * 依 (timestamp, id) 由新到舊，取在 (timestamp, id) 之前的 limit 筆；timestamp 為 null 時從最新的開始。
+     */
+    public List<Transaction> findBefore(Long accountId, LocalDateTime timestamp, Long id, int limit) {
+        List<Transaction> page = new ArrayList<>(limit);
+        for (TransactionArchiveFile file : files) {
+            if (!file.overlaps(accountId, null, timestamp)) {
+                continue;
+            }
+            List<Transaction> rows = new ArrayList<>(read(file, accountId));
+            rows.sort(NEWEST_FIRST);
+            for (Transaction row : rows) {
+                if (timestamp == null || row.getTimestamp().isBefore(timestamp)
+                        || (row.getTimestamp().isEqual(timestamp) && row.getId() < id)) {
+                    page.add(row);
+                    if (page.size() == limit) {
+                        return page;
+                    }
+                }
+            }
+        }
+        return page;
+    }
+
+    /**
+     * 依時間由舊到新逐筆處理 [from, to) 之間的封存紀錄，null 表示不限；一次只保留一個區塊在記憶體中。
+     */
+    public void forEachInRange(Long accountId, LocalDateTime from, LocalDateTime to, Consumer<Transaction> action) {
+        List<TransactionArchiveFile> snapshot = files;
+        for (int i = snapshot.size() - 1; i >= 0; i--) {
+            TransactionArchiveFile file = snapshot.get(i);
+            if (!file.overlaps(accountId, from, to)) {
+                continue;
+            }
+            for (Transaction row : read(file, accountId)) {
+                if ((from == null || !row.getTimestamp().isBefore(from)) && (to == null || row.getTimestamp().isBefore(to))) {
+                    action.accept(row);
+                }
+            }
+        }
+    }
+
+    private List<Transaction> read(TransactionArchiveFile file, Long accountId) {
+        try {
+            return file.read(accountId);
+        } catch (IOException e) {
+            throw new UncheckedIOException("讀取交易紀錄封存檔失敗:" + file.getPath(), e);
+        }
+    }
+}
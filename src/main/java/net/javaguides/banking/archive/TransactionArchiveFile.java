@@ -0,0 +1,223 @@
+package net.javaguides.banking.archive;
+
+import net.javaguides.banking.entity.Transaction;
+import net.javaguides.banking.enums.TransactionType;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 唯讀的交易紀錄封存檔。開啟時只讀取尾端的索引並常駐記憶體 (以基本型別陣列存放)，
+ * 查詢單一帳戶時以二分搜尋找到它的區塊，只讀取並解壓縮該區塊。
+ * <pre>
+ * [區塊 ...][區塊數 int][每個區塊: accountId, offset, length, rowCount, minMicros, maxMicros]
+ * [rowCount, minId, maxId, minMicros, maxMicros, footerOffset long][MAGIC int]
+ * </pre>
+ * 時間以 LocalDateTime 視為 UTC 的微秒數存放，與資料庫中的 DATETIME 一樣不帶時區。
+ */
+public class TransactionArchiveFile {
+
+    static final int MAGIC = 0x54584152;
+
+    private static final int TRAILER_BYTES = 6 * Long.BYTES + Integer.BYTES;
+
+    private static final int BLOCK_REF_BYTES = 4 * Long.BYTES + 2 * Integer.BYTES;
+
+    private static final TransactionType[] TYPES = TransactionType.values();
+
+    private final Path path;
+
+    private final long rowCount;
+
+    private final long minId;
+
+    private final long maxId;
+
+    private final LocalDateTime minTimestamp;
+
+    private final LocalDateTime maxTimestamp;
+
+    // 依 accountId 排序的區塊索引
+    private final long[] accountIds;
+
+    private final long[] offsets;
+
+    private final int[] lengths;
+
+    private final int[] rowCounts;
+
+    private final long[] minMicros;
+
+    private final long[] maxMicros;
+
+    private TransactionArchiveFile(Path path, long rowCount, long minId, long maxId, long fileMinMicros, long fileMaxMicros,
+                                   long[] accountIds, long[] offsets, int[] lengths, int[] rowCounts, long[] minMicros, long[] maxMicros) {
+        this.path = path;
+        this.rowCount = rowCount;
+        this.minId = minId;
+        this.maxId = maxId;
+        this.minTimestamp = fromMicros(fileMinMicros);
+        this.maxTimestamp = fromMicros(fileMaxMicros);
+        this.accountIds = accountIds;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.rowCounts = rowCounts;
+        this.minMicros = minMicros;
+        this.maxMicros = maxMicros;
+    }
+
+    public static TransactionArchiveFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < TRAILER_BYTES + Integer.BYTES) {
+                throw new IOException("archive file too short: " + path);
+            }
+            ByteBuffer trailer = read(channel, size - TRAILER_BYTES, TRAILER_BYTES);
+            long rowCount = trailer.getLong();
+            long minId = trailer.getLong();
+            long maxId = trailer.getLong();
+            long fileMinMicros = trailer.getLong();
+            long fileMaxMicros = trailer.getLong();
+            long footerOffset = trailer.getLong();
+            if (trailer.getInt() != MAGIC) {
+                throw new IOException("not a transaction archive (missing trailer): " + path);
+            }
+
+            int blocks = read(channel, footerOffset, Integer.BYTES).getInt();
+            ByteBuffer index = read(channel, footerOffset + Integer.BYTES, blocks * BLOCK_REF_BYTES);
+            long[] accountIds = new long[blocks];
+            long[] offsets = new long[blocks];
+            int[] lengths = new int[blocks];
+            int[] rowCounts = new int[blocks];
+            long[] minMicros = new long[blocks];
+            long[] maxMicros = new long[blocks];
+            for (int i = 0; i < blocks; i++) {
+                accountIds[i] = index.getLong();
+                offsets[i] = index.getLong();
+                lengths[i] = index.getInt();
+                rowCounts[i] = index.getInt();
+                minMicros[i] = index.getLong();
+                maxMicros[i] = index.getLong();
+            }
+            return new TransactionArchiveFile(path, rowCount, minId, maxId, fileMinMicros, fileMaxMicros,
+                    accountIds, offsets, lengths, rowCounts, minMicros, maxMicros);
+        }
+    }
+
+    public boolean contains(Long accountId) {
+        return Arrays.binarySearch(accountIds, accountId) >= 0;
+    }
+
+    public int count(Long accountId) {
+        int block = Arrays.binarySearch(accountIds, accountId);
+        return block < 0 ? 0 : rowCounts[block];
+    }
+
+    /**
+     * 帳戶在此檔案中的區塊是否可能有 [from, to] 之間的紀錄。
+     */
+    public boolean overlaps(Long accountId, LocalDateTime from, LocalDateTime to) {
+        int block = Arrays.binarySearch(accountIds, accountId);
+        return block >= 0 && (to == null || minMicros[block] <= toMicros(to)) && (from == null || maxMicros[block] >= toMicros(from));
+    }
+
+    /**
+     * 帳戶在此檔案中的所有紀錄，依 (timestamp, id) 由舊到新。
+     */
+    public List<Transaction> read(Long accountId) throws IOException {
+        int block = Arrays.binarySearch(accountIds, accountId);
+        if (block < 0) {
+            return List.of();
+        }
+        byte[] bytes;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            bytes = read(channel, offsets[block], lengths[block]).array();
+        }
+
+        int rows = rowCounts[block];
+        long[] ids = new long[rows];
+        long[] micros = new long[rows];
+        byte[] types = new byte[rows];
+        byte[] scales = new byte[rows];
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(bytes)))) {
+            long previous = 0;
+            for (int i = 0; i < rows; i++) {
+                previous += in.readLong();
+                ids[i] = previous;
+            }
+            previous = 0;
+            for (int i = 0; i < rows; i++) {
+                previous += in.readLong();
+                micros[i] = previous;
+            }
+            in.readFully(types);
+            in.readFully(scales);
+
+            List<Transaction> transactions = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                transactions.add(new Transaction(ids[i], accountId, BigDecimal.valueOf(in.readLong(), scales[i]),
+                        TYPES[types[i]], fromMicros(micros[i])));
+            }
+            return transactions;
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public long getMinId() {
+        return minId;
+    }
+
+    public long getMaxId() {
+        return maxId;
+    }
+
+    public LocalDateTime getMinTimestamp() {
+        return minTimestamp;
+    }
+
+    public LocalDateTime getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    static long toMicros(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + timestamp.getNano() / 1_000;
+    }
+
+    static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("unexpected end of archive file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    record BlockRef(long accountId, long offset, int length, int rowCount, long minMicros, long maxMicros) {
+    }
+}
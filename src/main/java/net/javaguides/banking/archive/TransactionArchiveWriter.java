@@ -0,0 +1,154 @@
+package net.javaguides.banking.archive;
+
+import net.javaguides.banking.entity.Transaction;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * 依序寫入一個封存檔，紀錄必須依 (accountId, timestamp, id) 排序送入。
+ * <p>
+ * 檔案格式 (見 {@link TransactionArchiveFile})：每個帳戶一個以 Deflate 壓縮的區塊，區塊內依欄位存放
+ * (id 與時間差分編碼、類型、金額)；最後是依 accountId 排序的區塊索引與整個檔案的 min/max 時間、帳號、ID。
+ * 只在內容全部寫完後才寫入尾端，寫到一半的檔案會因缺少尾端而無法開啟。
+ */
+public class TransactionArchiveWriter implements Closeable {
+
+    private final FileChannel channel;
+
+    private final DataOutputStream out;
+
+    private final List<TransactionArchiveFile.BlockRef> blocks = new ArrayList<>();
+
+    // 目前帳戶尚未寫出的紀錄
+    private final List<Transaction> pending = new ArrayList<>();
+
+    private long position;
+
+    private long rowCount;
+
+    private long minId = Long.MAX_VALUE;
+
+    private long maxId = Long.MIN_VALUE;
+
+    private long minMicros = Long.MAX_VALUE;
+
+    private long maxMicros = Long.MIN_VALUE;
+
+    private Long lastAccountId;
+
+    public TransactionArchiveWriter(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+    }
+
+    public void append(Transaction transaction) throws IOException {
+        if (lastAccountId != null && transaction.getAccountId() < lastAccountId) {
+            throw new IllegalArgumentException("transactions must be ordered by accountId: "
+                    + transaction.getAccountId() + " after " + lastAccountId);
+        }
+        if (lastAccountId != null && !lastAccountId.equals(transaction.getAccountId())) {
+            flushBlock();
+        }
+        lastAccountId = transaction.getAccountId();
+        pending.add(transaction);
+    }
+
+    public long getRowCount() {
+        return rowCount + pending.size();
+    }
+
+    /**
+     * 寫入索引與尾端並 fsync，返回後檔案內容即不再變動。
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBlock();
+            long footerOffset = position;
+            out.writeInt(blocks.size());
+            for (TransactionArchiveFile.BlockRef block : blocks) {
+                out.writeLong(block.accountId());
+                out.writeLong(block.offset());
+                out.writeInt(block.length());
+                out.writeInt(block.rowCount());
+                out.writeLong(block.minMicros());
+                out.writeLong(block.maxMicros());
+            }
+            out.writeLong(rowCount);
+            out.writeLong(rowCount == 0 ? 0 : minId);
+            out.writeLong(rowCount == 0 ? 0 : maxId);
+            out.writeLong(rowCount == 0 ? 0 : minMicros);
+            out.writeLong(rowCount == 0 ? 0 : maxMicros);
+            out.writeLong(footerOffset);
+            out.writeInt(TransactionArchiveFile.MAGIC);
+            out.flush();
+            channel.force(true);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        int rows = pending.size();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(rows * 12 + 64);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (DataOutputStream block = new DataOutputStream(new DeflaterOutputStream(buffer, deflater))) {
+            long previous = 0;
+            for (Transaction transaction : pending) {
+                block.writeLong(transaction.getId() - previous);
+                previous = transaction.getId();
+            }
+            previous = 0;
+            for (Transaction transaction : pending) {
+                long micros = TransactionArchiveFile.toMicros(transaction.getTimestamp());
+                block.writeLong(micros - previous);
+                previous = micros;
+            }
+            for (Transaction transaction : pending) {
+                block.writeByte(transaction.getTransactionType().ordinal());
+            }
+            for (Transaction transaction : pending) {
+                block.writeByte(transaction.getAmount().scale());
+            }
+            for (Transaction transaction : pending) {
+                block.writeLong(transaction.getAmount().unscaledValue().longValueExact());
+            }
+        } finally {
+            deflater.end();
+        }
+
+        long blockMin = Long.MAX_VALUE;
+        long blockMax = Long.MIN_VALUE;
+        for (Transaction transaction : pending) {
+            long micros = TransactionArchiveFile.toMicros(transaction.getTimestamp());
+            blockMin = Math.min(blockMin, micros);
+            blockMax = Math.max(blockMax, micros);
+            minId = Math.min(minId, transaction.getId());
+            maxId = Math.max(maxId, transaction.getId());
+        }
+        minMicros = Math.min(minMicros, blockMin);
+        maxMicros = Math.max(maxMicros, blockMax);
+
+        byte[] bytes = buffer.toByteArray();
+        out.write(bytes);
+        blocks.add(new TransactionArchiveFile.BlockRef(lastAccountId, position, bytes.length, rows, blockMin, blockMax));
+        position += bytes.length;
+        rowCount += rows;
+        pending.clear();
+    }
+}
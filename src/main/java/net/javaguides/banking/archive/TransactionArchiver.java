@@ -0,0 +1,242 @@
+package net.javaguides.banking.archive;
+
+import net.javaguides.banking.entity.Transaction;
+import net.javaguides.banking.enums.TransactionType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 把超過保留期限的月份從 transactions 資料表移到封存檔。
+ * <p>
+ * 每次處理資料表中最舊的月份 (依最小 ID 判斷)；改用 Snowflake ID 之前的舊 ID 沒有月份，
+ * 等它們最新的時間戳也超過保留期限後整批封存為 transactions-legacy，見 {@link TransactionPartitionManager#LEGACY_ID_BOUND}。步驟：
+ * <ol>
+ *     <li>依 (account_id, timestamp, id) 串流該月份的紀錄寫入 transactions-yyyy-MM.arc.pending</li>
+ *     <li>核對檔案筆數與資料表筆數</li>
+ *     <li>刪除分區 (已啟用分區時) 或逐批刪除該 ID 區間</li>
+ *     <li>把檔案改名為 .arc 並加入 {@link TransactionArchive}</li>
+ * </ol>
+ * 中途失敗時下次執行會先處理留下的 .pending 檔，見 {@link #recoverPending()}。
+ */
+@Component
+public class TransactionArchiver {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionArchiver.class);
+
+    private static final String PENDING_SUFFIX = ".pending";
+
+    // 逐批刪除時每批的筆數，避免單一 DELETE 鎖住大量紀錄與產生過大的 undo log
+    private static final int DELETE_CHUNK_SIZE = 10_000;
+
+    private static final int FETCH_SIZE = 1000;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionArchive transactionArchive;
+
+    private TransactionPartitionManager partitionManager;
+
+    private final boolean enabled;
+
+    private final int retainMonths;
+
+    private final int maxMonthsPerRun;
+
+    public TransactionArchiver(JdbcTemplate jdbcTemplate,
+                               TransactionArchive transactionArchive,
+                               TransactionPartitionManager partitionManager,
+                               @Value("${banking.archive.enabled:false}") boolean enabled,
+                               @Value("${banking.archive.retain-months:12}") int retainMonths,
+                               @Value("${banking.archive.max-months-per-run:1}") int maxMonthsPerRun) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionArchive = transactionArchive;
+        this.partitionManager = partitionManager;
+        this.enabled = enabled;
+        this.retainMonths = retainMonths;
+        this.maxMonthsPerRun = maxMonthsPerRun;
+    }
+
+    @Scheduled(initialDelayString = "${banking.archive.interval-ms:3600000}",
+            fixedDelayString = "${banking.archive.interval-ms:3600000}")
+    public void archiveExpiredMonths() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            archiveBefore(YearMonth.now(partitionManager.getZone()).minusMonths(retainMonths));
+        } catch (RuntimeException e) {
+            logger.warn("封存交易紀錄失敗,下次排程再試:{}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 封存 cutoff 之前的月份，每次最多 max-months-per-run 個月。
+     *
+     * @return 封存的月份數
+     */
+    public int archiveBefore(YearMonth cutoff) {
+        recoverPending();
+        int archived = 0;
+        while (archived < maxMonthsPerRun) {
+            Long minId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM transactions", Long.class);
+            if (minId == null) {
+                break;
+            }
+            if (TransactionPartitionManager.isLegacyId(minId)) {
+                // 舊 ID 的時間只能看時間戳；之後的月份 ID 都比它們大，舊 ID 還沒到期前都不能封存
+                if (!legacyExpired(cutoff)) {
+                    break;
+                }
+                archiveRange("legacy", TransactionPartitionManager.LEGACY_ID_BOUND, partitionManager::dropLegacyPartition);
+                archived++;
+                continue;
+            }
+            YearMonth month = partitionManager.monthOf(minId);
+            if (!month.isBefore(cutoff)) {
+                break;
+            }
+            archiveRange(month.toString(), partitionManager.firstIdOf(month.plusMonths(1)), () -> partitionManager.dropPartition(month));
+            archived++;
+        }
+        return archived;
+    }
+
+    private boolean legacyExpired(YearMonth cutoff) {
+        LocalDateTime newest = jdbcTemplate.queryForObject("SELECT MAX(timestamp) FROM transactions WHERE id < ?",
+                LocalDateTime.class, TransactionPartitionManager.LEGACY_ID_BOUND);
+        return newest == null || YearMonth.from(newest).isBefore(cutoff);
+    }
+
+    /**
+     * 封存 ID 小於 upperId 的所有紀錄，檔名為 transactions-{label}.arc。
+     *
+     * @param dropPartition 刪除對應的分區，回傳 false 時改為逐批 DELETE
+     */
+    private void archiveRange(String label, long upperId, BooleanSupplier dropPartition) {
+        Path target = transactionArchive.getDirectory().resolve("transactions-" + label + TransactionArchive.SUFFIX);
+        Path pending = target.resolveSibling(target.getFileName() + PENDING_SUFFIX);
+        long started = System.currentTimeMillis();
+
+        try {
+            if (Files.exists(target)) {
+                throw new IllegalStateException("封存檔已存在:" + target);
+            }
+            Files.createDirectories(target.getParent());
+            Files.deleteIfExists(pending);
+
+            long written;
+            try (TransactionArchiveWriter writer = new TransactionArchiveWriter(pending)) {
+                stream(upperId, writer);
+                written = writer.getRowCount();
+            }
+
+            Long expected = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions WHERE id < ?", Long.class, upperId);
+            if (expected == null || expected != written) {
+                Files.deleteIfExists(pending);
+                throw new IllegalStateException("封存筆數不一致,月份:" + label + ",檔案:" + written + ",資料表:" + expected);
+            }
+
+            if (!dropPartition.getAsBoolean()) {
+                deleteBelow(upperId);
+            }
+            finish(pending, target);
+            logger.info("已封存{}的{}筆交易紀錄,耗時{}ms", label, written, System.currentTimeMillis() - started);
+        } catch (IOException e) {
+            throw new UncheckedIOException("寫入交易紀錄封存檔失敗:" + pending, e);
+        }
+    }
+
+    // 伺服器端游標逐批讀取，記憶體中只有寫入中的一個帳戶區塊
+    private void stream(long upperId, TransactionArchiveWriter writer) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement statement = con.prepareStatement(
+                    "SELECT id, account_id, amount, transaction_type, timestamp FROM transactions " +
+                            "WHERE id < ? ORDER BY account_id, timestamp, id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(FETCH_SIZE);
+            statement.setLong(1, upperId);
+            return statement;
+        }, (ResultSet rs) -> {
+            Transaction transaction = new Transaction(rs.getLong(1), rs.getLong(2), rs.getBigDecimal(3),
+                    TransactionType.valueOf(rs.getString(4)), rs.getTimestamp(5).toLocalDateTime());
+            try {
+                writer.append(transaction);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private void deleteBelow(long upperId) {
+        long deleted = 0;
+        while (true) {
+            List<Long> ids = jdbcTemplate.queryForList(
+                    "SELECT id FROM transactions WHERE id < ? ORDER BY id LIMIT " + DELETE_CHUNK_SIZE, Long.class, upperId);
+            if (ids.isEmpty()) {
+                break;
+            }
+            deleted += jdbcTemplate.update("DELETE FROM transactions WHERE id BETWEEN ? AND ?",
+                    ids.get(0), ids.get(ids.size() - 1));
+        }
+        logger.debug("逐批刪除{}筆已封存的交易紀錄", deleted);
+    }
+
+    private void finish(Path pending, Path target) throws IOException {
+        Files.move(pending, target, StandardCopyOption.ATOMIC_MOVE);
+        transactionArchive.register(TransactionArchiveFile.open(target));
+    }
+
+    /**
+     * 處理上次中斷留下的 .pending 檔。只有核對筆數成功後才會開始刪除，因此資料表中該區間的筆數少於檔案時，
+     * 表示刪除已開始，檔案是完整的，補完刪除後改名；筆數相同表示還沒開始刪除，刪除檔案後重新封存即可。
+     */
+    private void recoverPending() {
+        Path directory = transactionArchive.getDirectory();
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, "*" + TransactionArchive.SUFFIX + PENDING_SUFFIX)) {
+            for (Path pending : paths) {
+                String name = pending.getFileName().toString();
+                Path target = pending.resolveSibling(name.substring(0, name.length() - PENDING_SUFFIX.length()));
+                TransactionArchiveFile file;
+                try {
+                    file = TransactionArchiveFile.open(pending);
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("封存檔{}不完整,刪除後重做", pending);
+                    Files.delete(pending);
+                    continue;
+                }
+                Long remaining = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions WHERE id <= ?",
+                        Long.class, file.getMaxId());
+                if (remaining != null && remaining < file.getRowCount()) {
+                    logger.info("完成上次中斷的封存:{}", target);
+                    deleteBelow(file.getMaxId() + 1);
+                    finish(pending, target);
+                } else {
+                    logger.warn("上次封存尚未開始刪除,捨棄{}後重做", pending);
+                    Files.delete(pending);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("處理未完成的封存檔失敗:" + directory, e);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package net.javaguides.banking.archive;
+
+import net.javaguides.banking.id.SnowflakeIdGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * transactions 資料表的每月分區 (僅 MySQL，banking.partitioning.enabled=true 時啟用)。
+ * <p>
+ * MySQL 要求分區欄位包含在每個唯一鍵中，因此以主鍵 id 做 RANGE 分區：Snowflake ID 依時間遞增，
+ * 每個月的分區上限就是下個月第一毫秒的最小 ID。封存一個月份後直接 DROP PARTITION，不需要逐列 DELETE。
+ * <p>
+ * 月份以固定的 zone (預設 UTC) 切分，與伺服器時區無關；分區建立後變更 zone 會讓既有分區與換算出的月份不一致，不可變更。
+ * 改用 Snowflake ID 之前以 AUTO_INCREMENT 產生的 ID 遠小於任何 Snowflake ID，無法換算出月份，
+ * 一律放在最前面的 plegacy 分區，封存時整批處理。
+ * <p>
+ * 注意：第一次啟用時的 ALTER TABLE ... PARTITION BY 會重建整個資料表，應在離峰時段執行。
+ */
+@Component
+public class TransactionPartitionManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionPartitionManager.class);
+
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    private static final String MAX_PARTITION = "pmax";
+
+    private static final String LEGACY_PARTITION = "plegacy";
+
+    /**
+     * 小於此值的 ID 是 AUTO_INCREMENT 產生的舊 ID：Snowflake ID 在 EPOCH 之後第一天才會達到這個值，
+     * 而 AUTO_INCREMENT 即使到數十億也只相當於 EPOCH 之後的幾分鐘。
+     */
+    public static final long LEGACY_ID_BOUND = SnowflakeIdGenerator.minIdAt(SnowflakeIdGenerator.EPOCH + Duration.ofDays(1).toMillis());
+
+    private JdbcTemplate jdbcTemplate;
+
+    private final boolean enabled;
+
+    private final int monthsAhead;
+
+    private final ZoneId zone;
+
+    public TransactionPartitionManager(JdbcTemplate jdbcTemplate,
+                                       @Value("${banking.partitioning.enabled:false}") boolean enabled,
+                                       @Value("${banking.partitioning.months-ahead:3}") int monthsAhead,
+                                       @Value("${banking.partitioning.zone:UTC}") String zone) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.monthsAhead = monthsAhead;
+        this.zone = ZoneId.of(zone);
+    }
+
+    /**
+     * 資料表尚未分區時建立分區；之後每次從 pmax 切出新的月份，讓未來 months-ahead 個月都有自己的分區。
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${banking.partitioning.maintain-interval-ms:86400000}")
+    public void maintain() {
+        if (!enabled) {
+            return;
+        }
+        YearMonth last = YearMonth.now(zone).plusMonths(monthsAhead);
+        List<String> partitions = partitions();
+
+        if (partitions.isEmpty()) {
+            Long minId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM transactions WHERE id >= ?", Long.class, LEGACY_ID_BOUND);
+            YearMonth first = minId == null ? YearMonth.now(zone) : monthOf(minId);
+            StringBuilder ddl = new StringBuilder("ALTER TABLE transactions PARTITION BY RANGE (id) (");
+            if (hasLegacyIds()) {
+                ddl.append("PARTITION ").append(LEGACY_PARTITION).append(" VALUES LESS THAN (").append(LEGACY_ID_BOUND).append("), ");
+            }
+            for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+                ddl.append(definition(month)).append(", ");
+            }
+            ddl.append("PARTITION ").append(MAX_PARTITION).append(" VALUES LESS THAN MAXVALUE)");
+            logger.info("建立 transactions 每月分區,{} 到 {}", first, last);
+            jdbcTemplate.execute(ddl.toString());
+            return;
+        }
+
+        YearMonth newest = partitions.stream().filter(name -> !MAX_PARTITION.equals(name) && !LEGACY_PARTITION.equals(name))
+                .map(name -> YearMonth.parse(name, PARTITION_NAME)).max(YearMonth::compareTo).orElse(YearMonth.now(zone).minusMonths(1));
+        for (YearMonth month = newest.plusMonths(1); !month.isAfter(last); month = month.plusMonths(1)) {
+            logger.info("新增 transactions 分區 {}", month);
+            jdbcTemplate.execute("ALTER TABLE transactions REORGANIZE PARTITION " + MAX_PARTITION + " INTO (" + definition(month)
+                    + ", PARTITION " + MAX_PARTITION + " VALUES LESS THAN MAXVALUE)");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 刪除 month 的分區。只有它是最舊的分區 (只包含小於下個月第一個 ID 的紀錄，與封存的範圍相同) 時才會刪除。
+     *
+     * @return 是否已刪除；未啟用分區或分區不符時回傳 false，由呼叫端改為逐批 DELETE
+     */
+    public boolean dropPartition(YearMonth month) {
+        return dropOldest(month.format(PARTITION_NAME));
+    }
+
+    /**
+     * 刪除舊 ID 的 plegacy 分區，條件與 {@link #dropPartition(YearMonth)} 相同。
+     */
+    public boolean dropLegacyPartition() {
+        return dropOldest(LEGACY_PARTITION);
+    }
+
+    private boolean dropOldest(String name) {
+        if (!enabled) {
+            return false;
+        }
+        List<String> partitions = partitions();
+        if (partitions.isEmpty() || !partitions.get(0).equals(name)) {
+            return false;
+        }
+        jdbcTemplate.execute("ALTER TABLE transactions DROP PARTITION " + name);
+        logger.info("已刪除 transactions 分區 {}", name);
+        return true;
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    public static boolean isLegacyId(long id) {
+        return id < LEGACY_ID_BOUND;
+    }
+
+    /**
+     * month 第一毫秒的最小 Snowflake ID；month 內產生的 ID 都介於此值與下個月的值之間。
+     */
+    public long firstIdOf(YearMonth month) {
+        return SnowflakeIdGenerator.minIdAt(month.atDay(1).atStartOfDay(zone).toInstant().toEpochMilli());
+    }
+
+    /**
+     * Snowflake ID 所屬的月份；舊 ID 沒有月份，呼叫端應先以 {@link #isLegacyId(long)} 判斷。
+     */
+    public YearMonth monthOf(long id) {
+        if (isLegacyId(id)) {
+            throw new IllegalArgumentException("AUTO_INCREMENT 產生的舊ID沒有對應的月份:" + id);
+        }
+        return YearMonth.from(Instant.ofEpochMilli(SnowflakeIdGenerator.timestampOf(id)).atZone(zone));
+    }
+
+    private boolean hasLegacyIds() {
+        return !jdbcTemplate.queryForList("SELECT id FROM transactions WHERE id < ? LIMIT 1", Long.class, LEGACY_ID_BOUND).isEmpty();
+    }
+
+    // 依分區順序排列
+    private List<String> partitions() {
+        return jdbcTemplate.queryForList("SELECT PARTITION_NAME FROM information_schema.PARTITIONS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'transactions' AND PARTITION_NAME IS NOT NULL " +
+                "ORDER BY PARTITION_ORDINAL_POSITION", String.class);
+    }
+
+    private String definition(YearMonth month) {
+        return "PARTITION " + month.format(PARTITION_NAME) + " VALUES LESS THAN (" + firstIdOf(month.plusMonths(1)) + ")";
+    }
+}
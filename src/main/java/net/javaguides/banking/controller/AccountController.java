@@ -3,31 +3,74 @@ package net.javaguides.banking.controller;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Size;
 import net.javaguides.banking.dto.*;
+import net.javaguides.banking.service.AccountEventService;
 import net.javaguides.banking.service.AccountService;
+import net.javaguides.banking.enums.AccountSortKey;
+import net.javaguides.banking.enums.TransactionExportFormat;
+import net.javaguides.banking.service.BalanceCheckpointService;
+import net.javaguides.banking.service.IdempotencyService;
+import net.javaguides.banking.service.ReconciliationService;
+import net.javaguides.banking.service.StatementService;
+import net.javaguides.banking.service.TransactionExportService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
 
 @Validated
 @RestController
 @RequestMapping("/api/accounts")
 public class AccountController {
 
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     private AccountService accountService;
 
-    public AccountController(AccountService accountService) {
+    private IdempotencyService idempotencyService;
+
+    private TransactionExportService transactionExportService;
+
+    private BalanceCheckpointService balanceCheckpointService;
+
+    private StatementService statementService;
+
+    private ReconciliationService reconciliationService;
+
+    private AccountEventService accountEventService;
+
+    public AccountController(AccountService accountService, IdempotencyService idempotencyService, TransactionExportService transactionExportService,
+                             BalanceCheckpointService balanceCheckpointService, StatementService statementService,
+                             ReconciliationService reconciliationService, AccountEventService accountEventService) {
         this.accountService = accountService;
+        this.idempotencyService = idempotencyService;
+        this.transactionExportService = transactionExportService;
+        this.balanceCheckpointService = balanceCheckpointService;
+        this.statementService = statementService;
+        this.reconciliationService = reconciliationService;
+        this.accountEventService = accountEventService;
     }
 
     @PostMapping
@@ -39,30 +82,65 @@ public class AccountController {
         return ResponseEntity.status(HttpStatus.CREATED).body(account);
     }
 
+    /**
+     * 回應帶有強 ETag (帳戶 ID 與 version，取自載入的帳戶，不另外查詢)；帶有 If-None-Match 時先做一次版本查詢，
+     * 相符就回傳 304，不載入帳戶也不序列化內容。沒有版本的帳戶 (熱門帳戶、事件帳本模式) 不產生 ETag。
+     */
     @GetMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN') or @accountSecurityService.isOwner(authentication,#id)")
-    public ResponseEntity<AccountDto> getAccountById(@PathVariable Long id) {
-        AccountDto accountById = accountService.getAccountById(id);
-        return ResponseEntity.status(HttpStatus.OK).body(accountById);
+    public ResponseEntity<AccountDto> getAccountById(@PathVariable Long id, WebRequest request) {
+        boolean conditional = request.getHeader(HttpHeaders.IF_NONE_MATCH) != null;
+        if (conditional && accountNotModified(id, request)) {
+            return null;
+        }
+        VersionedAccountDTO accountById = accountService.getVersionedAccountById(id);
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.OK);
+        // 條件式請求不相符時 checkNotModified 已設定 ETag
+        if (!conditional && accountById.version() != null) {
+            response.eTag(accountETag(accountById.version()));
+        }
+        return response.body(accountById.account());
+    }
+
+    /**
+     * 以 Server-Sent Events 推送帳戶的餘額異動 (event: balance)，取代定期輪詢 GET /{id}。
+     * 第一個事件為目前餘額；客戶端處理太慢時只保留最新的事件。
+     */
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('ADMIN') or @accountSecurityService.isOwner(authentication,#id)")
+    public SseEmitter streamAccountEvents(@PathVariable Long id) {
+        return accountEventService.subscribe(id);
     }
 
     @PutMapping("/{id}/deposit")
     @PreAuthorize("@accountSecurityService.isOwner(authentication,#id)")
-    public ResponseEntity<AccountDto> deposit(@PathVariable Long id, @Valid @RequestBody AmountRequestDto amountRequestDto) {
+    public ResponseEntity<AccountDto> deposit(@PathVariable Long id, @Valid @RequestBody AmountRequestDto amountRequestDto,
+                                              @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) @Size(max = 128) String idempotencyKey) {
 
         BigDecimal amount = amountRequestDto.amount();
 
-        AccountDto deposit = accountService.deposit(id, amount);
-
-        return ResponseEntity.status(HttpStatus.OK).body(deposit);
+        return idempotent(idempotencyKey, "deposit:" + id + ":" + normalize(amount), AccountDto.class, () -> {
+            AccountDto deposit = accountService.deposit(id, amount);
+            return ResponseEntity.status(HttpStatus.OK).body(deposit);
+        });
     }
 
     @PutMapping("/{id}/withdraw")
     @PreAuthorize("@accountSecurityService.isOwner(authentication,#id)")
-    public ResponseEntity<AccountDto> withdraw(@PathVariable Long id, @Valid @RequestBody AmountRequestDto amountRequestDto) {
+    public ResponseEntity<AccountDto> withdraw(@PathVariable Long id, @Valid @RequestBody AmountRequestDto amountRequestDto,
+                                               @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) @Size(max = 128) String idempotencyKey) {
         BigDecimal amount = amountRequestDto.amount();
-        AccountDto accountDto = accountService.withdraw(id, amount);
-        return ResponseEntity.status(HttpStatus.OK).body(accountDto);
+        return idempotent(idempotencyKey, "withdraw:" + id + ":" + normalize(amount), AccountDto.class, () -> {
+            AccountDto accountDto = accountService.withdraw(id, amount);
+            return ResponseEntity.status(HttpStatus.OK).body(accountDto);
+        });
+    }
+
+    @PutMapping("/{id}/hot-slots")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<AccountDto> changeHotSlots(@PathVariable Long id, @RequestParam @Min(0) @Max(64) int slots) {
+        AccountDto accountDto = accountService.changeHotSlots(id, slots);
+        return ResponseEntity.ok(accountDto);
     }
 
     @GetMapping
@@ -70,14 +148,16 @@ public class AccountController {
     public ResponseEntity<PageResponseDTO<AccountDto>> getAllAccounts(@RequestParam(defaultValue = "0") @Min(0) int pageNo,
                                                                       @RequestParam(defaultValue = "3") @Min(1) @Max(100) int pageSize,
                                                                       @RequestParam(defaultValue = "id") String sortBy,
-                                                                      @RequestParam(defaultValue = "asc") String sortDir) {
-
-        Sort sort = sortDir.equalsIgnoreCase(Sort.Direction.ASC.name()) ? Sort.by(sortBy).ascending() : Sort.by(sortBy).descending();
-
+                                                                      @RequestParam(defaultValue = "asc") String sortDir,
+                                                                      @RequestParam(required = false) BigDecimal minBalance,
+                                                                      @RequestParam(required = false) BigDecimal maxBalance,
+                                                                      @RequestParam(required = false) @Size(max = 100) String holderNamePrefix,
+                                                                      @RequestParam(required = false) String ownerUserId) {
 
-        Pageable pageable = PageRequest.of(pageNo, pageSize, sort);
+        Pageable pageable = PageRequest.of(pageNo, pageSize, accountSort(sortBy, sortDir));
 
-        Page<AccountDto> allAccounts = accountService.getAllAccounts(pageable);
+        Page<AccountDto> allAccounts = accountService.getAllAccounts(
+                new AccountFilter(minBalance, maxBalance, holderNamePrefix, ownerUserId), pageable);
 
         PageResponseDTO<AccountDto> pageResponseDTO = new PageResponseDTO<>(
                 allAccounts.getContent(),
@@ -90,6 +170,45 @@ public class AccountController {
         return ResponseEntity.ok(pageResponseDTO);
     }
 
+    /**
+     * withTotal=false：不回傳 totalElements/totalPages，省下每次查詢的 COUNT(*)。
+     */
+    @GetMapping(params = "withTotal=false")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<SliceResponseDTO<AccountDto>> getAllAccountsSlice(@RequestParam(defaultValue = "0") @Min(0) int pageNo,
+                                                                            @RequestParam(defaultValue = "3") @Min(1) @Max(100) int pageSize,
+                                                                            @RequestParam(defaultValue = "id") String sortBy,
+                                                                            @RequestParam(defaultValue = "asc") String sortDir,
+                                                                            @RequestParam(required = false) BigDecimal minBalance,
+                                                                            @RequestParam(required = false) BigDecimal maxBalance,
+                                                                            @RequestParam(required = false) @Size(max = 100) String holderNamePrefix,
+                                                                            @RequestParam(required = false) String ownerUserId) {
+
+        Pageable pageable = PageRequest.of(pageNo, pageSize, accountSort(sortBy, sortDir));
+
+        Slice<AccountDto> accounts = accountService.getAllAccountsSlice(
+                new AccountFilter(minBalance, maxBalance, holderNamePrefix, ownerUserId), pageable);
+
+        return ResponseEntity.ok(new SliceResponseDTO<>(accounts.getContent(), accounts.getNumber(), accounts.getSize(), accounts.isLast()));
+    }
+
+    /**
+     * 依帳戶名稱的部分字串搜尋 (不分大小寫)，由記憶體中的三字元組索引找出帳戶，不掃描 accounts。
+     */
+    @GetMapping("/search")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<AccountDto>> searchAccounts(@RequestParam @Size(min = 3, max = 100) String q,
+                                                           @RequestParam(defaultValue = "20") @Min(1) @Max(100) int limit) {
+        List<AccountDto> accounts = accountService.searchAccounts(q, limit);
+        return ResponseEntity.ok(accounts);
+    }
+
+    // 只接受有索引的排序欄位 (AccountSortKey)，其他欄位回傳 400
+    private static Sort accountSort(String sortBy, String sortDir) {
+        Sort.Direction direction = sortDir.equalsIgnoreCase(Sort.Direction.ASC.name()) ? Sort.Direction.ASC : Sort.Direction.DESC;
+        return AccountSortKey.fromProperty(sortBy).toSort(direction);
+    }
+
     @DeleteMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<String> deleteById(@PathVariable Long id) {
@@ -99,14 +218,39 @@ public class AccountController {
 
     @PostMapping("/transfer")
     @PreAuthorize("@accountSecurityService.isOwner(authentication,#transferFundDTO.fromAccountId())")
-    public ResponseEntity<String> transferFund(@Valid @RequestBody TransferFundDTO transferFundDTO) {
-        accountService.transferFunds(transferFundDTO);
-        return ResponseEntity.ok("transfer successful");
+    public ResponseEntity<String> transferFund(@Valid @RequestBody TransferFundDTO transferFundDTO,
+                                               @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) @Size(max = 128) String idempotencyKey) {
+        String fingerprint = "transfer:" + transferFundDTO.fromAccountId() + ":" + transferFundDTO.toAccountId() + ":" + normalize(transferFundDTO.amount());
+        return idempotent(idempotencyKey, fingerprint, String.class, () -> {
+            accountService.transferFunds(transferFundDTO);
+            return ResponseEntity.ok("transfer successful");
+        });
+    }
+
+    @PostMapping("/transfers/batch")
+    @PreAuthorize("@accountSecurityService.isOwnerOfAll(authentication,#batchTransferRequestDTO.transfers().![fromAccountId()])")
+    public ResponseEntity<BatchTransferResultDTO> transferFundsBatch(@Valid @RequestBody BatchTransferRequestDTO batchTransferRequestDTO,
+                                                                     @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) @Size(max = 128) String idempotencyKey) {
+        StringBuilder fingerprint = new StringBuilder("batch:").append(batchTransferRequestDTO.mode());
+        for (TransferFundDTO transfer : batchTransferRequestDTO.transfers()) {
+            fingerprint.append(':').append(transfer.fromAccountId()).append('>').append(transfer.toAccountId())
+                    .append('=').append(normalize(transfer.amount()));
+        }
+        return idempotent(idempotencyKey, fingerprint.toString(), BatchTransferResultDTO.class, () -> {
+            BatchTransferResultDTO result = accountService.transferFundsBatch(batchTransferRequestDTO);
+            return ResponseEntity.ok(result);
+        });
     }
 
     @GetMapping("/{id}/transactions")
     @PreAuthorize("hasRole('ADMIN') or @accountSecurityService.isOwner(authentication,#id)")
-    public ResponseEntity<PageResponseDTO<TransactionDTO>> fetchAccountTransactions(@PathVariable Long id, @RequestParam(defaultValue = "0") @Min(0) int pageNo, @RequestParam(defaultValue = "3") @Min(1) @Max(100) int pageSize) {
+    public ResponseEntity<PageResponseDTO<TransactionDTO>> fetchAccountTransactions(@PathVariable Long id, @RequestParam(defaultValue = "0") @Min(0) int pageNo, @RequestParam(defaultValue = "3") @Min(1) @Max(100) int pageSize,
+                                                                                    WebRequest request) {
+
+        Optional<String> eTag = firstPageETag(pageNo == 0, id);
+        if (notModified(eTag, request)) {
+            return null;
+        }
 
         Pageable pageable = PageRequest.of(pageNo, pageSize);
 
@@ -121,6 +265,169 @@ public class AccountController {
                         page.getTotalPages(),
                         page.isLast());
 
-        return ResponseEntity.ok(transactionDTOPageResponseDTO);
+        return okWithETag(eTag, request).body(transactionDTOPageResponseDTO);
+    }
+
+    @GetMapping(value = "/{id}/transactions", params = "withTotal=false")
+    @PreAuthorize("hasRole('ADMIN') or @accountSecurityService.isOwner(authentication,#id)")
+    public ResponseEntity<SliceResponseDTO<TransactionDTO>> fetchAccountTransactionsSlice(@PathVariable Long id, @RequestParam(defaultValue = "0") @Min(0) int pageNo, @RequestParam(defaultValue = "3") @Min(1) @Max(100) int pageSize,
+                                                                                          WebRequest request) {
+
+        Optional<String> eTag = firstPageETag(pageNo == 0, id);
+        if (notModified(eTag, request)) {
+            return null;
+        }
+
+        Pageable pageable = PageRequest.of(pageNo, pageSize);
+
+        Slice<TransactionDTO> slice = accountService.getAccountTransactionsSlice(id, pageable);
+
+        return okWithETag(eTag, request).body(new SliceResponseDTO<>(slice.getContent(), slice.getNumber(), slice.getSize(), slice.isLast()));
+    }
+
+    /**
+     * 游標分頁：以上一頁回傳的 nextCursor 取得下一頁，不執行 OFFSET 與 COUNT，深頁查詢與第一頁一樣快。
+     */
+    @GetMapping("/{id}/transactions/cursor")
+    @PreAuthorize("hasRole('ADMIN') or @accountSecurityService.isOwner(authentication,#id)")
+    public ResponseEntity<CursorPageResponseDTO<TransactionDTO>> fetchAccountTransactionsByCursor(@PathVariable Long id,
+                                                                                                 @RequestParam(required = false) String cursor,
+                                                                                                 @RequestParam(defaultValue = "20") @Min(1) @Max(100) int pageSize,
+                                                                                                 WebRequest request) {
+
+        Optional<String> eTag = firstPageETag(cursor == null || cursor.isBlank(), id);
+        if (notModified(eTag, request)) {
+            return null;
+        }
+
+        CursorPageResponseDTO<TransactionDTO> page = accountService.getAccountTransactionsByCursor(id, cursor, pageSize);
+
+        return okWithETag(eTag, request).body(page);
+    }
+
+    /**
+     * 匯出完整的交易紀錄 (NDJSON 或 CSV)，以資料庫游標逐筆寫出，不受分頁大小限制。
+     * from 包含、to 不包含，皆為 ISO 格式 (例如 2024-05-01T00:00:00)。
+     */
+    @GetMapping("/{id}/transactions/export")
+    @PreAuthorize("hasRole('ADMIN') or @accountSecurityService.isOwner(authentication,#id)")
+    public ResponseEntity<StreamingResponseBody> exportAccountTransactions(@PathVariable Long id,
+                                                                           @RequestParam(defaultValue = "NDJSON") TransactionExportFormat format,
+                                                                           @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                                           @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+
+        transactionExportService.validateExport(id, from, to);
+
+        StreamingResponseBody body = outputStream -> transactionExportService.exportTransactions(id, from, to, format, outputStream);
+
+        return ResponseEntity.ok()
+                .contentType(format.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("account-" + id + "-transactions." + format.getExtension()).build().toString())
+                .body(body);
+    }
+
+    /**
+     * 帳戶在 asOf (含) 時的帳簿餘額，未指定時為目前時間。由最近的每日檢查點加上其後的交易算出。
+     */
+    @GetMapping("/{id}/balance")
+    @PreAuthorize("hasRole('ADMIN') or @accountSecurityService.isOwner(authentication,#id)")
+    public ResponseEntity<AccountBalanceDTO> getBalanceAsOf(@PathVariable Long id,
+                                                            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime asOf) {
+        LocalDateTime at = asOf != null ? asOf : LocalDateTime.now();
+        BigDecimal balance = balanceCheckpointService.balanceAsOf(id, at);
+        return ResponseEntity.ok(new AccountBalanceDTO(id, at, balance));
+    }
+
+    /**
+     * 清除並重建所有餘額檢查點，實際的逐日重建由排程在背景進行。
+     */
+    @PostMapping("/balance-checkpoints/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<String> rebuildBalanceCheckpoints() {
+        balanceCheckpointService.rebuild();
+        return ResponseEntity.accepted().body("Balance checkpoint rebuild started");
+    }
+
+    /**
+     * 開始對帳 (或從上次中斷處繼續)，核對每個帳戶的餘額是否等於交易紀錄的總和，實際比對在背景進行。
+     */
+    @PostMapping("/reconciliations")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ReconciliationRunDTO> startReconciliation() {
+        ReconciliationRunDTO run = reconciliationService.start();
+        return ResponseEntity.accepted().body(run);
+    }
+
+    @GetMapping("/reconciliations/{runId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ReconciliationRunDTO> getReconciliation(@PathVariable Long runId) {
+        return ResponseEntity.ok(reconciliationService.getRun(runId));
+    }
+
+    @GetMapping("/reconciliations/{runId}/mismatches")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<SliceResponseDTO<ReconciliationMismatchDTO>> getReconciliationMismatches(@PathVariable Long runId,
+                                                                                                  @RequestParam(defaultValue = "0") @Min(0) int pageNo,
+                                                                                                  @RequestParam(defaultValue = "20") @Min(1) @Max(100) int pageSize) {
+        Slice<ReconciliationMismatchDTO> mismatches = reconciliationService.getMismatches(runId, PageRequest.of(pageNo, pageSize));
+        return ResponseEntity.ok(new SliceResponseDTO<>(mismatches.getContent(), mismatches.getNumber(), mismatches.getSize(), mismatches.isLast()));
+    }
+
+    /**
+     * 月結單 (month 格式為 2024-05)，由每月彙總產生，不掃描交易紀錄。
+     */
+    @GetMapping("/{id}/statements/{month}")
+    @PreAuthorize("hasRole('ADMIN') or @accountSecurityService.isOwner(authentication,#id)")
+    public ResponseEntity<MonthlyStatementDTO> getMonthlyStatement(@PathVariable Long id, @PathVariable YearMonth month) {
+        MonthlyStatementDTO statement = statementService.getMonthlyStatement(id, month);
+        return ResponseEntity.ok(statement);
+    }
+
+    private static String accountETag(AccountVersionDTO version) {
+        return "\"" + version.accountId() + "-" + version.version() + "\"";
+    }
+
+    /**
+     * 交易紀錄第一頁的 ETag：第一頁由最新的紀錄開始，帳戶版本未改變時內容不變，因此使用與 GET /{id} 相同的 ETag。
+     * 版本在查詢分頁內容之前取得，兩者之間提交的異動只會讓 ETag 比內容舊 (下一次條件式請求多回傳一次內容)，不會讓舊內容帶上新的 ETag。
+     * 之後的頁面與沒有版本的帳戶沒有 ETag。頁面中的總筆數來自快取，本來就可能略為落後。
+     */
+    private Optional<String> firstPageETag(boolean firstPage, Long accountId) {
+        return firstPage ? accountService.getAccountVersion(accountId).map(AccountController::accountETag) : Optional.empty();
+    }
+
+    private boolean accountNotModified(Long accountId, WebRequest request) {
+        return notModified(accountService.getAccountVersion(accountId).map(AccountController::accountETag), request);
+    }
+
+    /**
+     * 帶有 If-None-Match 且與 ETag 相符時設定 304 (並設定 ETag)，不相符時 checkNotModified 也會設定 ETag。
+     */
+    private static boolean notModified(Optional<String> eTag, WebRequest request) {
+        return eTag.isPresent() && request.getHeader(HttpHeaders.IF_NONE_MATCH) != null && request.checkNotModified(eTag.get());
+    }
+
+    // 條件式請求的 ETag 已由 checkNotModified 設定，一般請求在 200 回應上設定
+    private static ResponseEntity.BodyBuilder okWithETag(Optional<String> eTag, WebRequest request) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.OK);
+        if (eTag.isPresent() && request.getHeader(HttpHeaders.IF_NONE_MATCH) == null) {
+            response.eTag(eTag.get());
+        }
+        return response;
+    }
+
+    /**
+     * 帶有 Idempotency-Key 時交給 IdempotencyService，重送的請求回傳第一次的回應；沒有帶 key 時照常執行。
+     */
+    private <T> ResponseEntity<T> idempotent(String idempotencyKey, String fingerprint, Class<T> bodyType, Supplier<ResponseEntity<T>> action) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return action.get();
+        }
+        return idempotencyService.execute(idempotencyKey, fingerprint, bodyType, action);
+    }
+
+    private static String normalize(BigDecimal amount) {
+        return amount == null ? "null" : amount.stripTrailingZeros().toPlainString();
     }
 }
@@ -0,0 +1,88 @@
+package net.javaguides.banking.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 啟用讀寫分離 ({@code banking.datasource.routing.enabled=true}) 時取代 Spring Boot 預設的 DataSource：
+ * primary 沿用 {@code spring.datasource.*}，replica 由 {@code banking.datasource.replica.urls} (逗號分隔) 設定，
+ * 帳號密碼未設定時與 primary 相同。
+ */
+@Configuration
+@ConditionalOnProperty(name = "banking.datasource.routing.enabled", havingValue = "true")
+public class DataSourceRoutingConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataSourceRoutingConfig.class);
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    @Bean
+    public ReplicaPool replicaPool(DataSourceProperties properties,
+                                   @Value("${banking.datasource.replica.urls:}") List<String> urls,
+                                   @Value("${banking.datasource.replica.username:${spring.datasource.username:}}") String username,
+                                   @Value("${banking.datasource.replica.password:${spring.datasource.password:}}") String password,
+                                   @Value("${banking.datasource.replica.max-lag-ms:2000}") long maxLagMs) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (String url : urls) {
+            if (url.isBlank()) {
+                continue;
+            }
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + replicas.size());
+            replica.setJdbcUrl(url.trim());
+            replica.setUsername(username);
+            replica.setPassword(password);
+            if (properties.getDriverClassName() != null) {
+                replica.setDriverClassName(properties.getDriverClassName());
+            }
+            replica.setReadOnly(true);
+            // replica 暫時無法連線時不應該讓應用程式啟動失敗，改由健康檢查判斷
+            replica.setInitializationFailTimeout(-1);
+            pools.add(replica);
+            replicas.put(replica.getPoolName(), replica);
+        }
+        logger.info("讀寫分離已啟用，replica 數量:{}，延遲上限:{} ms", replicas.size(), maxLagMs);
+        return new ReplicaPool(replicas, maxLagMs);
+    }
+
+    @Bean
+    public ReadYourWritesTracker readYourWritesTracker(@Value("${banking.datasource.read-your-writes-ms:5000}") long windowMs) {
+        return new ReadYourWritesTracker(windowMs);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties, ReplicaPool replicaPool, ReadYourWritesTracker readYourWritesTracker) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName(ReadWriteRoutingDataSource.PRIMARY);
+        pools.add(primary);
+        return new ReadWriteRoutingDataSource(primary, replicaPool, readYourWritesTracker).lazy();
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(JdbcTemplate jdbcTemplate, ReplicaPool replicaPool,
+                                               ReadYourWritesTracker readYourWritesTracker, MeterRegistry meterRegistry) {
+        return new ReplicaLagMonitor(jdbcTemplate, replicaPool, readYourWritesTracker, meterRegistry);
+    }
+
+    @PreDestroy
+    public void close() {
+        pools.forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,53 @@
+package net.javaguides.banking.datasource;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * 讀寫分離：{@code @Transactional(readOnly = true)} 的交易分配到可用的 replica，其餘 (寫入、
+ * {@code findByIdForUpdate} 等鎖定讀取、交易外的語句) 一律走 primary。
+ * <p>
+ * 交易管理器在開始交易時就會取得連線，那時交易的唯讀標記尚未設定，
+ * 因此必須透過 {@link #lazy()} 包一層 {@link LazyConnectionDataSourceProxy}，讓實際連線延後到第一個語句才決定。
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+
+    private final ReplicaPool replicaPool;
+
+    private final ReadYourWritesTracker readYourWritesTracker;
+
+    public ReadWriteRoutingDataSource(DataSource primary, ReplicaPool replicaPool, ReadYourWritesTracker readYourWritesTracker) {
+        this.replicaPool = replicaPool;
+        this.readYourWritesTracker = readYourWritesTracker;
+        Map<Object, Object> targets = replicaPool.targetDataSources();
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    public DataSource lazy() {
+        return new LazyConnectionDataSourceProxy(this);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            // 只有讀寫交易提交後才開啟視窗；交易外的語句 (auto-commit，例如權限檢查載入擁有者) 無從分辨讀寫，不開啟
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                readYourWritesTracker.recordWrite();
+            }
+            return PRIMARY;
+        }
+        if (readYourWritesTracker.isWithinWindow()) {
+            return PRIMARY;
+        }
+        return replicaPool.nextAvailable().orElse(PRIMARY);
+    }
+}
@@ -0,0 +1,81 @@
+package net.javaguides.banking.datasource;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * 使用者寫入後的一段時間內 (read-your-writes 視窗)，該使用者的唯讀交易仍走 primary，
+ * 避免剛轉帳完查餘額時讀到尚未複製到 replica 的舊資料。
+ * <p>
+ * 視窗從寫入交易提交時開始計算，應設定為大於 replica 允許的最大延遲。
+ * 沒有登入使用者的執行緒 (排程、背景工作) 不受影響。
+ */
+public class ReadYourWritesTracker {
+
+    private final long windowMs;
+
+    private final LongSupplier clock;
+
+    // 使用者 → 讀取需走 primary 直到此時間 (epoch ms)
+    private final Map<String, Long> primaryUntil = new ConcurrentHashMap<>();
+
+    public ReadYourWritesTracker(long windowMs) {
+        this(windowMs, System::currentTimeMillis);
+    }
+
+    ReadYourWritesTracker(long windowMs, LongSupplier clock) {
+        this.windowMs = windowMs;
+        this.clock = clock;
+    }
+
+    /**
+     * 目前使用者的讀寫交易取得連線時呼叫，於交易提交後開始視窗；回滾或不在交易中時不開啟。
+     */
+    public void recordWrite() {
+        String user = currentUser();
+        if (user == null || windowMs <= 0 || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                primaryUntil.put(user, clock.getAsLong() + windowMs);
+            }
+        });
+    }
+
+    /**
+     * 目前使用者是否仍在寫入後的視窗內。
+     */
+    public boolean isWithinWindow() {
+        String user = currentUser();
+        if (user == null) {
+            return false;
+        }
+        Long until = primaryUntil.get(user);
+        return until != null && until > clock.getAsLong();
+    }
+
+    /**
+     * 清除已過期的使用者，由定期的 replica 檢查呼叫。
+     */
+    public void purgeExpired() {
+        long now = clock.getAsLong();
+        primaryUntil.values().removeIf(until -> until <= now);
+    }
+
+    int trackedUsers() {
+        return primaryUntil.size();
+    }
+
+    private static String currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication == null || !authentication.isAuthenticated() ? null : authentication.getName();
+    }
+}
@@ -0,0 +1,83 @@
+package net.javaguides.banking.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.function.LongSupplier;
+
+/**
+ * 定期寫入心跳到 primary，再到每個 replica 讀回，以兩者的差距作為複製延遲 (與 pt-heartbeat 相同的做法，
+ * 不依賴 {@code SHOW REPLICA STATUS}，任何資料庫都適用)。
+ * <p>
+ * 指標：banking.datasource.replica.lag_ms / banking.datasource.replica.available，以 replica 區分。
+ */
+public class ReplicaLagMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    private final JdbcTemplate primaryJdbcTemplate;
+
+    private final ReplicaPool replicaPool;
+
+    private final ReadYourWritesTracker readYourWritesTracker;
+
+    private final LongSupplier clock;
+
+    /**
+     * @param primaryJdbcTemplate 交易外的語句會路由到 primary，因此可直接使用路由後的 DataSource
+     */
+    public ReplicaLagMonitor(JdbcTemplate primaryJdbcTemplate, ReplicaPool replicaPool,
+                             ReadYourWritesTracker readYourWritesTracker, MeterRegistry meterRegistry) {
+        this(primaryJdbcTemplate, replicaPool, readYourWritesTracker, meterRegistry, System::currentTimeMillis);
+    }
+
+    ReplicaLagMonitor(JdbcTemplate primaryJdbcTemplate, ReplicaPool replicaPool,
+                      ReadYourWritesTracker readYourWritesTracker, MeterRegistry meterRegistry, LongSupplier clock) {
+        this.primaryJdbcTemplate = primaryJdbcTemplate;
+        this.replicaPool = replicaPool;
+        this.readYourWritesTracker = readYourWritesTracker;
+        this.clock = clock;
+        for (String name : replicaPool.names()) {
+            Gauge.builder("banking.datasource.replica.lag_ms", replicaPool, pool -> {
+                long lag = pool.lagMs(name);
+                return lag == Long.MAX_VALUE ? Double.NaN : lag;
+            }).tag("replica", name).register(meterRegistry);
+            Gauge.builder("banking.datasource.replica.available", replicaPool, pool -> pool.isAvailable(name) ? 1 : 0)
+                    .tag("replica", name).register(meterRegistry);
+        }
+        primaryJdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + ReplicaPool.HEARTBEAT_TABLE
+                + " (id INT NOT NULL PRIMARY KEY, beat_at BIGINT NOT NULL)");
+    }
+
+    @Scheduled(fixedDelayString = "${banking.datasource.replica.check-interval-ms:1000}")
+    public void check() {
+        long beatAt = clock.getAsLong();
+        try {
+            writeHeartbeat(beatAt);
+        } catch (DataAccessException e) {
+            // primary 無法寫入時無從判斷延遲，維持上一次的狀態
+            logger.warn("無法寫入複製心跳:{}", e.getMessage());
+            return;
+        }
+        replicaPool.check(beatAt);
+        readYourWritesTracker.purgeExpired();
+    }
+
+    private void writeHeartbeat(long beatAt) {
+        String table = ReplicaPool.HEARTBEAT_TABLE;
+        if (primaryJdbcTemplate.update("UPDATE " + table + " SET beat_at = ? WHERE id = 1", beatAt) == 0) {
+            try {
+                primaryJdbcTemplate.update("INSERT INTO " + table + " (id, beat_at) VALUES (1, ?)", beatAt);
+            } catch (DuplicateKeyException e) {
+                // 其他節點同時建立了心跳列
+                primaryJdbcTemplate.update("UPDATE " + table + " SET beat_at = ? WHERE id = 1", beatAt);
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package net.javaguides.banking.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 唯讀 replica 的連線池集合，唯讀交易以輪流 (round-robin) 方式分配到目前可用的 replica。
+ * <p>
+ * 可用 = 最近一次檢查能連上，且 primary 寫入的心跳已複製到 replica、延遲不超過 maxLagMs。
+ * 啟動後在第一次檢查通過前一律視為不可用，讀取先走 primary。
+ */
+public class ReplicaPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaPool.class);
+
+    static final String HEARTBEAT_TABLE = "replication_heartbeat";
+
+    private final List<Replica> replicas;
+
+    private final long maxLagMs;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * @param replicas 名稱 (路由鍵) → replica 的 DataSource，名稱不可為 {@link ReadWriteRoutingDataSource#PRIMARY}
+     */
+    public ReplicaPool(Map<String, DataSource> replicas, long maxLagMs) {
+        List<Replica> list = new ArrayList<>();
+        replicas.forEach((name, dataSource) -> list.add(new Replica(name, dataSource)));
+        this.replicas = Collections.unmodifiableList(list);
+        this.maxLagMs = maxLagMs;
+    }
+
+    /**
+     * 輪流挑選下一個可用的 replica，全部不可用時回傳 empty (由呼叫端改走 primary)。
+     */
+    public Optional<String> nextAvailable() {
+        int size = replicas.size();
+        if (size == 0) {
+            return Optional.empty();
+        }
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.available) {
+                return Optional.of(replica.name);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * 讀取每個 replica 上的心跳並更新可用狀態。
+     *
+     * @param primaryBeatAt 本節點最近一次寫入 primary 的心跳時間 (epoch ms)
+     */
+    public void check(long primaryBeatAt) {
+        for (Replica replica : replicas) {
+            boolean wasAvailable = replica.available;
+            try {
+                Long beatAt = replica.jdbcTemplate.queryForObject("SELECT MAX(beat_at) FROM " + HEARTBEAT_TABLE, Long.class);
+                // 其他節點也會寫入心跳，replica 上的值可能比本節點寫入的還新
+                replica.lagMs = beatAt == null ? Long.MAX_VALUE : Math.max(0, primaryBeatAt - beatAt);
+                replica.available = replica.lagMs <= maxLagMs;
+            } catch (DataAccessException e) {
+                replica.lagMs = Long.MAX_VALUE;
+                replica.available = false;
+                if (wasAvailable) {
+                    logger.warn("replica {} 無法連線，暫停分配讀取:{}", replica.name, e.getMessage());
+                }
+                continue;
+            }
+            if (wasAvailable != replica.available) {
+                if (replica.available) {
+                    logger.info("replica {} 恢復可用，延遲 {} ms", replica.name, replica.lagMs);
+                } else {
+                    logger.warn("replica {} 延遲 {} ms 超過上限 {} ms，暫停分配讀取", replica.name,
+                            replica.lagMs == Long.MAX_VALUE ? "未知" : replica.lagMs, maxLagMs);
+                }
+            }
+        }
+    }
+
+    Map<Object, Object> targetDataSources() {
+        Map<Object, Object> targets = new LinkedHashMap<>();
+        for (Replica replica : replicas) {
+            targets.put(replica.name, replica.dataSource);
+        }
+        return targets;
+    }
+
+    public List<String> names() {
+        return replicas.stream().map(replica -> replica.name).toList();
+    }
+
+    public boolean isAvailable(String name) {
+        return find(name).available;
+    }
+
+    /**
+     * 最近一次檢查的延遲，無法連線或尚未複製到心跳時為 {@link Long#MAX_VALUE}。
+     */
+    public long lagMs(String name) {
+        return find(name).lagMs;
+    }
+
+    private Replica find(String name) {
+        for (Replica replica : replicas) {
+            if (replica.name.equals(name)) {
+                return replica;
+            }
+        }
+        throw new IllegalArgumentException("Unknown replica: " + name);
+    }
+
+    private static final class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private final JdbcTemplate jdbcTemplate;
+        private volatile boolean available;
+        private volatile long lagMs = Long.MAX_VALUE;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.jdbcTemplate = new JdbcTemplate(dataSource);
+            // 健康檢查不應該卡住排程執行緒
+            this.jdbcTemplate.setQueryTimeout(2);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package net.javaguides.banking.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 帳戶在 asOf 時的帳簿餘額 (交易紀錄的帶正負號總和)。
+ */
+public record AccountBalanceDTO(Long accountId,
+                                LocalDateTime asOf,
+                                BigDecimal balance) {
+}
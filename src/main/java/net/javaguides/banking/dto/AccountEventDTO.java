@@ -0,0 +1,15 @@
+package net.javaguides.banking.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * 推送給帳戶事件串流的餘額異動：同一個交易中該帳戶的交易紀錄，以及交易後的餘額。
+ * 連線建立時的第一個事件為目前餘額，transactions 為空。
+ * version 為提交後的帳戶版本 (accounts.version)，供客戶端判斷新舊；熱門帳戶與事件帳本模式為 null。
+ */
+public record AccountEventDTO(Long accountId,
+                              BigDecimal balance,
+                              Long version,
+                              List<TransactionDTO> transactions) {
+}
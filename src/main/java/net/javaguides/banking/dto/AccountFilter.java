@@ -0,0 +1,28 @@
+package net.javaguides.banking.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * 帳戶列表的篩選條件，null 表示不限。
+ *
+ * @param holderNamePrefix 帳戶名稱開頭 (區分大小寫依資料庫 collation)
+ * @param ownerUserId      擁有者的 userId
+ */
+public record AccountFilter(BigDecimal minBalance,
+                            BigDecimal maxBalance,
+                            String holderNamePrefix,
+                            String ownerUserId) {
+
+    public static AccountFilter none() {
+        return new AccountFilter(null, null, null, null);
+    }
+
+    public boolean isEmpty() {
+        return minBalance == null && maxBalance == null && (holderNamePrefix == null || holderNamePrefix.isEmpty()) && ownerUserId == null;
+    }
+
+    // 分頁總筆數快取的 key，不同條件各自快取
+    public String cacheKey() {
+        return isEmpty() ? "accounts" : "accounts:" + minBalance + ":" + maxBalance + ":" + holderNamePrefix + ":" + ownerUserId;
+    }
+}
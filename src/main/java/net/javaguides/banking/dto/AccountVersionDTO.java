@@ -0,0 +1,10 @@
+package net.javaguides.banking.dto;
+
+/**
+ * 條件式 GET 使用的帳戶版本。
+ * 一般帳戶的餘額或交易紀錄有任何變動時，version 都在同一個交易中遞增；
+ * 熱門帳戶入帳到子餘額槽、事件帳本模式只新增交易紀錄，都不會遞增 version，這些帳戶沒有版本，不產生 ETag。
+ */
+public record AccountVersionDTO(Long accountId,
+                                long version) {
+}
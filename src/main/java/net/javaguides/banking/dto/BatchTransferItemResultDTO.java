@@ -0,0 +1,11 @@
+package net.javaguides.banking.dto;
+
+import java.math.BigDecimal;
+
+public record BatchTransferItemResultDTO(int index,
+                                         Long fromAccountId,
+                                         Long toAccountId,
+                                         BigDecimal amount,
+                                         boolean success,
+                                         String error) {
+}
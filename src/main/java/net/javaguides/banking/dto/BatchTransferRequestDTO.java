@@ -0,0 +1,15 @@
+package net.javaguides.banking.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import net.javaguides.banking.enums.BatchTransferMode;
+
+import java.util.List;
+
+public record BatchTransferRequestDTO(@NotNull(message = "mode can not be null") BatchTransferMode mode,
+                                      @NotEmpty(message = "transfers can not be empty")
+                                      @Size(max = 5000, message = "A batch can contain at most 5000 transfers")
+                                      List<@NotNull @Valid TransferFundDTO> transfers) {
+}
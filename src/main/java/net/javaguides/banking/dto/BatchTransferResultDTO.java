@@ -0,0 +1,11 @@
+package net.javaguides.banking.dto;
+
+import net.javaguides.banking.enums.BatchTransferMode;
+
+import java.util.List;
+
+public record BatchTransferResultDTO(BatchTransferMode mode,
+                                     int succeeded,
+                                     int failed,
+                                     List<BatchTransferItemResultDTO> results) {
+}
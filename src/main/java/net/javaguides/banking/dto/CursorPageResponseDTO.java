@@ -0,0 +1,12 @@
+package net.javaguides.banking.dto;
+
+import java.util.List;
+
+/**
+ * 游標分頁回應：以 nextCursor 取得下一頁，不提供總筆數。
+ */
+public record CursorPageResponseDTO<T>(List<T> content,
+                                       int pageSize,
+                                       String nextCursor,
+                                       boolean hasNext) {
+}
@@ -0,0 +1,18 @@
+package net.javaguides.banking.dto;
+
+import net.javaguides.banking.enums.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.Map;
+
+/**
+ * 月結單：期初與期末的帳簿餘額、當月筆數與各交易類型的金額總和。
+ */
+public record MonthlyStatementDTO(Long accountId,
+                                  YearMonth month,
+                                  BigDecimal openingBalance,
+                                  BigDecimal closingBalance,
+                                  long transactionCount,
+                                  Map<TransactionType, BigDecimal> totals) {
+}
@@ -0,0 +1,12 @@
+package net.javaguides.banking.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * difference = balance - ledgerBalance
+ */
+public record ReconciliationMismatchDTO(Long accountId,
+                                        BigDecimal balance,
+                                        BigDecimal ledgerBalance,
+                                        BigDecimal difference) {
+}
@@ -0,0 +1,19 @@
+package net.javaguides.banking.dto;
+
+import net.javaguides.banking.enums.ReconciliationStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * 對帳進度與處理速度，accountsPerSecond 以實際執行時間 (不含中斷期間) 計算。
+ */
+public record ReconciliationRunDTO(Long id,
+                                   ReconciliationStatus status,
+                                   LocalDateTime startedAt,
+                                   LocalDateTime finishedAt,
+                                   Long resumeFromId,
+                                   long rangesCompleted,
+                                   long accountsChecked,
+                                   long mismatchCount,
+                                   double accountsPerSecond) {
+}
@@ -0,0 +1,19 @@
+package net.javaguides.banking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * withTotal=false 時的分頁回應：只告訴用戶端是否還有下一頁，不需要 COUNT(*)。
+ */
+@Data
+@AllArgsConstructor
+public class SliceResponseDTO<T> {
+    private List<T> content;
+    private int pageNo;
+    private int pageSize;
+    private boolean last;
+
+}
@@ -0,0 +1,9 @@
+package net.javaguides.banking.dto;
+
+/**
+ * 帳戶內容與載入同一份資料時的版本，供 GET /{id} 在不另外查詢版本的情況下產生 ETag。
+ * 沒有版本的帳戶 (見 {@link AccountVersionDTO}) version 為 null。
+ */
+public record VersionedAccountDTO(AccountDto account,
+                                  AccountVersionDTO version) {
+}
@@ -6,11 +6,18 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import net.javaguides.banking.id.SnowflakeId;
 
 import java.math.BigDecimal;
 
 @Entity
-@Table(name = "accounts")
+// 帳戶列表的每個排序欄位 (AccountSortKey) 與篩選條件都有對應的索引，排序相同時再依 id，與分頁的排序一致
+@Table(name = "accounts",
+        indexes = {
+                @Index(name = "idx_accounts_holder_name_id", columnList = "account_holder_name, id"),
+                @Index(name = "idx_accounts_balance_id", columnList = "balance, id"),
+                @Index(name = "idx_accounts_user_id", columnList = "user_id, id")
+        })
 @Getter
 @Setter
 @NoArgsConstructor
@@ -18,7 +25,7 @@ import java.math.BigDecimal;
 public class Account {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SnowflakeId
     private Long id;
 
     @Column(name = "account_holder_name")
@@ -35,5 +42,9 @@ public class Account {
     @Version
     private Long version;
 
+    // 大於 0 代表熱門帳戶模式，餘額分散在這麼多個子餘額槽 (AccountBalanceSlot)
+    @Column(name = "hot_slots", nullable = false, columnDefinition = "integer default 0")
+    private int hotSlots;
+
 
 }
@@ -0,0 +1,45 @@
+package net.javaguides.banking.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import net.javaguides.banking.id.SnowflakeId;
+
+import java.math.BigDecimal;
+
+/**
+ * 熱門帳戶的子餘額槽。帳戶真正的餘額 = accounts.balance + 所有槽的 balance 總和。
+ * 存款分散寫入不同的槽，避免所有請求都在同一列 accounts 上排隊。
+ */
+@Entity
+@Table(name = "account_balance_slots",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"account_id", "slot"}))
+@Getter
+@Setter
+@NoArgsConstructor
+public class AccountBalanceSlot {
+
+    @Id
+    @SnowflakeId
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    @Column(nullable = false)
+    private int slot;
+
+    @Column(nullable = false)
+    private BigDecimal balance;
+
+    // 每次入帳或歸併都會遞增，用來判斷槽內容是否變動過
+    @Column(name = "update_count", nullable = false)
+    private long updateCount;
+
+    public AccountBalanceSlot(Long accountId, int slot) {
+        this.accountId = accountId;
+        this.slot = slot;
+        this.balance = BigDecimal.ZERO;
+    }
+}
@@ -0,0 +1,42 @@
+package net.javaguides.banking.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import net.javaguides.banking.id.SnowflakeId;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * 帳戶在某一天結束時的帳簿餘額 (該帳戶 timestamp 早於隔天 00:00 的所有交易紀錄的帶正負號總和)。
+ * 只為有交易的日子建立，建立後不再修改；查詢某時間點的餘額時取最近的一筆，再加上之後的交易即可。
+ */
+@Entity
+@Table(name = "balance_checkpoints",
+        uniqueConstraints = @UniqueConstraint(name = "uk_balance_checkpoints_account_day", columnNames = {"account_id", "checkpoint_day"}))
+@Getter
+@Setter
+@NoArgsConstructor
+public class BalanceCheckpoint {
+
+    @Id
+    @SnowflakeId
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    @Column(name = "checkpoint_day", nullable = false)
+    private LocalDate day;
+
+    @Column(nullable = false)
+    private BigDecimal balance;
+
+    public BalanceCheckpoint(Long accountId, LocalDate day, BigDecimal balance) {
+        this.accountId = accountId;
+        this.day = day;
+        this.balance = balance;
+    }
+}
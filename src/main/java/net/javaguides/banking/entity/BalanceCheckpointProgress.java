@@ -0,0 +1,38 @@
+package net.javaguides.banking.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+/**
+ * 餘額檢查點的處理進度：closedThrough (含) 之前的日子都已建立檢查點。
+ * 每處理一天都先鎖定這一列，多個節點同時執行排程也只會有一個在推進。
+ */
+@Entity
+@Table(name = "balance_checkpoint_progress")
+@Getter
+@Setter
+@NoArgsConstructor
+public class BalanceCheckpointProgress {
+
+    public static final String DAILY = "daily";
+
+    @Id
+    @Column(length = 32)
+    private String name;
+
+    // null 代表尚未處理任何一天，從最早的交易紀錄開始
+    @Column(name = "closed_through")
+    private LocalDate closedThrough;
+
+    // ID 小於此值的交易紀錄都已計入檢查點 (或在之後建立的日子計入)；null 代表尚未開始以 ID 界定
+    @Column(name = "counted_below_id")
+    private Long countedBelowId;
+
+    public BalanceCheckpointProgress(String name) {
+        this.name = name;
+    }
+}
@@ -0,0 +1,76 @@
+package net.javaguides.banking.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * 請求的 Idempotency-Key 與完成時的回應。
+ * <p>
+ * 執行資金異動之前先以獨立的交易寫入 status_code 為 {@link #PENDING_STATUS} 的紀錄搶下 key，
+ * 完成後再更新為實際的回應；資金異動不論在請求執行緒或序列器的交易中提交，同一個 key 都只會執行一次。
+ */
+@Entity
+@Table(name = "idempotency_records",
+        indexes = @Index(name = "idx_idempotency_records_created_at", columnList = "created_at"))
+@Getter
+@Setter
+@NoArgsConstructor
+public class IdempotencyRecord implements Persistable<String> {
+
+    // 使用者 sub + ":" + 用戶端提供的 key，不同使用者的 key 互不影響
+    @Id
+    @Column(name = "idempotency_key", length = 200)
+    private String idempotencyKey;
+
+    public static final int PENDING_STATUS = 0;
+
+    // 請求內容 (操作、帳號、金額) 的 SHA-256，用來拒絕以相同 key 送出不同請求
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+
+    @Column(name = "status_code", nullable = false)
+    private int statusCode;
+
+    @Column(name = "response_body", columnDefinition = "TEXT")
+    private String responseBody;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // 主鍵由應用程式指定，標記為新資料讓 save() 直接 INSERT，重複的 key 由主鍵衝突擋下
+    @Transient
+    private boolean isNew = true;
+
+    public IdempotencyRecord(String idempotencyKey, String requestHash, int statusCode, String responseBody, LocalDateTime createdAt) {
+        this.idempotencyKey = idempotencyKey;
+        this.requestHash = requestHash;
+        this.statusCode = statusCode;
+        this.responseBody = responseBody;
+        this.createdAt = createdAt;
+    }
+
+    public boolean isPending() {
+        return statusCode == PENDING_STATUS;
+    }
+
+    @Override
+    public String getId() {
+        return idempotencyKey;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+}
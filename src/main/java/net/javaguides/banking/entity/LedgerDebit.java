@@ -0,0 +1,33 @@
+package net.javaguides.banking.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * 事件溯源模式下每一筆扣款 (WITHDRAW / TRANSFER_OUT) 的序號。
+ * <p>
+ * 同一帳戶的扣款序號必須連續且唯一：兩個寫入者根據同一份狀態扣款時會取得相同的序號，
+ * 後提交的一方違反唯一鍵而重試，因此不需要鎖定帳戶列也不會超提。
+ * 存款與轉入只會讓餘額變多，不需要序號，可以任意併發寫入。
+ */
+@Entity
+@Table(name = "ledger_debits",
+        uniqueConstraints = @UniqueConstraint(name = "uk_ledger_debits_account_seq", columnNames = {"account_id", "debit_seq"}))
+@Getter
+@Setter
+@NoArgsConstructor
+public class LedgerDebit {
+
+    // 對應的交易紀錄 ID
+    @Id
+    @Column(name = "event_id")
+    private Long eventId;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    @Column(name = "debit_seq", nullable = false)
+    private Long debitSeq;
+}
@@ -0,0 +1,41 @@
+package net.javaguides.banking.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import net.javaguides.banking.enums.TransactionType;
+
+import java.math.BigDecimal;
+
+/**
+ * 事件溯源模式下已提交但尚未累加進 accounts.balance 的交易紀錄。
+ * <p>
+ * 與交易紀錄在同一個交易中新增，投影在更新餘額的同一個交易中刪除，
+ * 因此帳戶目前的餘額 = accounts.balance + 該帳戶所有待投影列的 signed_amount，與紀錄的 ID 或提交順序無關。
+ */
+@Entity
+@Table(name = "ledger_pending_events",
+        indexes = @Index(name = "idx_ledger_pending_events_account_id", columnList = "account_id"))
+@Getter
+@Setter
+@NoArgsConstructor
+public class LedgerPendingEvent {
+
+    // 對應的交易紀錄 ID
+    @Id
+    @Column(name = "event_id")
+    private Long eventId;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    // 存款與轉入為正，提款與轉出為負
+    @Column(name = "signed_amount", nullable = false)
+    private BigDecimal signedAmount;
+
+    public static BigDecimal signed(Transaction event) {
+        return event.getTransactionType() == TransactionType.DEPOSIT || event.getTransactionType() == TransactionType.TRANSFER_IN
+                ? event.getAmount() : event.getAmount().negate();
+    }
+}
@@ -0,0 +1,24 @@
+package net.javaguides.banking.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * 事件溯源模式的餘額投影狀態：這一列存在表示已建立起始快照。
+ * <p>
+ * 投影每次都先鎖定這一列，多個節點同時執行時只會有一個在把 {@link LedgerPendingEvent} 累加進 accounts.balance。
+ */
+@Entity
+@Table(name = "ledger_projection")
+@Getter
+@Setter
+@NoArgsConstructor
+public class LedgerProjection {
+
+    public static final int BALANCES = 1;
+
+    @Id
+    private Integer id;
+}
@@ -0,0 +1,27 @@
+package net.javaguides.banking.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * 每個帳戶最後一筆 outbox 事件的序號。
+ * <p>
+ * 寫入 outbox 時在同一個交易中遞增這一列，列鎖持有到提交為止，
+ * 因此同一帳戶的事件序號依提交順序遞增，不論寫入路徑是否鎖定帳戶列 (熱門帳戶的子餘額槽、事件帳本)。
+ */
+@Entity
+@Table(name = "outbox_account_seq")
+@Getter
+@Setter
+@NoArgsConstructor
+public class OutboxAccountSequence {
+
+    @Id
+    @Column(name = "account_id")
+    private Long accountId;
+
+    @Column(name = "last_seq", nullable = false)
+    private Long lastSeq;
+}
@@ -0,0 +1,49 @@
+package net.javaguides.banking.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import net.javaguides.banking.enums.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 尚未發送給下游的帳戶異動事件，與異動在同一個交易中寫入，發送成功後刪除。
+ * <p>
+ * 下游 (通知、分析) 只讀取這張表，不再輪詢 accounts / transactions；
+ * (account_id, account_seq) 索引供發送端檢查同一帳戶是否還有更早、尚未發送的事件。
+ */
+@Entity
+@Table(name = "outbox_events",
+        indexes = @Index(name = "idx_outbox_events_account_seq", columnList = "account_id, account_seq", unique = true))
+@Getter
+@Setter
+@NoArgsConstructor
+public class OutboxEvent {
+
+    // 發送端依 ID 分批鎖定；跨節點產生的 ID 不保證依提交順序，同一帳戶的順序以 accountSeq 為準
+    @Id
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    // 見 OutboxAccountSequence
+    @Column(name = "account_seq", nullable = false)
+    private Long accountSeq;
+
+    @Column(name = "transaction_id", nullable = false)
+    private Long transactionId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false)
+    private TransactionType eventType;
+
+    @Column(nullable = false)
+    private BigDecimal amount;
+
+    @Column(name = "occurred_at", nullable = false)
+    private LocalDateTime occurredAt;
+}
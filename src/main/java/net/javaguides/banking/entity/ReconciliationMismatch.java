@@ -0,0 +1,44 @@
+package net.javaguides.banking.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import net.javaguides.banking.id.SnowflakeId;
+
+import java.math.BigDecimal;
+
+/**
+ * 對帳時餘額 (accounts.balance + 子餘額槽) 與交易紀錄淨額 (含封存) 不一致的帳戶。
+ */
+@Entity
+@Table(name = "reconciliation_mismatches",
+        indexes = @Index(name = "idx_reconciliation_mismatches_run_account", columnList = "run_id, account_id"))
+@Getter
+@Setter
+@NoArgsConstructor
+public class ReconciliationMismatch {
+
+    @Id
+    @SnowflakeId
+    private Long id;
+
+    @Column(name = "run_id", nullable = false)
+    private Long runId;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    @Column(nullable = false)
+    private BigDecimal balance;
+
+    @Column(name = "ledger_balance", nullable = false)
+    private BigDecimal ledgerBalance;
+
+    public ReconciliationMismatch(Long runId, Long accountId, BigDecimal balance, BigDecimal ledgerBalance) {
+        this.runId = runId;
+        this.accountId = accountId;
+        this.balance = balance;
+        this.ledgerBalance = ledgerBalance;
+    }
+}
@@ -0,0 +1,62 @@
+package net.javaguides.banking.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import net.javaguides.banking.enums.ReconciliationStatus;
+import net.javaguides.banking.id.SnowflakeId;
+
+import java.time.LocalDateTime;
+
+/**
+ * 一次帳戶餘額與交易紀錄的對帳。帳戶 ID 小於 resumeFromId 的範圍都已完成，中斷後從這裡繼續。
+ */
+@Entity
+@Table(name = "reconciliation_runs")
+@Getter
+@Setter
+@NoArgsConstructor
+public class ReconciliationRun {
+
+    @Id
+    @SnowflakeId
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private ReconciliationStatus status;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    // 執行中的節點每完成一個範圍就更新，太久沒有更新代表該節點已停止，可以由其他節點接手
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    // null 代表從最小的帳戶 ID 開始
+    @Column(name = "resume_from_id")
+    private Long resumeFromId;
+
+    @Column(name = "ranges_completed", nullable = false)
+    private long rangesCompleted;
+
+    @Column(name = "accounts_checked", nullable = false)
+    private long accountsChecked;
+
+    @Column(name = "mismatch_count", nullable = false)
+    private long mismatchCount;
+
+    // 實際執行的時間 (不含中斷期間)，用來計算每秒處理的帳戶數
+    @Column(name = "elapsed_ms", nullable = false)
+    private long elapsedMs;
+
+    public ReconciliationRun(LocalDateTime startedAt) {
+        this.status = ReconciliationStatus.RUNNING;
+        this.startedAt = startedAt;
+        this.updatedAt = startedAt;
+    }
+}
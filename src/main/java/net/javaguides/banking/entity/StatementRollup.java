@@ -0,0 +1,49 @@
+package net.javaguides.banking.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import net.javaguides.banking.enums.TransactionType;
+import net.javaguides.banking.id.SnowflakeId;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * 帳戶每月每種交易類型的金額與筆數，與交易紀錄在同一個交易中累加。
+ * 熱門帳戶的存款分散到多個 stripe，避免同一列成為新的熱點；月結單把所有 stripe 加總。
+ */
+@Entity
+@Table(name = "statement_rollups",
+        uniqueConstraints = @UniqueConstraint(name = "uk_statement_rollups_key",
+                columnNames = {"account_id", "statement_month", "transaction_type", "stripe"}))
+@Getter
+@Setter
+@NoArgsConstructor
+public class StatementRollup {
+
+    @Id
+    @SnowflakeId
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    // 當月第一天
+    @Column(name = "statement_month", nullable = false)
+    private LocalDate month;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "transaction_type", nullable = false)
+    private TransactionType transactionType;
+
+    @Column(nullable = false)
+    private int stripe;
+
+    @Column(name = "total_amount", nullable = false)
+    private BigDecimal totalAmount;
+
+    @Column(name = "transaction_count", nullable = false)
+    private long transactionCount;
+}
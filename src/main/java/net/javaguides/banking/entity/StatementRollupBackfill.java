@@ -0,0 +1,35 @@
+package net.javaguides.banking.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * 月結單彙總補齊的進度：lastAccountId (含) 之前的帳戶都已補上彙總上線前的交易紀錄。
+ * 每處理一批帳戶都先鎖定這一列，多個節點同時執行排程也只會有一個在推進。
+ */
+@Entity
+@Table(name = "statement_rollup_backfill")
+@Getter
+@Setter
+@NoArgsConstructor
+public class StatementRollupBackfill {
+
+    public static final String LEGACY = "legacy";
+
+    @Id
+    @Column(length = 32)
+    private String name;
+
+    // null 代表尚未處理任何帳戶
+    @Column(name = "last_account_id")
+    private Long lastAccountId;
+
+    @Column(nullable = false)
+    private boolean completed;
+
+    public StatementRollupBackfill(String name) {
+        this.name = name;
+    }
+}
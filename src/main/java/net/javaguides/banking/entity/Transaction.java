@@ -3,12 +3,21 @@ package net.javaguides.banking.entity;
 import jakarta.persistence.*;
 import lombok.*;
 import net.javaguides.banking.enums.TransactionType;
+import net.javaguides.banking.id.SnowflakeId;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "transactions")
+// 游標分頁依 (account_id, timestamp, id) 排序並以此定位，複合索引讓每一頁都是索引範圍掃描；
+// timestamp 索引供餘額檢查點依日期掃描全部帳戶的交易紀錄；
+// (account_id, id) 索引供依 ID 倒序的分頁
+@Table(name = "transactions",
+        indexes = {
+                @Index(name = "idx_transactions_account_timestamp_id", columnList = "account_id, timestamp, id"),
+                @Index(name = "idx_transactions_account_id_id", columnList = "account_id, id"),
+                @Index(name = "idx_transactions_timestamp", columnList = "timestamp")
+        })
 @NoArgsConstructor
 @AllArgsConstructor
 @Getter
@@ -17,9 +26,9 @@ import java.time.LocalDateTime;
 public class Transaction {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-
+    @SnowflakeId
     private Long id;
+    @Column(name = "account_id")
     private Long accountId;
     private BigDecimal amount;
     @Enumerated(EnumType.STRING)
@@ -0,0 +1,48 @@
+package net.javaguides.banking.enums;
+
+import net.javaguides.banking.exception.AccountException;
+import org.springframework.data.domain.Sort;
+
+import java.util.Arrays;
+
+/**
+ * 帳戶列表可用的排序欄位，每一個都有對應的索引 (見 Account 的 @Table indexes)，排序可直接依索引順序讀取，不需要 filesort。
+ * 同值時再依 id 排序，讓分頁結果穩定；(欄位, id) 正好是索引的欄位順序。
+ * <p>
+ * BALANCE 依 accounts.balance 的索引排序：熱門帳戶依主餘額排序，尚未歸併的子餘額槽不影響位置，
+ * 列表中顯示的總餘額可能與前後的帳戶不依序，直到下次歸併。依總額排序必須對每一列計算子查詢後再排序，無法走索引。
+ */
+public enum AccountSortKey {
+    ID("id"),
+    ACCOUNT_HOLDER_NAME("accountHolderName"),
+    BALANCE("balance");
+
+    private final String property;
+
+    AccountSortKey(String property) {
+        this.property = property;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public Sort toSort(Sort.Direction direction) {
+        return this == ID ? Sort.by(direction, property) : Sort.by(direction, property, ID.property);
+    }
+
+    public static AccountSortKey fromProperty(String property) {
+        return Arrays.stream(values())
+                .filter(key -> key.property.equals(property))
+                .findFirst()
+                .orElseThrow(() -> new AccountException("不支援的排序欄位:" + property + ",可用:"
+                        + Arrays.stream(values()).map(AccountSortKey::getProperty).toList()));
+    }
+
+    /**
+     * 確認 sort 只使用有索引的欄位，避免呼叫端傳入任意欄位造成全表排序。
+     */
+    public static void requireIndexed(Sort sort) {
+        sort.forEach(order -> fromProperty(order.getProperty()));
+    }
+}
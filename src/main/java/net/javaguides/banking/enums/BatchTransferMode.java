@@ -0,0 +1,9 @@
+package net.javaguides.banking.enums;
+
+/**
+ * 批次轉帳模式：ATOMIC 任一筆失敗即整批回滾；BEST_EFFORT 跳過失敗的項目，其餘照常提交。
+ */
+public enum BatchTransferMode {
+    ATOMIC,
+    BEST_EFFORT
+}
@@ -0,0 +1,8 @@
+package net.javaguides.banking.enums;
+
+public enum ReconciliationStatus {
+    RUNNING,
+    COMPLETED,
+    // 中途失敗，下次開始對帳時從 resumeFromId 繼續
+    FAILED
+}
@@ -0,0 +1,27 @@
+package net.javaguides.banking.enums;
+
+import org.springframework.http.MediaType;
+
+/**
+ * 交易紀錄匯出格式：NDJSON 每行一筆 JSON；CSV 第一行為欄位名稱。
+ */
+public enum TransactionExportFormat {
+    NDJSON(MediaType.parseMediaType("application/x-ndjson"), "ndjson"),
+    CSV(MediaType.parseMediaType("text/csv;charset=UTF-8"), "csv");
+
+    private final MediaType mediaType;
+    private final String extension;
+
+    TransactionExportFormat(MediaType mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
@@ -78,6 +78,19 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
         return new ResponseEntity<>(errorDetails, HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(IdempotencyKeyConflictException.class)
+    public ResponseEntity<ErrorDetails> handleIdempotencyKeyConflictException(IdempotencyKeyConflictException idempotencyKeyConflictException, WebRequest request) {
+        ErrorDetails errorDetails = new ErrorDetails(
+                LocalDateTime.now(),
+                idempotencyKeyConflictException.getMessage(),
+                request.getDescription(false),
+                "IDEMPOTENCY_KEY_CONFLICT");
+
+        logger.warn("handling IdempotencyKeyConflictException :{}", idempotencyKeyConflictException.getMessage());
+
+        return new ResponseEntity<>(errorDetails, HttpStatus.CONFLICT);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorDetails> handleGenericException(Exception exception, WebRequest request) {
         ErrorDetails errorDetails = new ErrorDetails(
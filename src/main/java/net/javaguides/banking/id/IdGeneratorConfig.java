@@ -0,0 +1,48 @@
+package net.javaguides.banking.id;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * 建立本節點的 {@link SnowflakeIdGenerator}。
+ * 每個應用程式實例必須設定不同的 {@code banking.id.node-id} (0 ~ 1023)。
+ */
+@Configuration
+public class IdGeneratorConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdGeneratorConfig.class);
+
+    @Bean
+    public SnowflakeIdGenerator snowflakeIdGenerator(@Value("${banking.id.node-id:0}") long nodeId) {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(nodeId);
+        SnowflakeIds.install(generator);
+        logger.info("Snowflake ID 產生器已啟用,節點ID:{}", nodeId);
+        return generator;
+    }
+
+    /**
+     * 啟動時以資料表中已存在的最大 ID 推進產生器，避免重啟期間時鐘回撥造成 ID 重複。
+     */
+    @EventListener(ApplicationStartedEvent.class)
+    public void seedFromExistingIds(ApplicationStartedEvent event) {
+        SnowflakeIdGenerator generator = event.getApplicationContext().getBean(SnowflakeIdGenerator.class);
+        JdbcTemplate jdbcTemplate = event.getApplicationContext().getBean(JdbcTemplate.class);
+        for (String table : new String[]{"accounts", "transactions"}) {
+            try {
+                Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+                if (maxId != null) {
+                    generator.advancePast(maxId);
+                }
+            } catch (DataAccessException e) {
+                logger.warn("無法讀取{}的最大ID，略過產生器初始化:{}", table, e.getMessage());
+            }
+        }
+    }
+}
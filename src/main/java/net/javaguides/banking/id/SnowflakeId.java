@@ -0,0 +1,18 @@
+package net.javaguides.banking.id;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 標註在 @Id 欄位上，改由應用程式端的 Snowflake ID 產生器產生主鍵，
+ * 取代資料庫 AUTO_INCREMENT，讓 Hibernate 可以延後並批次執行 INSERT。
+ */
+@IdGeneratorType(SnowflakeIdentifierGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface SnowflakeId {
+}
@@ -0,0 +1,109 @@
+package net.javaguides.banking.id;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Snowflake 風格的 64 位元、依時間排序的 ID 產生器。
+ * <pre>
+ * | 1 bit 保留 | 41 bits 自 EPOCH 起的毫秒數 | 10 bits 節點 ID | 12 bits 序號 |
+ * </pre>
+ * 同一節點內以單一 {@link AtomicLong} 的 CAS 更新 (時間戳 << 12 | 序號)，不需要鎖。
+ * <p>
+ * 時鐘回撥時不會產生較舊的時間戳，而是沿用最後發出的時間戳繼續遞增序號；
+ * 序號用盡時直接進位到下一毫秒 (向未來借用)，因此同一節點發出的 ID 永遠嚴格遞增且不重複。
+ */
+public class SnowflakeIdGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnowflakeIdGenerator.class);
+
+    /** 2024-01-01T00:00:00Z */
+    public static final long EPOCH = 1704067200000L;
+
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+
+    public static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    /** 時鐘回撥超過此毫秒數時記錄警告 */
+    private static final long ROLLBACK_WARN_THRESHOLD_MS = 10;
+
+    private final long nodeId;
+
+    private final LongSupplier clock;
+
+    /** 最後發出的 (相對時間戳 << SEQUENCE_BITS | 序號) */
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeIdGenerator(long nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    public SnowflakeIdGenerator(long nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("nodeId must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.nodeId = nodeId;
+        this.clock = clock;
+    }
+
+    public long nextId() {
+        while (true) {
+            long now = clock.getAsLong() - EPOCH;
+            long previous = state.get();
+            long previousTimestamp = previous >>> SEQUENCE_BITS;
+
+            long next;
+            if (now > previousTimestamp) {
+                next = now << SEQUENCE_BITS;
+            } else {
+                // 同一毫秒或時鐘回撥：沿用最後的時間戳遞增序號，溢位時自然進位到下一毫秒
+                next = previous + 1;
+                if (previousTimestamp - now > ROLLBACK_WARN_THRESHOLD_MS && (previous & SEQUENCE_MASK) == 0) {
+                    logger.warn("偵測到時鐘回撥{}ms，繼續沿用最後發出的時間戳產生ID", previousTimestamp - now);
+                }
+            }
+
+            if (state.compareAndSet(previous, next)) {
+                long timestamp = next >>> SEQUENCE_BITS;
+                long sequence = next & SEQUENCE_MASK;
+                return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+            }
+        }
+    }
+
+    /**
+     * 以先前已發出的 ID 推進內部狀態，避免重啟時若時鐘落後而發出重複的 ID。
+     * 其他節點發出的 ID 只用來推進時間戳，之後從下一毫秒開始發號。
+     */
+    public void advancePast(long issuedId) {
+        long timestamp = issuedId >>> (NODE_BITS + SEQUENCE_BITS);
+        long issuedState = nodeIdOf(issuedId) == nodeId
+                ? (timestamp << SEQUENCE_BITS) | (issuedId & SEQUENCE_MASK)
+                : (timestamp << SEQUENCE_BITS) | SEQUENCE_MASK;
+        state.accumulateAndGet(issuedState, Math::max);
+    }
+
+    public long getNodeId() {
+        return nodeId;
+    }
+
+    public static long timestampOf(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH;
+    }
+
+    /**
+     * 在 timestampMillis 當下或之後產生的 ID 都不小於此值，可用來把時間區間換算成 ID 區間。
+     */
+    public static long minIdAt(long timestampMillis) {
+        return Math.max(0, timestampMillis - EPOCH) << (NODE_BITS + SEQUENCE_BITS);
+    }
+
+    public static long nodeIdOf(long id) {
+        return (id >>> SEQUENCE_BITS) & MAX_NODE_ID;
+    }
+}
@@ -0,0 +1,15 @@
+package net.javaguides.banking.id;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+
+/**
+ * {@link SnowflakeId} 對應的 Hibernate ID 產生器，委派給 {@link SnowflakeIds}。
+ */
+public class SnowflakeIdentifierGenerator implements IdentifierGenerator {
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        return SnowflakeIds.nextId();
+    }
+}
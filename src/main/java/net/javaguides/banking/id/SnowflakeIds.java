@@ -0,0 +1,28 @@
+package net.javaguides.banking.id;
+
+/**
+ * 全域共用的 {@link SnowflakeIdGenerator}。
+ * <p>
+ * Hibernate 會自行實例化 ID 產生器而不經過 Spring，因此透過此處共用同一個產生器，
+ * 讓 JPA 寫入與 JDBC batch 寫入 (例如事件帳本) 取得的 ID 來自同一個序列。
+ * 未設定時 (例如單元測試) 使用節點 0。
+ */
+public final class SnowflakeIds {
+
+    private static volatile SnowflakeIdGenerator generator = new SnowflakeIdGenerator(0);
+
+    private SnowflakeIds() {
+    }
+
+    public static void install(SnowflakeIdGenerator idGenerator) {
+        generator = idGenerator;
+    }
+
+    public static SnowflakeIdGenerator generator() {
+        return generator;
+    }
+
+    public static long nextId() {
+        return generator.nextId();
+    }
+}
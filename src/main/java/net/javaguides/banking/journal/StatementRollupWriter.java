@@ -0,0 +1,100 @@
+package net.javaguides.banking.journal;
+
+import net.javaguides.banking.entity.Transaction;
+import net.javaguides.banking.enums.TransactionType;
+import net.javaguides.banking.id.SnowflakeIds;
+import net.javaguides.banking.service.HotAccountService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 把交易紀錄累加到月結單彙總 (statement_rollups)，由 {@link TransactionJournalWriter} 在寫入交易紀錄的同一個交易中呼叫。
+ * <p>
+ * 同一批紀錄先在記憶體中依 (帳戶, 月份, 類型) 合併，再依固定順序更新，讓併發的批次以相同順序取得列鎖。
+ * 列不存在時改為 INSERT，若被其他交易搶先建立則再 UPDATE 一次。
+ */
+@Component
+public class StatementRollupWriter {
+
+    private static final String UPDATE_SQL =
+            "UPDATE statement_rollups SET total_amount = total_amount + ?, transaction_count = transaction_count + ? " +
+                    "WHERE account_id = ? AND statement_month = ? AND transaction_type = ? AND stripe = ?";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO statement_rollups (id, account_id, statement_month, transaction_type, stripe, total_amount, transaction_count) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final Comparator<Key> KEY_ORDER = Comparator.comparing(Key::accountId)
+            .thenComparing(Key::month)
+            .thenComparing(Key::transactionType)
+            .thenComparingInt(Key::stripe);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final HotAccountService hotAccountService;
+
+    private final int hotStripes;
+
+    public StatementRollupWriter(JdbcTemplate jdbcTemplate,
+                                 HotAccountService hotAccountService,
+                                 @Value("${banking.statement-rollup.hot-stripes:8}") int hotStripes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.hotAccountService = hotAccountService;
+        this.hotStripes = Math.max(1, hotStripes);
+    }
+
+    /**
+     * 呼叫端必須已在交易中，彙總與交易紀錄一起提交或回滾。
+     */
+    public void apply(List<Transaction> transactions) {
+        Map<Key, Delta> deltas = new TreeMap<>(KEY_ORDER);
+        for (Transaction transaction : transactions) {
+            Key key = new Key(transaction.getAccountId(), transaction.getTimestamp().toLocalDate().withDayOfMonth(1),
+                    transaction.getTransactionType(), stripeFor(transaction.getAccountId()));
+            deltas.merge(key, new Delta(transaction.getAmount(), 1), Delta::plus);
+        }
+        deltas.forEach(this::upsert);
+    }
+
+    private void upsert(Key key, Delta delta) {
+        if (update(key, delta) > 0) {
+            return;
+        }
+        try {
+            jdbcTemplate.update(INSERT_SQL, SnowflakeIds.nextId(), key.accountId(), Date.valueOf(key.month()),
+                    key.transactionType().name(), key.stripe(), delta.amount(), delta.count());
+        } catch (DuplicateKeyException e) {
+            update(key, delta);
+        }
+    }
+
+    private int update(Key key, Delta delta) {
+        return jdbcTemplate.update(UPDATE_SQL, delta.amount(), delta.count(), key.accountId(), Date.valueOf(key.month()),
+                key.transactionType().name(), key.stripe());
+    }
+
+    // 一般帳戶固定寫入 stripe 0；熱門帳戶隨機分散，與子餘額槽的做法相同
+    private int stripeFor(Long accountId) {
+        return hotAccountService.isHot(accountId) ? ThreadLocalRandom.current().nextInt(hotStripes) : 0;
+    }
+
+    private record Key(Long accountId, LocalDate month, TransactionType transactionType, int stripe) {
+    }
+
+    private record Delta(BigDecimal amount, long count) {
+        Delta plus(Delta other) {
+            return new Delta(amount.add(other.amount), count + other.count);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package net.javaguides.banking.journal;
+
+import net.javaguides.banking.entity.Transaction;
+import net.javaguides.banking.repository.TransactionRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * 交易紀錄 (Transaction) 的寫入元件。
+ * <p>
+ * 紀錄一律在呼叫端的交易中寫入，與帳戶餘額的異動一起提交或回滾，
+ * 呼叫端因重試、冪等鍵衝突或其他例外回滾時不會留下沒有對應餘額異動的紀錄。
+ * 主鍵由應用程式端產生，多筆紀錄由 Hibernate 以 JDBC batch 送出；
+ * 需要跨請求合併提交 (group commit) 時使用 sequenced 寫入路徑，整批指令的紀錄與餘額在同一個交易中提交。
+ * <p>
+ * 在寫入紀錄的同一個交易中以 {@link StatementRollupWriter} 累加月結單彙總。
+ */
+@Component
+public class TransactionJournalWriter {
+
+    private final TransactionRepository transactionRepository;
+
+    private final StatementRollupWriter statementRollupWriter;
+
+    public TransactionJournalWriter(TransactionRepository transactionRepository,
+                                    StatementRollupWriter statementRollupWriter) {
+        this.transactionRepository = transactionRepository;
+        this.statementRollupWriter = statementRollupWriter;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(Transaction transaction) {
+        appendAll(List.of(transaction));
+    }
+
+    /**
+     * 在呼叫端目前的交易中寫入一組交易紀錄，沒有進行中的交易時拋出例外。
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void appendAll(List<Transaction> transactions) {
+        transactionRepository.saveAll(transactions);
+        statementRollupWriter.apply(transactions);
+    }
+}
@@ -0,0 +1,297 @@
+package net.javaguides.banking.ledger;
+
+import net.javaguides.banking.dto.AccountDto;
+import net.javaguides.banking.dto.BatchTransferItemResultDTO;
+import net.javaguides.banking.dto.BatchTransferRequestDTO;
+import net.javaguides.banking.dto.BatchTransferResultDTO;
+import net.javaguides.banking.dto.TransferFundDTO;
+import net.javaguides.banking.entity.LedgerDebit;
+import net.javaguides.banking.entity.LedgerPendingEvent;
+import net.javaguides.banking.entity.Transaction;
+import net.javaguides.banking.enums.BatchTransferMode;
+import net.javaguides.banking.enums.TransactionType;
+import net.javaguides.banking.exception.AccountException;
+import net.javaguides.banking.exception.AccountNotFoundException;
+import net.javaguides.banking.exception.InsufficientAmountException;
+import net.javaguides.banking.id.SnowflakeIds;
+import net.javaguides.banking.outbox.OutboxWriter;
+import net.javaguides.banking.stream.AccountEventHub;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * 事件溯源模式 (banking.write-path=event-sourced) 的帳本：交易紀錄 (transactions) 是唯一的事實來源，
+ * 存款、提款與轉帳只新增紀錄，不更新 accounts 的任何一列，也不持有帳戶列鎖。
+ * <p>
+ * 每筆紀錄在同一個交易中另外新增一列 {@link LedgerPendingEvent}，帳戶目前的餘額 = 快照 ({@link LedgerProjector} 維護的 accounts.balance)
+ * + 該帳戶尚未投影的紀錄；紀錄以什麼順序提交都不影響結果。
+ * 扣款以 {@link LedgerDebit} 的序號做樂觀並行控制，衝突時拋出 {@link ConcurrencyFailureException}，
+ * 由 RetryExecutor 以新的交易重新讀取狀態後重試。所有方法都必須在呼叫端的交易中執行。
+ */
+@Component
+@ConditionalOnProperty(name = "banking.write-path", havingValue = "event-sourced")
+public class EventSourcedLedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventSourcedLedger.class);
+
+    private static final String INSERT_EVENT_SQL =
+            "INSERT INTO transactions (id, account_id, amount, transaction_type, timestamp) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String INSERT_DEBIT_SQL = "INSERT INTO ledger_debits (event_id, account_id, debit_seq) VALUES (?, ?, ?)";
+
+    private static final String INSERT_PENDING_SQL = "INSERT INTO ledger_pending_events (event_id, account_id, signed_amount) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final OutboxWriter outboxWriter;
+
+    private final AccountEventHub accountEventHub;
+
+    public EventSourcedLedger(JdbcTemplate jdbcTemplate,
+                              OutboxWriter outboxWriter,
+                              AccountEventHub accountEventHub) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.outboxWriter = outboxWriter;
+        this.accountEventHub = accountEventHub;
+    }
+
+    public AccountDto deposit(Long accountId, BigDecimal amount) {
+        AccountState account = require(loadForWrite(List.of(accountId)), accountId);
+        Appends appends = new Appends();
+        credit(account, amount, TransactionType.DEPOSIT, appends);
+        append(appends);
+        logger.info("事件帳本:帳號{}存入{},新餘額:{}", accountId, amount, account.balance);
+        return account.toDto();
+    }
+
+    public AccountDto withdraw(Long accountId, BigDecimal amount) {
+        AccountState account = require(loadForWrite(List.of(accountId)), accountId);
+        Appends appends = new Appends();
+        debit(account, amount, TransactionType.WITHDRAW, appends);
+        append(appends);
+        logger.info("事件帳本:帳號{}提款{},新餘額:{}", accountId, amount, account.balance);
+        return account.toDto();
+    }
+
+    public void transfer(TransferFundDTO transfer) {
+        Map<Long, AccountState> accounts = loadForWrite(List.of(transfer.fromAccountId(), transfer.toAccountId()));
+        Appends appends = new Appends();
+        applyTransfer(transfer, accounts, appends);
+        append(appends);
+        logger.info("事件帳本:資金從帳戶 {} 轉至帳戶 {},金額{}", transfer.fromAccountId(), transfer.toAccountId(), transfer.amount());
+    }
+
+    /**
+     * 與一般寫入路徑相同的語意：ATOMIC 任一筆失敗整批回滾，BEST_EFFORT 失敗的項目不留下任何紀錄。
+     */
+    public BatchTransferResultDTO transferBatch(BatchTransferRequestDTO request) {
+        List<TransferFundDTO> transfers = request.transfers();
+        Set<Long> accountIds = new TreeSet<>();
+        for (TransferFundDTO transfer : transfers) {
+            accountIds.add(transfer.fromAccountId());
+            accountIds.add(transfer.toAccountId());
+        }
+        Map<Long, AccountState> accounts = loadForWrite(accountIds);
+
+        Appends appends = new Appends();
+        List<BatchTransferItemResultDTO> results = new ArrayList<>(transfers.size());
+        int failed = 0;
+        for (int i = 0; i < transfers.size(); i++) {
+            TransferFundDTO transfer = transfers.get(i);
+            try {
+                applyTransfer(transfer, accounts, appends);
+                results.add(new BatchTransferItemResultDTO(i, transfer.fromAccountId(), transfer.toAccountId(), transfer.amount(), true, null));
+            } catch (AccountNotFoundException | InsufficientAmountException | AccountException e) {
+                if (request.mode() == BatchTransferMode.ATOMIC) {
+                    logger.error("事件帳本:批次轉帳第{}筆失敗,整批回滾:{}", i, e.getMessage());
+                    throw e;
+                }
+                failed++;
+                results.add(new BatchTransferItemResultDTO(i, transfer.fromAccountId(), transfer.toAccountId(), transfer.amount(), false, e.getMessage()));
+            }
+        }
+        append(appends);
+        return new BatchTransferResultDTO(request.mode(), transfers.size() - failed, failed, results);
+    }
+
+    /**
+     * 快照加上尚未投影紀錄的目前餘額，不存在的帳戶不會出現在結果中。
+     */
+    public Map<Long, BigDecimal> currentBalances(Collection<Long> accountIds) {
+        return load(accountIds).values().stream().collect(Collectors.toMap(account -> account.id, account -> account.balance));
+    }
+
+    private void applyTransfer(TransferFundDTO transfer, Map<Long, AccountState> accounts, Appends appends) {
+        if (transfer.fromAccountId().equals(transfer.toAccountId())) {
+            throw new AccountException("不能轉帳到相同帳戶");
+        }
+        AccountState from = require(accounts, transfer.fromAccountId());
+        AccountState to = require(accounts, transfer.toAccountId());
+        debit(from, transfer.amount(), TransactionType.TRANSFER_OUT, appends);
+        credit(to, transfer.amount(), TransactionType.TRANSFER_IN, appends);
+    }
+
+    private void credit(AccountState account, BigDecimal amount, TransactionType type, Appends appends) {
+        account.balance = account.balance.add(amount);
+        appends.events.add(event(account.id, amount, type));
+        appends.balances.put(account.id, account.balance);
+    }
+
+    // 先檢查再修改，失敗時不會留下部分修改
+    private void debit(AccountState account, BigDecimal amount, TransactionType type, Appends appends) {
+        if (account.balance.compareTo(amount) < 0) {
+            logger.error("事件帳本:帳號{}餘額{}不足,扣款金額{}", account.id, account.balance, amount);
+            throw new InsufficientAmountException("Insufficient amount");
+        }
+        account.balance = account.balance.subtract(amount);
+        account.debitSeq++;
+        Transaction event = event(account.id, amount, type);
+        appends.events.add(event);
+        appends.debits.add(new Object[]{event.getId(), account.id, account.debitSeq});
+        appends.balances.put(account.id, account.balance);
+    }
+
+    private Transaction event(Long accountId, BigDecimal amount, TransactionType type) {
+        Transaction transaction = new Transaction();
+        transaction.setId(SnowflakeIds.nextId());
+        transaction.setAccountId(accountId);
+        transaction.setAmount(amount);
+        transaction.setTimestamp(LocalDateTime.now());
+        transaction.setTransactionType(type);
+        return transaction;
+    }
+
+    private void append(Appends appends) {
+        if (appends.events.isEmpty()) {
+            return;
+        }
+        if (!appends.debits.isEmpty()) {
+            try {
+                jdbcTemplate.batchUpdate(INSERT_DEBIT_SQL, appends.debits);
+            } catch (DuplicateKeyException e) {
+                throw new ConcurrencyFailureException("扣款序號已被其他寫入者使用", e);
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT_EVENT_SQL, appends.events, appends.events.size(), (ps, event) -> {
+            ps.setLong(1, event.getId());
+            ps.setLong(2, event.getAccountId());
+            ps.setBigDecimal(3, event.getAmount());
+            ps.setString(4, event.getTransactionType().name());
+            ps.setTimestamp(5, Timestamp.valueOf(event.getTimestamp()));
+        });
+        jdbcTemplate.batchUpdate(INSERT_PENDING_SQL, appends.events, appends.events.size(), (ps, event) -> {
+            ps.setLong(1, event.getId());
+            ps.setLong(2, event.getAccountId());
+            ps.setBigDecimal(3, LedgerPendingEvent.signed(event));
+        });
+        outboxWriter.append(appends.events);
+        accountEventHub.publishAfterCommit(appends.events, appends.balances::get);
+    }
+
+    /**
+     * 寫入前讀取帳戶狀態，必須在讀寫交易中：紀錄與待投影列必須一起提交，否則投影會漏掉或重複累加；
+     * 讀寫交易也保證兩個查詢與之後的寫入都在主庫的同一個連線上，見 {@link #load(Collection)}。
+     */
+    private Map<Long, AccountState> loadForWrite(Collection<Long> accountIds) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            throw new IllegalStateException("事件帳本必須在讀寫交易中寫入");
+        }
+        return load(accountIds);
+    }
+
+    /**
+     * 讀取最新的扣款序號，再以同一個查詢讀出快照餘額加上尚未投影的紀錄。
+     * <p>
+     * 不會以舊餘額通過檢查的前提是兩個查詢的順序，而不是交易隔離等級：
+     * <ul>
+     *     <li>REPEATABLE READ：兩個查詢讀同一個快照，快照之後提交的扣款會與本次使用相同的序號而衝突。</li>
+     *     <li>READ COMMITTED：每個查詢各自取快照。在序號之後、餘額之前提交的扣款已包含在餘額中，
+     *     但序號仍是舊的，寫入時衝突並重試 (多一次重試，不會超提)；餘額之後提交的扣款同樣以序號衝突。</li>
+     *     <li>兩個查詢必須讀主庫：若餘額讀自落後的複本而序號讀自主庫，已提交的扣款不在餘額中卻不會衝突。
+     *     讀寫交易由 ReadWriteRoutingDataSource 固定導向主庫，唯讀交易或交易外呼叫只能用於查詢餘額
+     *     ({@link #currentBalances(Collection)})。</li>
+     * </ul>
+     * READ UNCOMMITTED 會讀到之後回滾的待投影列，不支援。
+     */
+    private Map<Long, AccountState> load(Collection<Long> accountIds) {
+        String in = accountIds.stream().map(id -> "?").collect(Collectors.joining(", ", "(", ")"));
+        Object[] ids = accountIds.toArray();
+
+        // 扣款序號必須最先讀取：之後提交的扣款會與本次使用相同的序號而衝突，
+        // 之前已提交的扣款則一定包含在接下來讀到的餘額中，不會以舊餘額通過檢查
+        Map<Long, Long> debitSeqs = new HashMap<>();
+        jdbcTemplate.query("SELECT account_id, MAX(debit_seq) FROM ledger_debits WHERE account_id IN " + in + " GROUP BY account_id",
+                rs -> {
+                    debitSeqs.put(rs.getLong(1), rs.getLong(2));
+                }, ids);
+
+        // 單一查詢讀取同一個快照：投影在同一個交易中更新餘額並刪除待投影列，每筆紀錄只會出現在其中一邊
+        Map<Long, AccountState> accounts = new HashMap<>();
+        jdbcTemplate.query("SELECT a.id, a.account_holder_name, a.balance + COALESCE((SELECT SUM(p.signed_amount) FROM ledger_pending_events p "
+                + "WHERE p.account_id = a.id), 0) FROM accounts a WHERE a.id IN " + in, rs -> {
+            accounts.put(rs.getLong(1), new AccountState(rs.getLong(1), rs.getString(2), rs.getBigDecimal(3)));
+        }, ids);
+
+        debitSeqs.forEach((id, seq) -> {
+            AccountState account = accounts.get(id);
+            if (account != null) {
+                account.debitSeq = seq;
+            }
+        });
+        return accounts;
+    }
+
+    private AccountState require(Map<Long, AccountState> accounts, Long accountId) {
+        AccountState account = accounts.get(accountId);
+        if (account == null) {
+            logger.error("事件帳本:查無帳號{}", accountId);
+            throw new AccountNotFoundException("Account does not exist");
+        }
+        return account;
+    }
+
+    private static final class AccountState {
+
+        private final long id;
+        private final String accountHolderName;
+        private BigDecimal balance;
+        private long debitSeq;
+
+        private AccountState(long id, String accountHolderName, BigDecimal balance) {
+            this.id = id;
+            this.accountHolderName = accountHolderName;
+            this.balance = balance;
+        }
+
+        private AccountDto toDto() {
+            return new AccountDto(id, accountHolderName, balance);
+        }
+    }
+
+    private static final class Appends {
+
+        private final List<Transaction> events = new ArrayList<>();
+        private final List<Object[]> debits = new ArrayList<>();
+        // 每個帳戶套用完所有異動後的餘額
+        private final Map<Long, BigDecimal> balances = new HashMap<>();
+    }
+}
@@ -0,0 +1,176 @@
+package net.javaguides.banking.ledger;
+
+import net.javaguides.banking.entity.LedgerPendingEvent;
+import net.javaguides.banking.entity.LedgerProjection;
+import net.javaguides.banking.entity.Transaction;
+import net.javaguides.banking.enums.TransactionType;
+import net.javaguides.banking.journal.StatementRollupWriter;
+import net.javaguides.banking.service.HotAccountService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 事件溯源模式下把帳本投影成 accounts.balance (快照) 與月結單彙總。
+ * <p>
+ * 每次鎖定 {@link LedgerProjection} 後，讀取已提交的 {@link LedgerPendingEvent}，依帳戶合併後更新餘額，
+ * 並在同一個交易中刪除這些待投影列，因此每筆紀錄只會累加一次，不論寫入交易以什麼順序提交；
+ * 多個節點同時執行時只會有一個在投影。啟動時先追上所有累積的紀錄才開始接收請求。
+ * <p>
+ * 第一次啟用時以目前的 accounts.balance 作為起始快照 (先把熱門帳戶的子餘額槽歸併回主餘額)，
+ * 既有的交易紀錄沒有待投影列，已反映在餘額中，不會重複累加。
+ */
+@Component
+@ConditionalOnProperty(name = "banking.write-path", havingValue = "event-sourced")
+public class LedgerProjector implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(LedgerProjector.class);
+
+    private static final String UPDATE_BALANCE_SQL = "UPDATE accounts SET balance = balance + ?, version = version + 1 WHERE id = ?";
+
+    private static final String DELETE_PENDING_SQL = "DELETE FROM ledger_pending_events WHERE event_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final StatementRollupWriter statementRollupWriter;
+
+    private final HotAccountService hotAccountService;
+
+    private final int chunkSize;
+
+    private volatile boolean running;
+
+    public LedgerProjector(JdbcTemplate jdbcTemplate,
+                           PlatformTransactionManager transactionManager,
+                           StatementRollupWriter statementRollupWriter,
+                           HotAccountService hotAccountService,
+                           @Value("${banking.ledger.projection-chunk-size:5000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.statementRollupWriter = statementRollupWriter;
+        this.hotAccountService = hotAccountService;
+        this.chunkSize = chunkSize;
+    }
+
+    @Scheduled(fixedDelayString = "${banking.ledger.projection-interval-ms:1000}")
+    public void project() {
+        if (!running) {
+            return;
+        }
+        try {
+            catchUp();
+        } catch (DataAccessException e) {
+            logger.warn("帳本投影失敗,下次排程再試:{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 投影所有已提交的待投影紀錄，回傳處理的紀錄筆數。
+     */
+    public long catchUp() {
+        long total = 0;
+        while (true) {
+            Integer projected = transactionTemplate.execute(status -> projectChunk());
+            total += projected;
+            if (projected < chunkSize) {
+                return total;
+            }
+        }
+    }
+
+    private int projectChunk() {
+        jdbcTemplate.queryForObject("SELECT id FROM ledger_projection WHERE id = ? FOR UPDATE", Integer.class, LedgerProjection.BALANCES);
+
+        List<Transaction> events = jdbcTemplate.query(
+                "SELECT t.id, t.account_id, t.amount, t.transaction_type, t.timestamp FROM ledger_pending_events p "
+                        + "JOIN transactions t ON t.id = p.event_id ORDER BY p.event_id LIMIT ?",
+                (rs, rowNum) -> new Transaction(rs.getLong(1), rs.getLong(2), rs.getBigDecimal(3),
+                        TransactionType.valueOf(rs.getString(4)), rs.getTimestamp(5).toLocalDateTime()),
+                chunkSize);
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        // 依帳戶 ID 排序更新，與其他寫入者以相同順序取得列鎖
+        Map<Long, BigDecimal> deltas = new TreeMap<>();
+        for (Transaction event : events) {
+            deltas.merge(event.getAccountId(), LedgerPendingEvent.signed(event), BigDecimal::add);
+        }
+        List<Object[]> updates = new ArrayList<>(deltas.size());
+        deltas.forEach((accountId, delta) -> {
+            if (delta.signum() != 0) {
+                updates.add(new Object[]{delta, accountId});
+            }
+        });
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_BALANCE_SQL, updates);
+        }
+        statementRollupWriter.apply(events);
+        jdbcTemplate.batchUpdate(DELETE_PENDING_SQL, events, events.size(), (ps, event) -> ps.setLong(1, event.getId()));
+        logger.debug("帳本投影{}筆紀錄,{}個帳戶", events.size(), deltas.size());
+        return events.size();
+    }
+
+    /**
+     * 第一次啟用事件溯源模式時建立起始快照。
+     */
+    void initialize() {
+        Integer exists = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ledger_projection WHERE id = ?",
+                Integer.class, LedgerProjection.BALANCES);
+        if (exists != null && exists > 0) {
+            return;
+        }
+        // 帳本模式不使用子餘額槽，餘額必須全部在主餘額中
+        List<Long> hotAccounts = hotAccountService.findAccountsToFold();
+        hotAccounts.forEach(hotAccountService::fold);
+
+        try {
+            jdbcTemplate.update("INSERT INTO ledger_projection (id) VALUES (?)", LedgerProjection.BALANCES);
+            logger.info("建立帳本起始快照,歸併熱門帳戶:{}個", hotAccounts.size());
+        } catch (DuplicateKeyException e) {
+            // 其他節點同時建立
+        }
+    }
+
+    @Override
+    public void start() {
+        initialize();
+        long begin = System.currentTimeMillis();
+        long projected = catchUp();
+        running = true;
+        logger.info("帳本投影已追上,處理{}筆紀錄,耗時{}ms", projected, System.currentTimeMillis() - begin);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // 在 Web 伺服器開始接收請求之前完成追上
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+}
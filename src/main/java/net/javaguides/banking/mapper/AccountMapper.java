@@ -8,6 +8,8 @@ import net.javaguides.banking.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.math.BigDecimal;
+
 @Component
 public class AccountMapper {
 
@@ -26,4 +28,9 @@ public class AccountMapper {
         return new AccountDto(account.getId(),account.getAccountHolderName(),account.getBalance());
     }
 
+    // 熱門帳戶的餘額需加上子餘額槽，由呼叫端傳入彙總後的餘額
+    public  AccountDto mapTOAccountDto(Account account, BigDecimal balance){
+        return new AccountDto(account.getId(),account.getAccountHolderName(),balance);
+    }
+
 }
@@ -0,0 +1,27 @@
+package net.javaguides.banking.outbox;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 以 Spring 應用程式事件發送給同一個程序內的 {@code @EventListener(OutboxMessage.class)}，供本機開發與測試使用。
+ * 監聽器在發送端的執行緒中同步執行，拋出例外時整批重送。
+ */
+@Component
+@ConditionalOnProperty(name = "banking.outbox.sink", havingValue = "in-process", matchIfMissing = true)
+public class InProcessOutboxSink implements OutboxSink {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public InProcessOutboxSink(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public void publish(List<OutboxMessage> messages) {
+        messages.forEach(eventPublisher::publishEvent);
+    }
+}
@@ -0,0 +1,21 @@
+package net.javaguides.banking.outbox;
+
+import net.javaguides.banking.enums.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 發送給 {@link OutboxSink} 的帳戶異動事件。
+ * <p>
+ * 至少送達一次：下游可能收到重複的事件，應以 eventId 去重。
+ * 同一帳戶的 accountSequence 從 1 起連續遞增，下游可據此發現缺漏或亂序。
+ */
+public record OutboxMessage(Long eventId,
+                            Long accountId,
+                            Long accountSequence,
+                            Long transactionId,
+                            TransactionType eventType,
+                            BigDecimal amount,
+                            LocalDateTime occurredAt) {
+}
@@ -0,0 +1,169 @@
+package net.javaguides.banking.outbox;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.javaguides.banking.enums.TransactionType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 在背景把 outbox 事件分批發送到 {@link OutboxSink}，送達後刪除，至少送達一次。
+ * <p>
+ * 每批以 {@code FOR UPDATE SKIP LOCKED} 鎖定 ID 最小的 batch-size 筆事件，多個節點同時發送時各自取得不同的事件；
+ * 發送與刪除在同一個交易中，發送後提交失敗的事件會再送一次。
+ * <p>
+ * 同一帳戶的事件必須依序號 (account_seq) 送達：若同一帳戶有更早的事件被其他節點鎖定，本批只送出該帳戶在那之前的事件，
+ * 其餘留給下一批，見 {@link #inAccountOrder(List)}。
+ */
+@Component
+public class OutboxPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxPublisher.class);
+
+    private static final String COLUMNS = "SELECT id, account_id, account_seq, transaction_id, event_type, amount, occurred_at FROM outbox_events ";
+
+    private static final String CLAIM_SQL = COLUMNS + "ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    private static final String CLAIM_BY_ID_SQL = COLUMNS + "WHERE id IN ";
+
+    private static final RowMapper<OutboxMessage> MESSAGE_MAPPER = (rs, rowNum) -> new OutboxMessage(
+            rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4), TransactionType.valueOf(rs.getString(5)),
+            rs.getBigDecimal(6), rs.getTimestamp(7).toLocalDateTime());
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final OutboxSink outboxSink;
+
+    private final Counter published;
+
+    private final Counter failures;
+
+    private final boolean enabled;
+
+    private final int batchSize;
+
+    public OutboxPublisher(JdbcTemplate jdbcTemplate,
+                           PlatformTransactionManager transactionManager,
+                           OutboxSink outboxSink,
+                           MeterRegistry meterRegistry,
+                           @Value("${banking.outbox.enabled:true}") boolean enabled,
+                           @Value("${banking.outbox.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.outboxSink = outboxSink;
+        this.published = meterRegistry.counter("banking.outbox.published");
+        this.failures = meterRegistry.counter("banking.outbox.publish_failures");
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${banking.outbox.poll-interval-ms:200}")
+    public void publishPending() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            drain();
+        } catch (RuntimeException e) {
+            failures.increment();
+            logger.warn("outbox 事件發送失敗,下次排程重送:{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 持續發送直到 outbox 沒有可發送的事件，回傳送出的筆數。
+     */
+    public long drain() {
+        long total = 0;
+        while (true) {
+            BatchResult result = transactionTemplate.execute(status -> publishBatch());
+            total += result.published();
+            // 整批都被其他節點擋住時不再重試，等下次排程
+            if (result.claimed() < batchSize || result.published() == 0) {
+                return total;
+            }
+        }
+    }
+
+    private BatchResult publishBatch() {
+        List<OutboxMessage> claimed = jdbcTemplate.query(CLAIM_SQL, MESSAGE_MAPPER, batchSize);
+        if (claimed.isEmpty()) {
+            return new BatchResult(0, 0);
+        }
+        List<OutboxMessage> messages = inAccountOrder(claimed);
+        if (!messages.isEmpty()) {
+            outboxSink.publish(messages);
+            jdbcTemplate.batchUpdate("DELETE FROM outbox_events WHERE id = ?",
+                    messages.stream().map(message -> new Object[]{message.eventId()}).toList());
+            published.increment(messages.size());
+            logger.debug("發送{}筆 outbox 事件,鎖定{}筆", messages.size(), claimed.size());
+        }
+        return new BatchResult(claimed.size(), messages.size());
+    }
+
+    /**
+     * 每個帳戶只保留從該帳戶最早一筆未發送事件開始、序號連續且由本批鎖定的事件，依序號排列。
+     * <p>
+     * 一般讀取 (不加鎖) 也看得到其他節點已鎖定的事件，以此找出被跳過的位置。
+     * ID 由各節點產生，同一帳戶序號較小的事件 ID 可能較大而不在本批中，這些事件再以 SKIP LOCKED 補鎖；
+     * 序號依提交順序配發，已提交事件之前的序號一定也已提交。
+     */
+    private List<OutboxMessage> inAccountOrder(List<OutboxMessage> claimed) {
+        Map<Long, Long> maxSeqByAccount = new LinkedHashMap<>();
+        Map<Long, OutboxMessage> claimedById = new HashMap<>();
+        for (OutboxMessage message : claimed) {
+            maxSeqByAccount.merge(message.accountId(), message.accountSequence(), Math::max);
+            claimedById.put(message.eventId(), message);
+        }
+
+        Map<Long, Deque<Long>> pendingByAccount = new LinkedHashMap<>();
+        List<Object> args = new ArrayList<>();
+        maxSeqByAccount.forEach((accountId, maxSeq) -> {
+            args.add(accountId);
+            args.add(maxSeq);
+        });
+        String ranges = maxSeqByAccount.keySet().stream().map(id -> "(account_id = ? AND account_seq <= ?)")
+                .collect(Collectors.joining(" OR "));
+        jdbcTemplate.query("SELECT account_id, id FROM outbox_events WHERE " + ranges + " ORDER BY account_id, account_seq",
+                rs -> {
+                    pendingByAccount.computeIfAbsent(rs.getLong(1), id -> new ArrayDeque<>()).add(rs.getLong(2));
+                }, args.toArray());
+
+        List<Long> skipped = pendingByAccount.values().stream().flatMap(Deque::stream)
+                .filter(id -> !claimedById.containsKey(id)).toList();
+        if (!skipped.isEmpty()) {
+            String in = skipped.stream().map(id -> "?").collect(Collectors.joining(", ", "(", ")"));
+            jdbcTemplate.query(CLAIM_BY_ID_SQL + in + " FOR UPDATE SKIP LOCKED", MESSAGE_MAPPER, skipped.toArray())
+                    .forEach(message -> claimedById.put(message.eventId(), message));
+        }
+
+        List<OutboxMessage> inOrder = new ArrayList<>();
+        pendingByAccount.values().forEach(pending -> {
+            while (!pending.isEmpty() && claimedById.containsKey(pending.peekFirst())) {
+                inOrder.add(claimedById.get(pending.pollFirst()));
+            }
+        });
+        return inOrder;
+    }
+
+    private record BatchResult(int claimed, int published) {
+    }
+}
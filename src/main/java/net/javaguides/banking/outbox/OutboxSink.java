@@ -0,0 +1,18 @@
+package net.javaguides.banking.outbox;
+
+import java.util.List;
+
+/**
+ * Outbox 事件的發送目的地。
+ * <p>
+ * 由 {@code banking.outbox.sink} 選擇內建的實作 (in-process / file)；
+ * 設定為其他值並自行註冊一個 OutboxSink bean 即可接上訊息佇列。
+ */
+public interface OutboxSink {
+
+    /**
+     * 依序發送一批事件，同一帳戶的事件依發生順序排列。
+     * 正常返回代表整批已送達 (之後會從 outbox 刪除)；拋出例外時整批會在下次重送，已送出的部分也可能重複。
+     */
+    void publish(List<OutboxMessage> messages);
+}
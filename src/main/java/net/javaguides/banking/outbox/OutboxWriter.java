@@ -0,0 +1,84 @@
+package net.javaguides.banking.outbox;
+
+import net.javaguides.banking.entity.Transaction;
+import net.javaguides.banking.id.SnowflakeIds;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 在帳戶異動的同一個交易中為每筆交易紀錄寫入一列 outbox 事件，異動回滾時事件一併消失，
+ * 提交後由 {@link OutboxPublisher} 在背景發送。
+ * <p>
+ * 每個帳戶的事件序號取自 outbox_account_seq，該列的列鎖持有到提交為止，同一帳戶的序號因此依提交順序遞增；
+ * 不依賴呼叫端是否已鎖定帳戶列。同一批涉及多個帳戶時依帳戶 ID 順序取得列鎖，避免互相等待。
+ */
+@Component
+public class OutboxWriter {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO outbox_events (id, account_id, account_seq, transaction_id, event_type, amount, occurred_at) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String ADVANCE_SEQ_SQL = "UPDATE outbox_account_seq SET last_seq = last_seq + ? WHERE account_id = ?";
+
+    private static final String SELECT_SEQ_SQL = "SELECT last_seq FROM outbox_account_seq WHERE account_id = ?";
+
+    private static final String INSERT_SEQ_SQL = "INSERT INTO outbox_account_seq (account_id, last_seq) VALUES (?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final boolean enabled;
+
+    public OutboxWriter(JdbcTemplate jdbcTemplate,
+                        @Value("${banking.outbox.enabled:true}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+    }
+
+    public void append(List<Transaction> transactions) {
+        if (!enabled || transactions.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("outbox 事件必須與帳戶異動在同一個交易中寫入");
+        }
+        Map<Long, List<Transaction>> byAccount = new TreeMap<>();
+        for (Transaction transaction : transactions) {
+            byAccount.computeIfAbsent(transaction.getAccountId(), id -> new ArrayList<>()).add(transaction);
+        }
+
+        List<Object[]> rows = new ArrayList<>(transactions.size());
+        byAccount.forEach((accountId, accountTransactions) -> {
+            long seq = reserve(accountId, accountTransactions.size()) - accountTransactions.size();
+            for (Transaction transaction : accountTransactions) {
+                rows.add(new Object[]{SnowflakeIds.nextId(), accountId, ++seq, transaction.getId(),
+                        transaction.getTransactionType().name(), transaction.getAmount(), Timestamp.valueOf(transaction.getTimestamp())});
+            }
+        });
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+    }
+
+    /**
+     * 把帳戶的序號往後推 count 個並鎖定該列，回傳推進後的最後一個序號。
+     * 列不存在時改為 INSERT，若被其他交易搶先建立則再 UPDATE 一次。
+     */
+    private long reserve(Long accountId, int count) {
+        if (jdbcTemplate.update(ADVANCE_SEQ_SQL, count, accountId) == 0) {
+            try {
+                jdbcTemplate.update(INSERT_SEQ_SQL, accountId, count);
+                return count;
+            } catch (DuplicateKeyException e) {
+                jdbcTemplate.update(ADVANCE_SEQ_SQL, count, accountId);
+            }
+        }
+        return jdbcTemplate.queryForObject(SELECT_SEQ_SQL, Long.class, accountId);
+    }
+}
@@ -0,0 +1,46 @@
+package net.javaguides.banking.repository;
+
+import jakarta.persistence.LockModeType;
+import net.javaguides.banking.entity.AccountBalanceSlot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+
+public interface AccountBalanceSlotRepository extends JpaRepository<AccountBalanceSlot, Long> {
+
+    @Modifying
+    @Query("UPDATE AccountBalanceSlot s SET s.balance = s.balance + :amount, s.updateCount = s.updateCount + 1 " +
+            "WHERE s.accountId = :accountId AND s.slot = :slot")
+    int credit(@Param("accountId") Long accountId, @Param("slot") int slot, @Param("amount") BigDecimal amount);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM AccountBalanceSlot s WHERE s.accountId = :accountId ORDER BY s.slot")
+    List<AccountBalanceSlot> findByAccountIdForUpdate(@Param("accountId") Long accountId);
+
+    @Query("SELECT s.accountId AS accountId, SUM(s.balance) AS total FROM AccountBalanceSlot s " +
+            "WHERE s.accountId IN :accountIds GROUP BY s.accountId")
+    List<SlotTotal> sumByAccountIds(@Param("accountIds") Collection<Long> accountIds);
+
+    @Query("SELECT s.accountId AS accountId, SUM(s.balance) AS total FROM AccountBalanceSlot s " +
+            "WHERE s.accountId >= :lowerId AND s.accountId < :upperId GROUP BY s.accountId")
+    List<SlotTotal> sumByAccountIdRange(@Param("lowerId") Long lowerId, @Param("upperId") Long upperId);
+
+    @Query("SELECT DISTINCT s.accountId FROM AccountBalanceSlot s WHERE s.balance <> 0")
+    List<Long> findAccountIdsWithPendingBalance();
+
+    @Modifying
+    @Query("DELETE FROM AccountBalanceSlot s WHERE s.accountId = :accountId")
+    int deleteByAccountId(@Param("accountId") Long accountId);
+
+    interface SlotTotal {
+        Long getAccountId();
+
+        BigDecimal getTotal();
+    }
+}
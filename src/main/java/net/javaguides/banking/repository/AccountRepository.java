@@ -3,18 +3,111 @@ package net.javaguides.banking.repository;
 import jakarta.persistence.LockModeType;
 import jakarta.persistence.QueryHint;
 import net.javaguides.banking.entity.Account;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
-public interface AccountRepository extends JpaRepository<Account, Long> {
+public interface AccountRepository extends JpaRepository<Account, Long>, JpaSpecificationExecutor<Account>, AccountRepositoryCustom {
 
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("SELECT a FROM Account a WHERE a.id = :id")
     Optional<Account> findByIdForUpdate(@Param("id") Long id);
 
+    /**
+     * 一次鎖定多個帳戶，依 ID 由小到大取得列鎖，與單筆轉帳的 from/to 排序一致，避免死結。
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Account a WHERE a.id IN :ids ORDER BY a.id")
+    List<Account> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 只取帳戶 ID 與擁有者 userId，不建立 Account / User 實體。
+     */
+    @Query("SELECT a.id AS id, u.userId AS ownerUserId FROM Account a LEFT JOIN a.user u WHERE a.id IN :ids")
+    List<AccountOwnerView> findOwnersByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 以單一 UPDATE 原子性加款，同時遞增 version，讓其他使用 @Version 的寫入者仍能偵測到變更。
+     *
+     * @return 受影響筆數，0 代表帳戶不存在
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Account a SET a.balance = a.balance + :amount, a.version = a.version + 1 WHERE a.id = :id")
+    int incrementBalance(@Param("id") Long id, @Param("amount") BigDecimal amount);
+
+    /**
+     * 只在 version 與呼叫端手上的快照相同時加款；成功代表新餘額就是快照餘額 + amount，不需再讀回。
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Account a SET a.balance = a.balance + :amount, a.version = a.version + 1 WHERE a.id = :id AND a.version = :version")
+    int incrementBalanceIfVersion(@Param("id") Long id, @Param("amount") BigDecimal amount, @Param("version") Long version);
+
+    /**
+     * 以單一條件式 UPDATE 原子性扣款，只有在餘額足夠時才會更新。
+     *
+     * @return 受影響筆數，0 代表帳戶不存在或餘額不足
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Account a SET a.balance = a.balance - :amount, a.version = a.version + 1 WHERE a.id = :id AND a.balance >= :amount")
+    int decrementBalanceIfSufficient(@Param("id") Long id, @Param("amount") BigDecimal amount);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Account a SET a.balance = a.balance - :amount, a.version = a.version + 1 " +
+            "WHERE a.id = :id AND a.version = :version AND a.balance >= :amount")
+    int decrementBalanceIfVersion(@Param("id") Long id, @Param("amount") BigDecimal amount, @Param("version") Long version);
+
+    /**
+     * 以單一查詢取得主餘額加上所有子餘額槽的總和，確保讀到的是同一時間點的精確餘額。
+     */
+    @Query("SELECT a.balance + COALESCE((SELECT SUM(s.balance) FROM AccountBalanceSlot s WHERE s.accountId = a.id), 0) " +
+            "FROM Account a WHERE a.id = :id")
+    Optional<BigDecimal> findTotalBalanceById(@Param("id") Long id);
+
+    /**
+     * 條件式 GET 使用：只取帳戶 version 與子餘額槽數 (熱門帳戶沒有版本)，不載入帳戶實體。
+     */
+    @Query("SELECT a.version AS version, a.hotSlots AS hotSlots FROM Account a WHERE a.id = :id")
+    Optional<AccountVersionView> findVersionById(@Param("id") Long id);
+
+    // 依 ID 順序逐批處理或隨機抽樣帳戶用，以主鍵定位
+    @Query("SELECT a.id FROM Account a WHERE a.id >= :from ORDER BY a.id")
+    List<Long> findIdsFrom(@Param("from") long from, Pageable pageable);
+
+    @Query("SELECT MIN(a.id) FROM Account a")
+    Long findMinId();
+
+    @Query("SELECT MAX(a.id) FROM Account a")
+    Long findMaxId();
+
+    @Query("SELECT a.id AS id, a.hotSlots AS hotSlots FROM Account a WHERE a.hotSlots > 0")
+    List<HotAccountView> findHotAccounts();
+
+    interface AccountOwnerView {
+        Long getId();
+
+        String getOwnerUserId();
+    }
+
+    interface AccountVersionView {
+        Long getVersion();
+
+        int getHotSlots();
+    }
+
+    interface HotAccountView {
+        Long getId();
+
+        int getHotSlots();
+    }
+
 }
@@ -0,0 +1,16 @@
+package net.javaguides.banking.repository;
+
+import net.javaguides.banking.dto.AccountDto;
+import net.javaguides.banking.entity.Account;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+
+public interface AccountRepositoryCustom {
+
+    /**
+     * 依 specification 篩選後直接產生 AccountDto，不建立 Account 實體；熱門帳戶的餘額已加上子餘額槽的總和。
+     * 多取一筆判斷是否有下一頁，不執行 COUNT。
+     */
+    Slice<AccountDto> findDtoSlice(Specification<Account> specification, Pageable pageable);
+}
@@ -0,0 +1,60 @@
+package net.javaguides.banking.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import net.javaguides.banking.dto.AccountDto;
+import net.javaguides.banking.entity.Account;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+class AccountRepositoryCustomImpl implements AccountRepositoryCustom {
+
+    private EntityManager entityManager;
+
+    AccountRepositoryCustomImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public Slice<AccountDto> findDtoSlice(Specification<Account> specification, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<AccountDto> query = cb.createQuery(AccountDto.class);
+        Root<Account> account = query.from(Account.class);
+
+        // 與 findTotalBalanceById 相同的算法，餘額上限篩選也以同一個運算式過濾熱門帳戶
+        Expression<BigDecimal> balance = AccountSpecifications.totalBalance(account, query, cb);
+
+        query.select(cb.construct(AccountDto.class, account.get("id"), account.get("accountHolderName"), balance));
+        if (specification != null) {
+            Predicate predicate = specification.toPredicate(account, query, cb);
+            if (predicate != null) {
+                query.where(predicate);
+            }
+        }
+        query.orderBy(QueryUtils.toOrders(pageable.getSort(), account, cb));
+
+        TypedQuery<AccountDto> typedQuery = entityManager.createQuery(query)
+                .setHint(HibernateHints.HINT_READ_ONLY, true);
+        if (pageable.isUnpaged()) {
+            return new SliceImpl<>(typedQuery.getResultList(), pageable, false);
+        }
+        List<AccountDto> rows = typedQuery
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize() + 1)
+                .getResultList();
+        boolean hasNext = rows.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? rows.subList(0, pageable.getPageSize()) : rows, pageable, hasNext);
+    }
+}
@@ -0,0 +1,103 @@
+package net.javaguides.banking.repository;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import net.javaguides.banking.dto.AccountFilter;
+import net.javaguides.banking.entity.Account;
+import net.javaguides.banking.entity.AccountBalanceSlot;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 帳戶列表的篩選條件。每個條件都只使用可走索引範圍掃描的寫法：
+ * 餘額為範圍比較、名稱開頭為跳脫後的 LIKE 'prefix%' (依欄位的定序比對，MySQL 以範圍掃描執行)、擁有者為等值比較。
+ * <p>
+ * 熱門帳戶的餘額是主餘額加上子餘額槽 ({@link #totalBalance})，子餘額槽只會存入 (非負)，因此總額一定不小於主餘額：
+ * <ul>
+ *     <li>上限：先以主餘額範圍掃描，熱門帳戶再以總額過濾，結果精確。</li>
+ *     <li>下限：主餘額已達下限的熱門帳戶總額也一定達到；主餘額未達、只靠尚未歸併的子餘額槽達到下限的熱門帳戶
+ *     不會出現，直到下次歸併 (banking.hot-account.fold-interval-ms)。以總額做下限需要掃描所有熱門帳戶的子餘額槽，無法走索引。</li>
+ * </ul>
+ */
+public final class AccountSpecifications {
+
+    private AccountSpecifications() {
+    }
+
+    public static Specification<Account> matching(AccountFilter filter) {
+        List<Specification<Account>> specifications = new ArrayList<>();
+        if (filter.minBalance() != null) {
+            specifications.add(balanceAtLeast(filter.minBalance()));
+        }
+        if (filter.maxBalance() != null) {
+            specifications.add(balanceAtMost(filter.maxBalance()));
+        }
+        if (filter.holderNamePrefix() != null && !filter.holderNamePrefix().isEmpty()) {
+            specifications.add(holderNameStartsWith(filter.holderNamePrefix()));
+        }
+        if (filter.ownerUserId() != null) {
+            specifications.add(ownedBy(filter.ownerUserId()));
+        }
+        return Specification.allOf(specifications);
+    }
+
+    public static Specification<Account> balanceAtLeast(BigDecimal minBalance) {
+        return (account, query, cb) -> cb.greaterThanOrEqualTo(account.get("balance"), minBalance);
+    }
+
+    public static Specification<Account> balanceAtMost(BigDecimal maxBalance) {
+        return (account, query, cb) -> cb.and(cb.lessThanOrEqualTo(account.get("balance"), maxBalance),
+                cb.or(cb.equal(account.<Integer>get("hotSlots"), 0),
+                        cb.lessThanOrEqualTo(totalBalance(account, query, cb), maxBalance)));
+    }
+
+    // 下限讓 H2 這類不支援 LIKE 參數範圍掃描的資料庫也能走索引；以 prefix 開頭的字串依任何定序都不小於 prefix
+    public static Specification<Account> holderNameStartsWith(String prefix) {
+        String pattern = escapeLike(prefix) + "%";
+        return (account, query, cb) -> cb.and(cb.greaterThanOrEqualTo(account.get("accountHolderName"), prefix),
+                cb.like(account.get("accountHolderName"), pattern, '\\'));
+    }
+
+    // 只比較外鍵欄位 accounts.user_id，不會 JOIN users
+    public static Specification<Account> ownedBy(String ownerUserId) {
+        return (account, query, cb) -> cb.equal(account.get("user").get("userId"), ownerUserId);
+    }
+
+    public static Specification<Account> idIn(Collection<Long> ids) {
+        return (account, query, cb) -> account.get("id").in(ids);
+    }
+
+    /**
+     * 名稱包含 text (不分大小寫) 的 LIKE '%text%' 條件，無法使用索引，只在帳戶名稱索引尚未建立完成時使用。
+     */
+    public static Specification<Account> holderNameContains(String text) {
+        String pattern = "%" + escapeLike(text.toLowerCase(Locale.ROOT)) + "%";
+        return (account, query, cb) -> cb.like(cb.lower(account.get("accountHolderName")), pattern, '\\');
+    }
+
+    /**
+     * 帳戶目前的總餘額：熱門帳戶為主餘額加上子餘額槽，一般帳戶不會執行子查詢。
+     */
+    static Expression<BigDecimal> totalBalance(Root<Account> account, CriteriaQuery<?> query, CriteriaBuilder cb) {
+        Subquery<BigDecimal> slotTotal = query.subquery(BigDecimal.class);
+        Root<AccountBalanceSlot> slot = slotTotal.from(AccountBalanceSlot.class);
+        slotTotal.select(cb.sum(slot.<BigDecimal>get("balance")))
+                .where(cb.equal(slot.get("accountId"), account.get("id")));
+        return cb.<BigDecimal>selectCase()
+                .when(cb.greaterThan(account.<Integer>get("hotSlots"), 0),
+                        cb.sum(account.<BigDecimal>get("balance"), cb.coalesce(slotTotal, BigDecimal.ZERO)))
+                .otherwise(account.<BigDecimal>get("balance"));
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
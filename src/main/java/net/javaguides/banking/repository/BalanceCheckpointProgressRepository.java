@@ -0,0 +1,17 @@
+package net.javaguides.banking.repository;
+
+import jakarta.persistence.LockModeType;
+import net.javaguides.banking.entity.BalanceCheckpointProgress;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+public interface BalanceCheckpointProgressRepository extends JpaRepository<BalanceCheckpointProgress, String> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM BalanceCheckpointProgress p WHERE p.name = :name")
+    Optional<BalanceCheckpointProgress> findByNameForUpdate(@Param("name") String name);
+}
@@ -0,0 +1,35 @@
+package net.javaguides.banking.repository;
+
+import net.javaguides.banking.entity.BalanceCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface BalanceCheckpointRepository extends JpaRepository<BalanceCheckpoint, Long> {
+
+    // 以 (account_id, day) 唯一索引倒序取第一筆，不論有多少檢查點都是一次索引定位
+    Optional<BalanceCheckpoint> findFirstByAccountIdAndDayLessThanEqualOrderByDayDesc(Long accountId, LocalDate day);
+
+    /**
+     * 每個帳戶最新的一筆檢查點，依序建立新的一天時作為前一天的累計餘額。
+     */
+    @Query("SELECT c FROM BalanceCheckpoint c WHERE c.accountId IN :accountIds " +
+            "AND c.day = (SELECT MAX(c2.day) FROM BalanceCheckpoint c2 WHERE c2.accountId = c.accountId)")
+    List<BalanceCheckpoint> findLatestByAccountIdIn(@Param("accountIds") Collection<Long> accountIds);
+
+    // 遲到的紀錄計入它所屬日子 (含) 之後帳戶所有的檢查點
+    @Modifying
+    @Query("UPDATE BalanceCheckpoint c SET c.balance = c.balance + :delta WHERE c.accountId = :accountId AND c.day >= :day")
+    int addFrom(@Param("accountId") Long accountId, @Param("day") LocalDate day, @Param("delta") BigDecimal delta);
+
+    @Modifying
+    @Query("DELETE FROM BalanceCheckpoint c")
+    int deleteAllCheckpoints();
+}
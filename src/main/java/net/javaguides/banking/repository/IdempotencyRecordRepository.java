@@ -0,0 +1,25 @@
+package net.javaguides.banking.repository;
+
+import net.javaguides.banking.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.statusCode = :statusCode, r.responseBody = :responseBody WHERE r.idempotencyKey = :key")
+    int complete(@Param("key") String key, @Param("statusCode") int statusCode, @Param("responseBody") String responseBody);
+
+    // 只刪除尚未完成的紀錄，已保存的回應不受影響
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.idempotencyKey = :key AND r.statusCode = " + IdempotencyRecord.PENDING_STATUS)
+    int release(@Param("key") String key);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.createdAt < :cutoff")
+    int deleteCreatedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,17 @@
+package net.javaguides.banking.repository;
+
+import jakarta.persistence.LockModeType;
+import net.javaguides.banking.entity.OpeningBalanceBackfill;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+public interface OpeningBalanceBackfillRepository extends JpaRepository<OpeningBalanceBackfill, String> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM OpeningBalanceBackfill b WHERE b.name = :name")
+    Optional<OpeningBalanceBackfill> findByNameForUpdate(@Param("name") String name);
+}
@@ -0,0 +1,21 @@
+package net.javaguides.banking.repository;
+
+import net.javaguides.banking.entity.ReconciliationMismatch;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface ReconciliationMismatchRepository extends JpaRepository<ReconciliationMismatch, Long> {
+
+    Slice<ReconciliationMismatch> findByRunIdOrderByAccountId(Long runId, Pageable pageable);
+
+    /**
+     * 重新處理一個範圍前先清除上次 (中斷前) 寫入的結果，讓同一範圍重做不會重複。
+     */
+    @Modifying
+    @Query("DELETE FROM ReconciliationMismatch m WHERE m.runId = :runId AND m.accountId >= :lowerId AND m.accountId < :upperId")
+    int deleteRange(@Param("runId") Long runId, @Param("lowerId") Long lowerId, @Param("upperId") Long upperId);
+}
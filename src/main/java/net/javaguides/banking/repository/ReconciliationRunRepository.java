@@ -0,0 +1,17 @@
+package net.javaguides.banking.repository;
+
+import jakarta.persistence.LockModeType;
+import net.javaguides.banking.entity.ReconciliationRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+
+import java.util.Optional;
+
+public interface ReconciliationRunRepository extends JpaRepository<ReconciliationRun, Long> {
+
+    /**
+     * 鎖定最近一次對帳，多個節點同時開始對帳時只有一個能接手或建立新的對帳。
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<ReconciliationRun> findFirstByOrderByIdDesc();
+}
@@ -0,0 +1,17 @@
+package net.javaguides.banking.repository;
+
+import jakarta.persistence.LockModeType;
+import net.javaguides.banking.entity.StatementRollupBackfill;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+public interface StatementRollupBackfillRepository extends JpaRepository<StatementRollupBackfill, String> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM StatementRollupBackfill b WHERE b.name = :name")
+    Optional<StatementRollupBackfill> findByNameForUpdate(@Param("name") String name);
+}
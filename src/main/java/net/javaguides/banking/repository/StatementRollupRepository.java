@@ -0,0 +1,51 @@
+package net.javaguides.banking.repository;
+
+import net.javaguides.banking.entity.StatementRollup;
+import net.javaguides.banking.enums.TransactionType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+public interface StatementRollupRepository extends JpaRepository<StatementRollup, Long> {
+
+    // 所有 stripe 加總後的當月各類型金額與筆數
+    @Query("SELECT r.transactionType AS transactionType, SUM(r.totalAmount) AS totalAmount, SUM(r.transactionCount) AS transactionCount " +
+            "FROM StatementRollup r WHERE r.accountId = :accountId AND r.month = :month GROUP BY r.transactionType")
+    List<TypeTotal> findMonthTotals(@Param("accountId") Long accountId, @Param("month") LocalDate month);
+
+    /**
+     * month 之前所有月份的淨額，即當月的期初餘額。
+     */
+    @Query("SELECT COALESCE(SUM(CASE WHEN r.transactionType IN (net.javaguides.banking.enums.TransactionType.DEPOSIT, " +
+            "net.javaguides.banking.enums.TransactionType.TRANSFER_IN) THEN r.totalAmount ELSE -r.totalAmount END), 0) " +
+            "FROM StatementRollup r WHERE r.accountId = :accountId AND r.month < :month")
+    BigDecimal sumSignedBefore(@Param("accountId") Long accountId, @Param("month") LocalDate month);
+
+    // 帳戶每個月份各類型的金額與筆數 (所有 stripe 加總)，用來核對與補齊彙總
+    @Query("SELECT YEAR(r.month) AS statementYear, MONTH(r.month) AS statementMonth, r.transactionType AS transactionType, " +
+            "SUM(r.totalAmount) AS totalAmount, SUM(r.transactionCount) AS transactionCount " +
+            "FROM StatementRollup r WHERE r.accountId = :accountId GROUP BY YEAR(r.month), MONTH(r.month), r.transactionType")
+    List<MonthTypeTotal> sumByMonthAndType(@Param("accountId") Long accountId);
+
+    Optional<StatementRollup> findByAccountIdAndMonthAndTransactionTypeAndStripe(Long accountId, LocalDate month,
+                                                                               TransactionType transactionType, int stripe);
+
+    interface TypeTotal {
+        TransactionType getTransactionType();
+
+        BigDecimal getTotalAmount();
+
+        Long getTransactionCount();
+    }
+
+    interface MonthTypeTotal extends TypeTotal {
+        Integer getStatementYear();
+
+        Integer getStatementMonth();
+    }
+}
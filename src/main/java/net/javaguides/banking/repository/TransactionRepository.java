@@ -1,13 +1,121 @@
 package net.javaguides.banking.repository;
 
+import jakarta.persistence.QueryHint;
+import net.javaguides.banking.dto.TransactionDTO;
 import net.javaguides.banking.entity.Transaction;
 
-import org.springframework.data.domain.Page;
+import org.hibernate.jpa.HibernateHints;
+
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
 
 
 public interface TransactionRepository extends JpaRepository<Transaction,Long> {
-    public Page<Transaction> findByAccountIdOrderByTimestampDesc(Long accountId, Pageable pageable);
+    // 列表用：直接產生 TransactionDTO，不建立受管理的 Transaction 實體；ID 依時間排序 (Snowflake)，以主鍵排序即為時間新到舊
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("SELECT new net.javaguides.banking.dto.TransactionDTO(t.id, t.accountId, t.amount, t.transactionType, t.timestamp) " +
+            "FROM Transaction t WHERE t.accountId = :accountId ORDER BY t.id DESC")
+    Slice<TransactionDTO> findDtoSliceByAccountId(@Param("accountId") Long accountId, Pageable pageable);
+
+    long countByAccountId(Long accountId);
+
+    // 游標分頁的第一頁，不執行 COUNT
+    @Query("SELECT t FROM Transaction t WHERE t.accountId = :accountId ORDER BY t.timestamp DESC, t.id DESC")
+    List<Transaction> findFirstPage(@Param("accountId") Long accountId, Pageable pageable);
+
+    // 從上一頁最後一筆 (timestamp, id) 之後繼續，不論翻到第幾頁都不需要 OFFSET
+    @Query("SELECT t FROM Transaction t WHERE t.accountId = :accountId " +
+            "AND (t.timestamp < :timestamp OR (t.timestamp = :timestamp AND t.id < :id)) " +
+            "ORDER BY t.timestamp DESC, t.id DESC")
+    List<Transaction> findPageAfter(@Param("accountId") Long accountId,
+                                    @Param("timestamp") LocalDateTime timestamp,
+                                    @Param("id") Long id,
+                                    Pageable pageable);
+
+    // 匯出用的 forward-only 游標：每次向資料庫取 fetch size 筆，只讀不做 dirty checking
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT t FROM Transaction t WHERE t.accountId = :accountId " +
+            "AND t.timestamp >= :from AND t.timestamp < :to ORDER BY t.timestamp, t.id")
+    Stream<Transaction> streamForExport(@Param("accountId") Long accountId,
+                                        @Param("from") LocalDateTime from,
+                                        @Param("to") LocalDateTime to);
+
+    // 存入與轉入為正、提款與轉出為負
+    String SIGNED_AMOUNT = "CASE WHEN t.transactionType IN (net.javaguides.banking.enums.TransactionType.DEPOSIT, " +
+            "net.javaguides.banking.enums.TransactionType.TRANSFER_IN) THEN t.amount ELSE -t.amount END";
+
+    /**
+     * 帳戶在 [from, to] 之間 (兩端皆包含) 的交易淨額，走 (account_id, timestamp, id) 索引範圍掃描。
+     */
+    @Query("SELECT COALESCE(SUM(" + SIGNED_AMOUNT + "), 0) FROM Transaction t " +
+            "WHERE t.accountId = :accountId AND t.timestamp >= :from AND t.timestamp <= :to")
+    BigDecimal sumSignedAmount(@Param("accountId") Long accountId,
+                               @Param("from") LocalDateTime from,
+                               @Param("to") LocalDateTime to);
+
+    // 不限起點的版本，用於還沒有任何檢查點的帳戶
+    @Query("SELECT COALESCE(SUM(" + SIGNED_AMOUNT + "), 0) FROM Transaction t " +
+            "WHERE t.accountId = :accountId AND t.timestamp <= :to")
+    BigDecimal sumSignedAmountUpTo(@Param("accountId") Long accountId, @Param("to") LocalDateTime to);
+
+    @Query("SELECT MIN(t.timestamp) FROM Transaction t WHERE t.timestamp >= :from")
+    LocalDateTime findFirstTimestampFrom(@Param("from") LocalDateTime from);
+
+    @Query("SELECT MIN(t.timestamp) FROM Transaction t")
+    LocalDateTime findFirstTimestamp();
+
+    @Query("SELECT MIN(t.timestamp) FROM Transaction t WHERE t.accountId = :accountId")
+    LocalDateTime findFirstTimestampOf(@Param("accountId") Long accountId);
+
+    /**
+     * [from, to) 之間、ID 小於 belowId 的每個有交易的帳戶的淨額，建立一天的餘額檢查點時使用。
+     * ID 不小於 belowId 的紀錄之後以遲到紀錄補進檢查點，不會重複計算。
+     */
+    @Query("SELECT t.accountId AS accountId, SUM(" + SIGNED_AMOUNT + ") AS net FROM Transaction t " +
+            "WHERE t.timestamp >= :from AND t.timestamp < :to AND t.id < :belowId GROUP BY t.accountId")
+    List<AccountNet> sumSignedAmountByAccount(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                                              @Param("belowId") Long belowId);
+
+    /**
+     * ID 在 [fromId, toId) 之間、時間戳早於 before 的紀錄：所屬的日子建立檢查點時還沒有計入的遲到紀錄，以主鍵範圍掃描。
+     */
+    @Query("SELECT t FROM Transaction t WHERE t.id >= :fromId AND t.id < :toId AND t.timestamp < :before")
+    List<Transaction> findLate(@Param("fromId") Long fromId, @Param("toId") Long toId, @Param("before") LocalDateTime before);
+
+    /**
+     * 帳戶 ID 在 [lowerId, upperId) 之間每個有交易的帳戶的全部交易淨額，對帳時使用，走 account_id 開頭的索引範圍掃描。
+     */
+    @Query("SELECT t.accountId AS accountId, SUM(" + SIGNED_AMOUNT + ") AS net FROM Transaction t " +
+            "WHERE t.accountId >= :lowerId AND t.accountId < :upperId GROUP BY t.accountId")
+    List<AccountNet> sumSignedAmountByAccountIdRange(@Param("lowerId") Long lowerId, @Param("upperId") Long upperId);
+
+    /**
+     * 帳戶每個月份各類型的金額與筆數，用來核對與補齊月結單彙總。
+     * 事件帳本模式下尚未投影的紀錄由投影累加進彙總，還不應出現在彙總中，因此排除。
+     */
+    @Query("SELECT YEAR(t.timestamp) AS statementYear, MONTH(t.timestamp) AS statementMonth, t.transactionType AS transactionType, " +
+            "SUM(t.amount) AS totalAmount, COUNT(t) AS transactionCount FROM Transaction t WHERE t.accountId = :accountId " +
+            "AND NOT EXISTS (SELECT 1 FROM LedgerPendingEvent p WHERE p.eventId = t.id) " +
+            "GROUP BY YEAR(t.timestamp), MONTH(t.timestamp), t.transactionType")
+    List<StatementRollupRepository.MonthTypeTotal> sumByMonthAndType(@Param("accountId") Long accountId);
+
+    interface AccountNet {
+        Long getAccountId();
+
+        BigDecimal getNet();
+    }
 }
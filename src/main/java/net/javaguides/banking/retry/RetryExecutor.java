@@ -0,0 +1,170 @@
+package net.javaguides.banking.retry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import net.javaguides.banking.exception.AccountException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 併發衝突 (樂觀鎖版本衝突、列鎖等待逾時、死結) 的重試元件。
+ * <p>
+ * 每次嘗試都在新的交易中執行，因此也是新的 persistence context，不會沿用上一次失敗時載入的舊資料；
+ * 兩次嘗試之間以 exponential backoff + full jitter 等待，避免同一帳戶上的衝突演變成重試風暴。
+ * 若呼叫時已經在交易中 (例如 Idempotency-Key 的交易)，失敗會讓外層交易變成 rollback-only，
+ * 此時只執行一次，由外層決定是否重試。
+ * <p>
+ * 指標：banking.retry.attempts / banking.retry.success_after_retry / banking.retry.give_ups，以 operation 區分；
+ * banking.retry.contended_accounts 由 Spring Boot 在綁定 {@link MeterBinder} 時註冊一次。
+ */
+@Component
+public class RetryExecutor implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetryExecutor.class);
+
+    // 避免帳戶數量很多時統計表無限成長，超過時淘汰最久沒有發生衝突的帳戶
+    private static final int MAX_TRACKED_ACCOUNTS = 10_000;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final MeterRegistry meterRegistry;
+
+    private final int maxAttempts;
+
+    private final long initialBackoffMs;
+
+    private final long maxBackoffMs;
+
+    private final long contentionWarnThreshold;
+
+    // 依最近一次衝突的時間排列 (access order)，所有存取都在這個 map 的鎖內
+    private final Map<Long, LongAdder> conflictsByAccount = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, LongAdder> eldest) {
+            return size() > MAX_TRACKED_ACCOUNTS;
+        }
+    };
+
+    public RetryExecutor(PlatformTransactionManager transactionManager,
+                         MeterRegistry meterRegistry,
+                         @Value("${banking.retry.max-attempts:4}") int maxAttempts,
+                         @Value("${banking.retry.initial-backoff-ms:5}") long initialBackoffMs,
+                         @Value("${banking.retry.max-backoff-ms:200}") long maxBackoffMs,
+                         @Value("${banking.retry.contention-warn-threshold:100}") long contentionWarnThreshold) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.contentionWarnThreshold = contentionWarnThreshold;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("banking.retry.contended_accounts", this, RetryExecutor::contendedAccounts).register(registry);
+    }
+
+    /**
+     * @param operation 指標與日誌使用的操作名稱
+     * @param accountId 發生衝突時記錄在哪個帳戶上，可為 null
+     */
+    public <T> T execute(String operation, Long accountId, Supplier<T> action) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return action.get();
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            counter("banking.retry.attempts", operation).increment();
+            try {
+                T result = transactionTemplate.execute(status -> action.get());
+                if (attempt > 1) {
+                    counter("banking.retry.success_after_retry", operation).increment();
+                }
+                return result;
+            } catch (ConcurrencyFailureException e) {
+                recordConflict(accountId);
+                if (attempt >= maxAttempts) {
+                    counter("banking.retry.give_ups", operation).increment();
+                    logger.error("{}在{}次嘗試後仍然衝突,帳號:{},放棄重試:{}", operation, attempt, accountId, e.getMessage());
+                    throw new AccountException("帳戶操作因高併發衝突而失敗，請稍後再試。");
+                }
+                long backoff = backoffMillis(attempt);
+                logger.warn("{}第{}次嘗試發生衝突,帳號:{},{}ms 後重試:{}", operation, attempt, accountId, backoff, e.getMessage());
+                sleep(backoff);
+            }
+        }
+    }
+
+    /**
+     * 衝突次數最多的帳戶，可用來決定哪些帳戶該開啟熱門帳戶子餘額槽。
+     */
+    public Map<Long, Long> topContendedAccounts(int limit) {
+        Map<Long, Long> top = new LinkedHashMap<>();
+        synchronized (conflictsByAccount) {
+            conflictsByAccount.entrySet().stream()
+                    .sorted(Comparator.comparingLong((Map.Entry<Long, LongAdder> entry) -> entry.getValue().sum()).reversed())
+                    .limit(limit)
+                    .forEach(entry -> top.put(entry.getKey(), entry.getValue().sum()));
+        }
+        return top;
+    }
+
+    private double contendedAccounts() {
+        synchronized (conflictsByAccount) {
+            return conflictsByAccount.size();
+        }
+    }
+
+    // full jitter：在 0 到 min(max, initial * 2^(attempt-1)) 之間隨機等待
+    long backoffMillis(int attempt) {
+        long ceiling = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 20));
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private void recordConflict(Long accountId) {
+        if (accountId == null) {
+            return;
+        }
+        long total;
+        synchronized (conflictsByAccount) {
+            LongAdder conflicts = conflictsByAccount.computeIfAbsent(accountId, id -> new LongAdder());
+            conflicts.increment();
+            total = conflicts.sum();
+        }
+        if (total == contentionWarnThreshold) {
+            logger.warn("帳戶{}累計{}次併發衝突,可考慮設定熱門帳戶子餘額槽", accountId, contentionWarnThreshold);
+        }
+    }
+
+    private Counter counter(String name, String operation) {
+        return meterRegistry.counter(name, "operation", operation);
+    }
+
+    private void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AccountException("等待重試時被中斷");
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package net.javaguides.banking.search;
+
+import jakarta.annotation.PreDestroy;
+import net.javaguides.banking.id.SnowflakeIdGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * 帳戶名稱部分字串搜尋的記憶體索引，取代 accounts 上的 LIKE '%x%' 全表掃描。
+ * <p>
+ * 啟動完成後在背景建立：把 accounts 依 ID 切成多個範圍，由 build-threads 個執行緒各自以資料庫游標串流讀取並建立分段索引，
+ * 再依 ID 順序合併。建立期間的新增與刪除會先記錄下來，換上新索引時補套用。
+ * 本節點的 createAccount / deleteAccount 在交易提交後更新索引；其他節點新增的帳戶由排程依 ID 追上，
+ * 其他節點刪除的帳戶由呼叫端查詢資料庫時自然排除。刪除累積超過四分之一時整個重建以回收空間。
+ */
+@Component
+public class AccountNameIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccountNameIndex.class);
+
+    public static final int MIN_QUERY_LENGTH = TrigramIndex.GRAM_LENGTH;
+
+    private static final int FETCH_SIZE = 1000;
+
+    // 每個執行緒分到多個 ID 範圍，避免 Snowflake ID 依時間分布不均時某個執行緒特別慢
+    private static final int RANGES_PER_THREAD = 4;
+
+    // 追上其他節點新增的帳戶時往前多掃的時間，涵蓋節點之間的時鐘誤差
+    private static final long CATCH_UP_OVERLAP_MS = 60_000;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private final boolean enabled;
+
+    private final int buildThreads;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 以下兩個欄位由 lock 保護；index 在第一次建立完成前為 null
+    private TrigramIndex index;
+
+    private List<Consumer<TrigramIndex>> pendingDuringBuild;
+
+    private final AtomicBoolean busy = new AtomicBoolean();
+
+    private final ExecutorService maintainer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "account-name-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public AccountNameIndex(JdbcTemplate jdbcTemplate,
+                            @Value("${banking.search.enabled:true}") boolean enabled,
+                            @Value("${banking.search.build-threads:4}") int buildThreads) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.buildThreads = Math.max(1, buildThreads);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (enabled) {
+            submit(this::rebuild);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${banking.search.refresh-ms:60000}", fixedDelayString = "${banking.search.refresh-ms:60000}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        boolean rebuild;
+        lock.readLock().lock();
+        try {
+            rebuild = index == null || index.deletedCount() * 4 > index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+        submit(rebuild ? this::rebuild : this::catchUp);
+    }
+
+    /**
+     * @param query 至少 {@link #MIN_QUERY_LENGTH} 個字元，不分大小寫
+     * @return 名稱包含 query 的帳戶 ID (由小到大，最多 limit 筆)；索引尚未建立完成時為 empty
+     */
+    public Optional<long[]> search(String query, int limit) {
+        String normalized = TrigramIndex.normalize(query);
+        lock.readLock().lock();
+        try {
+            return index == null ? Optional.empty() : Optional.of(index.search(normalized, limit));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 在目前的交易提交後加入索引；交易復原時不加入。
+     */
+    public void addAfterCommit(Long accountId, String accountHolderName) {
+        if (accountHolderName == null) {
+            return;
+        }
+        String normalized = TrigramIndex.normalize(accountHolderName);
+        afterCommit(index -> index.add(accountId, normalized));
+    }
+
+    public void removeAfterCommit(Long accountId) {
+        afterCommit(index -> index.remove(accountId));
+    }
+
+    /**
+     * 從資料庫重新建立整個索引並換上，建立期間的新增與刪除在換上時補套用。
+     */
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            pendingDuringBuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        long started = System.currentTimeMillis();
+        TrigramIndex built;
+        try {
+            built = load();
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                pendingDuringBuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            pendingDuringBuild.forEach(change -> change.accept(built));
+            index = built;
+            pendingDuringBuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("帳戶名稱索引建立完成,共{}個帳戶,耗時{}ms", built.size(), System.currentTimeMillis() - started);
+    }
+
+    /**
+     * 讀入 ID 大於目前最大 ID (往前多掃一段時間) 的帳戶，已在索引中的會略過。
+     */
+    public void catchUp() {
+        long from;
+        lock.readLock().lock();
+        try {
+            if (index == null) {
+                return;
+            }
+            from = index.maxId() == 0 ? 0 : SnowflakeIdGenerator.minIdAt(SnowflakeIdGenerator.timestampOf(index.maxId()) - CATCH_UP_OVERLAP_MS);
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Object[]> rows = new ArrayList<>();
+        scan(from, Long.MAX_VALUE, (id, name) -> rows.add(new Object[]{id, name}));
+
+        int added = 0;
+        lock.writeLock().lock();
+        try {
+            for (Object[] row : rows) {
+                if (index.add((Long) row[0], (String) row[1])) {
+                    added++;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (added > 0) {
+            logger.debug("帳戶名稱索引補上{}個其他節點新增的帳戶", added);
+        }
+    }
+
+    private TrigramIndex load() {
+        Map<String, Object> bounds = jdbcTemplate.queryForMap("SELECT MIN(id) AS min_id, MAX(id) AS max_id, COUNT(*) AS total FROM accounts");
+        if (bounds.get("min_id") == null) {
+            return new TrigramIndex(true, 0);
+        }
+        long minId = ((Number) bounds.get("min_id")).longValue();
+        long maxId = ((Number) bounds.get("max_id")).longValue();
+        int total = ((Number) bounds.get("total")).intValue();
+
+        int ranges = buildThreads * RANGES_PER_THREAD;
+        long span = (maxId - minId) / ranges + 1;
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(buildThreads, runnable -> {
+            Thread thread = new Thread(runnable, "account-name-index-build-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<TrigramIndex>> parts = new ArrayList<>();
+            for (int range = 0; range < ranges; range++) {
+                long lower = minId + range * span;
+                long upper = range == ranges - 1 ? maxId + 1 : lower + span;
+                parts.add(workers.submit(() -> {
+                    TrigramIndex part = new TrigramIndex(false, 0);
+                    scan(lower, upper, part::add);
+                    return part;
+                }));
+            }
+            // 分段依 ID 範圍順序合併，合併後的序號仍依 ID 由小到大
+            TrigramIndex merged = new TrigramIndex(true, total);
+            for (Future<TrigramIndex> part : parts) {
+                merged.appendAll(part.get());
+            }
+            merged.trim();
+            return merged;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("建立帳戶名稱索引時被中斷", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("建立帳戶名稱索引失敗", e.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    // 以伺服器端游標逐批讀取 [lower, upper) 範圍的帳戶
+    private void scan(long lower, long upper, AccountSink sink) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement statement = con.prepareStatement(
+                    "SELECT id, account_holder_name FROM accounts WHERE id >= ? AND id < ? ORDER BY id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(FETCH_SIZE);
+            statement.setLong(1, lower);
+            statement.setLong(2, upper);
+            return statement;
+        }, (ResultSet rs) -> {
+            String name = rs.getString(2);
+            if (name != null) {
+                sink.accept(rs.getLong(1), TrigramIndex.normalize(name));
+            }
+        });
+    }
+
+    private void afterCommit(Consumer<TrigramIndex> change) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(change);
+                }
+            });
+        } else {
+            apply(change);
+        }
+    }
+
+    private void apply(Consumer<TrigramIndex> change) {
+        lock.writeLock().lock();
+        try {
+            if (index != null) {
+                change.accept(index);
+            }
+            if (pendingDuringBuild != null) {
+                pendingDuringBuild.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 同一時間只會有一個重建或追上在執行，排程觸發時前一次尚未結束就略過
+    private void submit(Runnable task) {
+        if (!busy.compareAndSet(false, true)) {
+            return;
+        }
+        maintainer.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.warn("更新帳戶名稱索引失敗,下次排程再試:{}", e.getMessage(), e);
+            } finally {
+                busy.set(false);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        maintainer.shutdownNow();
+    }
+
+    @FunctionalInterface
+    private interface AccountSink {
+        void accept(long id, String name);
+    }
+}
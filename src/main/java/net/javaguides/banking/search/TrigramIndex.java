@@ -0,0 +1,311 @@
+package net.javaguides.banking.search;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Locale;
+
+/**
+ * 帳戶名稱的三字元組 (trigram) 倒排索引，所有資料都放在基本型別陣列中。
+ * <p>
+ * 每個帳戶依加入順序取得一個 int 序號，名稱 (轉小寫) 接續存放在同一個 char 陣列；
+ * 每個三字元組 (三個 UTF-16 字元組成的 48 bits long) 對應一個由小到大排序的序號陣列。
+ * 搜尋時取查詢字串所有三字元組的序號陣列求交集，再比對名稱確認確實包含整個查詢字串。
+ * 刪除只標記序號，空間在下次重建時回收。非執行緒安全，由 {@link AccountNameIndex} 同步。
+ * <p>
+ * 每個帳戶約佔 id 8 bytes + 名稱每字元 2 bytes + 每個三字元組 4 bytes + id 對照表約 20 bytes。
+ */
+final class TrigramIndex {
+
+    static final int GRAM_LENGTH = 3;
+
+    private static final int[] EMPTY_POSTINGS = new int[0];
+
+    // 序號 → 帳戶 ID 與名稱結束位置 (名稱開始位置為前一個帳戶的結束位置)
+    private long[] ids;
+
+    private int[] nameEnds;
+
+    private char[] chars;
+
+    private int charCount;
+
+    private int docCount;
+
+    private long maxId;
+
+    private final BitSet deleted = new BitSet();
+
+    private int deletedCount;
+
+    // 三字元組 → gram 編號；gram 編號 → 序號陣列
+    private final LongIntHashMap gramSlots;
+
+    private long[] gramKeys;
+
+    private int[][] postings;
+
+    private int[] postingSizes;
+
+    private int gramCount;
+
+    // 帳戶 ID → 序號；平行建立時的分段不需要，合併時才建立
+    private final LongIntHashMap ordinals;
+
+    TrigramIndex(boolean withIdLookup, int expectedDocs) {
+        int docs = Math.max(expectedDocs, 16);
+        this.ids = new long[docs];
+        this.nameEnds = new int[docs];
+        this.chars = new char[docs * 8];
+        this.gramSlots = new LongIntHashMap(1024);
+        this.gramKeys = new long[1024];
+        this.postings = new int[1024][];
+        this.postingSizes = new int[1024];
+        this.ordinals = withIdLookup ? new LongIntHashMap(docs) : null;
+    }
+
+    static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param name 已經過 {@link #normalize} 的名稱
+     * @return 帳戶已在索引中時為 false
+     */
+    boolean add(long id, String name) {
+        if (ordinals != null && ordinals.get(id) != LongIntHashMap.MISSING) {
+            return false;
+        }
+        int ordinal = docCount;
+        ensureDocCapacity(ordinal + 1);
+        ensureCharCapacity(charCount + name.length());
+        name.getChars(0, name.length(), chars, charCount);
+        charCount += name.length();
+        ids[ordinal] = id;
+        nameEnds[ordinal] = charCount;
+        docCount++;
+        maxId = Math.max(maxId, id);
+        if (ordinals != null) {
+            ordinals.put(id, ordinal);
+        }
+
+        for (int i = 0; i + GRAM_LENGTH <= name.length(); i++) {
+            int gram = gramFor(gramKey(name, i));
+            int size = postingSizes[gram];
+            // 同一個名稱重複出現的三字元組只記一次；序號遞增，只需比對最後一筆
+            if (size > 0 && postings[gram][size - 1] == ordinal) {
+                continue;
+            }
+            appendPosting(gram, ordinal);
+        }
+        return true;
+    }
+
+    boolean remove(long id) {
+        if (ordinals == null) {
+            throw new IllegalStateException("分段索引不支援刪除");
+        }
+        int ordinal = ordinals.get(id);
+        if (ordinal == LongIntHashMap.MISSING || deleted.get(ordinal)) {
+            return false;
+        }
+        deleted.set(ordinal);
+        deletedCount++;
+        return true;
+    }
+
+    /**
+     * 依序號 (約等於 ID) 由小到大回傳名稱包含 query 的前 limit 個帳戶 ID。
+     *
+     * @param query 已經過 {@link #normalize}，長度至少 {@link #GRAM_LENGTH}
+     */
+    long[] search(String query, int limit) {
+        if (query.length() < GRAM_LENGTH) {
+            throw new IllegalArgumentException("查詢字串至少需要" + GRAM_LENGTH + "個字元");
+        }
+        // 依序號陣列長度由短到長排列 (插入排序，查詢字串通常只有幾個三字元組)，重複的三字元組只取一次
+        int[] lists = new int[query.length() - GRAM_LENGTH + 1];
+        int listCount = 0;
+        for (int i = 0; i + GRAM_LENGTH <= query.length(); i++) {
+            int gram = gramSlots.get(gramKey(query, i));
+            if (gram == LongIntHashMap.MISSING) {
+                return new long[0];
+            }
+            int position = listCount;
+            boolean duplicate = false;
+            for (int j = 0; j < listCount; j++) {
+                duplicate |= lists[j] == gram;
+            }
+            if (duplicate) {
+                continue;
+            }
+            while (position > 0 && postingSizes[lists[position - 1]] > postingSizes[gram]) {
+                lists[position] = lists[position - 1];
+                position--;
+            }
+            lists[position] = gram;
+            listCount++;
+        }
+
+        // 由最短的序號陣列開始求交集，其他陣列以 galloping search 前進
+        int[] cursors = new int[listCount];
+        int[] shortest = postings[lists[0]];
+        int shortestSize = postingSizes[lists[0]];
+
+        long[] result = new long[Math.min(limit, shortestSize)];
+        int found = 0;
+        candidates:
+        for (int i = 0; i < shortestSize && found < result.length; i++) {
+            int ordinal = shortest[i];
+            if (deleted.get(ordinal)) {
+                continue;
+            }
+            for (int l = 1; l < listCount; l++) {
+                int gram = lists[l];
+                int position = advance(postings[gram], postingSizes[gram], cursors[l], ordinal);
+                cursors[l] = position;
+                if (position == postingSizes[gram]) {
+                    break candidates;
+                }
+                if (postings[gram][position] != ordinal) {
+                    continue candidates;
+                }
+            }
+            // 包含所有三字元組不代表包含整個字串 (例如 "abc-bcd" 與 "abcd")，需再比對名稱
+            if (nameContains(ordinal, query)) {
+                result[found++] = ids[ordinal];
+            }
+        }
+        return found == result.length ? result : Arrays.copyOf(result, found);
+    }
+
+    /**
+     * 把另一段 (ID 範圍較大的) 分段索引接在最後，序號依序位移，序號陣列仍維持由小到大。
+     */
+    void appendAll(TrigramIndex part) {
+        int base = docCount;
+        int charBase = charCount;
+        ensureDocCapacity(base + part.docCount);
+        ensureCharCapacity(charBase + part.charCount);
+        System.arraycopy(part.ids, 0, ids, base, part.docCount);
+        System.arraycopy(part.chars, 0, chars, charBase, part.charCount);
+        for (int i = 0; i < part.docCount; i++) {
+            nameEnds[base + i] = part.nameEnds[i] + charBase;
+            if (ordinals != null) {
+                ordinals.put(part.ids[i], base + i);
+            }
+        }
+        docCount += part.docCount;
+        charCount += part.charCount;
+        maxId = Math.max(maxId, part.maxId);
+
+        for (int partGram = 0; partGram < part.gramCount; partGram++) {
+            int gram = gramFor(part.gramKeys[partGram]);
+            int[] source = part.postings[partGram];
+            int sourceSize = part.postingSizes[partGram];
+            int size = postingSizes[gram];
+            if (postings[gram].length < size + sourceSize) {
+                postings[gram] = Arrays.copyOf(postings[gram], Math.max(size + sourceSize, size + (size >> 1)));
+            }
+            for (int i = 0; i < sourceSize; i++) {
+                postings[gram][size + i] = source[i] + base;
+            }
+            postingSizes[gram] = size + sourceSize;
+        }
+    }
+
+    /**
+     * 合併完成後釋放序號陣列多配置的空間。
+     */
+    void trim() {
+        for (int gram = 0; gram < gramCount; gram++) {
+            if (postings[gram].length > postingSizes[gram]) {
+                postings[gram] = Arrays.copyOf(postings[gram], postingSizes[gram]);
+            }
+        }
+    }
+
+    int size() {
+        return docCount - deletedCount;
+    }
+
+    int deletedCount() {
+        return deletedCount;
+    }
+
+    long maxId() {
+        return maxId;
+    }
+
+    private boolean nameContains(int ordinal, String query) {
+        int start = ordinal == 0 ? 0 : nameEnds[ordinal - 1];
+        int last = nameEnds[ordinal] - query.length();
+        outer:
+        for (int from = start; from <= last; from++) {
+            for (int j = 0; j < query.length(); j++) {
+                if (chars[from + j] != query.charAt(j)) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // 第一個 >= target 的位置：先以倍數跳躍找出範圍，再二分搜尋
+    private static int advance(int[] list, int size, int from, int target) {
+        int step = 1;
+        int high = from;
+        while (high < size && list[high] < target) {
+            from = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        int index = Arrays.binarySearch(list, from, Math.min(high + 1, size), target);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private int gramFor(long key) {
+        int gram = gramSlots.get(key);
+        if (gram != LongIntHashMap.MISSING) {
+            return gram;
+        }
+        gram = gramCount++;
+        if (gram == gramKeys.length) {
+            int capacity = gramKeys.length * 2;
+            gramKeys = Arrays.copyOf(gramKeys, capacity);
+            postings = Arrays.copyOf(postings, capacity);
+            postingSizes = Arrays.copyOf(postingSizes, capacity);
+        }
+        gramKeys[gram] = key;
+        postings[gram] = EMPTY_POSTINGS;
+        gramSlots.put(key, gram);
+        return gram;
+    }
+
+    private void appendPosting(int gram, int ordinal) {
+        int size = postingSizes[gram];
+        if (size == postings[gram].length) {
+            postings[gram] = Arrays.copyOf(postings[gram], Math.max(4, size + (size >> 1)));
+        }
+        postings[gram][size] = ordinal;
+        postingSizes[gram] = size + 1;
+    }
+
+    private void ensureDocCapacity(int required) {
+        if (required > ids.length) {
+            int capacity = Math.max(required, ids.length + (ids.length >> 1));
+            ids = Arrays.copyOf(ids, capacity);
+            nameEnds = Arrays.copyOf(nameEnds, capacity);
+        }
+    }
+
+    private void ensureCharCapacity(int required) {
+        if (required > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(required, chars.length + (chars.length >> 1)));
+        }
+    }
+
+    private static long gramKey(String text, int offset) {
+        return ((long) text.charAt(offset) << 32) | ((long) text.charAt(offset + 1) << 16) | text.charAt(offset + 2);
+    }
+}
@@ -0,0 +1,70 @@
+package net.javaguides.banking.security;
+
+import net.javaguides.banking.entity.Account;
+import net.javaguides.banking.exception.AccountNotFoundException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * 同一個 HTTP 請求內，權限檢查載入的 Account 交給 service 層重複使用，避免同一列被查詢兩次。
+ * <p>
+ * 資料存在 request attribute 中，請求結束即丟棄；不在請求執行緒上 (排程、序列器) 時不做任何事。
+ * 快照只能取用一次，且是在 service 交易開始前讀到的，寫入時必須以 version 確認資料未被修改。
+ */
+@Component
+public class AccountLoadContext {
+
+    private static final String ATTRIBUTE = AccountLoadContext.class.getName();
+
+    public void remember(Account account) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return;
+        }
+        snapshots(attributes).put(account.getId(), account);
+    }
+
+    /**
+     * 確認帳戶存在：權限檢查剛載入過 (並取走快照) 時不必再查一次，否則以 exists 查詢。
+     */
+    public void requireExists(Long accountId, Predicate<Long> exists) {
+        if (take(accountId).isEmpty() && !exists.test(accountId)) {
+            throw new AccountNotFoundException("Account does not exist");
+        }
+    }
+
+    public Optional<Account> take(Long accountId) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(snapshots(attributes).remove(accountId));
+    }
+
+    /**
+     * 只讀取快照不取走，給只需要版本的讀取使用 (例如產生 ETag)，同一個請求之後的 service 仍可取用。
+     */
+    public Optional<Account> peek(Long accountId) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(snapshots(attributes).get(accountId));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, Account> snapshots(RequestAttributes attributes) {
+        Map<Long, Account> snapshots = (Map<Long, Account>) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (snapshots == null) {
+            snapshots = new HashMap<>();
+            attributes.setAttribute(ATTRIBUTE, snapshots, RequestAttributes.SCOPE_REQUEST);
+        }
+        return snapshots;
+    }
+}
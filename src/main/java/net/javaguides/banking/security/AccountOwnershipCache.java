@@ -0,0 +1,142 @@
+package net.javaguides.banking.security;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.javaguides.banking.repository.AccountRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * accountId → 擁有者 userId 的記憶體索引，給 @PreAuthorize 的擁有者檢查使用。
+ * <p>
+ * 單一帳戶未命中時由 {@link AccountSecurityService} 載入帳戶列後 {@link #put}，載入的帳戶交給同一個請求的 service 重複使用；
+ * 批次檢查 ({@link #findOwners}) 未命中的帳戶以只查兩個欄位的 projection 一次載入。容量有上限，超過時淘汰最久未使用的帳戶。
+ * 帳戶的擁有者建立後不會變更，且 Snowflake ID 不會重複使用，因此其他節點刪除帳戶後這裡殘留的項目
+ * 只會讓檢查通過，接著由 service 回傳查無帳戶。
+ */
+@Component
+public class AccountOwnershipCache {
+
+    // 帳戶存在但沒有綁定使用者
+    private static final String NO_OWNER = "";
+
+    private final AccountRepository accountRepository;
+
+    private final Map<Long, String> owners;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    public AccountOwnershipCache(AccountRepository accountRepository,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${banking.ownership-cache.max-entries:100000}") int maxEntries) {
+        this.accountRepository = accountRepository;
+        this.owners = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        FunctionCounter.builder("banking.ownership_cache.requests", hits, LongAdder::sum).tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("banking.ownership_cache.requests", misses, LongAdder::sum).tag("result", "miss").register(meterRegistry);
+        Gauge.builder("banking.ownership_cache.hit_ratio", this, AccountOwnershipCache::hitRatio).register(meterRegistry);
+        Gauge.builder("banking.ownership_cache.size", this, cache -> cache.size()).register(meterRegistry);
+    }
+
+    /**
+     * 只查快取，未命中時由呼叫端自行載入後 {@link #put}。
+     */
+    public Optional<String> getIfPresent(Long accountId) {
+        String owner;
+        synchronized (owners) {
+            owner = owners.get(accountId);
+        }
+        if (owner == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(owner);
+    }
+
+    /**
+     * 批次版本：未命中的帳戶以一次查詢載入。不存在的帳戶不會出現在回傳的 Map 中。
+     */
+    public Map<Long, String> findOwners(Collection<Long> accountIds) {
+        Map<Long, String> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        synchronized (owners) {
+            for (Long accountId : accountIds) {
+                String owner = owners.get(accountId);
+                if (owner != null) {
+                    result.put(accountId, owner);
+                } else {
+                    missing.add(accountId);
+                }
+            }
+        }
+        hits.add(result.size());
+        misses.add(missing.size());
+
+        if (!missing.isEmpty()) {
+            for (AccountRepository.AccountOwnerView view : accountRepository.findOwnersByIdIn(missing)) {
+                String owner = view.getOwnerUserId() == null ? NO_OWNER : view.getOwnerUserId();
+                put(view.getId(), owner);
+                result.put(view.getId(), owner);
+            }
+        }
+        return result;
+    }
+
+    public void put(Long accountId, String ownerUserId) {
+        synchronized (owners) {
+            owners.put(accountId, ownerUserId == null ? NO_OWNER : ownerUserId);
+        }
+    }
+
+    /**
+     * 在目前的交易提交後移除；交易提交前其他請求仍可能從資料庫讀回這個帳戶並重新放入。
+     */
+    public void evictAfterCommit(Long accountId) {
+        evict(accountId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(accountId);
+                }
+            });
+        }
+    }
+
+    public void evict(Long accountId) {
+        synchronized (owners) {
+            owners.remove(accountId);
+        }
+    }
+
+    public double hitRatio() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0.0 : (double) hit / total;
+    }
+
+    int size() {
+        synchronized (owners) {
+            return owners.size();
+        }
+    }
+}
@@ -8,27 +8,66 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
 @Service("accountSecurityService")
 public class AccountSecurityService {
 
     @Autowired
     private AccountRepository accountRepository;
 
+    @Autowired
+    private AccountOwnershipCache accountOwnershipCache;
+
+    @Autowired
+    private AccountLoadContext accountLoadContext;
+
 
     public boolean isOwner(Authentication authentication, Long accountId) {
 
-        Account account = accountRepository.findById(accountId).orElseThrow(() -> new RuntimeException("accountId not found"));
+        String ownerUserId = accountOwnershipCache.getIfPresent(accountId).orElseGet(() -> loadOwner(accountId));
 
        Jwt jwt=(Jwt) authentication.getPrincipal();
 
         String uuid = jwt.getClaimAsString("sub");
 
+        return uuid.equals(ownerUserId);
+    }
+
+    /**
+     * 快取未命中時以主鍵載入帳戶列，留給同一個請求的 service 使用 (service 本來就要讀這一列)。
+     * 擁有者 userId 即 accounts.user_id 外鍵，從 User 的代理物件取得 ID 不會查詢 users。
+     */
+    private String loadOwner(Long accountId) {
+
+        Account account = accountRepository.findById(accountId).orElseThrow(() -> new RuntimeException("accountId not found"));
+
+        accountLoadContext.remember(account);
+
+        String ownerUserId = account.getUser() == null ? null : account.getUser().getUserId();
+
+        accountOwnershipCache.put(accountId, ownerUserId);
+
+        return ownerUserId == null ? "" : ownerUserId;
+    }
+
+    /**
+     * 批次操作用：未命中快取的帳戶以一次查詢載入，確認所有帳戶都屬於目前使用者。
+     */
+    public boolean isOwnerOfAll(Authentication authentication, Collection<Long> accountIds) {
+
+        Set<Long> ids = new HashSet<>(accountIds);
+
+        Jwt jwt = (Jwt) authentication.getPrincipal();
+
+        String uuid = jwt.getClaimAsString("sub");
 
-        if (account.getUser() == null) {
-            return false;
-        }
+        Map<Long, String> owners = accountOwnershipCache.findOwners(ids);
 
-        return uuid.equals(account.getUser().getUserId());
+        return owners.size() == ids.size() && owners.values().stream().allMatch(uuid::equals);
     }
 
 
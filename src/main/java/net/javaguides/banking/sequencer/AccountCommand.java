@@ -0,0 +1,18 @@
+package net.javaguides.banking.sequencer;
+
+import java.math.BigDecimal;
+
+/**
+ * 送進 {@link AccountCommandSequencer} 的帳戶異動指令。
+ */
+public sealed interface AccountCommand permits AccountCommand.Deposit, AccountCommand.Withdraw, AccountCommand.Transfer {
+
+    record Deposit(Long accountId, BigDecimal amount) implements AccountCommand {
+    }
+
+    record Withdraw(Long accountId, BigDecimal amount) implements AccountCommand {
+    }
+
+    record Transfer(Long fromAccountId, Long toAccountId, BigDecimal amount) implements AccountCommand {
+    }
+}
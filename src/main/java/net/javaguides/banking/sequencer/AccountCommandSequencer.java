@@ -0,0 +1,463 @@
+package net.javaguides.banking.sequencer;
+
+import net.javaguides.banking.dto.AccountDto;
+import net.javaguides.banking.dto.TransferFundDTO;
+import net.javaguides.banking.entity.Account;
+import net.javaguides.banking.entity.Transaction;
+import net.javaguides.banking.enums.TransactionType;
+import net.javaguides.banking.exception.AccountException;
+import net.javaguides.banking.exception.AccountNotFoundException;
+import net.javaguides.banking.exception.InsufficientAmountException;
+import net.javaguides.banking.journal.TransactionJournalWriter;
+import net.javaguides.banking.mapper.AccountMapper;
+import net.javaguides.banking.outbox.OutboxWriter;
+import net.javaguides.banking.repository.AccountRepository;
+import net.javaguides.banking.service.AccountService;
+import net.javaguides.banking.service.HotAccountService;
+import net.javaguides.banking.service.impl.AccountServiceImpl;
+import net.javaguides.banking.stream.AccountEventHub;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 依帳戶 ID 分區的單一寫入者 (single-writer) 指令序列器 (LMAX 風格)。
+ * <p>
+ * 每個分區由一條專屬執行緒依序處理佇列中的存款、提款與同分區轉帳：
+ * 一次取出一批指令，在記憶體中依序套用，整批在同一個資料庫交易中提交，
+ * 因此同一帳戶的寫入不再需要在資料庫列鎖上排隊。帳戶在每批開始時依 ID 順序以列鎖重新載入，
+ * 一般情況下只有本分區會寫入這些帳戶，列鎖不會等待；其他寫入者 (例如熱門帳戶歸併排程) 只會讓本批稍候，
+ * 仍發生的衝突 (例如死結偵測) 整批重試。
+ * <p>
+ * 跨分區轉帳：在全域鎖內同時排入兩個分區的佇列，讓所有跨分區指令在每個佇列中的相對順序一致，
+ * 兩個分區各自先提交手上的批次，編號較小的分區等另一個分區抵達後，
+ * 以原本的 {@link AccountService#transferFunds} (依 ID 由小到大鎖定兩個帳戶) 執行，完成後兩個分區才繼續。
+ */
+@Component
+@ConditionalOnProperty(name = "banking.write-path", havingValue = "sequenced")
+public class AccountCommandSequencer implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccountCommandSequencer.class);
+
+    private static final int MAX_BATCH_ATTEMPTS = 3;
+
+    private final AccountRepository accountRepository;
+
+    private final HotAccountService hotAccountService;
+
+    private final TransactionJournalWriter transactionJournalWriter;
+
+    private final OutboxWriter outboxWriter;
+
+    private final AccountEventHub accountEventHub;
+
+    private final AccountMapper accountMapper;
+
+    private final AccountServiceImpl directAccountService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int maxBatchSize;
+
+    private final long awaitTimeoutMs;
+
+    private final Object crossPartitionLock = new Object();
+
+    private final Partition[] partitions;
+
+    private volatile boolean running;
+
+    public AccountCommandSequencer(AccountRepository accountRepository,
+                                   HotAccountService hotAccountService,
+                                   TransactionJournalWriter transactionJournalWriter,
+                                   OutboxWriter outboxWriter,
+                                   AccountEventHub accountEventHub,
+                                   AccountMapper accountMapper,
+                                   AccountServiceImpl directAccountService,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${banking.sequencer.partitions:8}") int partitionCount,
+                                   @Value("${banking.sequencer.max-batch-size:256}") int maxBatchSize,
+                                   @Value("${banking.sequencer.await-timeout-ms:5000}") long awaitTimeoutMs) {
+        this.accountRepository = accountRepository;
+        this.hotAccountService = hotAccountService;
+        this.transactionJournalWriter = transactionJournalWriter;
+        this.outboxWriter = outboxWriter;
+        this.accountEventHub = accountEventHub;
+        this.accountMapper = accountMapper;
+        this.directAccountService = directAccountService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxBatchSize = maxBatchSize;
+        this.awaitTimeoutMs = awaitTimeoutMs;
+        this.partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new Partition(i);
+        }
+    }
+
+    /**
+     * 送出指令並等待其所在的批次提交。轉帳成功時回傳 null。
+     * <p>
+     * 等待逾時時，尚未開始執行的指令會被取消 (之後不會再執行)；已經開始執行的指令一定會提交或回滾，
+     * 此時繼續等待實際結果，避免回報失敗後客戶端重送而重複存入或扣款。
+     */
+    public AccountDto execute(AccountCommand command) {
+        Ticket ticket = enqueue(command);
+        try {
+            try {
+                return ticket.result().get(awaitTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (ticket.cancel()) {
+                    logger.error("帳戶指令逾時,已在執行前取消:{}", command);
+                    throw new AccountException("帳戶指令處理逾時，未執行任何異動，請稍後再試。");
+                }
+                logger.warn("帳戶指令逾時但已開始執行,等待結果:{}", command);
+                return ticket.result().get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new AccountException("帳戶指令執行失敗，請稍後再試。");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (ticket.cancel()) {
+                throw new AccountException("等待帳戶指令時被中斷，未執行任何異動");
+            }
+            throw new AccountException("等待帳戶指令時被中斷，指令仍在執行中");
+        }
+    }
+
+    private Ticket enqueue(AccountCommand command) {
+        if (!running) {
+            throw new AccountException("帳戶指令序列器尚未啟動");
+        }
+        Ticket ticket = new Ticket();
+
+        if (command instanceof AccountCommand.Transfer transfer) {
+            int from = partitionOf(transfer.fromAccountId());
+            int to = partitionOf(transfer.toAccountId());
+            if (from != to) {
+                CrossPartitionTransfer barrier = new CrossPartitionTransfer(transfer, ticket, Math.min(from, to));
+                synchronized (crossPartitionLock) {
+                    partitions[from].queue.add(barrier);
+                    partitions[to].queue.add(barrier);
+                }
+                return ticket;
+            }
+            partitions[from].queue.add(new PendingCommand(command, ticket));
+            return ticket;
+        }
+
+        Long accountId = command instanceof AccountCommand.Deposit deposit
+                ? deposit.accountId()
+                : ((AccountCommand.Withdraw) command).accountId();
+        partitions[partitionOf(accountId)].queue.add(new PendingCommand(command, ticket));
+        return ticket;
+    }
+
+    int partitionOf(Long accountId) {
+        // Snowflake ID 的低位元是序號，先混合再取餘數讓帳戶平均分散
+        return Math.floorMod(Long.hashCode(accountId * 0x9E3779B97F4A7C15L), partitions.length);
+    }
+
+    private List<Outcome> applyBatch(List<PendingCommand> batch) {
+        Set<Long> accountIds = new LinkedHashSet<>();
+        for (PendingCommand pending : batch) {
+            if (pending.command() instanceof AccountCommand.Deposit deposit) {
+                accountIds.add(deposit.accountId());
+            } else if (pending.command() instanceof AccountCommand.Withdraw withdraw) {
+                accountIds.add(withdraw.accountId());
+            } else if (pending.command() instanceof AccountCommand.Transfer transfer) {
+                accountIds.add(transfer.fromAccountId());
+                accountIds.add(transfer.toAccountId());
+            }
+        }
+
+        // 先依 ID 順序鎖定帳戶列、後子餘額槽，與熱門帳戶歸併 (fold/changeSlots) 的順序相同，避免互相等待而死結
+        Map<Long, Account> accounts = new HashMap<>();
+        for (Account account : accountRepository.findAllByIdForUpdate(accountIds)) {
+            // 熱門帳戶在序列器中沒有列鎖競爭，直接把子餘額槽併入主餘額
+            if (account.getHotSlots() > 0) {
+                account.setBalance(account.getBalance().add(hotAccountService.drainSlots(account.getId())));
+            }
+            accounts.put(account.getId(), account);
+        }
+
+        List<Transaction> journal = new ArrayList<>();
+        List<Outcome> outcomes = new ArrayList<>(batch.size());
+        for (PendingCommand pending : batch) {
+            try {
+                outcomes.add(new Outcome(apply(pending.command(), accounts, journal), null));
+            } catch (AccountNotFoundException | InsufficientAmountException | AccountException e) {
+                outcomes.add(new Outcome(null, e));
+            }
+        }
+
+        if (!journal.isEmpty()) {
+            transactionJournalWriter.appendAll(journal);
+            outboxWriter.append(journal);
+            // 子餘額槽已在本批開始時併入主餘額；先寫回餘額，事件才能帶有提交後的版本
+            accountRepository.flush();
+            accountEventHub.publishAfterCommit(journal, accountId -> accounts.get(accountId).getBalance(), accountId -> accounts.get(accountId).getVersion());
+        }
+        return outcomes;
+    }
+
+    private AccountDto apply(AccountCommand command, Map<Long, Account> accounts, List<Transaction> journal) {
+        if (command instanceof AccountCommand.Deposit deposit) {
+            Account account = require(accounts, deposit.accountId());
+            account.setBalance(account.getBalance().add(deposit.amount()));
+            journal.add(journalEntry(deposit.accountId(), deposit.amount(), TransactionType.DEPOSIT));
+            return accountMapper.mapTOAccountDto(account);
+        }
+        if (command instanceof AccountCommand.Withdraw withdraw) {
+            Account account = require(accounts, withdraw.accountId());
+            if (account.getBalance().compareTo(withdraw.amount()) < 0) {
+                throw new InsufficientAmountException("Insufficient amount");
+            }
+            account.setBalance(account.getBalance().subtract(withdraw.amount()));
+            journal.add(journalEntry(withdraw.accountId(), withdraw.amount(), TransactionType.WITHDRAW));
+            return accountMapper.mapTOAccountDto(account);
+        }
+
+        AccountCommand.Transfer transfer = (AccountCommand.Transfer) command;
+        Account fromAccount = require(accounts, transfer.fromAccountId());
+        Account toAccount = require(accounts, transfer.toAccountId());
+        if (fromAccount.getBalance().compareTo(transfer.amount()) < 0) {
+            throw new InsufficientAmountException("Insufficient amount");
+        }
+        fromAccount.setBalance(fromAccount.getBalance().subtract(transfer.amount()));
+        toAccount.setBalance(toAccount.getBalance().add(transfer.amount()));
+        journal.add(journalEntry(transfer.fromAccountId(), transfer.amount(), TransactionType.TRANSFER_OUT));
+        journal.add(journalEntry(transfer.toAccountId(), transfer.amount(), TransactionType.TRANSFER_IN));
+        return null;
+    }
+
+    private Account require(Map<Long, Account> accounts, Long accountId) {
+        Account account = accounts.get(accountId);
+        if (account == null) {
+            throw new AccountNotFoundException("Account does not exist");
+        }
+        return account;
+    }
+
+    private Transaction journalEntry(Long accountId, BigDecimal amount, TransactionType type) {
+        Transaction transaction = new Transaction();
+        transaction.setAccountId(accountId);
+        transaction.setAmount(amount);
+        transaction.setTimestamp(LocalDateTime.now());
+        transaction.setTransactionType(type);
+        return transaction;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        for (Partition partition : partitions) {
+            partition.start();
+        }
+        logger.info("帳戶指令序列器已啟動,分區數:{}", partitions.length);
+    }
+
+    @Override
+    public void stop() {
+        // 停止接收新指令，各分區處理完佇列中剩餘的指令後才結束
+        running = false;
+        for (Partition partition : partitions) {
+            partition.join();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private interface Work {
+    }
+
+    private record PendingCommand(AccountCommand command, Ticket ticket) implements Work {
+    }
+
+    /**
+     * 指令的結果與執行狀態。分區執行緒開始執行前以 {@link #start()} 認領，
+     * 等待逾時的呼叫端以 {@link #cancel()} 取消，兩者只有一方會成功。
+     */
+    private static final class Ticket {
+
+        private static final int QUEUED = 0;
+        private static final int STARTED = 1;
+        private static final int CANCELLED = 2;
+
+        private final CompletableFuture<AccountDto> result = new CompletableFuture<>();
+
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+
+        CompletableFuture<AccountDto> result() {
+            return result;
+        }
+
+        boolean start() {
+            return state.compareAndSet(QUEUED, STARTED);
+        }
+
+        boolean cancel() {
+            if (!state.compareAndSet(QUEUED, CANCELLED)) {
+                return false;
+            }
+            result.cancel(false);
+            return true;
+        }
+    }
+
+    private record Outcome(AccountDto value, RuntimeException error) {
+    }
+
+    /**
+     * 跨分區轉帳的會合點，同一個物件會同時排入兩個分區的佇列。
+     */
+    private final class CrossPartitionTransfer implements Work {
+
+        private final AccountCommand.Transfer transfer;
+
+        private final Ticket ticket;
+
+        private final int ownerPartition;
+
+        private final CountDownLatch otherArrived = new CountDownLatch(1);
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private CrossPartitionTransfer(AccountCommand.Transfer transfer, Ticket ticket, int ownerPartition) {
+            this.transfer = transfer;
+            this.ticket = ticket;
+            this.ownerPartition = ownerPartition;
+        }
+
+        void arrive(int partitionIndex) throws InterruptedException {
+            if (partitionIndex != ownerPartition) {
+                otherArrived.countDown();
+                done.await();
+                return;
+            }
+            otherArrived.await();
+            try {
+                // 呼叫端已逾時取消時不執行，另一個分區照常放行
+                if (ticket.start()) {
+                    directAccountService.transferFunds(new TransferFundDTO(transfer.fromAccountId(), transfer.toAccountId(), transfer.amount()));
+                    ticket.result().complete(null);
+                }
+            } catch (RuntimeException e) {
+                ticket.result().completeExceptionally(e);
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+
+    private final class Partition {
+
+        private final int index;
+
+        private final BlockingQueue<Work> queue = new LinkedBlockingQueue<>();
+
+        private final List<PendingCommand> batch = new ArrayList<>();
+
+        private Thread thread;
+
+        private Partition(int index) {
+            this.index = index;
+        }
+
+        void start() {
+            thread = new Thread(this::run, "account-sequencer-" + index);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void join() {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void run() {
+            while (running || !queue.isEmpty()) {
+                try {
+                    Work work = queue.poll(100, TimeUnit.MILLISECONDS);
+                    while (work != null) {
+                        if (work instanceof CrossPartitionTransfer barrier) {
+                            // 先提交手上的批次，再與另一個分區會合
+                            flush();
+                            barrier.arrive(index);
+                        } else if (((PendingCommand) work).ticket().start()) {
+                            // 已被逾時的呼叫端取消的指令不會加入批次
+                            batch.add((PendingCommand) work);
+                            if (batch.size() >= maxBatchSize) {
+                                flush();
+                            }
+                        }
+                        work = queue.poll();
+                    }
+                    flush();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        private void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    List<Outcome> outcomes = transactionTemplate.execute(status -> applyBatch(batch));
+                    for (int i = 0; i < batch.size(); i++) {
+                        Outcome outcome = outcomes.get(i);
+                        if (outcome.error() != null) {
+                            batch.get(i).ticket().result().completeExceptionally(outcome.error());
+                        } else {
+                            batch.get(i).ticket().result().complete(outcome.value());
+                        }
+                    }
+                    break;
+                } catch (RuntimeException e) {
+                    if (attempt >= MAX_BATCH_ATTEMPTS) {
+                        logger.error("分區{}批次提交失敗,共{}筆指令:{}", index, batch.size(), e.getMessage(), e);
+                        AccountException failure = new AccountException("帳戶操作因高併發衝突而失敗，請稍後再試。");
+                        batch.forEach(pending -> pending.ticket().result().completeExceptionally(failure));
+                        break;
+                    }
+                    logger.warn("分區{}批次提交衝突,重新載入後重試:{}", index, e.getMessage());
+                }
+            }
+            batch.clear();
+        }
+    }
+}
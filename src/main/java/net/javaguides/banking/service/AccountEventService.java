@@ -0,0 +1,11 @@
+package net.javaguides.banking.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public interface AccountEventService {
+
+    /**
+     * 開啟帳戶的餘額異動串流，第一個事件為目前餘額，之後每次交易提交送出一個事件。
+     */
+    SseEmitter subscribe(Long accountId);
+}
@@ -1,13 +1,21 @@
 package net.javaguides.banking.service;
 
 import net.javaguides.banking.dto.AccountDto;
+import net.javaguides.banking.dto.AccountFilter;
+import net.javaguides.banking.dto.AccountVersionDTO;
+import net.javaguides.banking.dto.BatchTransferRequestDTO;
+import net.javaguides.banking.dto.BatchTransferResultDTO;
+import net.javaguides.banking.dto.CursorPageResponseDTO;
 import net.javaguides.banking.dto.TransactionDTO;
 import net.javaguides.banking.dto.TransferFundDTO;
+import net.javaguides.banking.dto.VersionedAccountDTO;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Optional;
 
 public interface AccountService {
 
@@ -15,15 +23,44 @@ public interface AccountService {
 
     AccountDto getAccountById(Long id);
 
+    /**
+     * 與 getAccountById 相同的查詢，另外附上由同一份資料取得的版本，不增加查詢次數。
+     */
+    VersionedAccountDTO getVersionedAccountById(Long id);
+
+    /**
+     * 只查詢帳戶版本，不載入帳戶也不建立 DTO (權限檢查已載入帳戶時不查詢)，供 GET /{id} 與交易紀錄第一頁產生 ETag；帳戶不存在時拋出 AccountNotFoundException。
+     * 變動不一定會遞增 version 的帳戶 (熱門帳戶、事件帳本模式) 回傳空值，不做條件式處理。
+     */
+    Optional<AccountVersionDTO> getAccountVersion(Long id);
+
     AccountDto deposit(Long id, BigDecimal amount);
 
     AccountDto withdraw(Long id, BigDecimal amount);
 
-    Page<AccountDto> getAllAccounts(Pageable pageable);
+    /**
+     * 排序只接受 AccountSortKey 中有索引的欄位，其他欄位拋出 AccountException。
+     */
+    Page<AccountDto> getAllAccounts(AccountFilter filter, Pageable pageable);
+
+    Slice<AccountDto> getAllAccountsSlice(AccountFilter filter, Pageable pageable);
+
+    /**
+     * 名稱包含 query (不分大小寫，至少 3 個字元) 的帳戶，依 ID 由小到大最多 limit 筆。
+     */
+    List<AccountDto> searchAccounts(String query, int limit);
 
     void deleteAccount(Long id);
 
     void transferFunds(TransferFundDTO transferFundDTO);
 
+    BatchTransferResultDTO transferFundsBatch(BatchTransferRequestDTO batchTransferRequestDTO);
+
     Page<TransactionDTO> getAccountTransactions(Long accountId, Pageable pageable);
+
+    Slice<TransactionDTO> getAccountTransactionsSlice(Long accountId, Pageable pageable);
+
+    CursorPageResponseDTO<TransactionDTO> getAccountTransactionsByCursor(Long accountId, String cursor, int pageSize);
+
+    AccountDto changeHotSlots(Long id, int slots);
 }
@@ -0,0 +1,31 @@
+package net.javaguides.banking.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 每日餘額檢查點：依交易紀錄逐日累計每個帳戶的帳簿餘額，查詢歷史時間點的餘額時只需重算最近檢查點之後的交易。
+ * <p>
+ * 只有已經結束 (超過 close-delay) 的日子會建立檢查點，不影響寫入路徑。建立時只計入 ID 在上限之前的紀錄，
+ * 之後才提交的遲到紀錄由下一次排程加進它所屬日子之後的檢查點。
+ */
+public interface BalanceCheckpointService {
+
+    /**
+     * 帳戶在 asOf (含) 時的帳簿餘額：最近一個在 asOf 之前結束的檢查點，加上其後到 asOf 為止的交易淨額。
+     */
+    BigDecimal balanceAsOf(Long accountId, LocalDateTime asOf);
+
+    /**
+     * 從進度記錄之後依序為已結束的日子建立檢查點，每天各自一個交易，最多處理 max-days-per-run 天。
+     *
+     * @return 這次建立了檢查點的天數
+     */
+    int closeDays();
+
+    /**
+     * 刪除所有檢查點並重設進度，之後由排程從最早的交易紀錄開始重建。重建期間查詢仍正確，只是需要重算較多交易。
+     * 已有交易紀錄封存檔時不允許重建。
+     */
+    void rebuild();
+}
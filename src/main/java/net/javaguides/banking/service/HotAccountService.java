@@ -0,0 +1,50 @@
+package net.javaguides.banking.service;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 熱門帳戶模式：將帳戶餘額分散到多個子餘額槽，讓大量併發存款不必在同一列 accounts 上排隊。
+ * <p>
+ * 帳戶真正的餘額永遠是 accounts.balance 加上所有槽的總和，因此任何只寫入主餘額的路徑都仍然正確；
+ * 鎖定順序固定為「先帳戶列、後子餘額槽」，避免與轉帳互相死結。
+ */
+public interface HotAccountService {
+
+    /**
+     * 調整帳戶的子餘額槽數量，0 代表退出熱門帳戶模式。調整前會先把所有槽歸併回主餘額。
+     */
+    void changeSlots(Long accountId, int slots);
+
+    /**
+     * 本節點是否把此帳戶視為熱門帳戶 (快取，只用來決定存款要寫入哪裡)。
+     */
+    boolean isHot(Long accountId);
+
+    /**
+     * 存入某個子餘額槽。帳戶不是熱門帳戶或槽已不存在時回傳 false，呼叫端應改寫入主餘額。
+     */
+    boolean credit(Long accountId, BigDecimal amount);
+
+    /**
+     * 鎖定帳戶列後把所有子餘額槽歸併回主餘額，有歸併到金額時回傳 true。
+     */
+    boolean fold(Long accountId);
+
+    /**
+     * 將子餘額槽清零並回傳原本的總和，呼叫端必須已持有帳戶列的鎖並自行加回主餘額。
+     */
+    BigDecimal drainSlots(Long accountId);
+
+    BigDecimal totalBalance(Long accountId);
+
+    Map<Long, BigDecimal> slotTotals(Collection<Long> accountIds);
+
+    void removeSlots(Long accountId);
+
+    List<Long> findAccountsToFold();
+
+    void refreshHotAccounts();
+}
@@ -0,0 +1,21 @@
+package net.javaguides.banking.service;
+
+import org.springframework.http.ResponseEntity;
+
+import java.util.function.Supplier;
+
+public interface IdempotencyService {
+
+    /**
+     * 以 Idempotency-Key 執行一次資金異動請求。
+     * 相同 key 的重送直接回傳第一次的回應；同時送達的重複請求會等待同一次執行的結果。
+     *
+     * @param idempotencyKey     用戶端提供的 key
+     * @param requestFingerprint 請求內容，key 相同但內容不同時拋出 IdempotencyKeyConflictException
+     * @param bodyType           回應內容型別，重播時用來還原回應
+     * @param action             實際執行的操作，只有成功的回應會被保存
+     */
+    <T> ResponseEntity<T> execute(String idempotencyKey, String requestFingerprint, Class<T> bodyType, Supplier<ResponseEntity<T>> action);
+
+    void evictExpired();
+}
@@ -0,0 +1,14 @@
+package net.javaguides.banking.service;
+
+/**
+ * 開戶金額改為記成一筆存款之前建立的帳戶，交易紀錄的加總少了開戶金額，歷史餘額、對帳與月結單都會因此不正確。
+ */
+public interface OpeningBalanceService {
+
+    /**
+     * 為舊帳戶補登開戶存款，依帳戶主鍵順序續跑，全部完成後不再做事。
+     *
+     * @return 這次處理的帳戶數
+     */
+    int backfillLegacy(int maxAccounts);
+}
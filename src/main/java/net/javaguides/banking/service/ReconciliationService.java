@@ -0,0 +1,18 @@
+package net.javaguides.banking.service;
+
+import net.javaguides.banking.dto.ReconciliationMismatchDTO;
+import net.javaguides.banking.dto.ReconciliationRunDTO;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+public interface ReconciliationService {
+
+    /**
+     * 從上次失敗或中斷的對帳繼續，沒有時開始新的對帳；實際比對在背景執行。
+     */
+    ReconciliationRunDTO start();
+
+    ReconciliationRunDTO getRun(Long runId);
+
+    Slice<ReconciliationMismatchDTO> getMismatches(Long runId, Pageable pageable);
+}
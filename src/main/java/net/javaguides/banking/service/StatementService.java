@@ -0,0 +1,27 @@
+package net.javaguides.banking.service;
+
+import net.javaguides.banking.dto.MonthlyStatementDTO;
+
+import java.time.YearMonth;
+
+/**
+ * 月結單完全由 statement_rollups 彙總產生，不掃描交易紀錄。
+ */
+public interface StatementService {
+
+    MonthlyStatementDTO getMonthlyStatement(Long accountId, YearMonth month);
+
+    /**
+     * 隨機抽樣幾個帳戶，以交易紀錄重新計算帳戶每個月份的彙總並比對，不一致時記錄警告與指標，不自動修正。
+     *
+     * @return 不一致的月份數
+     */
+    int checkConsistency(int sampleSize);
+
+    /**
+     * 為彙總上線前就存在的交易紀錄補齊彙總，依帳戶主鍵順序續跑，全部完成後不再做事。
+     *
+     * @return 這次處理的帳戶數
+     */
+    int backfillLegacy(int maxAccounts);
+}
@@ -0,0 +1,24 @@
+package net.javaguides.banking.service;
+
+import net.javaguides.banking.enums.TransactionExportFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+
+public interface TransactionExportService {
+
+    /**
+     * 在開始串流前檢查帳戶與時間區間，讓錯誤仍能以一般的錯誤回應回傳。
+     */
+    void validateExport(Long accountId, LocalDateTime from, LocalDateTime to);
+
+    /**
+     * 依時間先後把帳戶的交易紀錄寫入 outputStream，記憶體用量與筆數無關。
+     *
+     * @param from 包含，null 表示不限
+     * @param to   不包含，null 表示不限
+     * @return 匯出的筆數
+     */
+    long exportTransactions(Long accountId, LocalDateTime from, LocalDateTime to, TransactionExportFormat format, OutputStream outputStream) throws IOException;
+}
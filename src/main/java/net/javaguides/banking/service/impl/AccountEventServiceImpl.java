@@ -0,0 +1,84 @@
+package net.javaguides.banking.service.impl;
+
+import net.javaguides.banking.dto.AccountEventDTO;
+import net.javaguides.banking.dto.TransactionDTO;
+import net.javaguides.banking.dto.VersionedAccountDTO;
+import net.javaguides.banking.service.AccountEventService;
+import net.javaguides.banking.service.AccountService;
+import net.javaguides.banking.stream.AccountEventHub;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 以 SSE 把 {@link AccountEventHub} 的事件送給客戶端。
+ * <p>
+ * 連線以 Servlet 非同步請求保持，閒置時不佔用請求執行緒；超過 timeout-ms 後由伺服器結束連線，
+ * 瀏覽器的 EventSource 會自動重新連線 (並重新經過權限檢查)。
+ */
+@Service
+public class AccountEventServiceImpl implements AccountEventService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccountEventServiceImpl.class);
+
+    static final String EVENT_NAME = "balance";
+
+    private AccountService accountService;
+
+    private AccountEventHub accountEventHub;
+
+    private final long timeoutMs;
+
+    public AccountEventServiceImpl(AccountService accountService, AccountEventHub accountEventHub,
+                                   @Value("${banking.stream.timeout-ms:1800000}") long timeoutMs) {
+        this.accountService = accountService;
+        this.accountEventHub = accountEventHub;
+        this.timeoutMs = timeoutMs;
+    }
+
+    @Override
+    public SseEmitter subscribe(Long accountId) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        AccountEventHub.Subscription subscription = accountEventHub.subscribe(accountId, new AccountEventHub.AccountEventListener() {
+            @Override
+            public void onEvent(AccountEventDTO event) throws IOException {
+                SseEmitter.SseEventBuilder builder = SseEmitter.event().name(EVENT_NAME).data(event, MediaType.APPLICATION_JSON);
+                List<TransactionDTO> transactions = event.transactions();
+                if (!transactions.isEmpty()) {
+                    builder.id(String.valueOf(transactions.get(transactions.size() - 1).id()));
+                }
+                emitter.send(builder);
+            }
+
+            @Override
+            public void onHeartbeat() throws IOException {
+                emitter.send(SseEmitter.event().comment("heartbeat"));
+            }
+        });
+        emitter.onCompletion(subscription::cancel);
+        emitter.onError(error -> subscription.cancel());
+        emitter.onTimeout(() -> {
+            subscription.cancel();
+            emitter.complete();
+        });
+
+        // 先訂閱再讀取目前餘額，兩者之間提交的異動不會遺漏
+        VersionedAccountDTO account;
+        try {
+            account = accountService.getVersionedAccountById(accountId);
+        } catch (RuntimeException e) {
+            subscription.cancel();
+            throw e;
+        }
+        Long version = account.version() == null ? null : account.version().version();
+        subscription.offerSnapshot(new AccountEventDTO(accountId, account.account().balance(), version, List.of()));
+        logger.info("帳號{}開啟事件串流,目前連線數:{}", accountId, accountEventHub.subscriberCount());
+        return emitter;
+    }
+}
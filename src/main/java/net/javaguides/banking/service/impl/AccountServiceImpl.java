@@ -1,33 +1,68 @@
 package net.javaguides.banking.service.impl;
 
+import net.javaguides.banking.archive.TransactionArchive;
 import net.javaguides.banking.dto.AccountDto;
+import net.javaguides.banking.dto.AccountFilter;
+import net.javaguides.banking.dto.AccountVersionDTO;
+import net.javaguides.banking.dto.BatchTransferItemResultDTO;
+import net.javaguides.banking.dto.BatchTransferRequestDTO;
+import net.javaguides.banking.dto.BatchTransferResultDTO;
+import net.javaguides.banking.dto.CursorPageResponseDTO;
+import net.javaguides.banking.dto.TransactionCursor;
 import net.javaguides.banking.dto.TransactionDTO;
 import net.javaguides.banking.dto.TransferFundDTO;
+import net.javaguides.banking.dto.VersionedAccountDTO;
 import net.javaguides.banking.entity.Account;
 import net.javaguides.banking.entity.Transaction;
 import net.javaguides.banking.entity.User;
+import net.javaguides.banking.enums.AccountSortKey;
+import net.javaguides.banking.enums.BatchTransferMode;
 import net.javaguides.banking.enums.TransactionType;
 import net.javaguides.banking.exception.AccountException;
 import net.javaguides.banking.exception.AccountNotFoundException;
 import net.javaguides.banking.exception.InsufficientAmountException;
+import net.javaguides.banking.journal.TransactionJournalWriter;
 import net.javaguides.banking.mapper.AccountMapper;
+import net.javaguides.banking.outbox.OutboxWriter;
 import net.javaguides.banking.repository.AccountRepository;
+import net.javaguides.banking.repository.AccountSpecifications;
 import net.javaguides.banking.repository.TransactionRepository;
 import net.javaguides.banking.repository.UserRepository;
+import net.javaguides.banking.retry.RetryExecutor;
+import net.javaguides.banking.search.AccountNameIndex;
+import net.javaguides.banking.security.AccountLoadContext;
+import net.javaguides.banking.security.AccountOwnershipCache;
 import net.javaguides.banking.service.AccountService;
+import net.javaguides.banking.service.HotAccountService;
+import net.javaguides.banking.stream.AccountEventHub;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.LongSupplier;
 
 
 @Transactional
@@ -42,6 +77,26 @@ public class AccountServiceImpl implements AccountService {
 
     private AccountMapper accountMapper;
 
+    private TransactionJournalWriter transactionJournalWriter;
+
+    private HotAccountService hotAccountService;
+
+    private RetryExecutor retryExecutor;
+
+    private AccountOwnershipCache accountOwnershipCache;
+
+    private AccountLoadContext accountLoadContext;
+
+    private TotalCountCache totalCountCache;
+
+    private TransactionArchive transactionArchive;
+
+    private AccountNameIndex accountNameIndex;
+
+    private OutboxWriter outboxWriter;
+
+    private AccountEventHub accountEventHub;
+
     private static final Logger logger = LoggerFactory.getLogger(AccountServiceImpl.class);
 
 //    private static final String TRANSACTION_TYPE_DEPOSIT = "deposit";
@@ -49,11 +104,21 @@ public class AccountServiceImpl implements AccountService {
 //    private static final String TRANSACTION_TYPE_TRANSACTION = "transaction";
 
 
-    public AccountServiceImpl(AccountRepository accountRepository, TransactionRepository transactionRepository, UserRepository userRepository, AccountMapper accountMapper) {
+    public AccountServiceImpl(AccountRepository accountRepository, TransactionRepository transactionRepository, UserRepository userRepository, AccountMapper accountMapper, TransactionJournalWriter transactionJournalWriter, HotAccountService hotAccountService, RetryExecutor retryExecutor, AccountOwnershipCache accountOwnershipCache, AccountLoadContext accountLoadContext, TotalCountCache totalCountCache, TransactionArchive transactionArchive, AccountNameIndex accountNameIndex, OutboxWriter outboxWriter, AccountEventHub accountEventHub) {
         this.accountRepository = accountRepository;
         this.transactionRepository = transactionRepository;
         this.userRepository = userRepository;
         this.accountMapper = accountMapper;
+        this.transactionJournalWriter = transactionJournalWriter;
+        this.hotAccountService = hotAccountService;
+        this.retryExecutor = retryExecutor;
+        this.accountOwnershipCache = accountOwnershipCache;
+        this.accountLoadContext = accountLoadContext;
+        this.totalCountCache = totalCountCache;
+        this.transactionArchive = transactionArchive;
+        this.accountNameIndex = accountNameIndex;
+        this.outboxWriter = outboxWriter;
+        this.accountEventHub = accountEventHub;
     }
 
     @Override
@@ -80,7 +145,21 @@ public class AccountServiceImpl implements AccountService {
 
         account.setUser(user);
 
-        Account saveAccount = accountRepository.save(account);
+        // 立即寫入，事件帳本模式接著以 JDBC 讀取這個帳戶寫入開戶存款
+        Account saveAccount = accountRepository.saveAndFlush(account);
+
+        // 開戶金額記為一筆存款，交易紀錄的加總才會等於帳戶餘額 (歷史餘額、對帳與月結單都以交易紀錄計算)
+        if (saveAccount.getBalance().signum() > 0) {
+            Transaction opening = new Transaction();
+            opening.setAccountId(saveAccount.getId());
+            opening.setAmount(saveAccount.getBalance());
+            opening.setTimestamp(LocalDateTime.now());
+            opening.setTransactionType(TransactionType.DEPOSIT);
+            transactionJournalWriter.append(opening);
+            outboxWriter.append(List.of(opening));
+        }
+        accountOwnershipCache.put(saveAccount.getId(), uuid);
+        accountNameIndex.addAfterCommit(saveAccount.getId(), saveAccount.getAccountHolderName());
 
         logger.info("成功啟用新帳戶,id為{}", saveAccount.getId());
         AccountDto accountDto1 = accountMapper.mapTOAccountDto(saveAccount);
@@ -90,114 +169,187 @@ public class AccountServiceImpl implements AccountService {
     @Transactional(readOnly = true)
     @Override
     public AccountDto getAccountById(Long id) {
+        return toAccountDto(loadAccount(id));
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public VersionedAccountDTO getVersionedAccountById(Long id) {
+        Account account = loadAccount(id);
+        // 子餘額槽入帳不遞增 version
+        AccountVersionDTO version = account.getHotSlots() > 0 ? null
+                : new AccountVersionDTO(id, account.getVersion() == null ? 0 : account.getVersion());
+        return new VersionedAccountDTO(toAccountDto(account), version);
+    }
+
+    private Account loadAccount(Long id) {
         logger.info("使用ID：{}查詢帳戶", id);
-        Account account = accountRepository.findById(id).orElseThrow(() ->
+        // 權限檢查已在同一個請求載入過這個帳戶時直接使用
+        Account account = accountLoadContext.take(id).orElseGet(() -> accountRepository.findById(id).orElseThrow(() ->
         {
             logger.error("查無ID:{}", id);
             return new AccountNotFoundException("Account does not exist");
-        });
+        }));
         logger.info("成功取得帳號:{}", id);
-        return accountMapper.mapTOAccountDto(account);
+        return account;
     }
 
+    @Transactional(readOnly = true)
     @Override
-    public AccountDto deposit(Long id, BigDecimal amount) {
-
-        final int MAX_ATTEMPS = 3;
-
-        for (int attemp = 0; attemp < MAX_ATTEMPS; attemp++) {
-
-            try {
-                logger.info("嘗試儲蓄{}進入帳號:{}", amount, id);
-                Account account = accountRepository.
-                        findById(id).orElseThrow(() -> {
-                            logger.error("儲蓄失敗,查無ID:{}", id);
-                            return new AccountNotFoundException("Account does not exist");
-                        });
-
-                account.setBalance(account.getBalance().add(amount));
-
-                Account saveAccount = accountRepository.save(account);
-                logger.info("儲蓄成功,帳號:{},新餘額:{}", id, saveAccount.getBalance());
-
+    public Optional<AccountVersionDTO> getAccountVersion(Long id) {
+        // 權限檢查在同一個請求已載入帳戶時直接使用其版本，不另外查詢
+        Account loaded = accountLoadContext.peek(id).orElse(null);
+        if (loaded != null) {
+            return loaded.getHotSlots() > 0 ? Optional.empty()
+                    : Optional.of(new AccountVersionDTO(id, loaded.getVersion() == null ? 0 : loaded.getVersion()));
+        }
+        AccountRepository.AccountVersionView view = accountRepository.findVersionById(id).orElseThrow(() -> {
+            logger.error("查無ID:{}", id);
+            return new AccountNotFoundException("Account does not exist");
+        });
+        // 子餘額槽入帳不遞增 version
+        if (view.getHotSlots() > 0) {
+            return Optional.empty();
+        }
+        return Optional.of(new AccountVersionDTO(id, view.getVersion() == null ? 0 : view.getVersion()));
+    }
 
-                // 記錄交易
-                Transaction transaction = new Transaction();
-                transaction.setAccountId(id);
-                transaction.setAmount(amount);
-                transaction.setTimestamp(LocalDateTime.now());
-                transaction.setTransactionType(TransactionType.DEPOSIT);
-                transactionRepository.save(transaction);
+    // 不在這裡開啟交易，由 RetryExecutor 為每次嘗試開啟新的交易
+    @Transactional(propagation = Propagation.SUPPORTS)
+    @Override
+    public AccountDto deposit(Long id, BigDecimal amount) {
+        return retryExecutor.execute("deposit", id, () -> doDeposit(id, amount));
+    }
 
-                AccountDto accountDto = accountMapper.mapTOAccountDto(saveAccount);
+    private AccountDto doDeposit(Long id, BigDecimal amount) {
 
-                return accountDto;
+        logger.info("嘗試儲蓄{}進入帳號:{}", amount, id);
 
-            } catch (ObjectOptimisticLockingFailureException e) {
-                // 發生衝突，記錄日誌後，迴圈將自動重試
-                logger.warn("帳戶 {} 存款發生併發衝突，準備重試...", id);
+        Written written = applyToSnapshot(id, amount);
+        if (written == null) {
+            // 熱門帳戶寫入子餘額槽；一般帳戶以單一 UPDATE 原子性加款，不再讀取-修改-寫回
+            boolean credited = hotAccountService.isHot(id) && hotAccountService.credit(id, amount);
+            if (!credited) {
+                int updated = accountRepository.incrementBalance(id, amount);
+                if (updated == 0) {
+                    logger.error("儲蓄失敗,查無ID:{}", id);
+                    throw new AccountNotFoundException("Account does not exist");
+                }
             }
+
+            // 更新後的列已被本交易鎖定，直接讀回即為最新餘額
+            Account account = accountRepository.findById(id).orElseThrow(() -> new AccountNotFoundException("Account does not exist"));
+            logger.info("儲蓄成功,帳號:{},新餘額:{}", id, account.getBalance());
+            written = new Written(toAccountDto(account), eventVersion(account));
         }
-        // 如果重試全部失敗，則拋出例外
-        throw new AccountException("存款操作因高併發衝突而失敗，請稍後再試。");
+
+        // 記錄交易
+        Transaction transaction = new Transaction();
+        transaction.setAccountId(id);
+        transaction.setAmount(amount);
+        transaction.setTimestamp(LocalDateTime.now());
+        transaction.setTransactionType(TransactionType.DEPOSIT);
+        transactionJournalWriter.append(transaction);
+        outboxWriter.append(List.of(transaction));
+        Written result = written;
+        accountEventHub.publishAfterCommit(List.of(transaction), accountId -> result.account().balance(), accountId -> result.version());
+
+        return written.account();
     }
 
 
+    @Transactional(propagation = Propagation.SUPPORTS)
     @Override
     public AccountDto withdraw(Long id, BigDecimal amount) {
+        return retryExecutor.execute("withdraw", id, () -> doWithdraw(id, amount));
+    }
 
-        final int MAX_ATTEMP=3;
-
-        for (int attemp = 0; attemp < MAX_ATTEMP; attemp++) {
+    private AccountDto doWithdraw(Long id, BigDecimal amount) {
 
+        logger.info("嘗試取款:{},扣款帳號:{}", amount, id);
 
-            try {
-                logger.info("嘗試取款:{},扣款帳號:{}", id, amount);
-                Account account = accountRepository.findById(id).orElseThrow(() -> {
-                    logger.error("取款失敗,查無帳號{}");
-                    return new AccountNotFoundException("Account does not exist");
-                });
-
-                if (account.getBalance().compareTo(amount) < 0) {
-                    logger.error("帳號{}餘額不足,取款失敗,帳戶餘額:{},取款金額{}", id, account.getBalance(), account);
-                    throw new InsufficientAmountException("Insufficient amount");
+        Written written = applyToSnapshot(id, amount.negate());
+        if (written == null) {
+            // 餘額檢查與扣款在同一個條件式 UPDATE 中完成，避免併發下超提
+            int updated = accountRepository.decrementBalanceIfSufficient(id, amount);
+            // 熱門帳戶的主餘額不足時，先把子餘額槽歸併回主餘額再試一次
+            if (updated == 0 && hotAccountService.fold(id)) {
+                updated = accountRepository.decrementBalanceIfSufficient(id, amount);
+            }
+            if (updated == 0) {
+                if (!accountRepository.existsById(id)) {
+                    logger.error("取款失敗,查無帳號{}", id);
+                    throw new AccountNotFoundException("Account does not exist");
                 }
+                logger.error("帳號{}餘額不足,取款失敗,取款金額{}", id, amount);
+                throw new InsufficientAmountException("Insufficient amount");
+            }
 
+            Account account = accountRepository.findById(id).orElseThrow(() -> new AccountNotFoundException("Account does not exist"));
+            logger.info("帳號{}取款成功，新餘額{}", id, account.getBalance());
+            written = new Written(toAccountDto(account), eventVersion(account));
+        }
 
-                account.setBalance(account.getBalance().subtract(amount));
-                accountRepository.save(account);
-                logger.info("帳號{}取款成功，新餘額｛｝", account.getBalance());
 
+        // 記錄交易
+        Transaction transaction = new Transaction();
+        transaction.setAccountId(id);
+        transaction.setAmount(amount);
+        transaction.setTimestamp(LocalDateTime.now());
+        transaction.setTransactionType(TransactionType.WITHDRAW);
 
-                // 記錄交易
-                Transaction transaction = new Transaction();
-                transaction.setAccountId(id);
-                transaction.setAmount(amount);
-                transaction.setTimestamp(LocalDateTime.now());
-                transaction.setTransactionType(TransactionType.WITHDRAW);
+        transactionJournalWriter.append(transaction);
+        outboxWriter.append(List.of(transaction));
+        Written result = written;
+        accountEventHub.publishAfterCommit(List.of(transaction), accountId -> result.account().balance(), accountId -> result.version());
 
-                transactionRepository.save(transaction);
+        return written.account();
+    }
 
+    /**
+     * 總筆數取自 TotalCountCache，只有第一次或快取過期時才在背景執行 COUNT(*)。
+     */
+    @Transactional(readOnly = true)
+    @Override
+    public Page<AccountDto> getAllAccounts(AccountFilter filter, Pageable pageable) {
 
-                AccountDto accountDto = accountMapper.mapTOAccountDto(account);
+        Slice<AccountDto> accounts = getAllAccountsSlice(filter, pageable);
 
-                return accountDto;
-            } catch (ObjectOptimisticLockingFailureException e) {
-                logger.warn("帳戶{} 存款發生併發衝突，準備重試...", id);
-            }
-        }
-        throw new AccountException("存款操作因高併發衝突而失敗，請稍後再試。");
+        return withCachedTotal(accounts, pageable, filter.cacheKey(),
+                () -> filter.isEmpty() ? accountRepository.count() : accountRepository.count(AccountSpecifications.matching(filter)));
     }
 
     @Transactional(readOnly = true)
     @Override
-    public Page<AccountDto> getAllAccounts(Pageable pageable) {
-
-        Page<Account> accounts = accountRepository.findAll(pageable);
+    public Slice<AccountDto> getAllAccountsSlice(AccountFilter filter, Pageable pageable) {
+        AccountSortKey.requireIndexed(pageable.getSort());
+        if (filter.minBalance() != null && filter.maxBalance() != null && filter.minBalance().compareTo(filter.maxBalance()) > 0) {
+            throw new AccountException("minBalance 不可大於 maxBalance");
+        }
 
-        Page<AccountDto> accountDtoPage = accounts.map(account -> accountMapper.mapTOAccountDto(account));
+        // 直接查出 DTO (熱門帳戶的子餘額槽總和已在查詢中加上)，不載入 Account 實體
+        return accountRepository.findDtoSlice(AccountSpecifications.matching(filter), pageable);
+    }
 
-        return accountDtoPage;
+    @Transactional(readOnly = true)
+    @Override
+    public List<AccountDto> searchAccounts(String query, int limit) {
+        if (query == null || query.length() < AccountNameIndex.MIN_QUERY_LENGTH) {
+            throw new AccountException("搜尋字串至少需要" + AccountNameIndex.MIN_QUERY_LENGTH + "個字元");
+        }
+        Optional<long[]> ids = accountNameIndex.search(query, limit);
+        Specification<Account> matching;
+        if (ids.isPresent()) {
+            if (ids.get().length == 0) {
+                return List.of();
+            }
+            matching = AccountSpecifications.idIn(Arrays.stream(ids.get()).boxed().toList());
+        } else {
+            logger.warn("帳戶名稱索引尚未建立完成,改以資料庫查詢:{}", query);
+            matching = AccountSpecifications.holderNameContains(query);
+        }
+        // 以主鍵取回餘額，其他節點已刪除但本節點索引尚未移除的帳戶在這裡被排除
+        return accountRepository.findDtoSlice(matching, PageRequest.of(0, limit, AccountSortKey.ID.toSort(Sort.Direction.ASC))).getContent();
     }
 
     @Override
@@ -207,12 +359,26 @@ public class AccountServiceImpl implements AccountService {
             logger.error("刪除失敗,查無帳號:{}", id);
             return new AccountNotFoundException("Account does not exist");
         });
+        if (account.getHotSlots() > 0) {
+            hotAccountService.removeSlots(id);
+        }
         accountRepository.deleteById(id);
+        accountOwnershipCache.evictAfterCommit(id);
+        accountNameIndex.removeAfterCommit(id);
         logger.info("刪除成功,帳號{}", id);
     }
 
+    // 列鎖等待逾時或死結時整筆轉帳以新的交易重試
+    @Transactional(propagation = Propagation.SUPPORTS)
     @Override
     public void transferFunds(TransferFundDTO transferFundDTO) {
+        retryExecutor.execute("transfer", transferFundDTO.fromAccountId(), () -> {
+            doTransferFunds(transferFundDTO);
+            return null;
+        });
+    }
+
+    private void doTransferFunds(TransferFundDTO transferFundDTO) {
         logger.info("從帳號{}向帳號{},發起金額為{}的轉帳", transferFundDTO.fromAccountId(), transferFundDTO.toAccountId(), transferFundDTO.amount());
         Long fromAccountId = transferFundDTO.fromAccountId();
         Long toAccountId = transferFundDTO.toAccountId();
@@ -244,6 +410,11 @@ public class AccountServiceImpl implements AccountService {
 //         Account toAccount = accountRepository.findById(transferFundDTO.toAccountId()).orElseThrow(() -> new AccountException("Account does not exist"));
 
 
+        // 熱門帳戶的主餘額不足時，先把子餘額槽併入 (已持有帳戶列的鎖)
+        if (fromAccount.getHotSlots() > 0 && fromAccount.getBalance().compareTo(transferFundDTO.amount()) < 0) {
+            fromAccount.setBalance(fromAccount.getBalance().add(hotAccountService.drainSlots(fromAccountId)));
+        }
+
         if (fromAccount.getBalance().compareTo(transferFundDTO.amount()) < 0) {
             logger.error("轉帳失敗,帳戶{}餘額{}小於欲轉金額{}", fromAccountId, fromAccount.getBalance(), transferFundDTO.amount());
             throw new InsufficientAmountException("Insufficient amount");
@@ -264,7 +435,6 @@ public class AccountServiceImpl implements AccountService {
         fromTransaction.setAmount(transferFundDTO.amount());
         fromTransaction.setTimestamp(LocalDateTime.now());
         fromTransaction.setTransactionType(TransactionType.TRANSFER_OUT);
-        transactionRepository.save(fromTransaction);
 
         // 記錄轉入方交易（TRANSFER_IN）
         Transaction toTransaction = new Transaction();
@@ -273,18 +443,122 @@ public class AccountServiceImpl implements AccountService {
         toTransaction.setAmount(transferFundDTO.amount());
         toTransaction.setTimestamp(LocalDateTime.now());
         toTransaction.setTransactionType(TransactionType.TRANSFER_IN);
-        transactionRepository.save(toTransaction);
+
+        // 兩筆紀錄一起寫入，與餘額異動在同一個交易中提交
+        List<Transaction> transactions = List.of(fromTransaction, toTransaction);
+        transactionJournalWriter.appendAll(transactions);
+        outboxWriter.append(transactions);
+        // 先寫回餘額，事件才能帶有提交後的版本
+        accountRepository.flush();
+        accountEventHub.publishAfterCommit(transactions, accountId -> toAccountDto(accountId.equals(fromAccountId) ? fromAccount : toAccount).balance(),
+                accountId -> eventVersion(accountId.equals(fromAccountId) ? fromAccount : toAccount));
         logger.info("資金從帳戶 {} 轉至帳戶 {} 已成功完成", fromAccountId, toAccountId);
 
     }
 
 
+    /**
+     * 一次鎖定批次內所有帳戶 (依 ID 由小到大)，在記憶體中依序套用每筆轉帳，最後一起寫入交易紀錄。
+     * 每筆轉帳在修改餘額前就完成檢查，BEST_EFFORT 模式下失敗的項目不會留下部分修改。
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    @Override
+    public BatchTransferResultDTO transferFundsBatch(BatchTransferRequestDTO batchTransferRequestDTO) {
+        return retryExecutor.execute("transfer_batch", null, () -> doTransferFundsBatch(batchTransferRequestDTO));
+    }
+
+    private BatchTransferResultDTO doTransferFundsBatch(BatchTransferRequestDTO batchTransferRequestDTO) {
+        List<TransferFundDTO> transfers = batchTransferRequestDTO.transfers();
+        BatchTransferMode mode = batchTransferRequestDTO.mode();
+        logger.info("發起批次轉帳,模式{},共{}筆", mode, transfers.size());
+
+        Set<Long> accountIds = new TreeSet<>();
+        for (TransferFundDTO transfer : transfers) {
+            accountIds.add(transfer.fromAccountId());
+            accountIds.add(transfer.toAccountId());
+        }
+
+        Map<Long, Account> accounts = new HashMap<>();
+        for (Account account : accountRepository.findAllByIdForUpdate(accountIds)) {
+            accounts.put(account.getId(), account);
+        }
+
+        List<BatchTransferItemResultDTO> results = new ArrayList<>(transfers.size());
+        List<Transaction> journal = new ArrayList<>();
+        int failed = 0;
+
+        for (int i = 0; i < transfers.size(); i++) {
+            TransferFundDTO transfer = transfers.get(i);
+            try {
+                applyTransfer(transfer, accounts, journal);
+                results.add(new BatchTransferItemResultDTO(i, transfer.fromAccountId(), transfer.toAccountId(), transfer.amount(), true, null));
+            } catch (AccountNotFoundException | InsufficientAmountException | AccountException e) {
+                if (mode == BatchTransferMode.ATOMIC) {
+                    logger.error("批次轉帳第{}筆失敗,整批回滾:{}", i, e.getMessage());
+                    throw e;
+                }
+                failed++;
+                results.add(new BatchTransferItemResultDTO(i, transfer.fromAccountId(), transfer.toAccountId(), transfer.amount(), false, e.getMessage()));
+            }
+        }
+
+        // 餘額由 dirty checking 在提交時以 batch UPDATE 寫回
+        if (!journal.isEmpty()) {
+            transactionJournalWriter.appendAll(journal);
+            outboxWriter.append(journal);
+            accountRepository.flush();
+            accountEventHub.publishAfterCommit(journal, accountId -> toAccountDto(accounts.get(accountId)).balance(),
+                    accountId -> eventVersion(accounts.get(accountId)));
+        }
+        logger.info("批次轉帳完成,成功{}筆,失敗{}筆", transfers.size() - failed, failed);
+        return new BatchTransferResultDTO(mode, transfers.size() - failed, failed, results);
+    }
+
+    private void applyTransfer(TransferFundDTO transfer, Map<Long, Account> accounts, List<Transaction> journal) {
+        if (transfer.fromAccountId().equals(transfer.toAccountId())) {
+            throw new AccountException("不能轉帳到相同帳戶");
+        }
+        Account fromAccount = accounts.get(transfer.fromAccountId());
+        Account toAccount = accounts.get(transfer.toAccountId());
+        if (fromAccount == null || toAccount == null) {
+            throw new AccountNotFoundException("Account does not exist");
+        }
+
+        // 熱門帳戶的主餘額不足時，先把子餘額槽併入 (已持有帳戶列的鎖)
+        if (fromAccount.getHotSlots() > 0 && fromAccount.getBalance().compareTo(transfer.amount()) < 0) {
+            fromAccount.setBalance(fromAccount.getBalance().add(hotAccountService.drainSlots(fromAccount.getId())));
+        }
+        if (fromAccount.getBalance().compareTo(transfer.amount()) < 0) {
+            throw new InsufficientAmountException("Insufficient amount");
+        }
+
+        fromAccount.setBalance(fromAccount.getBalance().subtract(transfer.amount()));
+        toAccount.setBalance(toAccount.getBalance().add(transfer.amount()));
+
+        LocalDateTime now = LocalDateTime.now();
+        Transaction fromTransaction = new Transaction();
+        fromTransaction.setAccountId(transfer.fromAccountId());
+        fromTransaction.setAmount(transfer.amount());
+        fromTransaction.setTimestamp(now);
+        fromTransaction.setTransactionType(TransactionType.TRANSFER_OUT);
+
+        Transaction toTransaction = new Transaction();
+        toTransaction.setAccountId(transfer.toAccountId());
+        toTransaction.setAmount(transfer.amount());
+        toTransaction.setTimestamp(now);
+        toTransaction.setTransactionType(TransactionType.TRANSFER_IN);
+
+        journal.add(fromTransaction);
+        journal.add(toTransaction);
+    }
+
     @Transactional(readOnly = true)
     @Override
     public Page<TransactionDTO> getAccountTransactions(Long accountId, Pageable pageable) {
 
-        Page<Transaction> transactions = transactionRepository.findByAccountIdOrderByTimestampDesc(accountId, pageable);
-        Page<TransactionDTO> transactionDTOPage = transactions.map(this::convertEntityToDTO);
+        Slice<TransactionDTO> transactions = getAccountTransactionsSlice(accountId, pageable);
+        Page<TransactionDTO> transactionDTOPage = withCachedTotal(transactions, pageable, "transactions:" + accountId,
+                () -> transactionRepository.countByAccountId(accountId) + transactionArchive.count(accountId));
 //        List<TransactionDTO> transactionDTOList = new ArrayList<>();
 //
 //        for (Transaction transaction : transactionList) {
@@ -302,6 +576,131 @@ public class AccountServiceImpl implements AccountService {
     }
 
 
+    @Transactional(readOnly = true)
+    @Override
+    public Slice<TransactionDTO> getAccountTransactionsSlice(Long accountId, Pageable pageable) {
+        Slice<TransactionDTO> transactions = transactionRepository.findDtoSliceByAccountId(accountId, pageable);
+        if (transactions.hasNext() || !transactionArchive.hasAccount(accountId)) {
+            return transactions;
+        }
+
+        // 資料表剩下的紀錄不足一頁，其餘從封存檔補齊；封存的 ID 都比資料表中的小，直接接在後面順序仍正確
+        long archiveOffset = transactions.hasContent() || pageable.getOffset() == 0
+                ? 0 : Math.max(0, pageable.getOffset() - transactionRepository.countByAccountId(accountId));
+        int need = pageable.getPageSize() - transactions.getNumberOfElements();
+        List<Transaction> archived = transactionArchive.findPageByIdDesc(accountId, archiveOffset, need + 1);
+
+        List<TransactionDTO> content = new ArrayList<>(transactions.getContent());
+        archived.subList(0, Math.min(need, archived.size())).forEach(transaction -> content.add(convertEntityToDTO(transaction)));
+        return new SliceImpl<>(content, pageable, archived.size() > need);
+    }
+
+    /**
+     * 把 Slice 轉成 Page。已經是最後一頁時總數可以直接算出 (並更新快取)，否則使用快取的近似總數。
+     */
+    private <T> Page<T> withCachedTotal(Slice<T> slice, Pageable pageable, String key, LongSupplier counter) {
+        long seen = pageable.getOffset() + slice.getNumberOfElements();
+        long total;
+        if (!slice.hasNext() && (slice.hasContent() || pageable.getOffset() == 0)) {
+            total = seen;
+            totalCountCache.record(key, total);
+        } else {
+            // 快取的總數可能落後，至少要涵蓋目前看到的筆數與下一頁
+            total = Math.max(totalCountCache.total(key, counter), slice.hasNext() ? seen + 1 : seen);
+        }
+        return new PageImpl<>(slice.getContent(), pageable, total);
+    }
+
+    /**
+     * 多取一筆判斷是否還有下一頁，以本頁最後一筆的 (timestamp, id) 作為下一頁的游標。
+     */
+    @Transactional(readOnly = true)
+    @Override
+    public CursorPageResponseDTO<TransactionDTO> getAccountTransactionsByCursor(Long accountId, String cursor, int pageSize) {
+
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+
+        List<Transaction> transactions;
+        TransactionCursor after = null;
+        if (cursor == null || cursor.isBlank()) {
+            transactions = transactionRepository.findFirstPage(accountId, limit);
+        } else {
+            after = TransactionCursor.decode(cursor);
+            transactions = transactionRepository.findPageAfter(accountId, after.timestamp(), after.id(), limit);
+        }
+
+        // 資料表中的紀錄不足一頁時接著讀封存檔，封存的紀錄都比資料表中的舊
+        if (transactions.size() <= pageSize && transactionArchive.hasAccount(accountId)) {
+            List<Transaction> merged = new ArrayList<>(transactions);
+            merged.addAll(transactionArchive.findBefore(accountId, after == null ? null : after.timestamp(),
+                    after == null ? null : after.id(), pageSize + 1 - transactions.size()));
+            transactions = merged;
+        }
+
+        boolean hasNext = transactions.size() > pageSize;
+        if (hasNext) {
+            transactions = transactions.subList(0, pageSize);
+        }
+
+        String nextCursor = null;
+        if (hasNext) {
+            Transaction last = transactions.get(transactions.size() - 1);
+            nextCursor = new TransactionCursor(last.getTimestamp(), last.getId()).encode();
+        }
+
+        List<TransactionDTO> content = transactions.stream().map(this::convertEntityToDTO).toList();
+        return new CursorPageResponseDTO<>(content, pageSize, nextCursor, hasNext);
+    }
+
+    @Override
+    public AccountDto changeHotSlots(Long id, int slots) {
+        hotAccountService.changeSlots(id, slots);
+        Account account = accountRepository.findById(id).orElseThrow(() -> new AccountNotFoundException("Account does not exist"));
+        return toAccountDto(account);
+    }
+
+    /**
+     * 權限檢查在同一個請求已載入帳戶時，以 version 條件更新：成功代表這段期間沒有其他寫入，
+     * 新餘額可直接由快照算出，省下更新後的讀回。熱門帳戶、金額精度超過欄位或 version 已變更時回傳 null，走一般路徑。
+     *
+     * @param delta 正數為加款，負數為扣款
+     */
+    private Written applyToSnapshot(Long id, BigDecimal delta) {
+        Account snapshot = accountLoadContext.take(id).orElse(null);
+        if (snapshot == null || snapshot.getHotSlots() > 0 || hotAccountService.isHot(id)
+                || delta.scale() > snapshot.getBalance().scale()) {
+            return null;
+        }
+        int updated = delta.signum() >= 0
+                ? accountRepository.incrementBalanceIfVersion(id, delta, snapshot.getVersion())
+                : accountRepository.decrementBalanceIfVersion(id, delta.negate(), snapshot.getVersion());
+        if (updated == 0) {
+            return null;
+        }
+        BigDecimal newBalance = snapshot.getBalance().add(delta);
+        logger.info("帳號{}以快照版本{}更新成功,新餘額:{}", id, snapshot.getVersion(), newBalance);
+        return new Written(accountMapper.mapTOAccountDto(snapshot, newBalance), snapshot.getVersion() + 1);
+    }
+
+    /**
+     * 事件串流用的帳戶版本，帳戶異動必須已經 flush。熱門帳戶的子餘額槽入帳不遞增 version，回傳 null 讓事件不以版本判斷新舊。
+     */
+    private Long eventVersion(Account account) {
+        return account.getHotSlots() > 0 ? null : account.getVersion();
+    }
+
+    // 寫入後的帳戶與提交後的版本 (見 eventVersion)
+    private record Written(AccountDto account, Long version) {
+    }
+
+    private AccountDto toAccountDto(Account account) {
+        if (account.getHotSlots() > 0) {
+            return accountMapper.mapTOAccountDto(account, hotAccountService.totalBalance(account.getId()));
+        }
+        return accountMapper.mapTOAccountDto(account);
+    }
+
+
     private TransactionDTO convertEntityToDTO(Transaction transaction) {
         return new TransactionDTO(
                 transaction.getId(),
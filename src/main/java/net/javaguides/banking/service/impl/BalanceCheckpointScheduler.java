@@ -0,0 +1,32 @@
+package net.javaguides.banking.service.impl;
+
+import net.javaguides.banking.service.BalanceCheckpointService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 定期為已結束的日子建立餘額檢查點；重建 (rebuild) 後也由這裡逐日補回。
+ */
+@Component
+public class BalanceCheckpointScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalanceCheckpointScheduler.class);
+
+    private BalanceCheckpointService balanceCheckpointService;
+
+    public BalanceCheckpointScheduler(BalanceCheckpointService balanceCheckpointService) {
+        this.balanceCheckpointService = balanceCheckpointService;
+    }
+
+    @Scheduled(initialDelayString = "${banking.balance-checkpoint.interval-ms:60000}",
+            fixedDelayString = "${banking.balance-checkpoint.interval-ms:60000}")
+    public void closeDays() {
+        try {
+            balanceCheckpointService.closeDays();
+        } catch (RuntimeException e) {
+            logger.warn("建立餘額檢查點失敗,下次排程再試:{}", e.getMessage());
+        }
+    }
+}
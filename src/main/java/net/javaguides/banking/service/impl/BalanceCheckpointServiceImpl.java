@@ -0,0 +1,233 @@
+package net.javaguides.banking.service.impl;
+
+import net.javaguides.banking.archive.TransactionArchive;
+import net.javaguides.banking.entity.BalanceCheckpoint;
+import net.javaguides.banking.entity.BalanceCheckpointProgress;
+import net.javaguides.banking.entity.Transaction;
+import net.javaguides.banking.enums.TransactionType;
+import net.javaguides.banking.exception.AccountException;
+import net.javaguides.banking.id.SnowflakeIdGenerator;
+import net.javaguides.banking.repository.AccountRepository;
+import net.javaguides.banking.repository.BalanceCheckpointProgressRepository;
+import net.javaguides.banking.repository.BalanceCheckpointRepository;
+import net.javaguides.banking.repository.TransactionRepository;
+import net.javaguides.banking.security.AccountLoadContext;
+import net.javaguides.banking.service.BalanceCheckpointService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Service
+public class BalanceCheckpointServiceImpl implements BalanceCheckpointService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalanceCheckpointServiceImpl.class);
+
+    // 查詢前一天累計餘額時每次 IN 的帳戶數量
+    private static final int ACCOUNT_CHUNK_SIZE = 1000;
+
+    private BalanceCheckpointRepository checkpointRepository;
+
+    private BalanceCheckpointProgressRepository progressRepository;
+
+    private TransactionRepository transactionRepository;
+
+    private AccountRepository accountRepository;
+
+    private AccountLoadContext accountLoadContext;
+
+    private TransactionArchive transactionArchive;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TransactionTemplate readOnlyTemplate;
+
+    // 一天結束後再等這段時間才建立檢查點，讓較慢的交易中時間戳屬於前一天的紀錄先提交；
+    // 同樣假設這段時間之前產生 ID 的紀錄都已提交，以此界定每次計入的 ID 範圍
+    private final Duration closeDelay;
+
+    private final int maxDaysPerRun;
+
+    public BalanceCheckpointServiceImpl(BalanceCheckpointRepository checkpointRepository,
+                                        BalanceCheckpointProgressRepository progressRepository,
+                                        TransactionRepository transactionRepository,
+                                        AccountRepository accountRepository,
+                                        AccountLoadContext accountLoadContext,
+                                        TransactionArchive transactionArchive,
+                                        PlatformTransactionManager transactionManager,
+                                        @Value("${banking.balance-checkpoint.close-delay-minutes:10}") long closeDelayMinutes,
+                                        @Value("${banking.balance-checkpoint.max-days-per-run:366}") int maxDaysPerRun) {
+        this.checkpointRepository = checkpointRepository;
+        this.progressRepository = progressRepository;
+        this.transactionRepository = transactionRepository;
+        this.accountRepository = accountRepository;
+        this.accountLoadContext = accountLoadContext;
+        this.transactionArchive = transactionArchive;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+        this.closeDelay = Duration.ofMinutes(closeDelayMinutes);
+        this.maxDaysPerRun = maxDaysPerRun;
+    }
+
+    @Override
+    public BigDecimal balanceAsOf(Long accountId, LocalDateTime asOf) {
+        return readOnlyTemplate.execute(status -> {
+            accountLoadContext.requireExists(accountId, accountRepository::existsById);
+
+            // 檢查點涵蓋到隔天 00:00 之前，最近一個不晚於 asOf 結束的是 asOf 前一天 (含) 之前的
+            Optional<BalanceCheckpoint> checkpoint = checkpointRepository
+                    .findFirstByAccountIdAndDayLessThanEqualOrderByDayDesc(accountId, asOf.toLocalDate().minusDays(1));
+
+            if (checkpoint.isEmpty()) {
+                logger.debug("帳戶{}在{}之前沒有餘額檢查點,直接加總交易紀錄", accountId, asOf);
+                return transactionRepository.sumSignedAmountUpTo(accountId, asOf)
+                        .add(archivedNet(accountId, null, asOf));
+            }
+
+            LocalDateTime tailStart = checkpoint.get().getDay().plusDays(1).atStartOfDay();
+            BigDecimal tail = transactionRepository.sumSignedAmount(accountId, tailStart, asOf)
+                    .add(archivedNet(accountId, tailStart, asOf));
+            return checkpoint.get().getBalance().add(tail);
+        });
+    }
+
+    @Override
+    public int closeDays() {
+        LocalDate lastClosable = LocalDateTime.now().minus(closeDelay).toLocalDate().minusDays(1);
+        long countBelowId = SnowflakeIdGenerator.minIdAt(System.currentTimeMillis() - closeDelay.toMillis());
+        transactionTemplate.executeWithoutResult(status -> applyLateRows(countBelowId));
+        int closed = 0;
+        while (closed < maxDaysPerRun && Boolean.TRUE.equals(transactionTemplate.execute(status -> closeNextDay(lastClosable)))) {
+            closed++;
+        }
+        if (closed > 0) {
+            logger.info("建立{}天的餘額檢查點", closed);
+        }
+        return closed;
+    }
+
+    @Override
+    public void rebuild() {
+        // 重建只會讀取 transactions 資料表，已封存的交易不會計入，重建出的累計餘額會少算
+        if (transactionArchive.hasFiles()) {
+            throw new AccountException("已有封存的交易紀錄,無法重建餘額檢查點");
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            BalanceCheckpointProgress progress = lockProgress();
+            int deleted = checkpointRepository.deleteAllCheckpoints();
+            progress.setClosedThrough(null);
+            logger.info("重建餘額檢查點,已刪除{}筆", deleted);
+        });
+    }
+
+    /**
+     * 已移到封存檔的交易在 [from, to] 之間的淨額；沒有封存檔或區間不重疊時不會讀取磁碟。
+     */
+    private BigDecimal archivedNet(Long accountId, LocalDateTime from, LocalDateTime to) {
+        BigDecimal[] net = {BigDecimal.ZERO};
+        transactionArchive.forEachInRange(accountId, from, to.plusNanos(1), row -> net[0] = net[0].add(signed(row)));
+        return net[0];
+    }
+
+    private static BigDecimal signed(Transaction transaction) {
+        return transaction.getTransactionType() == TransactionType.DEPOSIT
+                || transaction.getTransactionType() == TransactionType.TRANSFER_IN
+                ? transaction.getAmount() : transaction.getAmount().negate();
+    }
+
+    /**
+     * 把上次計入的 ID 上限到這次的上限之間、屬於已建立檢查點日子的紀錄 (交易執行超過 close-delay、補登的紀錄等)
+     * 加進帳戶從那一天起的檢查點，再推進 ID 上限。每筆紀錄只會在建立當天的檢查點或這裡其中一處計入。
+     */
+    private void applyLateRows(long countBelowId) {
+        BalanceCheckpointProgress progress = lockProgress();
+        Long countedBelowId = progress.getCountedBelowId();
+        if (countedBelowId != null && countedBelowId >= countBelowId) {
+            // 其他節點的時鐘較快，已經推進到更後面
+            return;
+        }
+        if (countedBelowId != null && progress.getClosedThrough() != null) {
+            Map<LateKey, BigDecimal> late = new HashMap<>();
+            for (Transaction row : transactionRepository.findLate(countedBelowId, countBelowId,
+                    progress.getClosedThrough().plusDays(1).atStartOfDay())) {
+                late.merge(new LateKey(row.getAccountId(), row.getTimestamp().toLocalDate()), signed(row), BigDecimal::add);
+            }
+            late.forEach((key, delta) -> checkpointRepository.addFrom(key.accountId(), key.day(), delta));
+            if (!late.isEmpty()) {
+                logger.info("遲到的交易紀錄計入{}個帳戶日的餘額檢查點", late.size());
+            }
+        }
+        progress.setCountedBelowId(countBelowId);
+    }
+
+    /**
+     * 找出進度之後第一個有交易的日子並建立它的檢查點；沒有交易的日子直接跳過，不建立任何資料。
+     *
+     * @return 是否建立了一天的檢查點
+     */
+    private boolean closeNextDay(LocalDate lastClosable) {
+        BalanceCheckpointProgress progress = lockProgress();
+        LocalDate closedThrough = progress.getClosedThrough();
+        if (closedThrough != null && !closedThrough.isBefore(lastClosable)) {
+            return false;
+        }
+
+        LocalDateTime next = closedThrough == null
+                ? transactionRepository.findFirstTimestamp()
+                : transactionRepository.findFirstTimestampFrom(closedThrough.plusDays(1).atStartOfDay());
+        if (next == null || next.toLocalDate().isAfter(lastClosable)) {
+            // 到 lastClosable 為止都沒有交易，進度直接推進
+            progress.setClosedThrough(lastClosable);
+            return false;
+        }
+
+        LocalDate day = next.toLocalDate();
+        List<TransactionRepository.AccountNet> nets = transactionRepository.sumSignedAmountByAccount(
+                day.atStartOfDay(), day.plusDays(1).atStartOfDay(), progress.getCountedBelowId());
+
+        List<BalanceCheckpoint> checkpoints = new ArrayList<>(nets.size());
+        for (int from = 0; from < nets.size(); from += ACCOUNT_CHUNK_SIZE) {
+            List<TransactionRepository.AccountNet> chunk = nets.subList(from, Math.min(from + ACCOUNT_CHUNK_SIZE, nets.size()));
+
+            Map<Long, BigDecimal> previous = new HashMap<>();
+            for (BalanceCheckpoint checkpoint : checkpointRepository.findLatestByAccountIdIn(
+                    chunk.stream().map(TransactionRepository.AccountNet::getAccountId).toList())) {
+                if (!checkpoint.getDay().isBefore(day)) {
+                    throw new AccountException("餘額檢查點進度與資料不一致,帳戶:" + checkpoint.getAccountId() + ",日期:" + checkpoint.getDay());
+                }
+                previous.put(checkpoint.getAccountId(), checkpoint.getBalance());
+            }
+
+            for (TransactionRepository.AccountNet net : chunk) {
+                BigDecimal balance = previous.getOrDefault(net.getAccountId(), BigDecimal.ZERO).add(net.getNet());
+                checkpoints.add(new BalanceCheckpoint(net.getAccountId(), day, balance));
+            }
+        }
+        checkpointRepository.saveAll(checkpoints);
+        progress.setClosedThrough(day);
+
+        logger.debug("建立{}的餘額檢查點,帳戶數:{}", day, checkpoints.size());
+        return true;
+    }
+
+    private BalanceCheckpointProgress lockProgress() {
+        return progressRepository.findByNameForUpdate(BalanceCheckpointProgress.DAILY)
+                .orElseGet(() -> progressRepository.saveAndFlush(new BalanceCheckpointProgress(BalanceCheckpointProgress.DAILY)));
+    }
+
+    private record LateKey(Long accountId, LocalDate day) {
+    }
+}
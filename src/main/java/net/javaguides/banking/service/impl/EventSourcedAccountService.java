@@ -0,0 +1,152 @@
+package net.javaguides.banking.service.impl;
+
+import net.javaguides.banking.dto.AccountDto;
+import net.javaguides.banking.dto.AccountFilter;
+import net.javaguides.banking.dto.AccountVersionDTO;
+import net.javaguides.banking.dto.BatchTransferRequestDTO;
+import net.javaguides.banking.dto.BatchTransferResultDTO;
+import net.javaguides.banking.dto.CursorPageResponseDTO;
+import net.javaguides.banking.dto.TransactionDTO;
+import net.javaguides.banking.dto.TransferFundDTO;
+import net.javaguides.banking.dto.VersionedAccountDTO;
+import net.javaguides.banking.exception.AccountException;
+import net.javaguides.banking.ledger.EventSourcedLedger;
+import net.javaguides.banking.retry.RetryExecutor;
+import net.javaguides.banking.service.AccountService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * banking.write-path=event-sourced 時使用的 AccountService：
+ * 存款、提款、轉帳由 {@link EventSourcedLedger} 以新增交易紀錄完成，其餘操作沿用 {@link AccountServiceImpl}。
+ * <p>
+ * 單一帳戶查詢回傳快照加上尚未投影紀錄的即時餘額；帳戶列表與搜尋讀取 accounts.balance 投影，
+ * 最多落後一次投影週期 (banking.ledger.projection-interval-ms)。
+ */
+@Primary
+@Service
+@ConditionalOnProperty(name = "banking.write-path", havingValue = "event-sourced")
+public class EventSourcedAccountService implements AccountService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventSourcedAccountService.class);
+
+    private AccountService accountService;
+
+    private EventSourcedLedger eventSourcedLedger;
+
+    private RetryExecutor retryExecutor;
+
+    public EventSourcedAccountService(AccountServiceImpl accountService,
+                                      EventSourcedLedger eventSourcedLedger,
+                                      RetryExecutor retryExecutor) {
+        this.accountService = accountService;
+        this.eventSourcedLedger = eventSourcedLedger;
+        this.retryExecutor = retryExecutor;
+    }
+
+    // 開戶金額以存款事件寫入帳本，帳戶列的快照餘額從 0 開始，避免快照與事件重複計算
+    @Override
+    public AccountDto createAccount(AccountDto accountDto) {
+        return retryExecutor.execute("create_account", null, () -> {
+            AccountDto created = accountService.createAccount(new AccountDto(accountDto.id(), accountDto.accountHolderName(), BigDecimal.ZERO));
+            return accountDto.balance().signum() > 0 ? eventSourcedLedger.deposit(created.id(), accountDto.balance()) : created;
+        });
+    }
+
+    @Override
+    public AccountDto getAccountById(Long id) {
+        AccountDto account = accountService.getAccountById(id);
+        BigDecimal balance = eventSourcedLedger.currentBalances(List.of(id)).get(id);
+        return balance == null ? account : new AccountDto(account.id(), account.accountHolderName(), balance);
+    }
+
+    // 寫入只新增紀錄，即時餘額變動時 version 不變，不產生 ETag
+    @Override
+    public VersionedAccountDTO getVersionedAccountById(Long id) {
+        return new VersionedAccountDTO(getAccountById(id), null);
+    }
+
+    @Override
+    public Optional<AccountVersionDTO> getAccountVersion(Long id) {
+        return Optional.empty();
+    }
+
+    // 扣款序號衝突時由 RetryExecutor 以新的交易重新讀取狀態後重試
+    @Override
+    public AccountDto deposit(Long id, BigDecimal amount) {
+        logger.info("事件帳本模式:儲蓄{}進入帳號:{}", amount, id);
+        return retryExecutor.execute("deposit", id, () -> eventSourcedLedger.deposit(id, amount));
+    }
+
+    @Override
+    public AccountDto withdraw(Long id, BigDecimal amount) {
+        logger.info("事件帳本模式:從帳號{}取款{}", id, amount);
+        return retryExecutor.execute("withdraw", id, () -> eventSourcedLedger.withdraw(id, amount));
+    }
+
+    @Override
+    public Page<AccountDto> getAllAccounts(AccountFilter filter, Pageable pageable) {
+        return accountService.getAllAccounts(filter, pageable);
+    }
+
+    @Override
+    public Slice<AccountDto> getAllAccountsSlice(AccountFilter filter, Pageable pageable) {
+        return accountService.getAllAccountsSlice(filter, pageable);
+    }
+
+    @Override
+    public List<AccountDto> searchAccounts(String query, int limit) {
+        return accountService.searchAccounts(query, limit);
+    }
+
+    @Override
+    public void deleteAccount(Long id) {
+        accountService.deleteAccount(id);
+    }
+
+    @Override
+    public void transferFunds(TransferFundDTO transferFundDTO) {
+        retryExecutor.execute("transfer", transferFundDTO.fromAccountId(), () -> {
+            eventSourcedLedger.transfer(transferFundDTO);
+            return null;
+        });
+    }
+
+    @Override
+    public BatchTransferResultDTO transferFundsBatch(BatchTransferRequestDTO batchTransferRequestDTO) {
+        return retryExecutor.execute("transfer_batch", null, () -> eventSourcedLedger.transferBatch(batchTransferRequestDTO));
+    }
+
+    @Override
+    public Page<TransactionDTO> getAccountTransactions(Long accountId, Pageable pageable) {
+        return accountService.getAccountTransactions(accountId, pageable);
+    }
+
+    @Override
+    public Slice<TransactionDTO> getAccountTransactionsSlice(Long accountId, Pageable pageable) {
+        return accountService.getAccountTransactionsSlice(accountId, pageable);
+    }
+
+    @Override
+    public CursorPageResponseDTO<TransactionDTO> getAccountTransactionsByCursor(Long accountId, String cursor, int pageSize) {
+        return accountService.getAccountTransactionsByCursor(accountId, cursor, pageSize);
+    }
+
+    /**
+     * 子餘額槽是為了分散 accounts 列上的更新，帳本模式的寫入本來就不更新帳戶列。
+     */
+    @Override
+    public AccountDto changeHotSlots(Long id, int slots) {
+        throw new AccountException("事件帳本模式不支援熱門帳戶子餘額槽");
+    }
+}
@@ -0,0 +1,35 @@
+package net.javaguides.banking.service.impl;
+
+import net.javaguides.banking.service.HotAccountService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 定期把熱門帳戶的子餘額槽歸併回主餘額，並同步其他節點設定的熱門帳戶清單。
+ * 每個帳戶的歸併各自是一個交易，單一帳戶失敗不影響其他帳戶。
+ */
+@Component
+public class HotAccountFoldScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(HotAccountFoldScheduler.class);
+
+    private HotAccountService hotAccountService;
+
+    public HotAccountFoldScheduler(HotAccountService hotAccountService) {
+        this.hotAccountService = hotAccountService;
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${banking.hot-account.fold-interval-ms:5000}")
+    public void foldHotAccounts() {
+        hotAccountService.refreshHotAccounts();
+        for (Long accountId : hotAccountService.findAccountsToFold()) {
+            try {
+                hotAccountService.fold(accountId);
+            } catch (RuntimeException e) {
+                logger.warn("帳戶{}子餘額歸併失敗,下次排程再試:{}", accountId, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package net.javaguides.banking.service.impl;
+
+import net.javaguides.banking.entity.Account;
+import net.javaguides.banking.entity.AccountBalanceSlot;
+import net.javaguides.banking.exception.AccountNotFoundException;
+import net.javaguides.banking.repository.AccountBalanceSlotRepository;
+import net.javaguides.banking.repository.AccountRepository;
+import net.javaguides.banking.service.HotAccountService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+@Transactional
+@Service
+public class HotAccountServiceImpl implements HotAccountService {
+
+    private static final Logger logger = LoggerFactory.getLogger(HotAccountServiceImpl.class);
+
+    private AccountRepository accountRepository;
+
+    private AccountBalanceSlotRepository slotRepository;
+
+    // 依執行緒固定選槽 (thread) 或隨機選槽 (random)
+    private final boolean threadAffinity;
+
+    // accountId -> 槽數量
+    private final Map<Long, Integer> hotSlotCounts = new ConcurrentHashMap<>();
+
+    public HotAccountServiceImpl(AccountRepository accountRepository,
+                                 AccountBalanceSlotRepository slotRepository,
+                                 @Value("${banking.hot-account.slot-selection:random}") String slotSelection) {
+        this.accountRepository = accountRepository;
+        this.slotRepository = slotRepository;
+        this.threadAffinity = "thread".equalsIgnoreCase(slotSelection);
+    }
+
+    @Override
+    public void changeSlots(Long accountId, int slots) {
+        logger.info("調整帳戶{}的子餘額槽數量為{}", accountId, slots);
+        Account account = accountRepository.findByIdForUpdate(accountId).orElseThrow(() -> {
+            logger.error("調整子餘額槽失敗,查無帳號:{}", accountId);
+            return new AccountNotFoundException("Account does not exist");
+        });
+
+        List<AccountBalanceSlot> existing = slotRepository.findByAccountIdForUpdate(accountId);
+        BigDecimal folded = BigDecimal.ZERO;
+        for (AccountBalanceSlot slot : existing) {
+            folded = folded.add(slot.getBalance());
+            if (slot.getSlot() >= slots) {
+                slotRepository.delete(slot);
+            } else {
+                slot.setBalance(BigDecimal.ZERO);
+                slot.setUpdateCount(slot.getUpdateCount() + 1);
+            }
+        }
+        // 保留編號小於 slots 的既有槽，只補上缺少的槽，避免同一次 flush 內刪除又新增相同 (account_id, slot)
+        for (int i = existing.size(); i < slots; i++) {
+            slotRepository.save(new AccountBalanceSlot(accountId, i));
+        }
+
+        account.setBalance(account.getBalance().add(folded));
+        account.setHotSlots(slots);
+
+        if (slots > 0) {
+            hotSlotCounts.put(accountId, slots);
+        } else {
+            hotSlotCounts.remove(accountId);
+        }
+        logger.info("帳戶{}子餘額槽調整完成,歸併金額:{}", accountId, folded);
+    }
+
+    @Override
+    public boolean isHot(Long accountId) {
+        return hotSlotCounts.containsKey(accountId);
+    }
+
+    @Override
+    public boolean credit(Long accountId, BigDecimal amount) {
+        Integer slots = hotSlotCounts.get(accountId);
+        if (slots == null) {
+            return false;
+        }
+        int slot = threadAffinity
+                ? (int) (Thread.currentThread().getId() % slots)
+                : ThreadLocalRandom.current().nextInt(slots);
+        return slotRepository.credit(accountId, slot, amount) == 1;
+    }
+
+    @Override
+    public boolean fold(Long accountId) {
+        Account account = accountRepository.findByIdForUpdate(accountId).orElse(null);
+        if (account == null || account.getHotSlots() == 0) {
+            return false;
+        }
+        BigDecimal drained = drainSlots(accountId);
+        if (drained.signum() == 0) {
+            return false;
+        }
+        account.setBalance(account.getBalance().add(drained));
+        logger.debug("帳戶{}歸併子餘額{}", accountId, drained);
+        return true;
+    }
+
+    @Override
+    public BigDecimal drainSlots(Long accountId) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (AccountBalanceSlot slot : slotRepository.findByAccountIdForUpdate(accountId)) {
+            if (slot.getBalance().signum() != 0) {
+                total = total.add(slot.getBalance());
+                slot.setBalance(BigDecimal.ZERO);
+                slot.setUpdateCount(slot.getUpdateCount() + 1);
+            }
+        }
+        return total;
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public BigDecimal totalBalance(Long accountId) {
+        return accountRepository.findTotalBalanceById(accountId)
+                .orElseThrow(() -> new AccountNotFoundException("Account does not exist"));
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public Map<Long, BigDecimal> slotTotals(Collection<Long> accountIds) {
+        return slotRepository.sumByAccountIds(accountIds).stream()
+                .collect(Collectors.toMap(AccountBalanceSlotRepository.SlotTotal::getAccountId,
+                        AccountBalanceSlotRepository.SlotTotal::getTotal));
+    }
+
+    @Override
+    public void removeSlots(Long accountId) {
+        slotRepository.deleteByAccountId(accountId);
+        hotSlotCounts.remove(accountId);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public List<Long> findAccountsToFold() {
+        return slotRepository.findAccountIdsWithPendingBalance();
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public void refreshHotAccounts() {
+        Map<Long, Integer> latest = accountRepository.findHotAccounts().stream()
+                .collect(Collectors.toMap(AccountRepository.HotAccountView::getId, AccountRepository.HotAccountView::getHotSlots));
+        hotSlotCounts.keySet().retainAll(latest.keySet());
+        hotSlotCounts.putAll(latest);
+    }
+}
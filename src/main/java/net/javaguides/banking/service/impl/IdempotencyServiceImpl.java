@@ -0,0 +1,264 @@
+package net.javaguides.banking.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.javaguides.banking.entity.IdempotencyRecord;
+import net.javaguides.banking.exception.AccountException;
+import net.javaguides.banking.exception.IdempotencyKeyConflictException;
+import net.javaguides.banking.repository.IdempotencyRecordRepository;
+import net.javaguides.banking.service.IdempotencyService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency-Key 的兩層儲存：
+ * <ul>
+ *     <li>記憶體：最近的請求 (含執行中的) 依 key 保存一個 future，重複請求直接等待同一個結果，數量與存活時間皆有上限。</li>
+ *     <li>資料庫 idempotency_records：執行資金異動之前先以獨立的交易寫入處理中的紀錄搶下 key，完成後再保存回應，
+ *     重啟或其他節點收到重送時仍能查到；兩個節點同時執行時，只有搶到 key 的一方會執行，另一方回傳已保存的回應或「處理中」。</li>
+ * </ul>
+ * 資金異動可能在序列器的交易中提交，不能依賴與紀錄同一個交易回滾，因此先搶 key 再執行；
+ * 執行期間不持有交易，等待序列器的請求執行緒不佔用資料庫連線。
+ * 只保存成功的回應，失敗的請求 (例如餘額不足) 會釋放 key，重送時重新執行；
+ * 節點在資金異動之後、保存回應之前停止時，key 維持處理中直到 ttl 到期，期間重送不會再次執行。
+ */
+@Service
+public class IdempotencyServiceImpl implements IdempotencyService {
+
+    static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyServiceImpl.class);
+
+    // 依加入順序排列 (過期後重新加入的 key 移到尾端)，由最舊的項目開始淘汰；所有存取都在 entries 的鎖內
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    private ObjectMapper objectMapper;
+
+    private TransactionTemplate transactionTemplate;
+
+    private final Duration ttl;
+
+    private final int maxEntries;
+
+    private final long awaitTimeoutMs;
+
+    public IdempotencyServiceImpl(IdempotencyRecordRepository idempotencyRecordRepository,
+                                  ObjectMapper objectMapper,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${banking.idempotency.ttl-hours:24}") long ttlHours,
+                                  @Value("${banking.idempotency.max-entries:10000}") int maxEntries,
+                                  @Value("${banking.idempotency.await-timeout-ms:10000}") long awaitTimeoutMs) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttl = Duration.ofHours(ttlHours);
+        this.maxEntries = maxEntries;
+        this.awaitTimeoutMs = awaitTimeoutMs;
+    }
+
+    @Override
+    public <T> ResponseEntity<T> execute(String idempotencyKey, String requestFingerprint, Class<T> bodyType, Supplier<ResponseEntity<T>> action) {
+        String scopedKey = currentPrincipal() + ":" + idempotencyKey;
+        String requestHash = sha256(requestFingerprint);
+
+        Entry mine = new Entry(requestHash, new CompletableFuture<>(), System.nanoTime());
+        Entry existing;
+        synchronized (entries) {
+            existing = entries.get(scopedKey);
+            if (existing != null && existing.isExpired(ttl) && existing.result().isDone()) {
+                entries.remove(scopedKey);
+                existing = null;
+            }
+            if (existing == null) {
+                entries.put(scopedKey, mine);
+                trimToMaxEntries();
+            }
+        }
+        if (existing != null) {
+            logger.info("重複的 Idempotency-Key:{},回傳先前的結果", idempotencyKey);
+            return replay(awaitResult(existing, requestHash), requestHash, bodyType);
+        }
+
+        try {
+            Optional<IdempotencyRecord> stored = idempotencyRecordRepository.findById(scopedKey);
+            if (stored.isPresent()) {
+                return replayStored(stored.get(), requestHash, bodyType, mine);
+            }
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> idempotencyRecordRepository.saveAndFlush(
+                        new IdempotencyRecord(scopedKey, requestHash, IdempotencyRecord.PENDING_STATUS, null, LocalDateTime.now())));
+            } catch (DataIntegrityViolationException e) {
+                // 其他節點已搶下相同的 key，本次不執行資金異動
+                IdempotencyRecord winner = idempotencyRecordRepository.findById(scopedKey).orElseThrow(() -> e);
+                logger.warn("Idempotency-Key:{}已由其他請求處理,不再執行", idempotencyKey);
+                return replayStored(winner, requestHash, bodyType, mine);
+            }
+
+            ResponseEntity<T> response;
+            try {
+                response = action.get();
+            } catch (RuntimeException e) {
+                transactionTemplate.executeWithoutResult(status -> idempotencyRecordRepository.release(scopedKey));
+                throw e;
+            }
+
+            StoredResponse storedResponse = new StoredResponse(requestHash, response.getStatusCode().value(), writeBody(response.getBody()));
+            transactionTemplate.executeWithoutResult(status ->
+                    idempotencyRecordRepository.complete(scopedKey, storedResponse.statusCode(), storedResponse.body()));
+            mine.result().complete(storedResponse);
+            return response;
+        } catch (RuntimeException e) {
+            // 失敗的結果不保存，讓用戶端之後可以用相同 key 重試
+            synchronized (entries) {
+                entries.remove(scopedKey, mine);
+            }
+            mine.result().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${banking.idempotency.sweep-interval-ms:600000}")
+    public void evictExpired() {
+        synchronized (entries) {
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                // 依建立時間排列，遇到第一個未過期的項目即可停止；過期但仍在執行中的請求保留
+                if (!entry.isExpired(ttl)) {
+                    break;
+                }
+                if (entry.result().isDone()) {
+                    iterator.remove();
+                }
+            }
+        }
+
+        Integer deleted = transactionTemplate.execute(status ->
+                idempotencyRecordRepository.deleteCreatedBefore(LocalDateTime.now().minus(ttl)));
+        if (deleted != null && deleted > 0) {
+            logger.info("清除{}筆過期的 Idempotency-Key 紀錄", deleted);
+        }
+    }
+
+    // 呼叫端必須持有 entries 的鎖
+    private void trimToMaxEntries() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            // 執行中的請求不能淘汰，略過後繼續找下一個最舊的項目
+            if (iterator.next().result().isDone()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private StoredResponse awaitResult(Entry entry, String requestHash) {
+        if (!entry.requestHash().equals(requestHash)) {
+            throw new IdempotencyKeyConflictException("Idempotency-Key 已用於內容不同的請求");
+        }
+        try {
+            return entry.result().get(awaitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            // 同時送達的重複請求得到與第一次執行相同的例外
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new AccountException("請求執行失敗，請稍後再試。");
+        } catch (TimeoutException e) {
+            throw new IdempotencyKeyConflictException("相同 Idempotency-Key 的請求仍在處理中，請稍後再試。");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AccountException("等待請求結果時被中斷");
+        }
+    }
+
+    /**
+     * 回傳資料庫中已保存的回應；紀錄仍在處理中 (其他節點正在執行或已中斷) 時拋出例外，請用戶端稍後重送。
+     */
+    private <T> ResponseEntity<T> replayStored(IdempotencyRecord record, String requestHash, Class<T> bodyType, Entry mine) {
+        if (!record.getRequestHash().equals(requestHash)) {
+            throw new IdempotencyKeyConflictException("Idempotency-Key 已用於內容不同的請求");
+        }
+        if (record.isPending()) {
+            throw new IdempotencyKeyConflictException("相同 Idempotency-Key 的請求仍在處理中，請稍後再試。");
+        }
+        StoredResponse response = toStoredResponse(record);
+        mine.result().complete(response);
+        return replay(response, requestHash, bodyType);
+    }
+
+    private <T> ResponseEntity<T> replay(StoredResponse response, String requestHash, Class<T> bodyType) {
+        if (!response.requestHash().equals(requestHash)) {
+            throw new IdempotencyKeyConflictException("Idempotency-Key 已用於內容不同的請求");
+        }
+        try {
+            T body = response.body() == null ? null : objectMapper.readValue(response.body(), bodyType);
+            return ResponseEntity.status(response.statusCode()).header(REPLAYED_HEADER, "true").body(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("無法還原已保存的回應", e);
+        }
+    }
+
+    private StoredResponse toStoredResponse(IdempotencyRecord record) {
+        return new StoredResponse(record.getRequestHash(), record.getStatusCode(), record.getResponseBody());
+    }
+
+    private String writeBody(Object body) {
+        try {
+            return body == null ? null : objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("無法保存回應內容", e);
+        }
+    }
+
+    private String currentPrincipal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication == null ? "anonymous" : authentication.getName();
+    }
+
+    static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Entry(String requestHash, CompletableFuture<StoredResponse> result, long createdAtNanos) {
+
+        boolean isExpired(Duration ttl) {
+            return System.nanoTime() - createdAtNanos > ttl.toNanos();
+        }
+    }
+
+    private record StoredResponse(String requestHash, int statusCode, String body) {
+    }
+}
@@ -0,0 +1,40 @@
+package net.javaguides.banking.service.impl;
+
+import net.javaguides.banking.service.OpeningBalanceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 定期為舊帳戶補登開戶存款，accounts-per-run 為 0 時停用。
+ */
+@Component
+public class OpeningBalanceBackfillScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(OpeningBalanceBackfillScheduler.class);
+
+    private OpeningBalanceService openingBalanceService;
+
+    private final int accountsPerRun;
+
+    public OpeningBalanceBackfillScheduler(OpeningBalanceService openingBalanceService,
+                                           @Value("${banking.opening-balance.backfill-accounts-per-run:1000}") int accountsPerRun) {
+        this.openingBalanceService = openingBalanceService;
+        this.accountsPerRun = accountsPerRun;
+    }
+
+    @Scheduled(initialDelayString = "${banking.opening-balance.backfill-interval-ms:60000}",
+            fixedDelayString = "${banking.opening-balance.backfill-interval-ms:60000}")
+    public void backfill() {
+        if (accountsPerRun <= 0) {
+            return;
+        }
+        try {
+            openingBalanceService.backfillLegacy(accountsPerRun);
+        } catch (RuntimeException e) {
+            logger.warn("補登開戶存款失敗,下次排程再試:{}", e.getMessage());
+        }
+    }
+}
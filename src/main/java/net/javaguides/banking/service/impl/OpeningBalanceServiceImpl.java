@@ -0,0 +1,192 @@
+package net.javaguides.banking.service.impl;
+
+import net.javaguides.banking.archive.TransactionArchive;
+import net.javaguides.banking.entity.Account;
+import net.javaguides.banking.entity.OpeningBalanceBackfill;
+import net.javaguides.banking.entity.Transaction;
+import net.javaguides.banking.enums.TransactionType;
+import net.javaguides.banking.journal.TransactionJournalWriter;
+import net.javaguides.banking.repository.AccountBalanceSlotRepository;
+import net.javaguides.banking.repository.AccountRepository;
+import net.javaguides.banking.repository.OpeningBalanceBackfillRepository;
+import net.javaguides.banking.repository.TransactionRepository;
+import net.javaguides.banking.service.OpeningBalanceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 帳戶餘額 (accounts.balance + 子餘額槽 + 待投影列) 與交易紀錄 (含封存) 淨額的差額，就是舊帳戶開戶時沒有記錄的存款，
+ * 計算方式與對帳相同。每批帳戶在一個 REPEATABLE READ 交易中讀取同一個快照，快照之後提交的異動兩邊都看不到；
+ * 補登後差額為 0，重跑不會重複補登。
+ * <p>
+ * 帳戶沒有建立時間，開戶存款的時間戳取帳戶最早一筆交易的時間，沒有交易時取補登當下。
+ * 這筆紀錄的 ID 晚於它的時間戳，已建立的餘額檢查點由檢查點排程當作遲到紀錄補進去；月結單彙總在同一個交易中累加。
+ * 只是更正紀錄、帳戶餘額沒有變動，因此不寫入 outbox。
+ */
+@Service
+public class OpeningBalanceServiceImpl implements OpeningBalanceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OpeningBalanceServiceImpl.class);
+
+    // 每個交易處理的帳戶數
+    private static final int CHUNK_SIZE = 100;
+
+    private static final String PENDING_SQL = "SELECT account_id, SUM(signed_amount) FROM ledger_pending_events "
+            + "WHERE account_id >= ? AND account_id < ? GROUP BY account_id";
+
+    private OpeningBalanceBackfillRepository backfillRepository;
+
+    private AccountRepository accountRepository;
+
+    private TransactionRepository transactionRepository;
+
+    private AccountBalanceSlotRepository slotRepository;
+
+    private TransactionArchive transactionArchive;
+
+    private TransactionJournalWriter transactionJournalWriter;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate snapshotTemplate;
+
+    public OpeningBalanceServiceImpl(OpeningBalanceBackfillRepository backfillRepository,
+                                     AccountRepository accountRepository,
+                                     TransactionRepository transactionRepository,
+                                     AccountBalanceSlotRepository slotRepository,
+                                     TransactionArchive transactionArchive,
+                                     TransactionJournalWriter transactionJournalWriter,
+                                     JdbcTemplate jdbcTemplate,
+                                     PlatformTransactionManager transactionManager) {
+        this.backfillRepository = backfillRepository;
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.slotRepository = slotRepository;
+        this.transactionArchive = transactionArchive;
+        this.transactionJournalWriter = transactionJournalWriter;
+        this.jdbcTemplate = jdbcTemplate;
+        this.snapshotTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    @Override
+    public int backfillLegacy(int maxAccounts) {
+        int processed = 0;
+        while (processed < maxAccounts) {
+            int limit = Math.min(CHUNK_SIZE, maxAccounts - processed);
+            Integer accounts = snapshotTemplate.execute(status -> backfillNextChunk(limit));
+            processed += accounts;
+            if (accounts < limit) {
+                break;
+            }
+        }
+        return processed;
+    }
+
+    private int backfillNextChunk(int limit) {
+        OpeningBalanceBackfill progress = backfillRepository.findByNameForUpdate(OpeningBalanceBackfill.LEGACY)
+                .orElseGet(() -> backfillRepository.saveAndFlush(new OpeningBalanceBackfill(OpeningBalanceBackfill.LEGACY)));
+        if (progress.isCompleted()) {
+            return 0;
+        }
+        long from = progress.getLastAccountId() == null ? Long.MIN_VALUE : progress.getLastAccountId() + 1;
+        List<Long> accountIds = accountRepository.findIdsFrom(from, PageRequest.of(0, limit));
+        if (!accountIds.isEmpty()) {
+            long lower = accountIds.get(0);
+            long upper = accountIds.get(accountIds.size() - 1) + 1;
+            int recorded = backfillRange(accountIds, lower, upper);
+            if (recorded > 0) {
+                logger.info("帳戶ID[{}, {})補登{}筆開戶存款", lower, upper, recorded);
+            }
+            progress.setLastAccountId(accountIds.get(accountIds.size() - 1));
+        }
+        if (accountIds.size() < limit) {
+            progress.setCompleted(true);
+            logger.info("開戶存款補登完成");
+        }
+        return accountIds.size();
+    }
+
+    private int backfillRange(List<Long> accountIds, long lower, long upper) {
+        Map<Long, BigDecimal> ledger = new HashMap<>();
+        for (TransactionRepository.AccountNet net : transactionRepository.sumSignedAmountByAccountIdRange(lower, upper)) {
+            ledger.put(net.getAccountId(), net.getNet());
+        }
+        // 子餘額槽與待投影列：尚未併入 accounts.balance 的部分
+        Map<Long, BigDecimal> unmerged = new HashMap<>();
+        for (AccountBalanceSlotRepository.SlotTotal total : slotRepository.sumByAccountIdRange(lower, upper)) {
+            unmerged.put(total.getAccountId(), total.getTotal());
+        }
+        jdbcTemplate.query(PENDING_SQL, rs -> {
+            unmerged.merge(rs.getLong(1), rs.getBigDecimal(2), BigDecimal::add);
+        }, lower, upper);
+
+        int recorded = 0;
+        for (Account account : accountRepository.findAllById(accountIds)) {
+            Long accountId = account.getId();
+            Archived archived = archived(accountId);
+            BigDecimal balance = account.getBalance().add(unmerged.getOrDefault(accountId, BigDecimal.ZERO));
+            BigDecimal missing = balance.subtract(ledger.getOrDefault(accountId, BigDecimal.ZERO)).subtract(archived.net());
+            if (missing.signum() < 0) {
+                // 交易紀錄多於餘額不是缺少開戶存款，留給對帳回報
+                logger.warn("帳戶{}的交易紀錄淨額大於餘額,不補登開戶存款,差額:{}", accountId, missing);
+                continue;
+            }
+            if (missing.signum() == 0) {
+                continue;
+            }
+
+            Transaction opening = new Transaction();
+            opening.setAccountId(accountId);
+            opening.setAmount(missing);
+            opening.setTimestamp(openedAt(accountId, archived.firstTimestamp()));
+            opening.setTransactionType(TransactionType.DEPOSIT);
+            transactionJournalWriter.append(opening);
+            recorded++;
+            logger.debug("帳戶{}補登開戶存款:{},時間:{}", accountId, missing, opening.getTimestamp());
+        }
+        return recorded;
+    }
+
+    private LocalDateTime openedAt(Long accountId, LocalDateTime firstArchived) {
+        LocalDateTime first = transactionRepository.findFirstTimestampOf(accountId);
+        if (firstArchived != null && (first == null || firstArchived.isBefore(first))) {
+            first = firstArchived;
+        }
+        return first == null ? LocalDateTime.now() : first;
+    }
+
+    // 已移到封存檔的淨額與最早的時間；沒有封存檔時不會讀取磁碟
+    private Archived archived(Long accountId) {
+        BigDecimal[] net = {BigDecimal.ZERO};
+        LocalDateTime[] first = {null};
+        transactionArchive.forEachInRange(accountId, null, null, row -> {
+            net[0] = net[0].add(signed(row));
+            if (first[0] == null || row.getTimestamp().isBefore(first[0])) {
+                first[0] = row.getTimestamp();
+            }
+        });
+        return new Archived(net[0], first[0]);
+    }
+
+    private static BigDecimal signed(Transaction transaction) {
+        return transaction.getTransactionType() == TransactionType.DEPOSIT
+                || transaction.getTransactionType() == TransactionType.TRANSFER_IN
+                ? transaction.getAmount() : transaction.getAmount().negate();
+    }
+
+    private record Archived(BigDecimal net, LocalDateTime firstTimestamp) {
+    }
+}
@@ -0,0 +1,435 @@
+package net.javaguides.banking.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import net.javaguides.banking.archive.TransactionArchive;
+import net.javaguides.banking.dto.ReconciliationMismatchDTO;
+import net.javaguides.banking.dto.ReconciliationRunDTO;
+import net.javaguides.banking.entity.ReconciliationMismatch;
+import net.javaguides.banking.entity.ReconciliationRun;
+import net.javaguides.banking.entity.Transaction;
+import net.javaguides.banking.enums.ReconciliationStatus;
+import net.javaguides.banking.enums.TransactionType;
+import net.javaguides.banking.exception.AccountException;
+import net.javaguides.banking.repository.AccountBalanceSlotRepository;
+import net.javaguides.banking.repository.ReconciliationMismatchRepository;
+import net.javaguides.banking.repository.ReconciliationRunRepository;
+import net.javaguides.banking.repository.TransactionRepository;
+import net.javaguides.banking.service.ReconciliationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 平行核對每個帳戶的餘額 (accounts.balance + 子餘額槽 + 事件帳本尚未投影的待投影列) 是否等於交易紀錄的帶正負號總和 (含封存)。
+ * <p>
+ * 帳戶 ID 依 range-size 個帳戶切成連續的範圍，由 fork-join pool 平行處理。每個範圍在一個唯讀的 REPEATABLE READ 交易中
+ * 讀取 (同一個快照，不加鎖)，帳戶以資料庫游標串流讀取，交易淨額與子餘額槽以 ID 範圍彙總。
+ * 不一致的帳戶在新的快照中再核對一次，仍不一致才寫入報告，排除寫入或封存進行中造成的暫時性差異。
+ * <p>
+ * 範圍可能不依序完成，只有之前的範圍全部完成後才推進 resumeFromId；中斷後重做的範圍會先清除舊的結果。
+ * max-accounts-per-second 限制所有執行緒合計的處理速度，避免影響線上交易。
+ */
+@Service
+public class ReconciliationServiceImpl implements ReconciliationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReconciliationServiceImpl.class);
+
+    private static final int FETCH_SIZE = 1000;
+
+    private static final String PENDING_SQL = "SELECT account_id, SUM(signed_amount) FROM ledger_pending_events "
+            + "WHERE account_id >= ? AND account_id < ? GROUP BY account_id";
+
+    private ReconciliationRunRepository runRepository;
+
+    private ReconciliationMismatchRepository mismatchRepository;
+
+    private TransactionRepository transactionRepository;
+
+    private AccountBalanceSlotRepository slotRepository;
+
+    private TransactionArchive transactionArchive;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TransactionTemplate snapshotTemplate;
+
+    private final int parallelism;
+
+    private final int rangeSize;
+
+    private final long recheckDelayMs;
+
+    // 超過這段時間沒有更新的 RUNNING 對帳視為執行的節點已停止
+    private final Duration staleAfter;
+
+    private final Throttle throttle;
+
+    private final Counter accountsCounter;
+
+    private final Counter mismatchCounter;
+
+    private final Timer rangeTimer;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "reconciliation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ReconciliationServiceImpl(ReconciliationRunRepository runRepository,
+                                     ReconciliationMismatchRepository mismatchRepository,
+                                     TransactionRepository transactionRepository,
+                                     AccountBalanceSlotRepository slotRepository,
+                                     TransactionArchive transactionArchive,
+                                     JdbcTemplate jdbcTemplate,
+                                     PlatformTransactionManager transactionManager,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${banking.reconciliation.parallelism:4}") int parallelism,
+                                     @Value("${banking.reconciliation.range-size:1000}") int rangeSize,
+                                     @Value("${banking.reconciliation.max-accounts-per-second:0}") long maxAccountsPerSecond,
+                                     @Value("${banking.reconciliation.recheck-delay-ms:1000}") long recheckDelayMs,
+                                     @Value("${banking.reconciliation.stale-after-ms:300000}") long staleAfterMs) {
+        this.runRepository = runRepository;
+        this.mismatchRepository = mismatchRepository;
+        this.transactionRepository = transactionRepository;
+        this.slotRepository = slotRepository;
+        this.transactionArchive = transactionArchive;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTemplate.setReadOnly(true);
+        this.snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.parallelism = Math.max(1, parallelism);
+        this.rangeSize = Math.max(1, rangeSize);
+        this.recheckDelayMs = recheckDelayMs;
+        this.staleAfter = Duration.ofMillis(staleAfterMs);
+        this.throttle = new Throttle(maxAccountsPerSecond);
+        this.accountsCounter = Counter.builder("banking.reconciliation.accounts").register(meterRegistry);
+        this.mismatchCounter = Counter.builder("banking.reconciliation.mismatches").register(meterRegistry);
+        this.rangeTimer = Timer.builder("banking.reconciliation.range").register(meterRegistry);
+    }
+
+    @Override
+    public ReconciliationRunDTO start() {
+        if (!running.compareAndSet(false, true)) {
+            throw new AccountException("對帳作業已在執行中");
+        }
+        try {
+            ReconciliationRun run = claimRun();
+            coordinator.execute(() -> {
+                try {
+                    execute(run.getId());
+                } catch (RuntimeException e) {
+                    logger.error("對帳{}失敗,可重新開始以繼續:{}", run.getId(), e.getMessage(), e);
+                } finally {
+                    running.set(false);
+                }
+            });
+            return toDto(run);
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+    }
+
+    @Override
+    public ReconciliationRunDTO getRun(Long runId) {
+        return runRepository.findById(runId).map(ReconciliationServiceImpl::toDto)
+                .orElseThrow(() -> new AccountException("查無對帳紀錄:" + runId));
+    }
+
+    @Override
+    public Slice<ReconciliationMismatchDTO> getMismatches(Long runId, Pageable pageable) {
+        return mismatchRepository.findByRunIdOrderByAccountId(runId, pageable)
+                .map(mismatch -> new ReconciliationMismatchDTO(mismatch.getAccountId(), mismatch.getBalance(),
+                        mismatch.getLedgerBalance(), mismatch.getBalance().subtract(mismatch.getLedgerBalance())));
+    }
+
+    /**
+     * 接手最近一次失敗或已停止的對帳；其他節點仍在執行時拋出例外；否則建立新的對帳。
+     */
+    ReconciliationRun claimRun() {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            ReconciliationRun latest = runRepository.findFirstByOrderByIdDesc().orElse(null);
+            if (latest != null && latest.getStatus() == ReconciliationStatus.RUNNING
+                    && latest.getUpdatedAt().isAfter(now.minus(staleAfter))) {
+                throw new AccountException("對帳作業已在其他節點執行中:" + latest.getId());
+            }
+            if (latest != null && latest.getStatus() != ReconciliationStatus.COMPLETED) {
+                logger.info("從帳戶ID{}繼續對帳{}", latest.getResumeFromId(), latest.getId());
+                latest.setStatus(ReconciliationStatus.RUNNING);
+                latest.setUpdatedAt(now);
+                return latest;
+            }
+            return runRepository.save(new ReconciliationRun(now));
+        });
+    }
+
+    /**
+     * 依序切出範圍交給 fork-join pool，同時最多 parallelism * 2 個範圍在處理中，完成的範圍依序推進進度。
+     */
+    void execute(Long runId) {
+        ReconciliationRun initial = runRepository.findById(runId).orElseThrow();
+        long segmentStarted = System.nanoTime();
+        long elapsedBefore = initial.getElapsedMs();
+        long lower = initial.getResumeFromId() == null ? Long.MIN_VALUE : initial.getResumeFromId();
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("reconciliation-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+        BlockingQueue<RangeResult> done = new LinkedBlockingQueue<>();
+        TreeMap<Integer, RangeResult> outOfOrder = new TreeMap<>();
+        int nextSequence = 0;
+        int nextToRecord = 0;
+        int inFlight = 0;
+        boolean more = true;
+        try {
+            while (more || inFlight > 0) {
+                while (more && inFlight < parallelism * 2) {
+                    Long upper = nextBoundary(lower);
+                    Range range = new Range(nextSequence++, lower, upper == null ? Long.MAX_VALUE : upper);
+                    pool.execute(() -> done.add(process(runId, range)));
+                    inFlight++;
+                    more = upper != null;
+                    lower = more ? upper : lower;
+                }
+
+                RangeResult result = done.take();
+                inFlight--;
+                if (result.failure() != null) {
+                    throw new IllegalStateException("對帳範圍[" + result.range().lower() + ", " + result.range().upper() + ")失敗", result.failure());
+                }
+                outOfOrder.put(result.range().sequence(), result);
+                List<RangeResult> completed = new ArrayList<>();
+                while (outOfOrder.containsKey(nextToRecord)) {
+                    completed.add(outOfOrder.remove(nextToRecord++));
+                }
+                if (!completed.isEmpty()) {
+                    long elapsedMs = elapsedBefore + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - segmentStarted);
+                    recordProgress(runId, completed, elapsedMs, !more && inFlight == 0);
+                }
+            }
+            ReconciliationRun finished = runRepository.findById(runId).orElseThrow();
+            logger.info("對帳{}完成,核對{}個帳戶,{}個不一致,每秒{}個帳戶", runId, finished.getAccountsChecked(),
+                    finished.getMismatchCount(), String.format("%.0f", toDto(finished).accountsPerSecond()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            markFailed(runId);
+            throw new IllegalStateException("對帳被中斷", e);
+        } catch (RuntimeException e) {
+            markFailed(runId);
+            throw e;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // 第 range-size 個帳戶的 ID，即下一個範圍的起點 (只走主鍵索引)；剩下的帳戶不足一個範圍時為 null
+    private Long nextBoundary(long lower) {
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM accounts WHERE id >= ? ORDER BY id LIMIT 1 OFFSET " + rangeSize,
+                Long.class, lower);
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
+    private RangeResult process(Long runId, Range range) {
+        try {
+            throttle.acquire(rangeSize);
+            long started = System.nanoTime();
+
+            List<ReconciliationMismatch> mismatches = new ArrayList<>();
+            int[] checked = {0};
+            Map<Long, ReconciliationMismatch> suspects = snapshotTemplate.execute(status -> compare(runId, range, checked));
+            if (!suspects.isEmpty()) {
+                if (recheckDelayMs > 0) {
+                    Thread.sleep(recheckDelayMs);
+                }
+                Map<Long, ReconciliationMismatch> again = snapshotTemplate.execute(status -> compare(runId, range, new int[1]));
+                suspects.keySet().stream().filter(again::containsKey).sorted().forEach(id -> mismatches.add(again.get(id)));
+            }
+
+            transactionTemplate.executeWithoutResult(status -> {
+                mismatchRepository.deleteRange(runId, range.lower(), range.upper());
+                mismatchRepository.saveAll(mismatches);
+            });
+
+            rangeTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            accountsCounter.increment(checked[0]);
+            mismatchCounter.increment(mismatches.size());
+            return new RangeResult(range, checked[0], mismatches.size(), null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new RangeResult(range, 0, 0, e);
+        } catch (RuntimeException e) {
+            return new RangeResult(range, 0, 0, e);
+        }
+    }
+
+    /**
+     * 在同一個快照中讀取範圍內的交易淨額、子餘額槽、待投影列與帳戶餘額，回傳不一致的帳戶。
+     * <p>
+     * 事件溯源模式下交易紀錄先提交、之後才投影進 accounts.balance，尚未投影的部分在 ledger_pending_events；
+     * 其他寫入模式這張表是空的。
+     */
+    private Map<Long, ReconciliationMismatch> compare(Long runId, Range range, int[] checked) {
+        Map<Long, BigDecimal> ledger = new HashMap<>();
+        for (TransactionRepository.AccountNet net : transactionRepository.sumSignedAmountByAccountIdRange(range.lower(), range.upper())) {
+            ledger.put(net.getAccountId(), net.getNet());
+        }
+        // 子餘額槽與待投影列：尚未併入 accounts.balance 的部分
+        Map<Long, BigDecimal> unmerged = new HashMap<>();
+        for (AccountBalanceSlotRepository.SlotTotal total : slotRepository.sumByAccountIdRange(range.lower(), range.upper())) {
+            unmerged.put(total.getAccountId(), total.getTotal());
+        }
+        jdbcTemplate.query(PENDING_SQL, rs -> {
+            unmerged.merge(rs.getLong(1), rs.getBigDecimal(2), BigDecimal::add);
+        }, range.lower(), range.upper());
+        boolean archived = transactionArchive.hasFiles();
+
+        Map<Long, ReconciliationMismatch> mismatches = new HashMap<>();
+        jdbcTemplate.query(con -> {
+            PreparedStatement statement = con.prepareStatement(
+                    "SELECT id, balance FROM accounts WHERE id >= ? AND id < ? ORDER BY id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(FETCH_SIZE);
+            statement.setLong(1, range.lower());
+            statement.setLong(2, range.upper());
+            return statement;
+        }, (ResultSet rs) -> {
+            long accountId = rs.getLong(1);
+            BigDecimal balance = rs.getBigDecimal(2).add(unmerged.getOrDefault(accountId, BigDecimal.ZERO));
+            BigDecimal expected = ledger.getOrDefault(accountId, BigDecimal.ZERO);
+            if (archived) {
+                expected = expected.add(archivedNet(accountId));
+            }
+            if (balance.compareTo(expected) != 0) {
+                mismatches.put(accountId, new ReconciliationMismatch(runId, accountId, balance, expected));
+            }
+            checked[0]++;
+        });
+        return mismatches;
+    }
+
+    private BigDecimal archivedNet(Long accountId) {
+        BigDecimal[] net = {BigDecimal.ZERO};
+        transactionArchive.forEachInRange(accountId, null, null, row -> net[0] = net[0].add(signed(row)));
+        return net[0];
+    }
+
+    private static BigDecimal signed(Transaction transaction) {
+        return transaction.getTransactionType() == TransactionType.DEPOSIT
+                || transaction.getTransactionType() == TransactionType.TRANSFER_IN
+                ? transaction.getAmount() : transaction.getAmount().negate();
+    }
+
+    private void recordProgress(Long runId, List<RangeResult> completed, long elapsedMs, boolean finished) {
+        transactionTemplate.executeWithoutResult(status -> {
+            ReconciliationRun run = runRepository.findById(runId).orElseThrow();
+            for (RangeResult result : completed) {
+                run.setRangesCompleted(run.getRangesCompleted() + 1);
+                run.setAccountsChecked(run.getAccountsChecked() + result.checked());
+                run.setMismatchCount(run.getMismatchCount() + result.mismatches());
+                run.setResumeFromId(result.range().upper());
+            }
+            LocalDateTime now = LocalDateTime.now();
+            run.setElapsedMs(elapsedMs);
+            run.setUpdatedAt(now);
+            if (finished) {
+                run.setStatus(ReconciliationStatus.COMPLETED);
+                run.setFinishedAt(now);
+            }
+        });
+    }
+
+    private void markFailed(Long runId) {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    runRepository.findById(runId).ifPresent(run -> run.setStatus(ReconciliationStatus.FAILED)));
+        } catch (RuntimeException e) {
+            logger.warn("無法標記對帳{}失敗:{}", runId, e.getMessage());
+        }
+    }
+
+    private static ReconciliationRunDTO toDto(ReconciliationRun run) {
+        double accountsPerSecond = run.getElapsedMs() == 0 ? 0.0 : run.getAccountsChecked() * 1000.0 / run.getElapsedMs();
+        return new ReconciliationRunDTO(run.getId(), run.getStatus(), run.getStartedAt(), run.getFinishedAt(), run.getResumeFromId(),
+                run.getRangesCompleted(), run.getAccountsChecked(), run.getMismatchCount(), accountsPerSecond);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        coordinator.shutdownNow();
+    }
+
+    // sequence 為範圍切出的順序，用來依序推進進度
+    private record Range(int sequence, long lower, long upper) {
+    }
+
+    private record RangeResult(Range range, int checked, int mismatches, Exception failure) {
+    }
+
+    /**
+     * 所有執行緒共用的固定速率節流：每個範圍開始前預約 n 個帳戶的處理時間，預約時間還沒到就先等待。
+     */
+    private static final class Throttle {
+
+        private final long nanosPerAccount;
+
+        private long nextFree = System.nanoTime();
+
+        Throttle(long maxAccountsPerSecond) {
+            this.nanosPerAccount = maxAccountsPerSecond <= 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / maxAccountsPerSecond;
+        }
+
+        void acquire(int accounts) throws InterruptedException {
+            if (nanosPerAccount == 0) {
+                return;
+            }
+            long wait;
+            synchronized (this) {
+                long now = System.nanoTime();
+                long start = Math.max(now, nextFree);
+                nextFree = start + accounts * nanosPerAccount;
+                wait = start - now;
+            }
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package net.javaguides.banking.service.impl;
+
+import net.javaguides.banking.dto.AccountDto;
+import net.javaguides.banking.dto.AccountFilter;
+import net.javaguides.banking.dto.AccountVersionDTO;
+import net.javaguides.banking.dto.BatchTransferRequestDTO;
+import net.javaguides.banking.dto.BatchTransferResultDTO;
+import net.javaguides.banking.dto.CursorPageResponseDTO;
+import net.javaguides.banking.dto.TransactionDTO;
+import net.javaguides.banking.dto.TransferFundDTO;
+import net.javaguides.banking.dto.VersionedAccountDTO;
+import net.javaguides.banking.exception.AccountException;
+import net.javaguides.banking.sequencer.AccountCommand;
+import net.javaguides.banking.sequencer.AccountCommandSequencer;
+import net.javaguides.banking.service.AccountService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * banking.write-path=sequenced 時使用的 AccountService：
+ * 存款、提款、轉帳交給 {@link AccountCommandSequencer}，其餘操作沿用 {@link AccountServiceImpl}。
+ * 本類別不開啟交易，等待指令完成的請求執行緒不會佔用資料庫連線。
+ */
+@Primary
+@Service
+@ConditionalOnProperty(name = "banking.write-path", havingValue = "sequenced")
+public class SequencedAccountService implements AccountService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SequencedAccountService.class);
+
+    private AccountService accountService;
+
+    private AccountCommandSequencer accountCommandSequencer;
+
+    public SequencedAccountService(AccountServiceImpl accountService,
+                                   AccountCommandSequencer accountCommandSequencer) {
+        this.accountService = accountService;
+        this.accountCommandSequencer = accountCommandSequencer;
+    }
+
+    @Override
+    public AccountDto createAccount(AccountDto accountDto) {
+        return accountService.createAccount(accountDto);
+    }
+
+    @Override
+    public AccountDto getAccountById(Long id) {
+        return accountService.getAccountById(id);
+    }
+
+    @Override
+    public VersionedAccountDTO getVersionedAccountById(Long id) {
+        return accountService.getVersionedAccountById(id);
+    }
+
+    @Override
+    public Optional<AccountVersionDTO> getAccountVersion(Long id) {
+        return accountService.getAccountVersion(id);
+    }
+
+    @Override
+    public AccountDto deposit(Long id, BigDecimal amount) {
+        logger.info("序列器模式:儲蓄{}進入帳號:{}", amount, id);
+        return accountCommandSequencer.execute(new AccountCommand.Deposit(id, amount));
+    }
+
+    @Override
+    public AccountDto withdraw(Long id, BigDecimal amount) {
+        logger.info("序列器模式:從帳號{}取款{}", id, amount);
+        return accountCommandSequencer.execute(new AccountCommand.Withdraw(id, amount));
+    }
+
+    @Override
+    public Page<AccountDto> getAllAccounts(AccountFilter filter, Pageable pageable) {
+        return accountService.getAllAccounts(filter, pageable);
+    }
+
+    @Override
+    public Slice<AccountDto> getAllAccountsSlice(AccountFilter filter, Pageable pageable) {
+        return accountService.getAllAccountsSlice(filter, pageable);
+    }
+
+    @Override
+    public List<AccountDto> searchAccounts(String query, int limit) {
+        return accountService.searchAccounts(query, limit);
+    }
+
+    @Override
+    public void deleteAccount(Long id) {
+        accountService.deleteAccount(id);
+    }
+
+    @Override
+    public void transferFunds(TransferFundDTO transferFundDTO) {
+        if (transferFundDTO.fromAccountId().equals(transferFundDTO.toAccountId())) {
+            logger.error("轉帳失敗,不能轉帳給相同的帳號{}", transferFundDTO.fromAccountId());
+            throw new AccountException("不能轉帳到相同帳戶");
+        }
+        accountCommandSequencer.execute(new AccountCommand.Transfer(
+                transferFundDTO.fromAccountId(), transferFundDTO.toAccountId(), transferFundDTO.amount()));
+    }
+
+    /**
+     * 批次轉帳不經過序列器：整批帳戶一次鎖定後在同一個交易內完成，
+     * 序列器中同帳戶的批次會因 @Version 衝突而重新載入重試。
+     */
+    @Override
+    public BatchTransferResultDTO transferFundsBatch(BatchTransferRequestDTO batchTransferRequestDTO) {
+        return accountService.transferFundsBatch(batchTransferRequestDTO);
+    }
+
+    @Override
+    public Page<TransactionDTO> getAccountTransactions(Long accountId, Pageable pageable) {
+        return accountService.getAccountTransactions(accountId, pageable);
+    }
+
+    @Override
+    public Slice<TransactionDTO> getAccountTransactionsSlice(Long accountId, Pageable pageable) {
+        return accountService.getAccountTransactionsSlice(accountId, pageable);
+    }
+
+    @Override
+    public CursorPageResponseDTO<TransactionDTO> getAccountTransactionsByCursor(Long accountId, String cursor, int pageSize) {
+        return accountService.getAccountTransactionsByCursor(accountId, cursor, pageSize);
+    }
+
+    @Override
+    public AccountDto changeHotSlots(Long id, int slots) {
+        return accountService.changeHotSlots(id, slots);
+    }
+}
@@ -0,0 +1,40 @@
+package net.javaguides.banking.service.impl;
+
+import net.javaguides.banking.service.StatementService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 定期為彙總上線前的交易紀錄補齊月結單彙總，accounts-per-run 為 0 時停用。
+ */
+@Component
+public class StatementRollupBackfillScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatementRollupBackfillScheduler.class);
+
+    private StatementService statementService;
+
+    private final int accountsPerRun;
+
+    public StatementRollupBackfillScheduler(StatementService statementService,
+                                            @Value("${banking.statement-rollup.backfill-accounts-per-run:1000}") int accountsPerRun) {
+        this.statementService = statementService;
+        this.accountsPerRun = accountsPerRun;
+    }
+
+    @Scheduled(initialDelayString = "${banking.statement-rollup.backfill-interval-ms:60000}",
+            fixedDelayString = "${banking.statement-rollup.backfill-interval-ms:60000}")
+    public void backfill() {
+        if (accountsPerRun <= 0) {
+            return;
+        }
+        try {
+            statementService.backfillLegacy(accountsPerRun);
+        } catch (RuntimeException e) {
+            logger.warn("月結單彙總補齊失敗,下次排程再試:{}", e.getMessage());
+        }
+    }
+}
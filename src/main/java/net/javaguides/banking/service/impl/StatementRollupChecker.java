@@ -0,0 +1,43 @@
+package net.javaguides.banking.service.impl;
+
+import net.javaguides.banking.service.StatementService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 在背景定期抽樣核對月結單彙總，sample-size 為 0 時停用。
+ */
+@Component
+public class StatementRollupChecker {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatementRollupChecker.class);
+
+    private StatementService statementService;
+
+    private final int sampleSize;
+
+    public StatementRollupChecker(StatementService statementService,
+                                  @Value("${banking.statement-rollup.check-sample-size:20}") int sampleSize) {
+        this.statementService = statementService;
+        this.sampleSize = sampleSize;
+    }
+
+    @Scheduled(initialDelayString = "${banking.statement-rollup.check-interval-ms:300000}",
+            fixedDelayString = "${banking.statement-rollup.check-interval-ms:300000}")
+    public void check() {
+        if (sampleSize <= 0) {
+            return;
+        }
+        try {
+            int drifted = statementService.checkConsistency(sampleSize);
+            if (drifted > 0) {
+                logger.warn("月結單彙總抽樣{}個帳戶,{}個月份不一致", sampleSize, drifted);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("月結單彙總核對失敗,下次排程再試:{}", e.getMessage());
+        }
+    }
+}
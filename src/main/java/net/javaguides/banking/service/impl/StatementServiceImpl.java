@@ -0,0 +1,290 @@
+package net.javaguides.banking.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.javaguides.banking.archive.TransactionArchive;
+import net.javaguides.banking.dto.MonthlyStatementDTO;
+import net.javaguides.banking.entity.StatementRollup;
+import net.javaguides.banking.entity.StatementRollupBackfill;
+import net.javaguides.banking.enums.TransactionType;
+import net.javaguides.banking.repository.AccountRepository;
+import net.javaguides.banking.repository.StatementRollupBackfillRepository;
+import net.javaguides.banking.repository.StatementRollupRepository;
+import net.javaguides.banking.repository.TransactionRepository;
+import net.javaguides.banking.security.AccountLoadContext;
+import net.javaguides.banking.service.StatementService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 指標：banking.statement_rollup.checked (抽樣的帳戶數) / banking.statement_rollup.drift (不一致的月份數)。
+ */
+@Service
+public class StatementServiceImpl implements StatementService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatementServiceImpl.class);
+
+    // 補齊的彙總寫在這個 stripe：寫入路徑只使用 0 以上的 stripe，補齊不會與即時累加更新同一列
+    static final int BACKFILL_STRIPE = -1;
+
+    // 補齊時每個交易處理的帳戶數
+    private static final int BACKFILL_CHUNK_SIZE = 100;
+
+    private StatementRollupRepository statementRollupRepository;
+
+    private TransactionRepository transactionRepository;
+
+    private AccountRepository accountRepository;
+
+    private AccountLoadContext accountLoadContext;
+
+    private TransactionArchive transactionArchive;
+
+    private StatementRollupBackfillRepository backfillRepository;
+
+    private final TransactionTemplate snapshotTemplate;
+
+    private final Counter checked;
+
+    private final Counter drift;
+
+    public StatementServiceImpl(StatementRollupRepository statementRollupRepository, TransactionRepository transactionRepository,
+                                AccountRepository accountRepository, AccountLoadContext accountLoadContext, TransactionArchive transactionArchive,
+                                StatementRollupBackfillRepository backfillRepository, PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry) {
+        this.statementRollupRepository = statementRollupRepository;
+        this.transactionRepository = transactionRepository;
+        this.accountRepository = accountRepository;
+        this.accountLoadContext = accountLoadContext;
+        this.transactionArchive = transactionArchive;
+        this.backfillRepository = backfillRepository;
+        this.snapshotTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.checked = meterRegistry.counter("banking.statement_rollup.checked");
+        this.drift = meterRegistry.counter("banking.statement_rollup.drift");
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public MonthlyStatementDTO getMonthlyStatement(Long accountId, YearMonth month) {
+        accountLoadContext.requireExists(accountId, accountRepository::existsById);
+
+        LocalDate firstDay = month.atDay(1);
+        BigDecimal opening = statementRollupRepository.sumSignedBefore(accountId, firstDay);
+
+        Map<TransactionType, BigDecimal> totals = new EnumMap<>(TransactionType.class);
+        long count = 0;
+        BigDecimal closing = opening;
+        for (StatementRollupRepository.TypeTotal total : statementRollupRepository.findMonthTotals(accountId, firstDay)) {
+            totals.put(total.getTransactionType(), total.getTotalAmount());
+            count += total.getTransactionCount();
+            closing = isCredit(total.getTransactionType()) ? closing.add(total.getTotalAmount()) : closing.subtract(total.getTotalAmount());
+        }
+
+        logger.info("產生帳戶{}的{}月結單,筆數:{}", accountId, month, count);
+        return new MonthlyStatementDTO(accountId, month, opening, closing, count, totals);
+    }
+
+    /**
+     * 彙總與交易紀錄在同一個交易中寫入，同一個快照內兩邊讀到的資料應完全一致。
+     * 以主鍵隨機定位帳戶 (不需要 ORDER BY RAND() 全表掃描)，核對帳戶的每一個月份，沒有彙總的月份也會被發現。
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    @Override
+    public int checkConsistency(int sampleSize) {
+        Long first = accountRepository.findMinId();
+        Long last = accountRepository.findMaxId();
+        if (first == null || last == null) {
+            return 0;
+        }
+
+        Set<Long> seen = new HashSet<>();
+        int drifted = 0;
+        for (int i = 0; i < sampleSize; i++) {
+            long probe = ThreadLocalRandom.current().nextLong(first, last + 1);
+            Long accountId = accountRepository.findIdsFrom(probe, PageRequest.of(0, 1)).stream().findFirst().orElse(last);
+            if (!seen.add(accountId)) {
+                continue;
+            }
+            checked.increment();
+            int months = driftedMonths(accountId);
+            drifted += months;
+            drift.increment(months);
+        }
+        return drifted;
+    }
+
+    /**
+     * 以可重複讀的快照逐批處理帳戶：同一個快照中交易紀錄與彙總的差額，就是沒有被彙總累加過的紀錄 (彙總上線前寫入的)。
+     * 寫入路徑在同一個交易中新增紀錄與累加彙總，快照之後提交的紀錄兩邊都看不到，不會重複計算；差額寫在 BACKFILL_STRIPE。
+     */
+    @Override
+    public int backfillLegacy(int maxAccounts) {
+        int processed = 0;
+        while (processed < maxAccounts) {
+            int limit = Math.min(BACKFILL_CHUNK_SIZE, maxAccounts - processed);
+            Integer accounts = snapshotTemplate.execute(status -> backfillNextChunk(limit));
+            processed += accounts;
+            if (accounts < limit) {
+                break;
+            }
+        }
+        if (processed > 0) {
+            logger.info("補齊{}個帳戶的月結單彙總", processed);
+        }
+        return processed;
+    }
+
+    private int backfillNextChunk(int limit) {
+        StatementRollupBackfill progress = backfillRepository.findByNameForUpdate(StatementRollupBackfill.LEGACY)
+                .orElseGet(() -> backfillRepository.saveAndFlush(new StatementRollupBackfill(StatementRollupBackfill.LEGACY)));
+        if (progress.isCompleted()) {
+            return 0;
+        }
+        long from = progress.getLastAccountId() == null ? Long.MIN_VALUE : progress.getLastAccountId() + 1;
+        List<Long> accountIds = accountRepository.findIdsFrom(from, PageRequest.of(0, limit));
+        for (Long accountId : accountIds) {
+            backfillAccount(accountId);
+        }
+        if (!accountIds.isEmpty()) {
+            progress.setLastAccountId(accountIds.get(accountIds.size() - 1));
+        }
+        if (accountIds.size() < limit) {
+            progress.setCompleted(true);
+            logger.info("月結單彙總補齊完成");
+        }
+        return accountIds.size();
+    }
+
+    private void backfillAccount(Long accountId) {
+        Map<MonthType, Total> missing = transactionTotals(accountId);
+        rollupTotals(accountId).forEach((key, total) -> missing.merge(key, total.negate(), Total::plus));
+
+        missing.forEach((key, total) -> {
+            if (total.isZero()) {
+                return;
+            }
+            if (total.count() < 0 || total.amount().signum() < 0) {
+                // 彙總多於交易紀錄不是缺少舊資料，留給抽樣核對回報
+                logger.warn("月結單彙總多於交易紀錄,不補齊,帳戶:{},月份:{},類型:{}", accountId, YearMonth.from(key.month()), key.transactionType());
+                return;
+            }
+            // 重新補齊時 (例如重設進度) 累加到既有的補齊列，不違反唯一鍵
+            StatementRollup rollup = statementRollupRepository
+                    .findByAccountIdAndMonthAndTransactionTypeAndStripe(accountId, key.month(), key.transactionType(), BACKFILL_STRIPE)
+                    .orElseGet(() -> newBackfillRow(accountId, key));
+            rollup.setTotalAmount(rollup.getTotalAmount().add(total.amount()));
+            rollup.setTransactionCount(rollup.getTransactionCount() + total.count());
+            statementRollupRepository.save(rollup);
+            logger.debug("補齊帳戶{}在{}的{}彙總:{}", accountId, YearMonth.from(key.month()), key.transactionType(), describe(total.amount(), total.count()));
+        });
+    }
+
+    private static StatementRollup newBackfillRow(Long accountId, MonthType key) {
+        StatementRollup rollup = new StatementRollup();
+        rollup.setAccountId(accountId);
+        rollup.setMonth(key.month());
+        rollup.setTransactionType(key.transactionType());
+        rollup.setStripe(BACKFILL_STRIPE);
+        rollup.setTotalAmount(BigDecimal.ZERO);
+        return rollup;
+    }
+
+    private int driftedMonths(Long accountId) {
+        Map<MonthType, Total> expected = transactionTotals(accountId);
+        Map<MonthType, Total> actual = rollupTotals(accountId);
+
+        Set<LocalDate> months = new TreeSet<>();
+        expected.keySet().forEach(key -> months.add(key.month()));
+        actual.keySet().forEach(key -> months.add(key.month()));
+        int drifted = 0;
+        for (LocalDate month : months) {
+            Map<TransactionType, String> fromTransactions = summarize(expected, month);
+            Map<TransactionType, String> fromRollups = summarize(actual, month);
+            if (!fromTransactions.equals(fromRollups)) {
+                drifted++;
+                logger.warn("月結單彙總與交易紀錄不一致,帳戶:{},月份:{},交易紀錄:{},彙總:{}",
+                        accountId, YearMonth.from(month), fromTransactions, fromRollups);
+            }
+        }
+        return drifted;
+    }
+
+    // 月份的一部分可能已經移到封存檔，兩邊合計才是完整的交易紀錄
+    private Map<MonthType, Total> transactionTotals(Long accountId) {
+        Map<MonthType, Total> totals = collect(transactionRepository.sumByMonthAndType(accountId));
+        transactionArchive.forEachInRange(accountId, null, null, row -> totals.merge(
+                new MonthType(row.getTimestamp().toLocalDate().withDayOfMonth(1), row.getTransactionType()),
+                new Total(row.getAmount(), 1), Total::plus));
+        return totals;
+    }
+
+    private Map<MonthType, Total> rollupTotals(Long accountId) {
+        return collect(statementRollupRepository.sumByMonthAndType(accountId));
+    }
+
+    private static Map<MonthType, Total> collect(List<StatementRollupRepository.MonthTypeTotal> rows) {
+        Map<MonthType, Total> totals = new HashMap<>();
+        for (StatementRollupRepository.MonthTypeTotal row : rows) {
+            totals.merge(new MonthType(LocalDate.of(row.getStatementYear(), row.getStatementMonth(), 1), row.getTransactionType()),
+                    new Total(row.getTotalAmount(), row.getTransactionCount()), Total::plus);
+        }
+        return totals;
+    }
+
+    // 金額去掉尾端的 0 後比較，避免 SUM 結果的精度不同造成誤判
+    private static Map<TransactionType, String> summarize(Map<MonthType, Total> totals, LocalDate month) {
+        Map<TransactionType, String> summary = new EnumMap<>(TransactionType.class);
+        totals.forEach((key, total) -> {
+            if (key.month().equals(month) && !total.isZero()) {
+                summary.put(key.transactionType(), describe(total.amount(), total.count()));
+            }
+        });
+        return summary;
+    }
+
+    private static String describe(BigDecimal amount, Long count) {
+        return amount.stripTrailingZeros().toPlainString() + " x" + count;
+    }
+
+    private static boolean isCredit(TransactionType type) {
+        return type == TransactionType.DEPOSIT || type == TransactionType.TRANSFER_IN;
+    }
+
+    private record MonthType(LocalDate month, TransactionType transactionType) {
+    }
+
+    private record Total(BigDecimal amount, long count) {
+
+        Total plus(Total other) {
+            return new Total(amount.add(other.amount), count + other.count);
+        }
+
+        Total negate() {
+            return new Total(amount.negate(), -count);
+        }
+
+        boolean isZero() {
+            return count == 0 && amount.signum() == 0;
+        }
+    }
+}
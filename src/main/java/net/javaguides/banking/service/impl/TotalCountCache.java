@@ -0,0 +1,95 @@
+package net.javaguides.banking.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.LongSupplier;
+
+/**
+ * 分頁總筆數的近似快取，讓 COUNT(*) 不必在每一頁的請求中執行。
+ * <p>
+ * 第一次查詢時同步計算；超過 ttl 後先回傳舊值，同時在背景重新計算 (同一個 key 同時只會有一個計算)。
+ * 查到最後一頁時呼叫端可以直接算出精確總數並以 {@link #record} 更新。
+ */
+@Component
+public class TotalCountCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(TotalCountCache.class);
+
+    private final Map<String, Entry> totals;
+
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "total-count-refresher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final long ttlMs;
+
+    public TotalCountCache(@Value("${banking.count-cache.ttl-ms:30000}") long ttlMs,
+                           @Value("${banking.count-cache.max-entries:10000}") int maxEntries) {
+        this.ttlMs = ttlMs;
+        this.totals = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public long total(String key, LongSupplier counter) {
+        Entry entry;
+        synchronized (totals) {
+            entry = totals.get(key);
+        }
+        if (entry == null) {
+            long total = counter.getAsLong();
+            record(key, total);
+            return total;
+        }
+        if (System.currentTimeMillis() - entry.computedAt() > ttlMs && refreshing.add(key)) {
+            try {
+                refresher.execute(() -> refresh(key, counter));
+            } catch (RejectedExecutionException e) {
+                refreshing.remove(key);
+            }
+        }
+        return entry.total();
+    }
+
+    public void record(String key, long total) {
+        synchronized (totals) {
+            totals.put(key, new Entry(total, System.currentTimeMillis()));
+        }
+    }
+
+    private void refresh(String key, LongSupplier counter) {
+        try {
+            record(key, counter.getAsLong());
+        } catch (RuntimeException e) {
+            logger.warn("重新計算總筆數失敗,key:{},沿用舊值:{}", key, e.getMessage());
+        } finally {
+            refreshing.remove(key);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    private record Entry(long total, long computedAt) {
+    }
+}
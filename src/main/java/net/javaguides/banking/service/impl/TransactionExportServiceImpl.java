@@ -0,0 +1,147 @@
+package net.javaguides.banking.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import net.javaguides.banking.archive.TransactionArchive;
+import net.javaguides.banking.dto.TransactionDTO;
+import net.javaguides.banking.entity.Transaction;
+import net.javaguides.banking.enums.TransactionExportFormat;
+import net.javaguides.banking.exception.AccountException;
+import net.javaguides.banking.repository.AccountRepository;
+import net.javaguides.banking.repository.TransactionRepository;
+import net.javaguides.banking.security.AccountLoadContext;
+import net.javaguides.banking.service.TransactionExportService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * 以 forward-only 游標逐筆讀取交易紀錄並直接寫入回應。
+ * 每筆寫出後立即 detach，persistence context 不會隨匯出筆數成長。
+ * 已封存的紀錄都比資料表中的舊，先依序寫出封存檔中的部分再接著寫資料表中的紀錄。
+ */
+@Service
+public class TransactionExportServiceImpl implements TransactionExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionExportServiceImpl.class);
+
+    // 未指定區間時使用的上下限 (MySQL DATETIME 的範圍)
+    static final LocalDateTime EARLIEST = LocalDateTime.of(1000, 1, 1, 0, 0);
+    static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
+    static final String CSV_HEADER = "id,accountId,amount,transactionType,timestamp";
+
+    private TransactionRepository transactionRepository;
+
+    private AccountRepository accountRepository;
+
+    private AccountLoadContext accountLoadContext;
+
+    private EntityManager entityManager;
+
+    private ObjectMapper objectMapper;
+
+    private TransactionArchive transactionArchive;
+
+    public TransactionExportServiceImpl(TransactionRepository transactionRepository, AccountRepository accountRepository,
+                                        AccountLoadContext accountLoadContext, EntityManager entityManager, ObjectMapper objectMapper,
+                                        TransactionArchive transactionArchive) {
+        this.transactionRepository = transactionRepository;
+        this.accountRepository = accountRepository;
+        this.accountLoadContext = accountLoadContext;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.transactionArchive = transactionArchive;
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public void validateExport(Long accountId, LocalDateTime from, LocalDateTime to) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new AccountException("from 必須早於 to");
+        }
+        accountLoadContext.requireExists(accountId, accountRepository::existsById);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public long exportTransactions(Long accountId, LocalDateTime from, LocalDateTime to, TransactionExportFormat format, OutputStream outputStream) throws IOException {
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+
+        if (format == TransactionExportFormat.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+
+        long[] archived = {0};
+        try {
+            transactionArchive.forEachInRange(accountId, from, to, transaction -> {
+                try {
+                    writeRow(writer, transaction, format);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                archived[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        long rows = archived[0];
+        try (Stream<Transaction> transactions = transactionRepository.streamForExport(accountId,
+                from != null ? from : EARLIEST, to != null ? to : LATEST)) {
+            Iterator<Transaction> iterator = transactions.iterator();
+            while (iterator.hasNext()) {
+                Transaction transaction = iterator.next();
+                entityManager.detach(transaction);
+                writeRow(writer, transaction, format);
+                rows++;
+            }
+        }
+        writer.flush();
+
+        logger.info("匯出交易紀錄完成,帳戶:{},格式:{},筆數:{}", accountId, format, rows);
+
+        return rows;
+    }
+
+    private void writeRow(Writer writer, Transaction transaction, TransactionExportFormat format) throws IOException {
+        if (format == TransactionExportFormat.CSV) {
+            writeCsvRow(writer, transaction);
+        } else {
+            writer.write(objectMapper.writeValueAsString(new TransactionDTO(
+                    transaction.getId(),
+                    transaction.getAccountId(),
+                    transaction.getAmount(),
+                    transaction.getTransactionType(),
+                    transaction.getTimestamp())));
+        }
+        writer.write('\n');
+    }
+
+    // 欄位皆為數字、列舉與 ISO 時間，不含逗號或引號，不需要跳脫
+    private void writeCsvRow(Writer writer, Transaction transaction) throws IOException {
+        writer.write(String.valueOf(transaction.getId()));
+        writer.write(',');
+        writer.write(String.valueOf(transaction.getAccountId()));
+        writer.write(',');
+        writer.write(transaction.getAmount().toPlainString());
+        writer.write(',');
+        writer.write(transaction.getTransactionType().name());
+        writer.write(',');
+        writer.write(String.valueOf(transaction.getTimestamp()));
+    }
+}
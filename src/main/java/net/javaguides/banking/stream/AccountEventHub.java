@@ -0,0 +1,310 @@
+package net.javaguides.banking.stream;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import net.javaguides.banking.dto.AccountEventDTO;
+import net.javaguides.banking.dto.TransactionDTO;
+import net.javaguides.banking.entity.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 程序內的帳戶事件分送中心：寫入路徑在交易提交後發布，分送給訂閱該帳戶的每個連線。
+ * <p>
+ * 每個訂閱有一個有界緩衝區，由少量 dispatcher 執行緒送出，寫入端只把事件放進緩衝區、不會被慢的連線拖住；
+ * 緩衝區滿時丟棄尚未送出的事件只保留最新放入的一筆 (以 banking.stream.dropped_events 計數)，其餘事件都會送出。
+ * <p>
+ * 事件依各交易提交後回呼的執行順序放入緩衝區；同一帳戶的兩筆交易同時提交時，回呼可能以與提交相反的順序執行。
+ * 帶有帳戶版本的事件 (一般與序列器寫入路徑) 以版本判斷新舊，版本低於此訂閱已收到的事件時丟棄，不會以舊餘額覆蓋新餘額；
+ * 熱門帳戶 (子餘額槽入帳不遞增版本) 與事件帳本模式的事件沒有版本，最後送出的事件不一定帶有最新的餘額，
+ * 需要精確餘額的客戶端應另外查詢帳戶。
+ * 閒置的連線不佔用執行緒，只在 heartbeat 時送出一行註解，讓代理伺服器不會關閉連線、並偵測已斷線的客戶端。
+ * <p>
+ * 沒有任何訂閱的帳戶在發布時只做一次 map 查詢。
+ */
+@Component
+public class AccountEventHub {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccountEventHub.class);
+
+    private final Map<Long, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    private final Counter dropped;
+
+    private final int bufferSize;
+
+    private final ExecutorService dispatcher;
+
+    public AccountEventHub(MeterRegistry meterRegistry,
+                           @Value("${banking.stream.buffer-size:16}") int bufferSize,
+                           @Value("${banking.stream.dispatch-threads:4}") int dispatchThreads) {
+        this.dropped = meterRegistry.counter("banking.stream.dropped_events");
+        meterRegistry.gauge("banking.stream.subscribers", subscriberCount);
+        this.bufferSize = bufferSize;
+        this.dispatcher = Executors.newFixedThreadPool(dispatchThreads, runnable -> {
+            Thread thread = new Thread(runnable, "account-event-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public Subscription subscribe(Long accountId, AccountEventListener listener) {
+        Subscription subscription = new Subscription(accountId, listener);
+        // 新增與移除都在 compute 中進行，不會加到剛被移除的空集合
+        subscriptions.compute(accountId, (id, subscribers) -> {
+            Set<Subscription> updated = subscribers != null ? subscribers : ConcurrentHashMap.newKeySet();
+            updated.add(subscription);
+            return updated;
+        });
+        subscriberCount.incrementAndGet();
+        return subscription;
+    }
+
+    /**
+     * 沒有帳戶版本的寫入路徑 (事件帳本) 使用，事件不以版本判斷新舊。
+     */
+    public void publishAfterCommit(List<Transaction> transactions, Function<Long, BigDecimal> balanceOf) {
+        publishAfterCommit(transactions, balanceOf, accountId -> null);
+    }
+
+    /**
+     * 交易提交後發布一組交易紀錄，每個有訂閱的帳戶一個事件。
+     * 餘額與版本在呼叫當下 (交易中) 取得，呼叫端必須先 flush 帳戶異動，versionOf 才會是提交後的版本；
+     * 只會對有訂閱的帳戶呼叫 balanceOf / versionOf，交易回滾時不發布。
+     */
+    public void publishAfterCommit(List<Transaction> transactions, Function<Long, BigDecimal> balanceOf, Function<Long, Long> versionOf) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        Map<Long, List<Transaction>> byAccount = new LinkedHashMap<>();
+        for (Transaction transaction : transactions) {
+            if (subscriptions.containsKey(transaction.getAccountId())) {
+                byAccount.computeIfAbsent(transaction.getAccountId(), id -> new ArrayList<>()).add(transaction);
+            }
+        }
+        if (byAccount.isEmpty()) {
+            return;
+        }
+        List<AccountEventDTO> events = new ArrayList<>(byAccount.size());
+        byAccount.forEach((accountId, accountTransactions) -> events.add(new AccountEventDTO(accountId, balanceOf.apply(accountId), versionOf.apply(accountId),
+                accountTransactions.stream().map(transaction -> new TransactionDTO(transaction.getId(), transaction.getAccountId(),
+                        transaction.getAmount(), transaction.getTransactionType(), transaction.getTimestamp())).toList())));
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(events);
+                }
+            });
+        } else {
+            publish(events);
+        }
+    }
+
+    private void publish(List<AccountEventDTO> events) {
+        for (AccountEventDTO event : events) {
+            Set<Subscription> subscribers = subscriptions.get(event.accountId());
+            if (subscribers == null) {
+                continue;
+            }
+            subscribers.forEach(subscription -> subscription.offer(event));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${banking.stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        subscriptions.values().forEach(subscribers -> subscribers.forEach(Subscription::requestHeartbeat));
+    }
+
+    public int subscriberCount() {
+        return subscriberCount.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+    }
+
+    /**
+     * 把事件寫到連線上，拋出例外時 (通常是客戶端已斷線) 取消訂閱。
+     */
+    public interface AccountEventListener {
+
+        void onEvent(AccountEventDTO event) throws IOException;
+
+        void onHeartbeat() throws IOException;
+    }
+
+    public final class Subscription {
+
+        private final Long accountId;
+
+        private final AccountEventListener listener;
+
+        // 以下欄位由 this 保護
+        private final ArrayDeque<AccountEventDTO> buffer = new ArrayDeque<>();
+
+        private boolean received;
+
+        // 已放入緩衝區的最高帳戶版本
+        private Long latestVersion;
+
+        private boolean heartbeatDue;
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private volatile boolean closed;
+
+        private Subscription(Long accountId, AccountEventListener listener) {
+            this.accountId = accountId;
+            this.listener = listener;
+        }
+
+        /**
+         * 交易紀錄 ID 在提交之前產生，不代表提交順序，因此不以 ID 判斷新舊；
+         * 帶有版本的事件低於已收到的版本時丟棄 (以 banking.stream.dropped_events 計數)，沒有版本的事件都放入緩衝區。
+         */
+        void offer(AccountEventDTO event) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (isOlder(event)) {
+                    dropped.increment();
+                    logger.debug("帳號{}的事件版本{}舊於已收到的版本{},丟棄", accountId, event.version(), latestVersion);
+                    return;
+                }
+                received = true;
+                if (buffer.size() >= bufferSize) {
+                    dropped.increment(buffer.size());
+                    logger.debug("帳號{}的事件串流消費太慢,丟棄{}筆尚未送出的事件", accountId, buffer.size());
+                    buffer.clear();
+                }
+                advance(event);
+                buffer.add(event);
+            }
+            schedule();
+        }
+
+        /**
+         * 連線建立時的目前餘額；訂閱之後已經收到異動事件時不再送出 (異動事件的餘額較新)。
+         */
+        public void offerSnapshot(AccountEventDTO snapshot) {
+            synchronized (this) {
+                if (closed || received) {
+                    return;
+                }
+                received = true;
+                advance(snapshot);
+                buffer.add(snapshot);
+            }
+            schedule();
+        }
+
+        // 呼叫端持有 this
+        private boolean isOlder(AccountEventDTO event) {
+            return event.version() != null && latestVersion != null && event.version() < latestVersion;
+        }
+
+        private void advance(AccountEventDTO event) {
+            if (event.version() != null && (latestVersion == null || event.version() > latestVersion)) {
+                latestVersion = event.version();
+            }
+        }
+
+        void requestHeartbeat() {
+            synchronized (this) {
+                if (!buffer.isEmpty()) {
+                    return;
+                }
+                heartbeatDue = true;
+            }
+            schedule();
+        }
+
+        public synchronized void cancel() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            subscriptions.computeIfPresent(accountId, (id, subscribers) -> {
+                if (subscribers.remove(this)) {
+                    subscriberCount.decrementAndGet();
+                }
+                return subscribers.isEmpty() ? null : subscribers;
+            });
+        }
+
+        private void schedule() {
+            if (closed || !scheduled.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                dispatcher.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // 應用程式關閉中
+                scheduled.set(false);
+            }
+        }
+
+        // 每次最多送出 bufferSize 筆就讓出 dispatcher，其他連線不會被一個忙碌的帳戶餓死
+        private void drain() {
+            try {
+                for (int sent = 0; sent < bufferSize; sent++) {
+                    AccountEventDTO next;
+                    boolean heartbeat;
+                    synchronized (this) {
+                        next = buffer.poll();
+                        heartbeat = next == null && heartbeatDue;
+                        heartbeatDue = false;
+                    }
+                    if (next != null) {
+                        listener.onEvent(next);
+                    } else if (heartbeat) {
+                        listener.onHeartbeat();
+                    } else {
+                        break;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.debug("帳號{}的事件串流已中斷:{}", accountId, e.getMessage());
+                cancel();
+                return;
+            } finally {
+                scheduled.set(false);
+            }
+            boolean pending;
+            synchronized (this) {
+                pending = !buffer.isEmpty() || heartbeatDue;
+            }
+            if (pending) {
+                schedule();
+            }
+        }
+    }
+}
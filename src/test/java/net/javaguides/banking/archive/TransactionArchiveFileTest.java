@@ -0,0 +1,105 @@
+package net.javaguides.banking.archive;
+
+import net.javaguides.banking.entity.Transaction;
+import net.javaguides.banking.enums.TransactionType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionArchiveFileTest {
+
+    @TempDir
+    Path directory;
+
+    private final LocalDateTime start = LocalDateTime.of(2024, 1, 15, 9, 30, 0, 123_456_000);
+
+    @Test
+    @DisplayName("測試-封存檔-寫入後讀回的每一筆與原本相同")
+    void testRoundTrip() throws IOException {
+
+        //Arrange
+        List<Transaction> rows = new ArrayList<>();
+        for (long account = 1; account <= 3; account++) {
+            for (int i = 0; i < 100; i++) {
+                TransactionType type = TransactionType.values()[i % TransactionType.values().length];
+                rows.add(new Transaction(account * 1_000 + i, account, new BigDecimal("12.34").add(BigDecimal.valueOf(i)),
+                        type, start.plusMinutes(i)));
+            }
+        }
+        Path path = directory.resolve("transactions-2024-01.arc");
+
+        //Act
+        try (TransactionArchiveWriter writer = new TransactionArchiveWriter(path)) {
+            for (Transaction row : rows) {
+                writer.append(row);
+            }
+        }
+        TransactionArchiveFile file = TransactionArchiveFile.open(path);
+
+        //Assert
+        assertEquals(300, file.getRowCount());
+        assertEquals(1_000, file.getMinId());
+        assertEquals(3_099, file.getMaxId());
+        assertEquals(100, file.count(2L));
+        assertEquals(0, file.count(4L));
+        assertFalse(file.contains(4L));
+        assertEquals(rows.subList(100, 200).toString(), file.read(2L).toString(), "讀回的紀錄有誤");
+    }
+
+    @Test
+    @DisplayName("測試-封存檔-依時間區間判斷是否需要讀取區塊")
+    void testOverlaps() throws IOException {
+
+        //Arrange
+        Path path = directory.resolve("transactions-2024-01.arc");
+        try (TransactionArchiveWriter writer = new TransactionArchiveWriter(path)) {
+            writer.append(new Transaction(1L, 1L, BigDecimal.TEN, TransactionType.DEPOSIT, start));
+            writer.append(new Transaction(2L, 1L, BigDecimal.ONE, TransactionType.WITHDRAW, start.plusDays(1)));
+        }
+
+        //Act
+        TransactionArchiveFile file = TransactionArchiveFile.open(path);
+
+        //Assert
+        assertTrue(file.overlaps(1L, null, null));
+        assertTrue(file.overlaps(1L, start.plusHours(1), start.plusDays(2)));
+        assertFalse(file.overlaps(1L, start.plusDays(2), null));
+        assertFalse(file.overlaps(1L, null, start.minusSeconds(1)));
+        assertFalse(file.overlaps(2L, null, null));
+    }
+
+    @Test
+    @DisplayName("測試-封存-依 ID 由新到舊跨檔案分頁")
+    void testArchivePageAcrossFiles() throws IOException {
+
+        //Arrange
+        TransactionArchive archive = new TransactionArchive(directory.toString());
+        for (int month = 0; month < 2; month++) {
+            Path path = directory.resolve("transactions-2024-0" + (month + 1) + TransactionArchive.SUFFIX);
+            try (TransactionArchiveWriter writer = new TransactionArchiveWriter(path)) {
+                for (int i = 0; i < 3; i++) {
+                    long id = month * 10L + i;
+                    writer.append(new Transaction(id, 1L, BigDecimal.ONE, TransactionType.DEPOSIT, start.plusMonths(month).plusMinutes(i)));
+                }
+            }
+            archive.register(TransactionArchiveFile.open(path));
+        }
+
+        //Act
+        List<Transaction> page = archive.findPageByIdDesc(1L, 2, 3);
+
+        //Assert
+        assertEquals(List.of(10L, 2L, 1L), page.stream().map(Transaction::getId).toList());
+        assertEquals(6, archive.count(1L));
+        assertTrue(archive.hasAccount(1L));
+    }
+}
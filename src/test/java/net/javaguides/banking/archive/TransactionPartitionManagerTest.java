@@ -0,0 +1,39 @@
+package net.javaguides.banking.archive;
+
+import net.javaguides.banking.id.SnowflakeIdGenerator;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.YearMonth;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionPartitionManagerTest {
+
+    private final TransactionPartitionManager partitionManager = new TransactionPartitionManager(null, false, 3, "UTC");
+
+    @Test
+    @DisplayName("測試-分區月份-以 UTC 切分-與伺服器時區無關")
+    void testMonthOf_Utc() {
+
+        //Arrange
+        long lastOfApril = SnowflakeIdGenerator.minIdAt(Instant.parse("2024-04-30T23:59:59.999Z").toEpochMilli());
+        long firstOfMay = SnowflakeIdGenerator.minIdAt(Instant.parse("2024-05-01T00:00:00Z").toEpochMilli());
+
+        //Act & Assert
+        assertEquals(YearMonth.of(2024, 4), partitionManager.monthOf(lastOfApril));
+        assertEquals(YearMonth.of(2024, 5), partitionManager.monthOf(firstOfMay));
+        assertEquals(firstOfMay, partitionManager.firstIdOf(YearMonth.of(2024, 5)));
+    }
+
+    @Test
+    @DisplayName("測試-分區月份-AUTO_INCREMENT 的舊 ID 沒有月份")
+    void testMonthOf_LegacyId_Rejected() {
+
+        //Act & Assert
+        assertTrue(TransactionPartitionManager.isLegacyId(4_000_000_000L));
+        assertFalse(TransactionPartitionManager.isLegacyId(partitionManager.firstIdOf(YearMonth.of(2024, 2))));
+        assertThrows(IllegalArgumentException.class, () -> partitionManager.monthOf(123L));
+    }
+}
@@ -0,0 +1,112 @@
+package net.javaguides.banking.benchmark;
+
+import net.javaguides.banking.entity.User;
+import net.javaguides.banking.id.SnowflakeIds;
+import net.javaguides.banking.repository.UserRepository;
+import net.javaguides.banking.search.AccountNameIndex;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 以帳戶名稱部分字串搜尋：LIKE '%x%' 全表掃描 vs 記憶體三字元組索引。
+ * <p>
+ * 帳戶數可用 -Dbenchmark.accounts 調整 (預設 1,000,000；H2 記憶體資料庫本身佔用大部分記憶體，5,000,000 時需加大 -Xmx)。
+ * 執行方式：mvn test -Pbenchmark -Dtest=AccountNameSearchBenchmark
+ */
+@Tag("benchmark")
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AccountNameSearchBenchmark {
+
+    private static final int ACCOUNTS = Integer.getInteger("benchmark.accounts", 1_000_000);
+    private static final int LIMIT = 20;
+    private static final int LIKE_QUERIES = 5;
+    private static final int INDEX_QUERIES = 20_000;
+
+    private static final String[] SURNAMES = {"Chen", "Lin", "Huang", "Chang", "Lee", "Wang", "Wu", "Liu", "Tsai", "Yang",
+            "Smith", "Johnson", "Garcia", "Miller", "Davis", "Martinez", "陳", "林", "黃", "張"};
+    private static final String[] GIVEN = {"Wei", "Ming", "Hui", "Ting", "Jia", "Yu", "Hao", "Alice", "Bob", "Carol",
+            "David", "Emily", "Frank", "Grace", "志明", "淑芬", "家豪", "雅婷", "冠宇", "怡君"};
+    private static final String[] QUERIES = {"chen", "ming hao", "garcia", "tsai ting", "林 淑芬", "ce tsa", "ly chang 1", "rtinez"};
+
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("壓測-帳戶名稱搜尋-LIKE 全表掃描 vs 三字元組索引")
+    void benchmarkNameSearch() {
+        insertAccounts();
+        AccountNameIndex index = new AccountNameIndex(jdbcTemplate, true, Runtime.getRuntime().availableProcessors());
+
+        long buildStart = System.nanoTime();
+        index.rebuild();
+        System.out.printf("[index build] %d accounts in %d ms%n", ACCOUNTS, (System.nanoTime() - buildStart) / 1_000_000);
+
+        // 兩種查法的結果必須相同
+        for (String query : QUERIES) {
+            assertEquals(like(query), Arrays.stream(index.search(query, LIMIT).orElseThrow()).boxed().toList(), query);
+        }
+
+        long begin = System.nanoTime();
+        for (int i = 0; i < LIKE_QUERIES; i++) {
+            like(QUERIES[i % QUERIES.length]);
+        }
+        System.out.printf("[before (LIKE)] %10.1f us/query%n", (System.nanoTime() - begin) / 1e3 / LIKE_QUERIES);
+
+        for (int i = 0; i < INDEX_QUERIES; i++) {
+            index.search(QUERIES[i % QUERIES.length], LIMIT);
+        }
+        begin = System.nanoTime();
+        for (int i = 0; i < INDEX_QUERIES; i++) {
+            index.search(QUERIES[i % QUERIES.length], LIMIT);
+        }
+        System.out.printf("[after (index)] %10.1f us/query%n", (System.nanoTime() - begin) / 1e3 / INDEX_QUERIES);
+
+        jdbcTemplate.update("DELETE FROM accounts");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    private List<Long> like(String query) {
+        return jdbcTemplate.queryForList("SELECT id FROM accounts WHERE LOWER(account_holder_name) LIKE ? ORDER BY id LIMIT " + LIMIT,
+                Long.class, "%" + query + "%");
+    }
+
+    private void insertAccounts() {
+        User user = new User("bench", "bench@example.com", "Bench");
+        user.setUserId("bench-user");
+        userRepository.save(user);
+
+        Random random = new Random(42);
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            String name = SURNAMES[random.nextInt(SURNAMES.length)] + " " + GIVEN[random.nextInt(GIVEN.length)]
+                    + " " + GIVEN[random.nextInt(GIVEN.length)] + " " + i;
+            batch.add(new Object[]{SnowflakeIds.nextId(), name, user.getUserId()});
+            if (batch.size() == 10_000) {
+                flush(batch);
+            }
+        }
+        flush(batch);
+    }
+
+    private void flush(List<Object[]> batch) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO accounts (id, account_holder_name, balance, version, hot_slots, user_id) VALUES (?, ?, 0, 0, 0, ?)", batch);
+        batch.clear();
+    }
+}
@@ -0,0 +1,116 @@
+package net.javaguides.banking.benchmark;
+
+import net.javaguides.banking.archive.TransactionArchive;
+import net.javaguides.banking.enums.TransactionType;
+import net.javaguides.banking.id.SnowflakeIds;
+import net.javaguides.banking.repository.AccountRepository;
+import net.javaguides.banking.repository.BalanceCheckpointProgressRepository;
+import net.javaguides.banking.repository.BalanceCheckpointRepository;
+import net.javaguides.banking.repository.TransactionRepository;
+import net.javaguides.banking.security.AccountLoadContext;
+import net.javaguides.banking.service.impl.BalanceCheckpointServiceImpl;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 單一帳戶有大量交易紀錄 (預設 1000 萬筆，分散在約 3 年) 時查詢歷史時間點餘額的耗時比較。
+ * <p>
+ * before：加總 asOf 之前的所有交易紀錄；after：最近的每日檢查點加上當天的交易。
+ * 執行方式：mvn test -Pbenchmark -Dtest=BalanceCheckpointBenchmark (-Dbenchmark.transactions=... 調整筆數，需要足夠的 heap)
+ */
+@Tag("benchmark")
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BalanceCheckpointBenchmark {
+
+    private static final long ACCOUNT_ID = 1L;
+    private static final int TRANSACTIONS = Integer.getInteger("benchmark.transactions", 10_000_000);
+    private static final int DAYS = 1000;
+    private static final int INSERT_BATCH = 10_000;
+    private static final int QUERIES = 50;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private BalanceCheckpointRepository checkpointRepository;
+    @Autowired
+    private BalanceCheckpointProgressRepository progressRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    @DisplayName("壓測-歷史餘額-加總全部交易 vs 檢查點加尾段")
+    void benchmarkBalanceAsOf() {
+        LocalDate firstDay = LocalDate.now().minusDays(DAYS + 1);
+        insertTransactions(firstDay);
+
+        AccountRepository accountRepository = mock(AccountRepository.class);
+        when(accountRepository.existsById(ACCOUNT_ID)).thenReturn(true);
+        BalanceCheckpointServiceImpl service = new BalanceCheckpointServiceImpl(checkpointRepository, progressRepository,
+                transactionRepository, accountRepository, new AccountLoadContext(), mock(TransactionArchive.class), transactionManager, 0, DAYS + 1);
+
+        long buildStart = System.nanoTime();
+        int days = service.closeDays();
+        System.out.printf("[build ] %d daily checkpoints in %.1f s%n", days, (System.nanoTime() - buildStart) / 1e9);
+
+        LocalDateTime asOf = firstDay.plusDays(DAYS - 10).atTime(13, 30);
+        BigDecimal expected = transactionRepository.sumSignedAmountUpTo(ACCOUNT_ID, asOf);
+
+        long begin = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) {
+            assertEquals(0, expected.compareTo(transactionRepository.sumSignedAmountUpTo(ACCOUNT_ID, asOf)));
+        }
+        double before = (System.nanoTime() - begin) / 1e6 / QUERIES;
+
+        begin = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) {
+            assertEquals(0, expected.compareTo(service.balanceAsOf(ACCOUNT_ID, asOf)));
+        }
+        double after = (System.nanoTime() - begin) / 1e6 / QUERIES;
+
+        System.out.printf("[before] full ledger sum   : %.2f ms/query (%d rows)%n", before, TRANSACTIONS);
+        System.out.printf("[after ] checkpoint + tail : %.2f ms/query%n", after);
+    }
+
+    // 以 JDBC batch 直接寫入，每天 TRANSACTIONS / DAYS 筆，存款與提款交錯
+    private void insertTransactions(LocalDate firstDay) {
+        int perDay = Math.max(1, TRANSACTIONS / DAYS);
+        List<Object[]> batch = new ArrayList<>(INSERT_BATCH);
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            LocalDateTime timestamp = firstDay.plusDays(i / perDay).atStartOfDay()
+                    .plusSeconds((long) (i % perDay) * 86_400 / perDay);
+            batch.add(new Object[]{SnowflakeIds.nextId(), ACCOUNT_ID, new BigDecimal(i % 7 + 1),
+                    (i % 3 == 0 ? TransactionType.WITHDRAW : TransactionType.DEPOSIT).name(), Timestamp.valueOf(timestamp)});
+            if (batch.size() == INSERT_BATCH) {
+                flush(batch);
+            }
+        }
+        flush(batch);
+    }
+
+    private void flush(List<Object[]> batch) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO transactions (id, account_id, amount, transaction_type, timestamp) VALUES (?, ?, ?, ?, ?)", batch);
+        batch.clear();
+    }
+}
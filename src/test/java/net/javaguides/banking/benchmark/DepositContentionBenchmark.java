@@ -0,0 +1,161 @@
+package net.javaguides.banking.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.javaguides.banking.archive.TransactionArchive;
+import net.javaguides.banking.entity.Account;
+import net.javaguides.banking.entity.User;
+import net.javaguides.banking.journal.StatementRollupWriter;
+import net.javaguides.banking.journal.TransactionJournalWriter;
+import net.javaguides.banking.mapper.AccountMapper;
+import net.javaguides.banking.outbox.OutboxWriter;
+import net.javaguides.banking.repository.AccountRepository;
+import net.javaguides.banking.repository.UserRepository;
+import net.javaguides.banking.retry.RetryExecutor;
+import net.javaguides.banking.search.AccountNameIndex;
+import net.javaguides.banking.security.AccountLoadContext;
+import net.javaguides.banking.security.AccountOwnershipCache;
+import net.javaguides.banking.service.AccountService;
+import net.javaguides.banking.service.HotAccountService;
+import net.javaguides.banking.service.impl.AccountServiceImpl;
+import net.javaguides.banking.service.impl.HotAccountServiceImpl;
+import net.javaguides.banking.service.impl.TotalCountCache;
+import net.javaguides.banking.stream.AccountEventHub;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 64 個併發存款者同時對同一帳戶存款的吞吐量比較。
+ * <p>
+ * before：原本的讀取-修改-寫回 + 樂觀鎖重試 3 次；after：AccountServiceImpl 的單一條件式 UPDATE，以及熱門帳戶子餘額槽。
+ * 執行方式：mvn test -Pbenchmark -Dtest=DepositContentionBenchmark
+ */
+@Tag("benchmark")
+@DataJpaTest
+@Import({AccountServiceImpl.class, RetryExecutor.class, AccountOwnershipCache.class, AccountLoadContext.class, TotalCountCache.class, SimpleMeterRegistry.class, HotAccountServiceImpl.class, AccountMapper.class, TransactionJournalWriter.class, StatementRollupWriter.class,
+        TransactionArchive.class, AccountNameIndex.class, OutboxWriter.class, AccountEventHub.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DepositContentionBenchmark {
+
+    private static final int THREADS = 64;
+    private static final int DEPOSITS_PER_THREAD = 50;
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private HotAccountService hotAccountService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    @DisplayName("壓測-64 併發存款同一帳戶-讀改寫重試 vs 原子更新")
+    void benchmarkSingleAccountContention() throws Exception {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        Long legacyId = createAccount("legacy");
+        Result before = run(() -> legacyDeposit(tx, legacyId));
+
+        Long atomicId = createAccount("atomic");
+        Result after = run(() -> accountService.deposit(atomicId, AMOUNT));
+
+        Long hotId = createAccount("hot");
+        hotAccountService.changeSlots(hotId, 16);
+        Result hot = run(() -> accountService.deposit(hotId, AMOUNT));
+
+        System.out.printf("[before] read-modify-write+retry: %d ok / %d failed, %.0f ops/s%n", before.ok, before.failed, before.opsPerSecond());
+        System.out.printf("[after ] atomic update         : %d ok / %d failed, %.0f ops/s%n", after.ok, after.failed, after.opsPerSecond());
+        System.out.printf("[after ] hot account, 16 slots : %d ok / %d failed, %.0f ops/s%n", hot.ok, hot.failed, hot.opsPerSecond());
+
+        // 原子更新不會有任何失敗，且最終餘額必須精確
+        assertEquals(0, after.failed);
+        assertEquals(0, new BigDecimal(THREADS * DEPOSITS_PER_THREAD)
+                .compareTo(accountRepository.findById(atomicId).orElseThrow().getBalance()));
+        assertEquals(0, hot.failed);
+        assertEquals(0, new BigDecimal(THREADS * DEPOSITS_PER_THREAD).compareTo(hotAccountService.totalBalance(hotId)));
+    }
+
+    /**
+     * 重現原本 deposit 的做法，作為比較基準。
+     */
+    private void legacyDeposit(TransactionTemplate tx, Long id) {
+        for (int attempt = 0; attempt < 3; attempt++) {
+            try {
+                tx.executeWithoutResult(status -> {
+                    Account account = accountRepository.findById(id).orElseThrow();
+                    account.setBalance(account.getBalance().add(AMOUNT));
+                    accountRepository.save(account);
+                });
+                return;
+            } catch (ObjectOptimisticLockingFailureException e) {
+                // 重試
+            }
+        }
+        throw new IllegalStateException("retries exhausted");
+    }
+
+    private Result run(Runnable deposit) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger ok = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        for (int t = 0; t < THREADS; t++) {
+            pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < DEPOSITS_PER_THREAD; i++) {
+                    try {
+                        deposit.run();
+                        ok.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        failed.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        pool.shutdown();
+        pool.awaitTermination(5, TimeUnit.MINUTES);
+        return new Result(ok.get(), failed.get(), System.nanoTime() - begin);
+    }
+
+    private Long createAccount(String name) {
+        User user = new User(name, name + "@example.com", name + " holder");
+        user.setUserId(name + "-uuid");
+        userRepository.save(user);
+
+        Account account = new Account();
+        account.setAccountHolderName(name);
+        account.setBalance(BigDecimal.ZERO);
+        account.setUser(user);
+        return accountRepository.save(account).getId();
+    }
+
+    private record Result(int ok, int failed, long nanos) {
+        double opsPerSecond() {
+            return ok * 1_000_000_000.0 / nanos;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package net.javaguides.banking.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.javaguides.banking.archive.TransactionArchive;
+import net.javaguides.banking.dto.TransferFundDTO;
+import net.javaguides.banking.entity.Account;
+import net.javaguides.banking.entity.User;
+import net.javaguides.banking.journal.StatementRollupWriter;
+import net.javaguides.banking.journal.TransactionJournalWriter;
+import net.javaguides.banking.ledger.EventSourcedLedger;
+import net.javaguides.banking.ledger.LedgerProjector;
+import net.javaguides.banking.mapper.AccountMapper;
+import net.javaguides.banking.outbox.OutboxWriter;
+import net.javaguides.banking.repository.AccountRepository;
+import net.javaguides.banking.repository.UserRepository;
+import net.javaguides.banking.retry.RetryExecutor;
+import net.javaguides.banking.search.AccountNameIndex;
+import net.javaguides.banking.security.AccountLoadContext;
+import net.javaguides.banking.security.AccountOwnershipCache;
+import net.javaguides.banking.service.AccountService;
+import net.javaguides.banking.service.impl.AccountServiceImpl;
+import net.javaguides.banking.service.impl.EventSourcedAccountService;
+import net.javaguides.banking.service.impl.HotAccountServiceImpl;
+import net.javaguides.banking.service.impl.TotalCountCache;
+import net.javaguides.banking.stream.AccountEventHub;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 直接寫入 (更新 accounts 列) 與事件帳本 (只新增交易紀錄，餘額由投影更新) 的吞吐量比較。
+ * <p>
+ * 兩種負載：32 個執行緒對 8 個帳戶隨機存款、提款與轉帳；以及 32 個執行緒同時存款到同一個帳戶。
+ * 結束後 (事件帳本等投影追上) 檢查總金額守恆。
+ * 執行方式：mvn test -Pbenchmark -Dtest=EventSourcedLedgerBenchmark
+ */
+@Tag("benchmark")
+@DataJpaTest(properties = "banking.write-path=event-sourced")
+@Import({AccountServiceImpl.class, RetryExecutor.class, AccountOwnershipCache.class, AccountLoadContext.class, TotalCountCache.class, SimpleMeterRegistry.class, HotAccountServiceImpl.class, AccountMapper.class, TransactionJournalWriter.class, StatementRollupWriter.class,
+        TransactionArchive.class, AccountNameIndex.class, OutboxWriter.class, AccountEventHub.class, EventSourcedLedger.class, LedgerProjector.class, EventSourcedAccountService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class EventSourcedLedgerBenchmark {
+
+    private static final int THREADS = 32;
+    private static final int OPS_PER_THREAD = 100;
+    private static final int ACCOUNTS = 8;
+    private static final BigDecimal OPENING_BALANCE = new BigDecimal("1000.00");
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    @Autowired
+    private AccountServiceImpl directAccountService;
+    @Autowired
+    private EventSourcedAccountService eventSourcedAccountService;
+    @Autowired
+    private EventSourcedLedger eventSourcedLedger;
+    @Autowired
+    private LedgerProjector ledgerProjector;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    @DisplayName("壓測-存款/提款/轉帳混合與單一帳戶存款-直接寫入 vs 事件帳本")
+    void benchmarkWritePaths() throws Exception {
+        // 直接寫入期間停止投影，否則已更新過餘額的交易紀錄會被再累加一次
+        ledgerProjector.stop();
+        List<Long> directIds = createAccounts("direct", ACCOUNTS);
+        Result directMixed = run(directAccountService, directIds, true);
+        List<Long> directHot = createAccounts("direct-hot", 1);
+        Result directDeposits = run(directAccountService, directHot, false);
+        assertEquals(expected(directIds, directMixed), projected(directIds), "direct mixed");
+        assertEquals(expected(directHot, directDeposits), projected(directHot), "direct 1 account");
+
+        // 與正式環境第一次啟用事件帳本相同：以目前的餘額建立起始快照
+        jdbcTemplate.update("DELETE FROM ledger_projection");
+        ledgerProjector.start();
+        List<Long> ledgerIds = createAccounts("ledger", ACCOUNTS);
+        Result ledgerMixed = run(eventSourcedAccountService, ledgerIds, true);
+        List<Long> ledgerHot = createAccounts("ledger-hot", 1);
+        Result ledgerDeposits = run(eventSourcedAccountService, ledgerHot, false);
+
+        System.out.printf("[before] direct  mixed      : %d ok / %d failed, %.0f ops/s%n", directMixed.ok, directMixed.failed, directMixed.opsPerSecond());
+        System.out.printf("[before] direct  1 account  : %d ok / %d failed, %.0f ops/s%n", directDeposits.ok, directDeposits.failed, directDeposits.opsPerSecond());
+        System.out.printf("[after ] ledger  mixed      : %d ok / %d failed, %.0f ops/s%n", ledgerMixed.ok, ledgerMixed.failed, ledgerMixed.opsPerSecond());
+        System.out.printf("[after ] ledger  1 account  : %d ok / %d failed, %.0f ops/s%n", ledgerDeposits.ok, ledgerDeposits.failed, ledgerDeposits.opsPerSecond());
+
+        assertEquals(expected(ledgerIds, ledgerMixed), current(ledgerIds), "ledger mixed");
+        assertEquals(expected(ledgerHot, ledgerDeposits), current(ledgerHot), "ledger 1 account");
+
+        // 投影追上後，快照與即時餘額一致
+        long begin = System.nanoTime();
+        long projectedEvents = ledgerProjector.catchUp();
+        System.out.printf("[projection] %d events in %d ms%n", projectedEvents, (System.nanoTime() - begin) / 1_000_000);
+        assertEquals(expected(ledgerIds, ledgerMixed), projected(ledgerIds), "ledger mixed projection");
+        assertEquals(expected(ledgerHot, ledgerDeposits), projected(ledgerHot), "ledger 1 account projection");
+    }
+
+    private BigDecimal expected(List<Long> ids, Result result) {
+        return OPENING_BALANCE.multiply(BigDecimal.valueOf(ids.size()))
+                .add(AMOUNT.multiply(BigDecimal.valueOf(result.deposits - result.withdrawals)));
+    }
+
+    private BigDecimal projected(List<Long> ids) {
+        return accountRepository.findAllById(ids).stream().map(Account::getBalance).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private BigDecimal current(List<Long> ids) {
+        return eventSourcedLedger.currentBalances(ids).values().stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private Result run(AccountService accountService, List<Long> ids, boolean mixed) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger ok = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger deposits = new AtomicInteger();
+        AtomicInteger withdrawals = new AtomicInteger();
+        for (int t = 0; t < THREADS; t++) {
+            pool.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < OPS_PER_THREAD; i++) {
+                    Long id = ids.get(random.nextInt(ids.size()));
+                    try {
+                        switch (mixed ? i % 3 : 0) {
+                            case 0 -> {
+                                accountService.deposit(id, AMOUNT);
+                                deposits.incrementAndGet();
+                            }
+                            case 1 -> {
+                                accountService.withdraw(id, AMOUNT);
+                                withdrawals.incrementAndGet();
+                            }
+                            default -> {
+                                Long other = ids.get(Math.floorMod(ids.indexOf(id) + 1 + random.nextInt(ids.size() - 1), ids.size()));
+                                accountService.transferFunds(new TransferFundDTO(id, other, AMOUNT));
+                            }
+                        }
+                        ok.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        failed.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        pool.shutdown();
+        pool.awaitTermination(5, TimeUnit.MINUTES);
+        return new Result(ok.get(), failed.get(), deposits.get(), withdrawals.get(), System.nanoTime() - begin);
+    }
+
+    private List<Long> createAccounts(String prefix, int count) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String name = prefix + i;
+            User user = new User(name, name + "@example.com", name + " holder");
+            user.setUserId(name + "-uuid");
+            userRepository.save(user);
+
+            Account account = new Account();
+            account.setAccountHolderName(name);
+            account.setBalance(OPENING_BALANCE);
+            account.setUser(user);
+            ids.add(accountRepository.save(account).getId());
+        }
+        return ids;
+    }
+
+    private record Result(int ok, int failed, int deposits, int withdrawals, long nanos) {
+        double opsPerSecond() {
+            return ok * 1_000_000_000.0 / nanos;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package net.javaguides.banking.benchmark;
+
+import net.javaguides.banking.dto.AccountDto;
+import net.javaguides.banking.dto.TransactionDTO;
+import net.javaguides.banking.entity.Account;
+import net.javaguides.banking.entity.AccountBalanceSlot;
+import net.javaguides.banking.entity.User;
+import net.javaguides.banking.enums.TransactionType;
+import net.javaguides.banking.id.SnowflakeIds;
+import net.javaguides.banking.mapper.AccountMapper;
+import net.javaguides.banking.repository.AccountBalanceSlotRepository;
+import net.javaguides.banking.repository.AccountRepository;
+import net.javaguides.banking.repository.TransactionRepository;
+import net.javaguides.banking.repository.UserRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 100 筆一頁的帳戶列表與交易紀錄列表，每次查詢配置的記憶體與耗時比較。
+ * <p>
+ * before：原本的寫法，findAll(Pageable) (含 COUNT) 載入受管理的 Account 實體再以 AccountMapper 轉成 DTO，
+ * 交易紀錄以第一頁的實體查詢載入後轉成 DTO (含 dirty checking 快照與 User proxy)；
+ * after：以建構子表達式直接查出 AccountDto / TransactionDTO。
+ * 以目前執行緒配置的 bytes (com.sun.management.ThreadMXBean) 計算，每次查詢都在新的唯讀交易中執行，與實際請求相同。
+ * 執行方式：mvn test -Pbenchmark -Dtest=ProjectionAllocationBenchmark
+ */
+@Tag("benchmark")
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProjectionAllocationBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+    private static final int WARMUP = 500;
+    private static final int ITERATIONS = 2000;
+
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private AccountBalanceSlotRepository slotRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    @DisplayName("壓測-列表查詢-實體轉 DTO vs 建構子表達式投影")
+    void benchmarkListAllocation() {
+        Long accountId = insertData();
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        Pageable accountPage = PageRequest.of(0, PAGE_SIZE, Sort.by("id"));
+        Pageable transactionPage = PageRequest.of(0, PAGE_SIZE);
+
+        AccountMapper accountMapper = new AccountMapper();
+        Supplier<List<AccountDto>> accountsBefore = () -> readOnly.execute(status -> {
+            List<Account> accounts = accountRepository.findAll(accountPage).getContent();
+            List<Long> hot = accounts.stream().filter(account -> account.getHotSlots() > 0).map(Account::getId).toList();
+            Map<Long, BigDecimal> slotTotals = slotRepository.sumByAccountIds(hot).stream()
+                    .collect(Collectors.toMap(AccountBalanceSlotRepository.SlotTotal::getAccountId, AccountBalanceSlotRepository.SlotTotal::getTotal));
+            return accounts.stream().map(account -> accountMapper.mapTOAccountDto(account,
+                    account.getBalance().add(slotTotals.getOrDefault(account.getId(), BigDecimal.ZERO)))).toList();
+        });
+        Supplier<List<AccountDto>> accountsAfter = () -> readOnly.execute(status ->
+                accountRepository.findDtoSlice(null, accountPage).getContent());
+
+        Supplier<List<TransactionDTO>> transactionsBefore = () -> readOnly.execute(status ->
+                transactionRepository.findFirstPage(accountId, transactionPage).stream().map(transaction -> new TransactionDTO(
+                        transaction.getId(), transaction.getAccountId(), transaction.getAmount(),
+                        transaction.getTransactionType(), transaction.getTimestamp())).toList());
+        Supplier<List<TransactionDTO>> transactionsAfter = () -> readOnly.execute(status ->
+                transactionRepository.findDtoSliceByAccountId(accountId, transactionPage).getContent());
+
+        // 兩種查法的結果必須相同 (熱門帳戶含子餘額槽)
+        assertEquals(normalize(accountsBefore.get()), normalize(accountsAfter.get()));
+        assertEquals(transactionsBefore.get(), transactionsAfter.get());
+
+        report("accounts     before (entity)", accountsBefore);
+        report("accounts     after  (dto)   ", accountsAfter);
+        report("transactions before (entity)", transactionsBefore);
+        report("transactions after  (dto)   ", transactionsAfter);
+    }
+
+    private void report(String label, Supplier<?> query) {
+        for (int i = 0; i < WARMUP; i++) {
+            query.get();
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long begin = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            query.get();
+        }
+        double micros = (System.nanoTime() - begin) / 1e3 / ITERATIONS;
+        double kilobytes = (threads.getCurrentThreadAllocatedBytes() - allocatedBefore) / 1024.0 / ITERATIONS;
+        System.out.printf("[%s] %8.1f KB/page  %8.1f us/page%n", label, kilobytes, micros);
+    }
+
+    private static List<String> normalize(List<AccountDto> accounts) {
+        return accounts.stream().map(account -> account.id() + ":" + account.balance().stripTrailingZeros().toPlainString()).toList();
+    }
+
+    // 100 個帳戶 (每 10 個有一個熱門帳戶) 與第一個帳戶的 1000 筆交易紀錄；時間與 ID 同步遞增，兩種排序的第一頁相同
+    private Long insertData() {
+        User user = new User("bench", "bench@example.com", "Bench");
+        user.setUserId("bench-user");
+        userRepository.save(user);
+
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            Account account = new Account();
+            account.setAccountHolderName("Holder " + i);
+            account.setBalance(new BigDecimal("1000.00"));
+            account.setUser(user);
+            account.setHotSlots(i % 10 == 0 ? 4 : 0);
+            accounts.add(account);
+        }
+        accountRepository.saveAll(accounts);
+        for (Account account : accounts) {
+            for (int slot = 0; slot < account.getHotSlots(); slot++) {
+                AccountBalanceSlot balanceSlot = new AccountBalanceSlot(account.getId(), slot);
+                balanceSlot.setBalance(new BigDecimal("25.00"));
+                slotRepository.save(balanceSlot);
+            }
+        }
+
+        Long accountId = accounts.get(0).getId();
+        LocalDateTime start = LocalDateTime.of(2024, 5, 1, 0, 0);
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            batch.add(new Object[]{SnowflakeIds.nextId(), accountId, new BigDecimal(i % 7 + 1),
+                    TransactionType.DEPOSIT.name(), Timestamp.valueOf(start.plusMinutes(i))});
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO transactions (id, account_id, amount, transaction_type, timestamp) VALUES (?, ?, ?, ?, ?)", batch);
+        return accountId;
+    }
+}
@@ -0,0 +1,168 @@
+package net.javaguides.banking.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.javaguides.banking.archive.TransactionArchive;
+import net.javaguides.banking.dto.TransferFundDTO;
+import net.javaguides.banking.entity.Account;
+import net.javaguides.banking.entity.User;
+import net.javaguides.banking.journal.StatementRollupWriter;
+import net.javaguides.banking.journal.TransactionJournalWriter;
+import net.javaguides.banking.mapper.AccountMapper;
+import net.javaguides.banking.outbox.OutboxWriter;
+import net.javaguides.banking.repository.AccountRepository;
+import net.javaguides.banking.repository.TransactionRepository;
+import net.javaguides.banking.repository.UserRepository;
+import net.javaguides.banking.retry.RetryExecutor;
+import net.javaguides.banking.search.AccountNameIndex;
+import net.javaguides.banking.security.AccountLoadContext;
+import net.javaguides.banking.security.AccountOwnershipCache;
+import net.javaguides.banking.sequencer.AccountCommandSequencer;
+import net.javaguides.banking.service.AccountService;
+import net.javaguides.banking.service.impl.AccountServiceImpl;
+import net.javaguides.banking.service.impl.HotAccountServiceImpl;
+import net.javaguides.banking.service.impl.TotalCountCache;
+import net.javaguides.banking.service.impl.SequencedAccountService;
+import net.javaguides.banking.stream.AccountEventHub;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 直接寫入 (每筆請求各自的交易與列鎖) 與分區單一寫入者序列器的吞吐量比較。
+ * <p>
+ * 32 個執行緒對 8 個帳戶隨機存款、提款與轉帳，結束後檢查總金額守恆 (存款總額 - 提款總額)。
+ * 執行方式：mvn test -Pbenchmark -Dtest=SequencerBenchmark
+ */
+@Tag("benchmark")
+@DataJpaTest(properties = "banking.write-path=sequenced")
+@Import({AccountServiceImpl.class, RetryExecutor.class, AccountOwnershipCache.class, AccountLoadContext.class, TotalCountCache.class, SimpleMeterRegistry.class, HotAccountServiceImpl.class, AccountMapper.class, TransactionJournalWriter.class, StatementRollupWriter.class,
+        TransactionArchive.class, AccountNameIndex.class, OutboxWriter.class, AccountEventHub.class, AccountCommandSequencer.class, SequencedAccountService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SequencerBenchmark {
+
+    private static final int THREADS = 32;
+    private static final int OPS_PER_THREAD = 100;
+    private static final int ACCOUNTS = 8;
+    private static final BigDecimal OPENING_BALANCE = new BigDecimal("1000.00");
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    @Autowired
+    private AccountServiceImpl directAccountService;
+    @Autowired
+    private SequencedAccountService sequencedAccountService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    @DisplayName("壓測-存款/提款/轉帳混合-直接寫入 vs 序列器")
+    void benchmarkMixedWorkload() throws Exception {
+        List<Long> directIds = createAccounts("direct");
+        Result before = run(directAccountService, directIds);
+
+        List<Long> sequencedIds = createAccounts("sequenced");
+        Result after = run(sequencedAccountService, sequencedIds);
+
+        System.out.printf("[before] direct     : %d ok / %d failed, %.0f ops/s%n", before.ok, before.failed, before.opsPerSecond());
+        System.out.printf("[after ] sequenced  : %d ok / %d failed, %.0f ops/s%n", after.ok, after.failed, after.opsPerSecond());
+
+        assertConserved(directIds, before);
+        assertConserved(sequencedIds, after);
+        assertEquals(0, after.failed);
+    }
+
+    private void assertConserved(List<Long> ids, Result result) {
+        BigDecimal expected = OPENING_BALANCE.multiply(BigDecimal.valueOf(ids.size()))
+                .add(AMOUNT.multiply(BigDecimal.valueOf(result.deposits - result.withdrawals)));
+        BigDecimal actual = accountRepository.findAllById(ids).stream()
+                .map(Account::getBalance)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertEquals(0, expected.compareTo(actual));
+    }
+
+    private Result run(AccountService accountService, List<Long> ids) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger ok = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger deposits = new AtomicInteger();
+        AtomicInteger withdrawals = new AtomicInteger();
+        for (int t = 0; t < THREADS; t++) {
+            pool.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < OPS_PER_THREAD; i++) {
+                    Long id = ids.get(random.nextInt(ids.size()));
+                    try {
+                        switch (i % 3) {
+                            case 0 -> {
+                                accountService.deposit(id, AMOUNT);
+                                deposits.incrementAndGet();
+                            }
+                            case 1 -> {
+                                accountService.withdraw(id, AMOUNT);
+                                withdrawals.incrementAndGet();
+                            }
+                            default -> {
+                                Long other = ids.get(Math.floorMod(ids.indexOf(id) + 1 + random.nextInt(ids.size() - 1), ids.size()));
+                                accountService.transferFunds(new TransferFundDTO(id, other, AMOUNT));
+                            }
+                        }
+                        ok.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        failed.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        pool.shutdown();
+        pool.awaitTermination(5, TimeUnit.MINUTES);
+        return new Result(ok.get(), failed.get(), deposits.get(), withdrawals.get(), System.nanoTime() - begin);
+    }
+
+    private List<Long> createAccounts(String prefix) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            String name = prefix + i;
+            User user = new User(name, name + "@example.com", name + " holder");
+            user.setUserId(name + "-uuid");
+            userRepository.save(user);
+
+            Account account = new Account();
+            account.setAccountHolderName(name);
+            account.setBalance(OPENING_BALANCE);
+            account.setUser(user);
+            ids.add(accountRepository.save(account).getId());
+        }
+        return ids;
+    }
+
+    private record Result(int ok, int failed, int deposits, int withdrawals, long nanos) {
+        double opsPerSecond() {
+            return ok * 1_000_000_000.0 / nanos;
+        }
+    }
+}
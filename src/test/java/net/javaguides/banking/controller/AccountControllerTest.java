@@ -14,10 +14,14 @@ import org.springframework.data.domain.Sort;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.Matchers.equalTo;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
@@ -26,15 +30,25 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import net.javaguides.banking.dto.AccountDto;
+import net.javaguides.banking.dto.AccountFilter;
+import net.javaguides.banking.dto.AccountVersionDTO;
+import net.javaguides.banking.dto.VersionedAccountDTO;
 import net.javaguides.banking.exception.AccountNotFoundException;
 import net.javaguides.banking.security.AccountSecurityService;
+import net.javaguides.banking.service.AccountEventService;
 import net.javaguides.banking.service.AccountService;
+import net.javaguides.banking.service.BalanceCheckpointService;
+import net.javaguides.banking.service.IdempotencyService;
+import net.javaguides.banking.service.ReconciliationService;
+import net.javaguides.banking.service.StatementService;
+import net.javaguides.banking.service.TransactionExportService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
@@ -47,6 +61,7 @@ import java.math.BigDecimal;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 
@@ -82,6 +97,24 @@ class AccountControllerTest {
     @MockitoBean
     private AccountSecurityService accountSecurityService;
 
+    @MockitoBean
+    private IdempotencyService idempotencyService;
+
+    @MockitoBean
+    private TransactionExportService transactionExportService;
+
+    @MockitoBean
+    private BalanceCheckpointService balanceCheckpointService;
+
+    @MockitoBean
+    private StatementService statementService;
+
+    @MockitoBean
+    private ReconciliationService reconciliationService;
+
+    @MockitoBean
+    private AccountEventService accountEventService;
+
     private AccountDto accountDto;
 
 
@@ -199,7 +232,7 @@ class AccountControllerTest {
     @DisplayName("測試-從Id獲取帳戶-成功")
     void testGetAccountById_whenAccountIdExists_thenReturnsAccountDetails() throws Exception {
         //Arrange
-        when(accountService.getAccountById(1L)).thenReturn(accountDto);
+        when(accountService.getVersionedAccountById(1L)).thenReturn(new VersionedAccountDTO(accountDto, new AccountVersionDTO(1L, 3L)));
 
         RequestBuilder requestBuilder = MockMvcRequestBuilders
                 .get("/api/accounts/{id}", 1L)
@@ -215,13 +248,16 @@ class AccountControllerTest {
         assertNotNull(readValue);
         assertEquals("testUser", readValue.accountHolderName(), "使用者姓名不一致");
         assertEquals(HttpStatus.OK.value(), mvcResult.getResponse().getStatus(), "回應碼必須是200");
+        assertEquals("\"1-3\"", mvcResult.getResponse().getHeader(HttpHeaders.ETAG), "ETag 應取自載入的帳戶版本");
+        // 沒有 If-None-Match 時不另外查詢版本
+        verify(accountService, never()).getAccountVersion(any());
     }
 
     @Test
     @DisplayName("測試-從Id獲取帳戶-Id不存在返回404")
     void testGetAccountById_whenAccountIdDoesNotExist_thenReturns404NotFound() throws Exception {
         //Arrange
-        when(accountService.getAccountById(99L)).thenThrow(new AccountNotFoundException("Account does not exist"));
+        when(accountService.getVersionedAccountById(99L)).thenThrow(new AccountNotFoundException("Account does not exist"));
 
         RequestBuilder requestBuilder = MockMvcRequestBuilders
                 .get("/api/accounts/{id}", 99L)
@@ -249,7 +285,7 @@ class AccountControllerTest {
 
         PageImpl<AccountDto> accountDtos = new PageImpl<AccountDto>(mockedDtoList, pageable, mockedDtoList.size());
 
-        when(accountService.getAllAccounts(any(Pageable.class))).thenReturn(accountDtos);
+        when(accountService.getAllAccounts(any(AccountFilter.class), any(Pageable.class))).thenReturn(accountDtos);
 
         RequestBuilder requestBuilder = get("/api/accounts")
                 .accept(MediaType.APPLICATION_JSON)
@@ -287,7 +323,7 @@ class AccountControllerTest {
         Pageable pageable = PageRequest.of(0, 3, Sort.by("id").descending());
         PageImpl<AccountDto> accountDtos = new PageImpl<AccountDto>(List.of(), pageable, 0);
 
-        when(accountService.getAllAccounts(any(Pageable.class))).thenReturn(accountDtos);
+        when(accountService.getAllAccounts(any(AccountFilter.class), any(Pageable.class))).thenReturn(accountDtos);
 
         //Act//Assert
 
@@ -331,6 +367,26 @@ class AccountControllerTest {
 
     }
 
+    @Test
+    @DisplayName("測試-獲取交易紀錄第一頁-沒有 If-None-Match 時回應帶有帳戶版本的 ETag-之後的頁面沒有 ETag")
+    void testFetchAccountTransactions_FirstPage_ReturnsETag() throws Exception {
+        //Arrange
+        Pageable pageable = PageRequest.of(0, 3);
+        when(accountService.getAccountTransactions(any(Long.class), any(Pageable.class))).thenReturn(new PageImpl<TransactionDTO>(List.of(), pageable, 0));
+        when(accountService.getAccountVersion(2L)).thenReturn(Optional.of(new AccountVersionDTO(2L, 7L)));
+
+        //Act
+        MvcResult firstPage = mockMvc.perform(get("/api/accounts/{id}/transactions", 2L).param("pageNo", "0")).andReturn();
+        MvcResult secondPage = mockMvc.perform(get("/api/accounts/{id}/transactions", 2L).param("pageNo", "1")).andReturn();
+
+        //Assert
+        assertEquals(HttpStatus.OK.value(), firstPage.getResponse().getStatus());
+        assertEquals("\"2-7\"", firstPage.getResponse().getHeader(HttpHeaders.ETAG));
+        assertEquals(HttpStatus.OK.value(), secondPage.getResponse().getStatus());
+        assertNull(secondPage.getResponse().getHeader(HttpHeaders.ETAG));
+        verify(accountService, times(1)).getAccountVersion(2L);
+    }
+
     @Test
     @DisplayName("測試-提款成功")
     void testWithdraw_whenSufficientFunds_thenReturnsUpdatedAccount() throws Exception {
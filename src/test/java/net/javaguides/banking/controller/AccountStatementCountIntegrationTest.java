@@ -0,0 +1,438 @@
+package net.javaguides.banking.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import net.javaguides.banking.entity.Account;
+import net.javaguides.banking.entity.Transaction;
+import net.javaguides.banking.entity.User;
+import net.javaguides.banking.enums.TransactionType;
+import net.javaguides.banking.repository.AccountRepository;
+import net.javaguides.banking.repository.TransactionRepository;
+import net.javaguides.banking.repository.UserRepository;
+import net.javaguides.banking.service.BalanceCheckpointService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 以 Hibernate statistics 計算每個端點送出的 SQL 數量。
+ * <p>
+ * 權限檢查第一次載入帳戶後交給 service 重複使用 (AccountLoadContext)，之後的請求由擁有者快取回答，
+ * 兩種情況下每個請求都只查詢一次 accounts。
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.show-sql=false",
+        "banking.hot-account.fold-interval-ms=3600000"
+})
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+class AccountStatementCountIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private BalanceCheckpointService balanceCheckpointService;
+
+    private Statistics statistics;
+    private String userId;
+    private Long accountId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        userId = UUID.randomUUID().toString();
+        User user = new User("user" + userId.substring(0, 8), "user" + userId.substring(0, 8) + "@example.com", "Tester");
+        user.setUserId(userId);
+        userRepository.save(user);
+
+        Account account = new Account();
+        account.setAccountHolderName("Tester");
+        account.setBalance(new BigDecimal("1000.00"));
+        account.setUser(user);
+        accountId = accountRepository.save(account).getId();
+    }
+
+    @Test
+    @DisplayName("整合測試-存款-快取未命中與命中時都只查詢一次帳戶")
+    void testDeposit_StatementCount() throws Exception {
+        // 未命中：SELECT 帳戶 (含擁有者) + version 條件 UPDATE + INSERT 交易紀錄
+        assertEquals(3, statementsFor(put("/api/accounts/{id}/deposit", accountId)
+                .contentType(MediaType.APPLICATION_JSON).content("{\"amount\": 100}")));
+        // 命中：原子 UPDATE + 讀回帳戶 + INSERT 交易紀錄
+        assertEquals(3, statementsFor(put("/api/accounts/{id}/deposit", accountId)
+                .contentType(MediaType.APPLICATION_JSON).content("{\"amount\": 100}")));
+
+        assertEquals(0, new BigDecimal("1200.00").compareTo(accountRepository.findById(accountId).orElseThrow().getBalance()));
+    }
+
+    @Test
+    @DisplayName("整合測試-提款-快取未命中與命中時都只查詢一次帳戶")
+    void testWithdraw_StatementCount() throws Exception {
+        assertEquals(3, statementsFor(put("/api/accounts/{id}/withdraw", accountId)
+                .contentType(MediaType.APPLICATION_JSON).content("{\"amount\": 100}")));
+        assertEquals(3, statementsFor(put("/api/accounts/{id}/withdraw", accountId)
+                .contentType(MediaType.APPLICATION_JSON).content("{\"amount\": 100}")));
+
+        assertEquals(0, new BigDecimal("800.00").compareTo(accountRepository.findById(accountId).orElseThrow().getBalance()));
+    }
+
+    @Test
+    @DisplayName("整合測試-查詢帳戶-只查詢一次帳戶")
+    void testGetAccountById_StatementCount() throws Exception {
+        assertEquals(1, statementsFor(get("/api/accounts/{id}", accountId)));
+        assertEquals(1, statementsFor(get("/api/accounts/{id}", accountId)));
+    }
+
+    @Test
+    @DisplayName("整合測試-查詢交易紀錄第一頁-未命中時帳戶查詢兼作 ETag 版本-命中時一次版本查詢-各加一次交易查詢")
+    void testGetAccountTransactions_StatementCount() throws Exception {
+        assertEquals(2, statementsFor(get("/api/accounts/{id}/transactions", accountId)));
+        assertEquals(2, statementsFor(get("/api/accounts/{id}/transactions", accountId)));
+        // 之後的頁面沒有 ETag，不查詢版本
+        assertEquals(1, statementsFor(get("/api/accounts/{id}/transactions", accountId).param("pageNo", "1")));
+    }
+
+    @Test
+    @DisplayName("整合測試-查詢帳戶-ETag 相符時只做版本查詢回傳 304-存款後回傳新內容與新 ETag")
+    void testGetAccountById_IfNoneMatch_NotModifiedUntilDeposit() throws Exception {
+        //Arrange
+        String etag = mockMvc.perform(get("/api/accounts/{id}", accountId).with(jwt().jwt(token -> token.subject(userId))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        //Act
+        statistics.clear();
+        MvcResult notModified = mockMvc.perform(get("/api/accounts/{id}", accountId)
+                        .header(HttpHeaders.IF_NONE_MATCH, etag)
+                        .with(jwt().jwt(token -> token.subject(userId))))
+                .andExpect(status().isNotModified())
+                .andReturn();
+        long notModifiedStatements = statistics.getPrepareStatementCount();
+        long notModifiedEntityLoads = statistics.getEntityLoadCount();
+        statementsFor(put("/api/accounts/{id}/deposit", accountId)
+                .contentType(MediaType.APPLICATION_JSON).content("{\"amount\": 100}"));
+        MvcResult modified = mockMvc.perform(get("/api/accounts/{id}", accountId)
+                        .header(HttpHeaders.IF_NONE_MATCH, etag)
+                        .with(jwt().jwt(token -> token.subject(userId))))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        //Assert
+        assertNotNull(etag);
+        assertEquals(etag, notModified.getResponse().getHeader(HttpHeaders.ETAG));
+        assertEquals("", notModified.getResponse().getContentAsString());
+        // 擁有者快取命中，只剩版本查詢，不載入帳戶
+        assertEquals(1, notModifiedStatements);
+        assertEquals(0, notModifiedEntityLoads);
+        assertNotEquals(etag, modified.getResponse().getHeader(HttpHeaders.ETAG));
+        assertEquals(0, new BigDecimal("1100.00").compareTo(objectMapper.readTree(modified.getResponse().getContentAsString()).get("balance").decimalValue()));
+    }
+
+    @Test
+    @DisplayName("整合測試-交易紀錄第一頁-ETag 相符時回傳 304 不查詢分頁-有新交易後回傳新內容")
+    void testGetAccountTransactions_IfNoneMatch_NotModifiedUntilNewTransaction() throws Exception {
+        //Arrange
+        // 第一頁與帳戶使用相同的 ETag，沒有 If-None-Match 的 200 回應也帶有 ETag
+        String etag = mockMvc.perform(get("/api/accounts/{id}", accountId).with(jwt().jwt(token -> token.subject(userId))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String firstPageETag = mockMvc.perform(get("/api/accounts/{id}/transactions", accountId).with(jwt().jwt(token -> token.subject(userId))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        //Act
+        statistics.clear();
+        mockMvc.perform(get("/api/accounts/{id}/transactions", accountId)
+                        .header(HttpHeaders.IF_NONE_MATCH, etag)
+                        .with(jwt().jwt(token -> token.subject(userId))))
+                .andExpect(status().isNotModified());
+        long notModifiedStatements = statistics.getPrepareStatementCount();
+        mockMvc.perform(get("/api/accounts/{id}/transactions/cursor", accountId)
+                        .header(HttpHeaders.IF_NONE_MATCH, etag)
+                        .with(jwt().jwt(token -> token.subject(userId))))
+                .andExpect(status().isNotModified());
+        statementsFor(put("/api/accounts/{id}/withdraw", accountId)
+                .contentType(MediaType.APPLICATION_JSON).content("{\"amount\": 100}"));
+        String body = mockMvc.perform(get("/api/accounts/{id}/transactions", accountId)
+                        .header(HttpHeaders.IF_NONE_MATCH, etag)
+                        .with(jwt().jwt(token -> token.subject(userId))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        //Assert
+        assertNotNull(etag);
+        assertEquals(etag, firstPageETag);
+        assertEquals(1, notModifiedStatements);
+        assertEquals(1, objectMapper.readTree(body).get("content").size());
+        // 之後的頁面不做條件式處理
+        assertNull(mockMvc.perform(get("/api/accounts/{id}/transactions", accountId).param("pageNo", "1")
+                        .with(jwt().jwt(token -> token.subject(userId))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    @DisplayName("整合測試-查詢交易紀錄-直接投影成 DTO-不載入交易實體")
+    void testGetAccountTransactions_ProjectsWithoutLoadingEntities() throws Exception {
+        //Arrange
+        for (int i = 0; i < 3; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setAccountId(accountId);
+            transaction.setAmount(BigDecimal.ONE);
+            transaction.setTransactionType(TransactionType.DEPOSIT);
+            transaction.setTimestamp(LocalDateTime.of(2024, 5, 1, 12, i));
+            transactionRepository.save(transaction);
+        }
+        statementsFor(get("/api/accounts/{id}", accountId));
+
+        //Act
+        statistics.clear();
+        String body = mockMvc.perform(get("/api/accounts/{id}/transactions", accountId)
+                        .with(jwt().jwt(token -> token.subject(userId))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        //Assert
+        assertEquals(3, objectMapper.readTree(body).get("content").size());
+        assertEquals(0, statistics.getEntityLoadCount(), "列表不應建立受管理的實體");
+    }
+
+    @Test
+    @DisplayName("整合測試-游標分頁-逐頁取完所有紀錄且每頁只有一次交易查詢")
+    void testGetAccountTransactionsByCursor_WalksAllPagesWithoutCount() throws Exception {
+        //Arrange
+        LocalDateTime sameInstant = LocalDateTime.of(2024, 5, 1, 12, 0);
+        for (int i = 0; i < 5; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setAccountId(accountId);
+            transaction.setAmount(BigDecimal.ONE);
+            transaction.setTransactionType(TransactionType.DEPOSIT);
+            // 前三筆時間相同，由 id 決定順序
+            transaction.setTimestamp(i < 3 ? sameInstant : sameInstant.plusMinutes(i));
+            transactionRepository.save(transaction);
+        }
+        statementsFor(get("/api/accounts/{id}", accountId));
+
+        //Act
+        Set<Long> seen = new HashSet<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            MockHttpServletRequestBuilder request = get("/api/accounts/{id}/transactions/cursor", accountId).param("pageSize", "2");
+            if (cursor != null) {
+                request.param("cursor", cursor);
+            }
+            statistics.clear();
+            String body = mockMvc.perform(request.with(jwt().jwt(token -> token.subject(userId))))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            assertEquals(1, statistics.getPrepareStatementCount(), "游標分頁不應執行 COUNT");
+
+            JsonNode page = objectMapper.readTree(body);
+            page.get("content").forEach(item -> assertTrue(seen.add(item.get("id").asLong()), "同一筆紀錄不應出現兩次"));
+            cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+            pages++;
+        } while (cursor != null);
+
+        //Assert
+        assertEquals(5, seen.size());
+        assertEquals(3, pages);
+    }
+
+    @Test
+    @DisplayName("整合測試-匯出交易紀錄-依時間區間串流輸出且不保留在 persistence context")
+    void testExportTransactions_StreamsRangeAsNdjsonAndCsv() throws Exception {
+        //Arrange
+        LocalDateTime start = LocalDateTime.of(2024, 5, 1, 12, 0);
+        for (int i = 0; i < 5; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setAccountId(accountId);
+            transaction.setAmount(new BigDecimal("1.50"));
+            transaction.setTransactionType(TransactionType.DEPOSIT);
+            transaction.setTimestamp(start.plusDays(i));
+            transactionRepository.save(transaction);
+        }
+
+        //Act
+        statistics.clear();
+        MvcResult ndjson = mockMvc.perform(get("/api/accounts/{id}/transactions/export", accountId)
+                        .param("from", start.plusDays(1).toString())
+                        .param("to", start.plusDays(4).toString())
+                        .with(jwt().jwt(token -> token.subject(userId))))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String ndjsonBody = mockMvc.perform(asyncDispatch(ndjson))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        long ndjsonStatements = statistics.getPrepareStatementCount();
+
+        String csvBody = mockMvc.perform(asyncDispatch(mockMvc.perform(get("/api/accounts/{id}/transactions/export", accountId)
+                                .param("format", "CSV")
+                                .with(jwt().jwt(token -> token.subject(userId))))
+                        .andExpect(request().asyncStarted())
+                        .andReturn()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        //Assert
+        String[] lines = ndjsonBody.split("\n");
+        assertEquals(3, lines.length);
+        assertEquals(start.plusDays(1), LocalDateTime.parse(objectMapper.readTree(lines[0]).get("timestamp").asText()));
+        assertEquals(start.plusDays(3), LocalDateTime.parse(objectMapper.readTree(lines[2]).get("timestamp").asText()));
+        // 權限檢查載入帳戶 (同時確認帳戶存在) + 一次交易紀錄查詢
+        assertEquals(2, ndjsonStatements);
+
+        String[] csvLines = csvBody.split("\n");
+        assertEquals("id,accountId,amount,transactionType,timestamp", csvLines[0]);
+        assertEquals(6, csvLines.length);
+        assertTrue(csvLines[1].contains(",1.50,DEPOSIT,"));
+    }
+
+    @Test
+    @DisplayName("整合測試-匯出交易紀錄-時間區間無效回傳 400")
+    void testExportTransactions_InvalidRange_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/accounts/{id}/transactions/export", accountId)
+                        .param("from", "2024-05-02T00:00:00")
+                        .param("to", "2024-05-01T00:00:00")
+                        .with(jwt().jwt(token -> token.subject(userId))))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("整合測試-歷史餘額-檢查點加上當天交易與直接加總一致")
+    void testGetBalanceAsOf_MatchesLedgerSum() throws Exception {
+        //Arrange
+        LocalDateTime start = LocalDate.now().minusDays(5).atTime(9, 0);
+        TransactionType[] types = {TransactionType.DEPOSIT, TransactionType.WITHDRAW, TransactionType.TRANSFER_IN, TransactionType.TRANSFER_OUT};
+        String[] amounts = {"100.00", "30.00", "12.50", "2.50"};
+        for (int i = 0; i < types.length; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setAccountId(accountId);
+            transaction.setAmount(new BigDecimal(amounts[i]));
+            transaction.setTransactionType(types[i]);
+            transaction.setTimestamp(start.plusDays(i));
+            transactionRepository.save(transaction);
+        }
+        balanceCheckpointService.closeDays();
+
+        //Act & Assert
+        // 第三天中午：DEPOSIT 100 - WITHDRAW 30 + 當天 TRANSFER_IN 12.50
+        assertEquals(0, new BigDecimal("82.50").compareTo(balanceAt(start.plusDays(2).withHour(12))));
+        // 全部四筆
+        assertEquals(0, new BigDecimal("80.00").compareTo(balanceAt(start.plusDays(4))));
+        // 第一筆之前
+        assertEquals(0, BigDecimal.ZERO.compareTo(balanceAt(start.minusDays(1))));
+    }
+
+    @Test
+    @DisplayName("整合測試-開戶-開戶金額記為一筆存款-歷史餘額與交易紀錄加總等於開戶金額")
+    void testCreateAccount_OpeningBalanceRecordedAsDeposit() throws Exception {
+        //Arrange
+        String body = mockMvc.perform(post("/api/accounts")
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"balance\": 250.00}")
+                        .with(jwt().jwt(token -> token.subject(userId).claim("name", "Opener"))
+                                .authorities(new SimpleGrantedAuthority("ROLE_USER"))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        Long openedId = objectMapper.readTree(body).get("id").asLong();
+
+        //Act
+        BigDecimal balance = balanceAt(openedId, LocalDateTime.now().plusMinutes(1));
+
+        //Assert
+        assertEquals(0, new BigDecimal("250.00").compareTo(balance));
+        assertEquals(0, new BigDecimal("250.00").compareTo(transactionRepository.sumSignedAmountUpTo(openedId, LocalDateTime.now().plusMinutes(1))));
+        assertEquals(0, new BigDecimal("250.00").compareTo(accountRepository.findById(openedId).orElseThrow().getBalance()));
+    }
+
+    @Test
+    @DisplayName("整合測試-月結單-由存提款同時累加的彙總產生")
+    void testGetMonthlyStatement_FromRollupsWrittenWithTransactions() throws Exception {
+        //Arrange
+        statementsFor(put("/api/accounts/{id}/deposit", accountId)
+                .contentType(MediaType.APPLICATION_JSON).content("{\"amount\": 100}"));
+        statementsFor(put("/api/accounts/{id}/deposit", accountId)
+                .contentType(MediaType.APPLICATION_JSON).content("{\"amount\": 20.50}"));
+        statementsFor(put("/api/accounts/{id}/withdraw", accountId)
+                .contentType(MediaType.APPLICATION_JSON).content("{\"amount\": 30}"));
+
+        //Act
+        String body = mockMvc.perform(get("/api/accounts/{id}/statements/{month}", accountId, YearMonth.now().toString())
+                        .with(jwt().jwt(token -> token.subject(userId))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        //Assert
+        JsonNode statement = objectMapper.readTree(body);
+        assertEquals(3, statement.get("transactionCount").asLong());
+        assertEquals(0, BigDecimal.ZERO.compareTo(statement.get("openingBalance").decimalValue()));
+        assertEquals(0, new BigDecimal("90.50").compareTo(statement.get("closingBalance").decimalValue()));
+        assertEquals(0, new BigDecimal("120.50").compareTo(statement.get("totals").get("DEPOSIT").decimalValue()));
+    }
+
+    private BigDecimal balanceAt(LocalDateTime asOf) throws Exception {
+        return balanceAt(accountId, asOf);
+    }
+
+    private BigDecimal balanceAt(Long id, LocalDateTime asOf) throws Exception {
+        String body = mockMvc.perform(get("/api/accounts/{id}/balance", id)
+                        .param("asOf", asOf.toString())
+                        .with(jwt().jwt(token -> token.subject(userId))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).get("balance").decimalValue();
+    }
+
+    private long statementsFor(MockHttpServletRequestBuilder request) throws Exception {
+        statistics.clear();
+        mockMvc.perform(request.with(jwt().jwt(token -> token.subject(userId))))
+                .andExpect(status().isOk());
+        return statistics.getPrepareStatementCount();
+    }
+}
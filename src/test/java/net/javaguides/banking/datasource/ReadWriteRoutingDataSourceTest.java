@@ -0,0 +1,216 @@
+package net.javaguides.banking.datasource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 以兩個 (輪流測試時三個) 獨立的 H2 記憶體資料庫分別扮演 primary 與 replica，
+ * 每個資料庫的 probe 表存放自己的名稱，由查詢結果判斷語句實際送到哪個資料庫。
+ */
+class ReadWriteRoutingDataSourceTest {
+
+    private static final long MAX_LAG_MS = 2000;
+    private static final long WINDOW_MS = 5000;
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+
+    private DataSource primary;
+    private Map<String, DataSource> replicas;
+    private ReplicaPool replicaPool;
+    private ReadYourWritesTracker tracker;
+    private ReplicaLagMonitor monitor;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate writeTemplate;
+    private TransactionTemplate readOnlyTemplate;
+
+    @BeforeEach
+    void setUp() {
+        setUpDatabases(1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        new JdbcTemplate(primary).execute("SHUTDOWN");
+        replicas.values().forEach(replica -> new JdbcTemplate(replica).execute("SHUTDOWN"));
+    }
+
+    @Test
+    @DisplayName("測試-讀寫分離-唯讀交易走 replica，寫入與鎖定讀取走 primary")
+    void testRouting_ReadOnlyToReplica_WritesToPrimary() {
+        //Arrange
+        checkAndReplicate();
+
+        //Act //Assert
+        assertEquals("replica-0", readOnly());
+        assertEquals("primary", writeTemplate.execute(status -> {
+            jdbcTemplate.update("UPDATE probe SET hits = hits + 1");
+            return jdbcTemplate.queryForObject("SELECT name FROM probe FOR UPDATE", String.class);
+        }));
+        assertEquals("primary", jdbcTemplate.queryForObject("SELECT name FROM probe", String.class));
+        assertEquals(1, new JdbcTemplate(primary).queryForObject("SELECT hits FROM probe", Integer.class));
+    }
+
+    @Test
+    @DisplayName("測試-讀寫分離-第一次檢查前或 replica 延遲過大時改走 primary")
+    void testRouting_ReplicaNotCheckedOrLagging_FallsBackToPrimary() {
+        //Arrange //Act //Assert
+        assertEquals("primary", readOnly());
+
+        checkAndReplicate();
+        assertEquals("replica-0", readOnly());
+
+        // replica 停止複製，心跳停在目前的時間
+        clock.addAndGet(MAX_LAG_MS + 1);
+        monitor.check();
+        assertFalse(replicaPool.isAvailable("replica-0"));
+        assertEquals("primary", readOnly());
+
+        checkAndReplicate();
+        assertEquals("replica-0", readOnly());
+    }
+
+    @Test
+    @DisplayName("測試-讀寫分離-使用者寫入後視窗內讀自己的寫入走 primary，其他使用者不受影響")
+    void testRouting_ReadYourWritesWindow() {
+        //Arrange
+        checkAndReplicate();
+        login("alice");
+
+        //Act
+        writeTemplate.executeWithoutResult(status -> jdbcTemplate.update("UPDATE probe SET hits = hits + 1"));
+
+        //Assert
+        assertEquals("primary", readOnly());
+        login("bob");
+        assertEquals("replica-0", readOnly());
+
+        login("alice");
+        clock.addAndGet(WINDOW_MS);
+        assertEquals("replica-0", readOnly());
+        // 排程執行緒沒有登入使用者
+        SecurityContextHolder.clearContext();
+        monitor.check();
+        assertEquals(0, tracker.trackedUsers());
+    }
+
+    @Test
+    @DisplayName("測試-讀寫分離-回滾的寫入不開啟 read-your-writes 視窗")
+    void testRouting_RolledBackWrite_NoWindow() {
+        //Arrange
+        checkAndReplicate();
+        login("alice");
+
+        //Act
+        writeTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("UPDATE probe SET hits = hits + 1");
+            status.setRollbackOnly();
+        });
+
+        //Assert
+        assertEquals("replica-0", readOnly());
+    }
+
+    @Test
+    @DisplayName("測試-讀寫分離-交易外的語句走 primary 但不開啟 read-your-writes 視窗")
+    void testRouting_AutoCommitRead_NoWindow() {
+        //Arrange
+        checkAndReplicate();
+        login("alice");
+
+        //Act
+        // 例如權限檢查在交易外載入帳戶擁有者
+        String autoCommit = jdbcTemplate.queryForObject("SELECT name FROM probe", String.class);
+
+        //Assert
+        assertEquals("primary", autoCommit);
+        assertEquals("replica-0", readOnly());
+        assertEquals(0, tracker.trackedUsers());
+    }
+
+    @Test
+    @DisplayName("測試-讀寫分離-多個 replica 輪流分配並略過不可用的 replica")
+    void testRouting_RoundRobinSkipsUnavailable() {
+        //Arrange
+        tearDown();
+        setUpDatabases(2);
+        checkAndReplicate();
+
+        //Act //Assert
+        String first = readOnly();
+        String second = readOnly();
+        assertNotEquals(first, second);
+        assertEquals(first, readOnly());
+
+        new JdbcTemplate(replicas.get("replica-1")).execute("DROP TABLE " + ReplicaPool.HEARTBEAT_TABLE);
+        monitor.check();
+        assertEquals("replica-0", readOnly());
+        assertEquals("replica-0", readOnly());
+    }
+
+    private void setUpDatabases(int replicaCount) {
+        primary = database("primary");
+        replicas = new LinkedHashMap<>();
+        for (int i = 0; i < replicaCount; i++) {
+            replicas.put("replica-" + i, database("replica-" + i));
+        }
+        replicaPool = new ReplicaPool(replicas, MAX_LAG_MS);
+        tracker = new ReadYourWritesTracker(WINDOW_MS, clock::get);
+        DataSource routing = new ReadWriteRoutingDataSource(primary, replicaPool, tracker).lazy();
+        jdbcTemplate = new JdbcTemplate(routing);
+        monitor = new ReplicaLagMonitor(jdbcTemplate, replicaPool, tracker, new SimpleMeterRegistry(), clock::get);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(routing);
+        writeTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTemplate.setReadOnly(true);
+    }
+
+    private static DataSource database(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:routing-" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.execute("CREATE TABLE probe (name VARCHAR(20), hits INT)");
+        template.update("INSERT INTO probe VALUES (?, 0)", name);
+        template.execute("CREATE TABLE " + ReplicaPool.HEARTBEAT_TABLE + " (id INT NOT NULL PRIMARY KEY, beat_at BIGINT NOT NULL)");
+        return dataSource;
+    }
+
+    /**
+     * 寫入心跳後模擬複製到所有 replica，再檢查一次。
+     */
+    private void checkAndReplicate() {
+        monitor.check();
+        Long beatAt = new JdbcTemplate(primary).queryForObject("SELECT beat_at FROM " + ReplicaPool.HEARTBEAT_TABLE, Long.class);
+        for (DataSource replica : replicas.values()) {
+            JdbcTemplate template = new JdbcTemplate(replica);
+            template.update("DELETE FROM " + ReplicaPool.HEARTBEAT_TABLE);
+            template.update("INSERT INTO " + ReplicaPool.HEARTBEAT_TABLE + " VALUES (1, ?)", beatAt);
+        }
+        monitor.check();
+    }
+
+    private String readOnly() {
+        return readOnlyTemplate.execute(status -> jdbcTemplate.queryForObject("SELECT name FROM probe", String.class));
+    }
+
+    private static void login(String user) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, AuthorityUtils.NO_AUTHORITIES));
+    }
+}
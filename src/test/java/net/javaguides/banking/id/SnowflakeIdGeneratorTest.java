@@ -0,0 +1,118 @@
+package net.javaguides.banking.id;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnowflakeIdGeneratorTest {
+
+    @Test
+    @DisplayName("測試-多執行緒產生ID-不重複且吞吐量足夠")
+    void testNextId_MultiThreaded_AllUnique() throws Exception {
+
+        //Arrange
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(7);
+        int threads = 16;
+        int idsPerThread = 50_000;
+        ConcurrentHashMap<Long, Boolean> seen = new ConcurrentHashMap<>(threads * idsPerThread * 2);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+
+        //Act
+        for (int t = 0; t < threads; t++) {
+            pool.submit(() -> {
+                start.await();
+                long last = Long.MIN_VALUE;
+                for (int i = 0; i < idsPerThread; i++) {
+                    long id = generator.nextId();
+                    // 同一執行緒取得的ID必須嚴格遞增
+                    assertTrue(id > last, "ID 未遞增");
+                    last = id;
+                    seen.put(id, Boolean.TRUE);
+                }
+                return null;
+            });
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+        long elapsed = System.nanoTime() - begin;
+
+        //Assert
+        assertEquals(threads * idsPerThread, seen.size(), "產生了重複的ID");
+        System.out.printf("snowflake: %d ids in %d ms (%.0f ids/s)%n",
+                seen.size(), TimeUnit.NANOSECONDS.toMillis(elapsed), seen.size() * 1_000_000_000.0 / elapsed);
+    }
+
+    @Test
+    @DisplayName("測試-時鐘回撥-ID仍然遞增不重複")
+    void testNextId_ClockRollback_StaysMonotonic() {
+
+        //Arrange
+        AtomicLong clock = new AtomicLong(SnowflakeIdGenerator.EPOCH + 1_000_000);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, clock::get);
+
+        //Act
+        long beforeRollback = generator.nextId();
+        clock.addAndGet(-5_000);
+        long afterRollback1 = generator.nextId();
+        long afterRollback2 = generator.nextId();
+
+        //Assert
+        assertTrue(afterRollback1 > beforeRollback, "時鐘回撥後產生了較小的ID");
+        assertTrue(afterRollback2 > afterRollback1);
+        assertEquals(SnowflakeIdGenerator.timestampOf(beforeRollback), SnowflakeIdGenerator.timestampOf(afterRollback2),
+                "時鐘回撥期間應沿用最後的時間戳");
+    }
+
+    @Test
+    @DisplayName("測試-同一毫秒序號用盡-進位到下一毫秒")
+    void testNextId_SequenceExhausted_BorrowsNextMillisecond() {
+
+        //Arrange
+        long fixedTime = SnowflakeIdGenerator.EPOCH + 42;
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(3, () -> fixedTime);
+
+        //Act
+        long last = 0;
+        for (int i = 0; i <= SnowflakeIdGenerator.SEQUENCE_MASK + 1; i++) {
+            last = generator.nextId();
+        }
+
+        //Assert
+        assertEquals(fixedTime + 1, SnowflakeIdGenerator.timestampOf(last));
+        assertEquals(3, SnowflakeIdGenerator.nodeIdOf(last));
+    }
+
+    @Test
+    @DisplayName("測試-以已發出的ID推進-重啟後不會重複")
+    void testAdvancePast_AfterRestartWithSlowClock_DoesNotReissue() {
+
+        //Arrange
+        AtomicLong clock = new AtomicLong(SnowflakeIdGenerator.EPOCH + 1_000_000);
+        long issued = new SnowflakeIdGenerator(5, clock::get).nextId();
+        clock.addAndGet(-60_000);
+        SnowflakeIdGenerator restarted = new SnowflakeIdGenerator(5, clock::get);
+
+        //Act
+        restarted.advancePast(issued);
+
+        //Assert
+        assertTrue(restarted.nextId() > issued);
+    }
+
+    @Test
+    @DisplayName("測試-節點ID超出範圍-拋出例外")
+    void testConstructor_InvalidNodeId_ThrowsException() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID + 1));
+    }
+}
@@ -0,0 +1,284 @@
+package net.javaguides.banking.ledger;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.javaguides.banking.dto.AccountDto;
+import net.javaguides.banking.dto.TransferFundDTO;
+import net.javaguides.banking.entity.User;
+import net.javaguides.banking.exception.InsufficientAmountException;
+import net.javaguides.banking.id.SnowflakeIdGenerator;
+import net.javaguides.banking.id.SnowflakeIds;
+import net.javaguides.banking.journal.StatementRollupWriter;
+import net.javaguides.banking.outbox.OutboxWriter;
+import net.javaguides.banking.repository.UserRepository;
+import net.javaguides.banking.retry.RetryExecutor;
+import net.javaguides.banking.service.HotAccountService;
+import net.javaguides.banking.stream.AccountEventHub;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 併發提款的測試需要多個連線看到已提交的資料，因此不使用測試交易，結束後自行清除。
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class EventSourcedLedgerTest {
+
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private EventSourcedLedger ledger;
+    private LedgerProjector projector;
+    private TransactionTemplate transactionTemplate;
+    private long alice;
+    private long bob;
+
+    @BeforeEach
+    void setUp() {
+        User owner = new User("ledger", "ledger@example.com", "Ledger");
+        owner.setUserId("ledger-owner");
+        userRepository.save(owner);
+        alice = insertAccount("Alice", 100);
+        bob = insertAccount("Bob", 50);
+
+        HotAccountService hotAccountService = mock(HotAccountService.class);
+        ledger = new EventSourcedLedger(jdbcTemplate, new OutboxWriter(jdbcTemplate, true),
+                new AccountEventHub(new SimpleMeterRegistry(), 16, 1));
+        projector = new LedgerProjector(jdbcTemplate, transactionManager, new StatementRollupWriter(jdbcTemplate, hotAccountService, 1),
+                hotAccountService, 3);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM ledger_debits");
+        jdbcTemplate.update("DELETE FROM ledger_pending_events");
+        jdbcTemplate.update("DELETE FROM ledger_projection");
+        jdbcTemplate.update("DELETE FROM outbox_events");
+        jdbcTemplate.update("DELETE FROM statement_rollups");
+        jdbcTemplate.update("DELETE FROM transactions");
+        jdbcTemplate.update("DELETE FROM accounts");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    @Test
+    @DisplayName("測試-事件帳本-寫入只新增紀錄-餘額為快照加上尚未投影的紀錄-投影後快照追上")
+    void testAppendOnly_ThenProjection() {
+        //Arrange
+        projector.initialize();
+
+        //Act
+        AccountDto deposited = transactionTemplate.execute(status -> ledger.deposit(alice, new BigDecimal("30")));
+        AccountDto withdrawn = transactionTemplate.execute(status -> ledger.withdraw(alice, new BigDecimal("20")));
+        transactionTemplate.executeWithoutResult(status -> ledger.transfer(new TransferFundDTO(alice, bob, new BigDecimal("10"))));
+
+        //Assert
+        assertEquals(0, new BigDecimal("130").compareTo(deposited.balance()));
+        assertEquals(0, new BigDecimal("110").compareTo(withdrawn.balance()));
+        // 帳戶列沒有被更新
+        assertEquals(0, new BigDecimal("100").compareTo(balanceColumn(alice)));
+        assertEquals(0L, jdbcTemplate.queryForObject("SELECT version FROM accounts WHERE id = ?", Long.class, alice));
+        assertEquals(0, new BigDecimal("100").compareTo(ledger.currentBalances(List.of(alice)).get(alice)));
+        assertEquals(0, new BigDecimal("60").compareTo(ledger.currentBalances(List.of(bob)).get(bob)));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ledger_debits WHERE account_id = ?", Integer.class, alice));
+
+        // chunk 大小為 3，4 筆紀錄分兩次處理
+        assertEquals(4, projector.catchUp());
+        assertEquals(0, new BigDecimal("100").compareTo(balanceColumn(alice)));
+        assertEquals(0, new BigDecimal("60").compareTo(balanceColumn(bob)));
+        assertEquals(0, new BigDecimal("100").compareTo(ledger.currentBalances(List.of(alice)).get(alice)));
+        assertEquals(0, new BigDecimal("60").compareTo(ledger.currentBalances(List.of(bob)).get(bob)));
+        assertEquals(4, jdbcTemplate.queryForObject("SELECT SUM(transaction_count) FROM statement_rollups", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ledger_pending_events", Integer.class));
+        assertEquals(0, projector.catchUp());
+    }
+
+    @Test
+    @DisplayName("測試-事件帳本-ID 較小的紀錄在投影之後才提交-仍會被投影")
+    void testLateCommit_OlderIdStillProjected() {
+        //Arrange
+        projector.initialize();
+        transactionTemplate.execute(status -> ledger.deposit(alice, new BigDecimal("30")));
+        projector.catchUp();
+        // 模擬在較新的紀錄投影之後才提交的長交易：ID 取自一分鐘前
+        long lateId = SnowflakeIdGenerator.minIdAt(System.currentTimeMillis() - 60_000);
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("INSERT INTO transactions (id, account_id, amount, transaction_type, timestamp) VALUES (?, ?, 5, 'DEPOSIT', ?)",
+                    lateId, alice, Timestamp.valueOf(LocalDateTime.now()));
+            jdbcTemplate.update("INSERT INTO ledger_pending_events (event_id, account_id, signed_amount) VALUES (?, ?, 5)", lateId, alice);
+        });
+
+        //Act
+        long projected = projector.catchUp();
+
+        //Assert
+        assertEquals(1, projected);
+        assertEquals(0, new BigDecimal("135").compareTo(balanceColumn(alice)));
+        assertEquals(0, new BigDecimal("135").compareTo(ledger.currentBalances(List.of(alice)).get(alice)));
+    }
+
+    @Test
+    @DisplayName("測試-事件帳本-起始快照不重複累加啟用前的交易紀錄")
+    void testInitialize_ExistingTransactionsNotReapplied() {
+        //Arrange
+        jdbcTemplate.update("INSERT INTO transactions (id, account_id, amount, transaction_type, timestamp) VALUES (?, ?, 100, 'DEPOSIT', ?)",
+                SnowflakeIds.nextId(), alice, Timestamp.valueOf(LocalDateTime.now()));
+
+        //Act
+        projector.start();
+
+        //Assert
+        assertTrue(projector.isRunning());
+        assertEquals(0, new BigDecimal("100").compareTo(balanceColumn(alice)));
+        assertEquals(0, new BigDecimal("100").compareTo(ledger.currentBalances(List.of(alice)).get(alice)));
+    }
+
+    @Test
+    @DisplayName("測試-事件帳本-餘額不足時不寫入任何紀錄")
+    void testWithdraw_Insufficient_NothingAppended() {
+        //Arrange
+        projector.initialize();
+
+        //Act //Assert
+        assertThrows(InsufficientAmountException.class,
+                () -> transactionTemplate.execute(status -> ledger.withdraw(bob, new BigDecimal("50.01"))));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ledger_debits", Integer.class));
+    }
+
+    @Test
+    @DisplayName("測試-事件帳本-併發提款以扣款序號衝突重試-不會超提")
+    void testConcurrentWithdraw_NeverOverdraws() throws Exception {
+        //Arrange
+        projector.initialize();
+        RetryExecutor retryExecutor = new RetryExecutor(transactionManager, new SimpleMeterRegistry(), 50, 1, 10, 1000);
+        int threads = 8;
+        int attemptsPerThread = 5;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        AtomicInteger succeeded = new AtomicInteger();
+
+        //Act
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < attemptsPerThread; i++) {
+                    try {
+                        retryExecutor.execute("withdraw", bob, () -> ledger.withdraw(bob, new BigDecimal("3")));
+                        succeeded.incrementAndGet();
+                    } catch (InsufficientAmountException e) {
+                        // 預期：餘額用完
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        //Assert
+        assertEquals(16, succeeded.get());
+        assertEquals(0, new BigDecimal("2").compareTo(ledger.currentBalances(List.of(bob)).get(bob)));
+        assertEquals(16, jdbcTemplate.queryForObject("SELECT MAX(debit_seq) FROM ledger_debits WHERE account_id = ?", Integer.class, bob));
+    }
+
+    @Test
+    @DisplayName("測試-事件帳本-READ COMMITTED 下兩筆提款合計超過餘額-讀取後另一筆先提交-扣款序號衝突不會超提")
+    void testInterleavedWithdraw_ReadCommitted_SecondDebitConflicts() throws Exception {
+        //Arrange
+        projector.initialize();
+        CountDownLatch loaded = new CountDownLatch(1);
+        CountDownLatch otherCommitted = new CountDownLatch(1);
+        // 在寫入扣款序號之前暫停，讓另一筆提款在這段期間提交
+        JdbcTemplate pausing = new JdbcTemplate(jdbcTemplate.getDataSource()) {
+            @Override
+            public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+                if (sql.startsWith("INSERT INTO ledger_debits") && loaded.getCount() > 0) {
+                    loaded.countDown();
+                    try {
+                        assertTrue(otherCommitted.await(10, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.batchUpdate(sql, batchArgs);
+            }
+        };
+        EventSourcedLedger pausingLedger = new EventSourcedLedger(pausing, new OutboxWriter(pausing, true),
+                new AccountEventHub(new SimpleMeterRegistry(), 16, 1));
+        TransactionTemplate readCommitted = new TransactionTemplate(transactionManager);
+        readCommitted.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+
+        //Act
+        Future<AccountDto> first = pool.submit(() -> readCommitted.execute(status -> pausingLedger.withdraw(bob, new BigDecimal("40"))));
+        assertTrue(loaded.await(10, TimeUnit.SECONDS));
+        AccountDto second = readCommitted.execute(status -> ledger.withdraw(bob, new BigDecimal("40")));
+        otherCommitted.countDown();
+        ExecutionException conflict = assertThrows(ExecutionException.class, () -> first.get(10, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        //Assert
+        assertEquals(0, new BigDecimal("10").compareTo(second.balance()));
+        assertInstanceOf(ConcurrencyFailureException.class, conflict.getCause());
+        assertEquals(0, new BigDecimal("10").compareTo(ledger.currentBalances(List.of(bob)).get(bob)));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ledger_debits WHERE account_id = ?", Integer.class, bob));
+        // 重試以新的交易重新讀取，餘額不足
+        assertThrows(InsufficientAmountException.class,
+                () -> readCommitted.execute(status -> ledger.withdraw(bob, new BigDecimal("40"))));
+    }
+
+    @Test
+    @DisplayName("測試-事件帳本-不在讀寫交易中寫入時拋出例外")
+    void testWithdraw_ReadOnlyTransaction_Throws() {
+        //Arrange
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        //Act //Assert
+        assertThrows(IllegalStateException.class, () -> ledger.withdraw(bob, BigDecimal.ONE));
+        assertThrows(IllegalStateException.class, () -> readOnly.execute(status -> ledger.withdraw(bob, BigDecimal.ONE)));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ledger_debits", Integer.class));
+    }
+
+    private long insertAccount(String name, long balance) {
+        long id = SnowflakeIds.nextId();
+        jdbcTemplate.update("INSERT INTO accounts (id, account_holder_name, balance, version, hot_slots, user_id) VALUES (?, ?, ?, 0, 0, ?)",
+                id, name, BigDecimal.valueOf(balance), "ledger-owner");
+        return id;
+    }
+
+    private BigDecimal balanceColumn(long accountId) {
+        return jdbcTemplate.queryForObject("SELECT balance FROM accounts WHERE id = ?", BigDecimal.class, accountId);
+    }
+}
@@ -0,0 +1,269 @@
+package net.javaguides.banking.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.javaguides.banking.entity.Transaction;
+import net.javaguides.banking.enums.TransactionType;
+import net.javaguides.banking.id.SnowflakeIds;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 發送端以獨立交易鎖定事件，需要看到已提交的資料，因此不使用測試交易，結束後自行清除。
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OutboxPublisherTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path dir;
+
+    private OutboxWriter writer;
+    private RecordingSink sink;
+    private OutboxPublisher publisher;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        writer = new OutboxWriter(jdbcTemplate, true);
+        sink = new RecordingSink();
+        publisher = new OutboxPublisher(jdbcTemplate, transactionManager, sink, new SimpleMeterRegistry(), true, 2);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM outbox_events");
+        jdbcTemplate.update("DELETE FROM outbox_account_seq");
+    }
+
+    @Test
+    @DisplayName("測試-outbox-提交的事件依序發送後刪除-回滾的交易不留下事件")
+    void testDrain_PublishesCommittedInOrder_RolledBackLeavesNothing() {
+        //Arrange
+        Transaction first = transaction(1L, TransactionType.DEPOSIT);
+        Transaction second = transaction(1L, TransactionType.WITHDRAW);
+        Transaction third = transaction(2L, TransactionType.TRANSFER_IN);
+        transactionTemplate.executeWithoutResult(status -> writer.append(List.of(first, second)));
+        transactionTemplate.executeWithoutResult(status -> writer.append(List.of(third)));
+        transactionTemplate.executeWithoutResult(status -> {
+            writer.append(List.of(transaction(3L, TransactionType.DEPOSIT)));
+            status.setRollbackOnly();
+        });
+
+        //Act
+        long published = publisher.drain();
+
+        //Assert
+        // batch-size 為 2，3 筆事件分兩批送出
+        assertEquals(3, published);
+        assertEquals(2, sink.batches.size());
+        assertEquals(List.of(first.getId(), second.getId(), third.getId()),
+                sink.messages().stream().map(OutboxMessage::transactionId).toList());
+        assertEquals(TransactionType.WITHDRAW, sink.messages().get(1).eventType());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM outbox_events", Integer.class));
+    }
+
+    @Test
+    @DisplayName("測試-outbox-發送失敗時事件保留-下次重送")
+    void testDrain_SinkFailure_EventsKeptAndRedelivered() {
+        //Arrange
+        transactionTemplate.executeWithoutResult(status -> writer.append(List.of(transaction(1L, TransactionType.DEPOSIT))));
+        sink.failNext = true;
+
+        //Act //Assert
+        assertThrows(IllegalStateException.class, () -> publisher.drain());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM outbox_events", Integer.class));
+
+        assertEquals(1, publisher.drain());
+        assertEquals(1, sink.messages().size());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM outbox_events", Integer.class));
+    }
+
+    @Test
+    @DisplayName("測試-outbox-同一帳戶較早的事件被其他發送端鎖定時-不會跳過順序送出之後的事件")
+    void testDrain_EarlierEventLockedElsewhere_AccountSkipped() throws Exception {
+        //Arrange
+        Transaction lockedByOther = transaction(1L, TransactionType.DEPOSIT);
+        Transaction blocked = transaction(1L, TransactionType.WITHDRAW);
+        Transaction otherAccount = transaction(2L, TransactionType.DEPOSIT);
+        transactionTemplate.executeWithoutResult(status -> writer.append(List.of(lockedByOther)));
+        transactionTemplate.executeWithoutResult(status -> writer.append(List.of(otherAccount, blocked)));
+        publisher = new OutboxPublisher(jdbcTemplate, transactionManager, sink, new SimpleMeterRegistry(), true, 10);
+
+        ExecutorService otherPublisher = Executors.newSingleThreadExecutor();
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> holding = otherPublisher.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.queryForList("SELECT id FROM outbox_events WHERE transaction_id = ? FOR UPDATE", lockedByOther.getId());
+            locked.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertTrue(locked.await(10, TimeUnit.SECONDS));
+
+        //Act
+        long published;
+        try {
+            published = publisher.drain();
+        } finally {
+            release.countDown();
+            holding.get();
+            otherPublisher.shutdown();
+        }
+
+        //Assert
+        assertEquals(1, published);
+        assertEquals(List.of(otherAccount.getId()), sink.messages().stream().map(OutboxMessage::transactionId).toList());
+
+        // 鎖釋放後依序送出帳戶 1 的兩筆事件
+        assertEquals(2, publisher.drain());
+        assertEquals(List.of(otherAccount.getId(), lockedByOther.getId(), blocked.getId()),
+                sink.messages().stream().map(OutboxMessage::transactionId).toList());
+    }
+
+    @Test
+    @DisplayName("測試-outbox-同一帳戶較早的交易尚未提交-之後的交易等待序號-依提交順序送出")
+    void testAppend_EarlierTransactionUncommitted_LaterWaitsForSequence() throws Exception {
+        //Arrange
+        // 模擬未鎖定帳戶列的寫入路徑 (熱門帳戶子餘額槽、事件帳本)：earlier 先產生事件但較晚提交
+        Transaction earlier = transaction(1L, TransactionType.DEPOSIT);
+        Transaction later = transaction(1L, TransactionType.WITHDRAW);
+        ExecutorService writers = Executors.newFixedThreadPool(2);
+        CountDownLatch appended = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        Future<?> first = writers.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+            writer.append(List.of(earlier));
+            appended.countDown();
+            try {
+                commit.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertTrue(appended.await(10, TimeUnit.SECONDS));
+
+        //Act
+        Future<?> second = writers.submit(() -> transactionTemplate.executeWithoutResult(status -> writer.append(List.of(later))));
+        Thread.sleep(200);
+        boolean secondCommittedFirst = second.isDone();
+        long publishedWhileOpen = publisher.drain();
+        commit.countDown();
+        first.get(10, TimeUnit.SECONDS);
+        second.get(10, TimeUnit.SECONDS);
+        writers.shutdown();
+        long published = publisher.drain();
+
+        //Assert
+        assertFalse(secondCommittedFirst, "同一帳戶的序號列鎖持有到較早的交易提交為止");
+        assertEquals(0, publishedWhileOpen);
+        assertEquals(2, published);
+        assertEquals(List.of(earlier.getId(), later.getId()), sink.messages().stream().map(OutboxMessage::transactionId).toList());
+        assertEquals(List.of(1L, 2L), sink.messages().stream().map(OutboxMessage::accountSequence).toList());
+    }
+
+    @Test
+    @DisplayName("測試-outbox-序號較小的事件 ID 較大-補鎖後依序號送出")
+    void testDrain_LowerSequenceWithHigherId_PublishedInSequenceOrder() {
+        //Arrange
+        // 不同節點產生的 ID 不保證依提交順序：序號 1 的事件 ID 大於序號 2
+        String insert = "INSERT INTO outbox_events (id, account_id, account_seq, transaction_id, event_type, amount, occurred_at) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.update(insert, 200L, 1L, 1L, 1000L, TransactionType.DEPOSIT.name(), new BigDecimal("10.00"), now);
+        jdbcTemplate.update(insert, 100L, 1L, 2L, 1001L, TransactionType.WITHDRAW.name(), new BigDecimal("5.00"), now);
+        publisher = new OutboxPublisher(jdbcTemplate, transactionManager, sink, new SimpleMeterRegistry(), true, 1);
+
+        //Act
+        long published = publisher.drain();
+
+        //Assert
+        assertEquals(2, published);
+        assertEquals(List.of(1000L, 1001L), sink.messages().stream().map(OutboxMessage::transactionId).toList());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM outbox_events", Integer.class));
+    }
+
+    @Test
+    @DisplayName("測試-outbox-不在交易中寫入時拋出例外")
+    void testAppend_OutsideTransaction_Throws() {
+        //Act //Assert
+        assertThrows(IllegalStateException.class, () -> writer.append(List.of(transaction(1L, TransactionType.DEPOSIT))));
+    }
+
+    @Test
+    @DisplayName("測試-outbox 檔案-每個事件一行 JSON 附加到檔案")
+    void testFileSink_AppendsNdjson() throws Exception {
+        //Arrange
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules().disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        Path file = dir.resolve("outbox").resolve("events.ndjson");
+        FileOutboxSink fileSink = new FileOutboxSink(objectMapper, file);
+        OutboxMessage deposit = new OutboxMessage(10L, 1L, 1L, 100L, TransactionType.DEPOSIT, new BigDecimal("5.00"), LocalDateTime.of(2024, 1, 2, 3, 4, 5));
+        OutboxMessage withdraw = new OutboxMessage(11L, 1L, 2L, 101L, TransactionType.WITHDRAW, new BigDecimal("2.00"), LocalDateTime.of(2024, 1, 2, 3, 4, 6));
+
+        //Act
+        fileSink.publish(List.of(deposit));
+        fileSink.publish(List.of(withdraw));
+
+        //Assert
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(2, lines.size());
+        assertEquals(deposit, objectMapper.readValue(lines.get(0), OutboxMessage.class));
+        assertEquals(withdraw, objectMapper.readValue(lines.get(1), OutboxMessage.class));
+    }
+
+    private Transaction transaction(Long accountId, TransactionType type) {
+        return new Transaction(SnowflakeIds.nextId(), accountId, new BigDecimal("10.00"), type, LocalDateTime.now());
+    }
+
+    private static class RecordingSink implements OutboxSink {
+
+        private final List<List<OutboxMessage>> batches = new ArrayList<>();
+
+        private boolean failNext;
+
+        @Override
+        public void publish(List<OutboxMessage> messages) {
+            if (failNext) {
+                failNext = false;
+                throw new IllegalStateException("下游無法連線");
+            }
+            batches.add(messages);
+        }
+
+        List<OutboxMessage> messages() {
+            return batches.stream().flatMap(List::stream).toList();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package net.javaguides.banking.repository;
+
+import net.javaguides.banking.dto.AccountDto;
+import net.javaguides.banking.dto.AccountFilter;
+import net.javaguides.banking.entity.Account;
+import net.javaguides.banking.entity.User;
+import net.javaguides.banking.enums.AccountSortKey;
+import net.javaguides.banking.id.SnowflakeIds;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 以 H2 的 EXPLAIN 檢查帳戶列表每一種「排序欄位 x 篩選條件」組合產生的 SQL：
+ * accounts 必須經由索引存取 (帶索引條件或依索引順序讀取)，不可出現 tableScan。
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "net.javaguides.banking.repository.AccountQueryPlanTest$SqlRecorder")
+class AccountQueryPlanTest {
+
+    private static final Map<String, AccountFilter> FILTERS = Map.of(
+            "none", AccountFilter.none(),
+            "balance range", new AccountFilter(new BigDecimal("100"), new BigDecimal("200"), null, null),
+            "min balance", new AccountFilter(new BigDecimal("450"), null, null, null),
+            "holder name prefix", new AccountFilter(null, null, "Holder 1", null),
+            "owner", new AccountFilter(null, null, null, "owner-1"));
+
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        List<User> owners = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            User owner = new User("owner" + i, "owner" + i + "@example.com", "Owner");
+            owner.setUserId("owner-" + i);
+            owners.add(userRepository.save(owner));
+        }
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Account account = new Account();
+            account.setAccountHolderName("Holder " + i);
+            account.setBalance(BigDecimal.valueOf(i));
+            account.setUser(owners.get(i % owners.size()));
+            accounts.add(account);
+        }
+        accountRepository.saveAllAndFlush(accounts);
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @Test
+    @DisplayName("測試-帳戶列表-每種排序與篩選組合都走索引-沒有全表掃描")
+    void testEverySortAndFilterCombination_UsesIndex() {
+        for (AccountSortKey sortKey : AccountSortKey.values()) {
+            for (Sort.Direction direction : Sort.Direction.values()) {
+                FILTERS.forEach((name, filter) -> {
+                    //Arrange
+                    SqlRecorder.statements.clear();
+
+                    //Act
+                    accountRepository.findDtoSlice(AccountSpecifications.matching(filter), PageRequest.of(0, 10, sortKey.toSort(direction)));
+                    String sql = SqlRecorder.statements.get(SqlRecorder.statements.size() - 1);
+                    String plan = jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class);
+
+                    //Assert
+                    String access = accountsAccess(plan);
+                    String combination = sortKey + " " + direction + " / " + name + "\n" + plan;
+                    assertFalse(access.contains("tableScan"), "不應全表掃描: " + combination);
+                    assertTrue(access.contains(":") || plan.contains("/* index sorted */"),
+                            "應以索引條件篩選或依索引順序讀取: " + combination);
+                });
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("測試-帳戶列表-篩選與排序結果正確")
+    void testFilterAndSort_ReturnsMatchingRows() {
+        //Act
+        Slice<AccountDto> slice = accountRepository.findDtoSlice(
+                AccountSpecifications.matching(new AccountFilter(new BigDecimal("100"), new BigDecimal("199"), "Holder 1", "owner-1")),
+                PageRequest.of(0, 5, AccountSortKey.BALANCE.toSort(Sort.Direction.DESC)));
+
+        //Assert
+        // 100..199 之間 i % 20 == 1 的帳戶：181, 161, 141, 121, 101
+        assertEquals(List.of("Holder 181", "Holder 161", "Holder 141", "Holder 121", "Holder 101"),
+                slice.getContent().stream().map(AccountDto::accountHolderName).toList());
+        assertFalse(slice.hasNext());
+    }
+
+    @Test
+    @DisplayName("測試-帳戶版本查詢-回傳 version 與子餘額槽數-只讀帳戶主鍵不讀交易紀錄")
+    void testFindVersionById_ReadsAccountRowOnly() {
+        //Arrange
+        Account account = accountRepository.findAll(PageRequest.of(0, 1)).getContent().get(0);
+        SqlRecorder.statements.clear();
+
+        //Act
+        AccountRepository.AccountVersionView view = accountRepository.findVersionById(account.getId()).orElseThrow();
+        String sql = SqlRecorder.statements.get(SqlRecorder.statements.size() - 1);
+
+        //Assert
+        assertEquals(account.getVersion(), view.getVersion());
+        assertEquals(account.getHotSlots(), view.getHotSlots());
+        assertFalse(sql.toLowerCase().contains("transactions"), sql);
+    }
+
+    @Test
+    @DisplayName("測試-名稱開頭-萬用字元被跳脫-只比對字面上的開頭")
+    void testHolderNamePrefix_EscapesWildcards() {
+        //Act
+        Slice<AccountDto> underscore = accountRepository.findDtoSlice(
+                AccountSpecifications.matching(new AccountFilter(null, null, "Holder 1_", null)), PageRequest.of(0, 10));
+        Slice<AccountDto> literal = accountRepository.findDtoSlice(
+                AccountSpecifications.matching(new AccountFilter(null, null, "Holder 49", null)),
+                PageRequest.of(0, 20, AccountSortKey.ACCOUNT_HOLDER_NAME.toSort(Sort.Direction.ASC)));
+
+        //Assert
+        // 未跳脫時 _ 會比對到 Holder 10..19
+        assertTrue(underscore.getContent().isEmpty());
+        assertEquals(List.of("Holder 49", "Holder 490", "Holder 491", "Holder 492", "Holder 493", "Holder 494",
+                        "Holder 495", "Holder 496", "Holder 497", "Holder 498", "Holder 499"),
+                literal.getContent().stream().map(AccountDto::accountHolderName).toList());
+    }
+
+    @Test
+    @DisplayName("測試-帳戶列表-餘額上限以熱門帳戶的總餘額 (主餘額 + 子餘額槽) 過濾")
+    void testBalanceAtMost_HotAccount_FilteredByTotal() {
+        //Arrange
+        // Holder 150 主餘額 150、子餘額槽 60，總額 210；Holder 120 主餘額 120、子餘額槽 30，總額 150
+        makeHot("Holder 150", 60);
+        makeHot("Holder 120", 30);
+
+        //Act
+        List<AccountDto> atMost = accountRepository.findDtoSlice(
+                AccountSpecifications.matching(new AccountFilter(new BigDecimal("115"), new BigDecimal("200"), "Holder 1", null)),
+                PageRequest.of(0, 100, AccountSortKey.BALANCE.toSort(Sort.Direction.ASC))).getContent();
+
+        //Assert
+        List<String> names = atMost.stream().map(AccountDto::accountHolderName).toList();
+        assertFalse(names.contains("Holder 150"), "總額超過上限的熱門帳戶不應出現");
+        assertTrue(names.contains("Holder 120"));
+        assertEquals(0, new BigDecimal("150").compareTo(atMost.get(names.indexOf("Holder 120")).balance()));
+        assertTrue(atMost.stream().allMatch(account -> account.balance().compareTo(new BigDecimal("200")) <= 0));
+    }
+
+    private void makeHot(String holderName, long slotBalance) {
+        Long accountId = jdbcTemplate.queryForObject("SELECT id FROM accounts WHERE account_holder_name = ?", Long.class, holderName);
+        jdbcTemplate.update("UPDATE accounts SET hot_slots = 2 WHERE id = ?", accountId);
+        jdbcTemplate.update("INSERT INTO account_balance_slots (id, account_id, slot, balance, update_count) VALUES (?, ?, 0, ?, 1)",
+                SnowflakeIds.nextId(), accountId, BigDecimal.valueOf(slotBalance));
+        jdbcTemplate.update("INSERT INTO account_balance_slots (id, account_id, slot, balance, update_count) VALUES (?, ?, 1, 0, 0)",
+                SnowflakeIds.nextId(), accountId);
+    }
+
+    // 取出 accounts 資料表存取方式的註解，例如 /* PUBLIC.IDX_ACCOUNTS_BALANCE_ID: BALANCE >= ?1 */
+    private static String accountsAccess(String plan) {
+        int table = plan.indexOf("\"PUBLIC\".\"ACCOUNTS\"");
+        int start = plan.indexOf("/*", table);
+        return plan.substring(start, plan.indexOf("*/", start) + 2);
+    }
+
+    public static class SqlRecorder implements StatementInspector {
+
+        static final List<String> statements = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            statements.add(sql);
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package net.javaguides.banking.retry;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.javaguides.banking.exception.AccountException;
+import net.javaguides.banking.exception.InsufficientAmountException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class RetryExecutorTest {
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private RetryExecutor retryExecutor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        retryExecutor = new RetryExecutor(transactionManager, meterRegistry, 3, 0, 0, 100);
+    }
+
+    @Test
+    @DisplayName("測試-列鎖逾時後重試成功-每次嘗試都開啟新的交易")
+    void testExecute_LockTimeoutThenSuccess_RetriesInNewTransaction() {
+        //Arrange
+        AtomicInteger calls = new AtomicInteger();
+
+        //Act
+        String result = retryExecutor.execute("transfer", 1L, () -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new CannotAcquireLockException("Lock wait timeout exceeded");
+            }
+            return "ok";
+        });
+
+        //Assert
+        assertEquals("ok", result);
+        verify(transactionManager, times(2)).getTransaction(any());
+        assertEquals(2.0, meterRegistry.counter("banking.retry.attempts", "operation", "transfer").count());
+        assertEquals(1.0, meterRegistry.counter("banking.retry.success_after_retry", "operation", "transfer").count());
+        assertEquals(1L, retryExecutor.topContendedAccounts(1).get(1L));
+    }
+
+    @Test
+    @DisplayName("測試-持續衝突超過次數上限-放棄並拋出例外")
+    void testExecute_ConflictsExhausted_GivesUp() {
+        //Act//Assert
+        AccountException accountException = assertThrows(AccountException.class, () -> retryExecutor.execute("deposit", 1L, () -> {
+            throw new ObjectOptimisticLockingFailureException("Account", 1L);
+        }), "拋出例外有誤");
+
+        assertEquals("帳戶操作因高併發衝突而失敗，請稍後再試。", accountException.getMessage());
+        assertEquals(3.0, meterRegistry.counter("banking.retry.attempts", "operation", "deposit").count());
+        assertEquals(1.0, meterRegistry.counter("banking.retry.give_ups", "operation", "deposit").count());
+    }
+
+    @Test
+    @DisplayName("測試-業務例外不重試")
+    void testExecute_BusinessException_NotRetried() {
+        //Arrange
+        AtomicInteger calls = new AtomicInteger();
+
+        //Act//Assert
+        assertThrows(InsufficientAmountException.class, () -> retryExecutor.execute("withdraw", 1L, () -> {
+            calls.incrementAndGet();
+            throw new InsufficientAmountException("Insufficient amount");
+        }));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    @DisplayName("測試-backoff 上限隨次數指數成長且不超過最大值")
+    void testBackoffMillis_FullJitterWithinCeiling() {
+        RetryExecutor executor = new RetryExecutor(transactionManager, meterRegistry, 5, 10, 50, 100);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(executor.backoffMillis(1) <= 10);
+            assertTrue(executor.backoffMillis(2) <= 20);
+            assertTrue(executor.backoffMillis(6) <= 50);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package net.javaguides.banking.search;
+
+import net.javaguides.banking.entity.Account;
+import net.javaguides.banking.entity.User;
+import net.javaguides.banking.id.SnowflakeIds;
+import net.javaguides.banking.repository.AccountRepository;
+import net.javaguides.banking.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 建立索引的工作執行緒使用各自的連線，測試資料必須先提交，因此不使用測試交易，結束後自行清除。
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AccountNameIndexTest {
+
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User owner;
+    private List<Account> accounts;
+
+    @BeforeEach
+    void setUp() {
+        owner = new User("search", "search@example.com", "Search");
+        owner.setUserId("search-owner");
+        userRepository.save(owner);
+        accounts = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Account account = new Account();
+            account.setAccountHolderName((i % 3 == 0 ? "Chen " : "Lin ") + i);
+            account.setBalance(BigDecimal.valueOf(i));
+            account.setUser(owner);
+            accounts.add(account);
+        }
+        accountRepository.saveAll(accounts);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM accounts");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    @Test
+    @DisplayName("測試-名稱索引-平行建立後的結果與資料庫 LIKE 查詢相同")
+    void testRebuild_MatchesDatabase() {
+        //Arrange
+        AccountNameIndex index = new AccountNameIndex(jdbcTemplate, true, 3);
+
+        //Act
+        index.rebuild();
+        long[] ids = index.search("CHEN 1", 1000).orElseThrow();
+
+        //Assert
+        List<Long> expected = jdbcTemplate.queryForList(
+                "SELECT id FROM accounts WHERE LOWER(account_holder_name) LIKE '%chen 1%' ORDER BY id", Long.class);
+        assertEquals(expected, Arrays.stream(ids).boxed().toList());
+        assertFalse(expected.isEmpty());
+    }
+
+    @Test
+    @DisplayName("測試-名稱索引-新增刪除立即反映-其他節點新增的帳戶由追上補入")
+    void testAddRemoveAndCatchUp() {
+        //Arrange
+        AccountNameIndex index = new AccountNameIndex(jdbcTemplate, true, 2);
+        index.rebuild();
+        Long removedId = accounts.get(0).getId();
+        long otherNodeId = SnowflakeIds.nextId();
+        jdbcTemplate.update("INSERT INTO accounts (id, account_holder_name, balance, version, hot_slots, user_id) VALUES (?, ?, 0, 0, 0, ?)",
+                otherNodeId, "Zhang Remote", owner.getUserId());
+
+        //Act
+        index.addAfterCommit(12345L, "Zhang Local");
+        index.removeAfterCommit(removedId);
+        index.catchUp();
+
+        //Assert
+        assertArrayEquals(new long[]{12345L, otherNodeId}, index.search("zhang", 10).orElseThrow());
+        assertFalse(Arrays.stream(index.search("chen 0", 10).orElseThrow()).anyMatch(id -> id == removedId));
+    }
+
+    @Test
+    @DisplayName("測試-名稱索引-尚未建立完成時回傳 empty")
+    void testSearch_BeforeBuild_Empty() {
+        AccountNameIndex index = new AccountNameIndex(jdbcTemplate, true, 1);
+
+        assertTrue(index.search("chen", 10).isEmpty());
+    }
+}
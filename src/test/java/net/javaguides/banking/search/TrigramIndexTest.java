@@ -0,0 +1,95 @@
+package net.javaguides.banking.search;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrigramIndexTest {
+
+    private static TrigramIndex indexOf(String... names) {
+        TrigramIndex index = new TrigramIndex(true, 0);
+        for (int i = 0; i < names.length; i++) {
+            index.add(i + 1, TrigramIndex.normalize(names[i]));
+        }
+        return index;
+    }
+
+    @Test
+    @DisplayName("測試-名稱索引-部分字串不分大小寫")
+    void testSearch_Substring_CaseInsensitive() {
+        //Arrange
+        TrigramIndex index = indexOf("Alice Chen", "Bob Chenault", "Carol Lin", "王小明", "陳小明");
+
+        //Act //Assert
+        assertArrayEquals(new long[]{1, 2}, index.search("chen", 10));
+        assertArrayEquals(new long[]{2}, index.search("chena", 10));
+        assertArrayEquals(new long[]{5}, index.search("陳小明", 10));
+        assertThrows(IllegalArgumentException.class, () -> index.search("小明", 10));
+        assertArrayEquals(new long[0], index.search("xyz", 10));
+    }
+
+    @Test
+    @DisplayName("測試-名稱索引-包含所有三字元組但不連續的名稱不算符合")
+    void testSearch_AllGramsButNotContiguous_Excluded() {
+        //Arrange
+        TrigramIndex index = indexOf("abc-bcd", "xabcdx");
+
+        //Act //Assert
+        assertArrayEquals(new long[]{2}, index.search("abcd", 10));
+    }
+
+    @Test
+    @DisplayName("測試-名稱索引-重複的三字元組與筆數上限")
+    void testSearch_RepeatedGramsAndLimit() {
+        //Arrange
+        TrigramIndex index = indexOf("aaaa", "aaa", "baaaa", "aaaaa");
+
+        //Act //Assert
+        assertArrayEquals(new long[]{1, 3, 4}, index.search("aaaa", 10));
+        assertArrayEquals(new long[]{1, 2}, index.search("aaa", 2));
+    }
+
+    @Test
+    @DisplayName("測試-名稱索引-刪除後不再出現且重複加入會略過")
+    void testRemoveAndDuplicateAdd() {
+        //Arrange
+        TrigramIndex index = indexOf("Alice Chen", "Bob Chenault");
+
+        //Act
+        boolean removed = index.remove(1);
+        boolean readded = index.add(1, "alice chen");
+
+        //Assert
+        assertTrue(removed);
+        assertFalse(readded);
+        assertArrayEquals(new long[]{2}, index.search("chen", 10));
+        assertEquals(1, index.size());
+        assertEquals(1, index.deletedCount());
+    }
+
+    @Test
+    @DisplayName("測試-名稱索引-分段合併後序號與搜尋結果依 ID 排序")
+    void testAppendAll_MergesPartsInOrder() {
+        //Arrange
+        TrigramIndex first = new TrigramIndex(false, 0);
+        first.add(10, "alice chen");
+        first.add(20, "carol lin");
+        TrigramIndex second = new TrigramIndex(false, 0);
+        second.add(30, "bob chenault");
+        second.add(40, "david chen");
+
+        //Act
+        TrigramIndex merged = new TrigramIndex(true, 4);
+        merged.appendAll(first);
+        merged.appendAll(second);
+        merged.trim();
+
+        //Assert
+        assertArrayEquals(new long[]{10, 30, 40}, merged.search("chen", 10));
+        assertArrayEquals(new long[]{20}, merged.search("lin", 10));
+        assertEquals(40, merged.maxId());
+        assertTrue(merged.remove(30));
+        assertArrayEquals(new long[]{10, 40}, merged.search("chen", 10));
+    }
+}
@@ -0,0 +1,97 @@
+package net.javaguides.banking.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.javaguides.banking.repository.AccountRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AccountOwnershipCacheTest {
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    private AccountOwnershipCache accountOwnershipCache;
+
+    @BeforeEach
+    void setUp() {
+        accountOwnershipCache = new AccountOwnershipCache(accountRepository, new SimpleMeterRegistry(), 2);
+    }
+
+    @Test
+    @DisplayName("測試-未命中後放入-第二次查詢命中快取")
+    void testGetIfPresent_AfterPut_HitsCache() {
+        //Arrange
+        Optional<String> first = accountOwnershipCache.getIfPresent(1L);
+        accountOwnershipCache.put(1L, "user-1");
+
+        //Act
+        Optional<String> second = accountOwnershipCache.getIfPresent(1L);
+
+        //Assert
+        assertTrue(first.isEmpty());
+        assertEquals(Optional.of("user-1"), second);
+        assertEquals(0.5, accountOwnershipCache.hitRatio());
+        verifyNoInteractions(accountRepository);
+    }
+
+    @Test
+    @DisplayName("測試-超過容量-淘汰最久未使用的帳戶")
+    void testPut_OverCapacity_EvictsLeastRecentlyUsed() {
+        //Arrange
+        accountOwnershipCache.put(1L, "user-1");
+        accountOwnershipCache.put(2L, "user-2");
+        accountOwnershipCache.getIfPresent(1L);
+
+        //Act
+        accountOwnershipCache.put(3L, "user-3");
+
+        //Assert
+        assertEquals(2, accountOwnershipCache.size());
+        assertTrue(accountOwnershipCache.getIfPresent(2L).isEmpty(), "帳戶 2 應已被淘汰");
+        assertEquals(Optional.of("user-1"), accountOwnershipCache.getIfPresent(1L));
+        assertEquals(Optional.of("user-3"), accountOwnershipCache.getIfPresent(3L));
+    }
+
+    @Test
+    @DisplayName("測試-批次查詢-只以一次查詢載入未命中的帳戶")
+    void testFindOwners_LoadsOnlyMissesInOneQuery() {
+        //Arrange
+        accountOwnershipCache.put(1L, "user-1");
+        given(accountRepository.findOwnersByIdIn(anyCollection())).willReturn(List.of(ownerView(2L, null)));
+
+        //Act
+        Map<Long, String> owners = accountOwnershipCache.findOwners(List.of(1L, 2L, 3L));
+
+        //Assert
+        assertEquals(Map.of(1L, "user-1", 2L, ""), owners);
+        verify(accountRepository, times(1)).findOwnersByIdIn(List.of(2L, 3L));
+    }
+
+    private AccountRepository.AccountOwnerView ownerView(Long id, String ownerUserId) {
+        return new AccountRepository.AccountOwnerView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getOwnerUserId() {
+                return ownerUserId;
+            }
+        };
+    }
+}
@@ -0,0 +1,248 @@
+package net.javaguides.banking.sequencer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.javaguides.banking.archive.TransactionArchive;
+import net.javaguides.banking.dto.AccountDto;
+import net.javaguides.banking.entity.User;
+import net.javaguides.banking.exception.AccountException;
+import net.javaguides.banking.id.SnowflakeIds;
+import net.javaguides.banking.journal.StatementRollupWriter;
+import net.javaguides.banking.journal.TransactionJournalWriter;
+import net.javaguides.banking.mapper.AccountMapper;
+import net.javaguides.banking.outbox.OutboxWriter;
+import net.javaguides.banking.repository.AccountRepository;
+import net.javaguides.banking.repository.UserRepository;
+import net.javaguides.banking.retry.RetryExecutor;
+import net.javaguides.banking.search.AccountNameIndex;
+import net.javaguides.banking.security.AccountLoadContext;
+import net.javaguides.banking.security.AccountOwnershipCache;
+import net.javaguides.banking.service.HotAccountService;
+import net.javaguides.banking.service.impl.AccountServiceImpl;
+import net.javaguides.banking.service.impl.HotAccountServiceImpl;
+import net.javaguides.banking.service.impl.TotalCountCache;
+import net.javaguides.banking.stream.AccountEventHub;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 序列器的分區執行緒以各自的交易提交，測試資料必須先提交，因此不使用測試交易，結束後自行清除。
+ * <p>
+ * 以測試執行緒持有帳戶列鎖的方式讓分區停在批次開頭，期間送出的指令會在佇列中累積。
+ */
+@DataJpaTest
+@Import({AccountServiceImpl.class, RetryExecutor.class, AccountOwnershipCache.class, AccountLoadContext.class, TotalCountCache.class, SimpleMeterRegistry.class, HotAccountServiceImpl.class, AccountMapper.class, TransactionJournalWriter.class, StatementRollupWriter.class,
+        TransactionArchive.class, AccountNameIndex.class, OutboxWriter.class, AccountEventHub.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AccountCommandSequencerTest {
+
+    private static final int PARTITIONS = 2;
+
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private HotAccountService hotAccountService;
+    @Autowired
+    private TransactionJournalWriter transactionJournalWriter;
+    @Autowired
+    private OutboxWriter outboxWriter;
+    @Autowired
+    private AccountEventHub accountEventHub;
+    @Autowired
+    private AccountMapper accountMapper;
+    @Autowired
+    private AccountServiceImpl accountService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private AccountCommandSequencer sequencer;
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+
+    @BeforeEach
+    void setUp() {
+        User owner = new User("sequencer", "sequencer@example.com", "Sequencer");
+        owner.setUserId("sequencer-owner");
+        userRepository.save(owner);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (sequencer != null) {
+            sequencer.stop();
+        }
+        callers.shutdownNow();
+        jdbcTemplate.update("DELETE FROM outbox_events");
+        jdbcTemplate.update("DELETE FROM outbox_account_seq");
+        jdbcTemplate.update("DELETE FROM statement_rollups");
+        jdbcTemplate.update("DELETE FROM transactions");
+        jdbcTemplate.update("DELETE FROM accounts");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    @Test
+    @DisplayName("測試-序列器-分區停住期間累積的指令合併為一批提交")
+    void testExecute_QueuedCommandsCommittedInOneBatch() throws Exception {
+        //Arrange
+        sequencer = start(64, 5_000);
+        long accountId = insertAccount(0);
+        long versionBefore = version(accountId);
+        int deposits = 20;
+
+        //Act
+        List<Future<AccountDto>> results = new ArrayList<>();
+        try (RowLock ignored = lockAccount(accountId)) {
+            for (int i = 0; i < deposits; i++) {
+                results.add(callers.submit(() -> sequencer.execute(new AccountCommand.Deposit(accountId, BigDecimal.ONE))));
+            }
+            // 等所有指令進入佇列
+            Thread.sleep(200);
+        }
+        for (Future<AccountDto> result : results) {
+            assertNotNull(result.get(10, TimeUnit.SECONDS));
+        }
+
+        //Assert
+        assertEquals(0, BigDecimal.valueOf(deposits).compareTo(balance(accountId)));
+        assertEquals(deposits, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions WHERE account_id = ?", Integer.class, accountId));
+        // 第一筆指令可能單獨成批 (分區在其他指令送出前就開始執行)，其餘合併為一批
+        assertTrue(version(accountId) - versionBefore <= 2, "每批只更新帳戶列一次");
+    }
+
+    @Test
+    @DisplayName("測試-序列器-等待逾時時尚未開始的指令被取消-已開始的指令等待實際結果")
+    void testExecute_Timeout_QueuedCancelledStartedAwaited() throws Exception {
+        //Arrange
+        sequencer = start(64, 100);
+        long accountId = insertAccount(0);
+
+        //Act
+        Future<AccountDto> started;
+        Future<AccountDto> queued;
+        try (RowLock ignored = lockAccount(accountId)) {
+            started = callers.submit(() -> sequencer.execute(new AccountCommand.Deposit(accountId, BigDecimal.ONE)));
+            // 讓分區先取出第一筆並停在帳戶列鎖上，第二筆留在佇列中
+            Thread.sleep(100);
+            queued = callers.submit(() -> sequencer.execute(new AccountCommand.Deposit(accountId, BigDecimal.TEN)));
+            Thread.sleep(300);
+        }
+
+        //Assert
+        assertEquals(0, BigDecimal.ONE.compareTo(started.get(10, TimeUnit.SECONDS).balance()));
+        Exception cancelled = assertThrows(Exception.class, () -> queued.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(AccountException.class, cancelled.getCause());
+        // 取消的指令之後也不會執行
+        sequencer.execute(new AccountCommand.Deposit(accountId, BigDecimal.ONE));
+        assertEquals(0, new BigDecimal("2").compareTo(balance(accountId)));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions WHERE account_id = ?", Integer.class, accountId));
+    }
+
+    @Test
+    @DisplayName("測試-序列器-跨分區轉帳在兩個分區先提交之前的指令後才執行")
+    void testExecute_CrossPartitionTransfer_WaitsForEarlierCommands() throws Exception {
+        //Arrange
+        sequencer = start(64, 5_000);
+        long from = insertAccount(0);
+        long to = insertAccount(0);
+        while (sequencer.partitionOf(to) == sequencer.partitionOf(from)) {
+            jdbcTemplate.update("DELETE FROM accounts WHERE id = ?", to);
+            to = insertAccount(0);
+        }
+        long toAccountId = to;
+
+        //Act
+        Future<AccountDto> deposit;
+        Future<AccountDto> transfer;
+        Future<AccountDto> laterDeposit;
+        try (RowLock ignored = lockAccount(from)) {
+            // 轉出帳戶的存款停在列鎖上，轉帳排在它之後
+            deposit = callers.submit(() -> sequencer.execute(new AccountCommand.Deposit(from, new BigDecimal("100"))));
+            Thread.sleep(100);
+            transfer = callers.submit(() -> sequencer.execute(new AccountCommand.Transfer(from, toAccountId, new BigDecimal("100"))));
+            Thread.sleep(100);
+            laterDeposit = callers.submit(() -> sequencer.execute(new AccountCommand.Deposit(toAccountId, new BigDecimal("5"))));
+            Thread.sleep(100);
+            // 轉入帳戶的分區停在會合點，之後的存款尚未執行
+            assertFalse(laterDeposit.isDone());
+        }
+
+        //Assert
+        assertNotNull(deposit.get(10, TimeUnit.SECONDS));
+        // 存款先提交，轉帳不會因餘額不足而失敗
+        assertNull(transfer.get(10, TimeUnit.SECONDS));
+        assertEquals(0, new BigDecimal("105").compareTo(laterDeposit.get(10, TimeUnit.SECONDS).balance()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(balance(from)));
+        assertEquals(0, new BigDecimal("105").compareTo(balance(toAccountId)));
+    }
+
+    private AccountCommandSequencer start(int maxBatchSize, long awaitTimeoutMs) {
+        AccountCommandSequencer started = new AccountCommandSequencer(accountRepository, hotAccountService, transactionJournalWriter, outboxWriter,
+                accountEventHub, accountMapper, accountService, transactionManager, PARTITIONS, maxBatchSize, awaitTimeoutMs);
+        started.start();
+        return started;
+    }
+
+    /**
+     * 在另一條執行緒的交易中鎖定帳戶列，close 時提交並釋放。
+     */
+    private RowLock lockAccount(long accountId) throws InterruptedException {
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        Future<?> holder = callers.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.queryForList("SELECT id FROM accounts WHERE id = ? FOR UPDATE", accountId);
+            locked.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertTrue(locked.await(10, TimeUnit.SECONDS));
+        return () -> {
+            release.countDown();
+            holder.get(10, TimeUnit.SECONDS);
+        };
+    }
+
+    private interface RowLock extends AutoCloseable {
+    }
+
+    private long insertAccount(long balance) {
+        long id = SnowflakeIds.nextId();
+        jdbcTemplate.update("INSERT INTO accounts (id, account_holder_name, balance, version, hot_slots, user_id) VALUES (?, ?, ?, 0, 0, ?)",
+                id, "Holder " + id, BigDecimal.valueOf(balance), "sequencer-owner");
+        return id;
+    }
+
+    private BigDecimal balance(long accountId) {
+        return jdbcTemplate.queryForObject("SELECT balance FROM accounts WHERE id = ?", BigDecimal.class, accountId);
+    }
+
+    private long version(long accountId) {
+        return jdbcTemplate.queryForObject("SELECT version FROM accounts WHERE id = ?", Long.class, accountId);
+    }
+}
@@ -1,17 +1,34 @@
 package net.javaguides.banking.service.impl;
 
+import net.javaguides.banking.archive.TransactionArchive;
 import net.javaguides.banking.dto.AccountDto;
+import net.javaguides.banking.dto.AccountFilter;
+import net.javaguides.banking.dto.AccountVersionDTO;
+import net.javaguides.banking.dto.BatchTransferRequestDTO;
+import net.javaguides.banking.dto.BatchTransferResultDTO;
+import net.javaguides.banking.dto.CursorPageResponseDTO;
+import net.javaguides.banking.dto.TransactionCursor;
+import net.javaguides.banking.dto.TransactionDTO;
 import net.javaguides.banking.dto.TransferFundDTO;
 import net.javaguides.banking.entity.Account;
 import net.javaguides.banking.entity.Transaction;
+import net.javaguides.banking.enums.BatchTransferMode;
 import net.javaguides.banking.enums.TransactionType;
 import net.javaguides.banking.exception.AccountException;
 import net.javaguides.banking.exception.AccountNotFoundException;
 import net.javaguides.banking.exception.InsufficientAmountException;
+import net.javaguides.banking.journal.TransactionJournalWriter;
 import net.javaguides.banking.mapper.AccountMapper;
+import net.javaguides.banking.outbox.OutboxWriter;
 import net.javaguides.banking.repository.AccountRepository;
 import net.javaguides.banking.repository.TransactionRepository;
 import net.javaguides.banking.repository.UserRepository;
+import net.javaguides.banking.retry.RetryExecutor;
+import net.javaguides.banking.search.AccountNameIndex;
+import net.javaguides.banking.security.AccountLoadContext;
+import net.javaguides.banking.security.AccountOwnershipCache;
+import net.javaguides.banking.service.HotAccountService;
+import net.javaguides.banking.stream.AccountEventHub;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -20,14 +37,24 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.*;
 
@@ -42,6 +69,26 @@ class AccountServiceImplTest {
     private UserRepository userRepository;
     @Mock
     private AccountMapper accountMapper;
+    @Mock
+    private TransactionJournalWriter transactionJournalWriter;
+    @Mock
+    private HotAccountService hotAccountService;
+    @Mock
+    private RetryExecutor retryExecutor;
+    @Mock
+    private AccountOwnershipCache accountOwnershipCache;
+    @Mock
+    private AccountLoadContext accountLoadContext;
+    @Mock
+    private TotalCountCache totalCountCache;
+    @Mock
+    private TransactionArchive transactionArchive;
+    @Mock
+    private AccountNameIndex accountNameIndex;
+    @Mock
+    private OutboxWriter outboxWriter;
+    @Mock
+    private AccountEventHub accountEventHub;
 
     @InjectMocks
     private AccountServiceImpl accountService;
@@ -52,6 +99,10 @@ class AccountServiceImplTest {
 
     @BeforeEach
     void setUp() {
+        // 重試元件直接執行傳入的操作
+        lenient().when(retryExecutor.execute(anyString(), any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(2).get());
+
         // ... 其他既有設定 ...
 
         // 準備兩個帳戶用於轉帳測試
@@ -66,25 +117,67 @@ class AccountServiceImplTest {
         toAccount.setAccountHolderName("Receiver");
     }
 
+    @Test
+    @DisplayName("測試-帳戶版本-只做版本查詢-不載入帳戶")
+    void testGetAccountVersion_UsesVersionLookupOnly() {
+        //Arrange
+        AccountRepository.AccountVersionView view = mock(AccountRepository.AccountVersionView.class);
+        when(view.getVersion()).thenReturn(7L);
+        when(view.getHotSlots()).thenReturn(0);
+        when(accountRepository.findVersionById(1L)).thenReturn(Optional.of(view));
+
+        //Act
+        Optional<AccountVersionDTO> version = accountService.getAccountVersion(1L);
+
+        //Assert
+        assertEquals(Optional.of(new AccountVersionDTO(1L, 7L)), version);
+        verify(accountRepository, never()).findById(any());
+        verifyNoInteractions(accountMapper);
+    }
+
+    @Test
+    @DisplayName("測試-帳戶版本-熱門帳戶入帳不遞增 version-沒有版本")
+    void testGetAccountVersion_HotAccount_Empty() {
+        //Arrange
+        AccountRepository.AccountVersionView view = mock(AccountRepository.AccountVersionView.class);
+        when(view.getHotSlots()).thenReturn(4);
+        when(accountRepository.findVersionById(1L)).thenReturn(Optional.of(view));
+
+        //Act
+        Optional<AccountVersionDTO> version = accountService.getAccountVersion(1L);
+
+        //Assert
+        assertTrue(version.isEmpty());
+    }
+
+    @Test
+    @DisplayName("測試-帳戶版本-查無帳戶拋出例外")
+    void testGetAccountVersion_AccountNotFound_ThrowsException() {
+        //Arrange
+        when(accountRepository.findVersionById(1L)).thenReturn(Optional.empty());
+
+        //Act //Assert
+        assertThrows(AccountNotFoundException.class, () -> accountService.getAccountVersion(1L));
+    }
+
     @Test
     @DisplayName("測試-提款成功")
     void testWithdraw_Success(){
 
         //Arrange
+        fromAccount.setBalance(new BigDecimal("900.00"));
+        when(accountRepository.decrementBalanceIfSufficient(1L, new BigDecimal("100.00"))).thenReturn(1);
         when(accountRepository.findById(1L)).thenReturn(Optional.of(fromAccount));
 
         //Act //Assert
         AccountDto accountDto = accountService.withdraw(1L, new BigDecimal("100.00"));
 
-        ArgumentCaptor<Account> accountArgumentCaptor = ArgumentCaptor.forClass(Account.class);
-
-        verify(accountRepository,times(1)).save(accountArgumentCaptor.capture());
-
-        assertEquals(0,new BigDecimal("900.00").compareTo(accountArgumentCaptor.getValue().getBalance()));
+        verify(accountRepository, times(1)).decrementBalanceIfSufficient(1L, new BigDecimal("100.00"));
+        verify(accountRepository, never()).save(any(Account.class));
 
         ArgumentCaptor<Transaction> transactionArgumentCaptor = ArgumentCaptor.forClass(Transaction.class);
 
-        verify(transactionRepository,times(1)).save(transactionArgumentCaptor.capture());
+        verify(transactionJournalWriter,times(1)).append(transactionArgumentCaptor.capture());
 
         assertEquals(0,new BigDecimal("100.00").compareTo(transactionArgumentCaptor.getValue().getAmount()));
 
@@ -93,90 +186,126 @@ class AccountServiceImplTest {
 
     }
 
+    @Test
+    @DisplayName("測試-提款餘額不足-拋出例外")
+    void testWithdraw_InsufficientAmount_ThrowsException() {
+
+        //Arrange
+        when(accountRepository.decrementBalanceIfSufficient(1L, new BigDecimal("5000.00"))).thenReturn(0);
+        when(accountRepository.existsById(1L)).thenReturn(true);
+
+        //Act //Assert
+        InsufficientAmountException exception =
+                assertThrows(InsufficientAmountException.class, () -> accountService.withdraw(1L, new BigDecimal("5000.00")));
+
+        assertEquals("Insufficient amount", exception.getMessage(), "例外錯誤訊息不一致");
+        verify(transactionJournalWriter, never()).append(any(Transaction.class));
+        verify(outboxWriter, never()).append(anyList());
+    }
+
+    @Test
+    @DisplayName("測試-提款找不到帳戶-拋出例外")
+    void testWithdraw_AccountNotFound_ThrowsException() {
+
+        //Arrange
+        when(accountRepository.decrementBalanceIfSufficient(1L, new BigDecimal("100.00"))).thenReturn(0);
+        when(accountRepository.existsById(1L)).thenReturn(false);
+
+        //Act //Assert
+        assertThrows(AccountNotFoundException.class, () -> accountService.withdraw(1L, new BigDecimal("100.00")));
+        verify(transactionJournalWriter, never()).append(any(Transaction.class));
+    }
+
 
     @Test
     @DisplayName("測試-存款找不到帳戶-拋出例外")
     void testDeposit_AccountNotFound_ThrowsException() {
 
         //Arrange
-        when(accountRepository.findById(1L)).thenReturn(Optional.empty());
+        when(accountRepository.incrementBalance(1L, new BigDecimal("1000.00"))).thenReturn(0);
         //Act //Assert
         AccountNotFoundException accountNotFoundException =
                 assertThrows(AccountNotFoundException.class, () -> accountService.deposit(1L, new BigDecimal("1000.00")));
         assertEquals("Account does not exist",accountNotFoundException.getMessage(),"回傳錯誤訊息不一致");
+        verify(transactionJournalWriter, never()).append(any(Transaction.class));
     }
 
 
     @Test
-    @DisplayName("測試-存款鎖定衝突持續存在-拋出例外")
-    void testDeposit_WhenLockingConflictPersists_ThrowsException() {
+    @DisplayName("測試-存款使用原子更新-不會讀取後整筆寫回")
+    void testDeposit_UsesAtomicUpdate_NeverSavesEntity() {
 
         //Arrange
         Account account1 = new Account();
         account1.setId(1L);
         account1.setAccountHolderName("tom");
-        account1.setBalance(new BigDecimal("1000.00"));
-
+        account1.setBalance(new BigDecimal("1500.00"));
 
-        when(accountRepository.findById(1L))
-                .thenReturn(Optional.of(account1));
+        when(accountRepository.incrementBalance(1L, new BigDecimal("500.00"))).thenReturn(1);
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(account1));
 
-        when(accountRepository.save(any(Account.class)))
-                .thenThrow(new ObjectOptimisticLockingFailureException(Account.class, 1L));
-
-        //Act //Assert
+        //Act
+        accountService.deposit(1L, new BigDecimal("500.00"));
 
-        AccountException accountException = assertThrows(AccountException.class, () -> accountService.deposit(1L, new BigDecimal("1000")));
+        //Assert
+        // 高併發下不再有樂觀鎖衝突與重試，因此只會有一次條件式 UPDATE
+        verify(accountRepository, times(1)).incrementBalance(1L, new BigDecimal("500.00"));
+        verify(accountRepository, never()).save(any(Account.class));
 
-        assertEquals("存款操作因高併發衝突而失敗，請稍後再試。", accountException.getMessage(), "例外錯誤訊息不一致");
+        ArgumentCaptor<Transaction> txCaptor = ArgumentCaptor.forClass(Transaction.class);
+        verify(transactionJournalWriter, times(1)).append(txCaptor.capture());
 
+        Transaction savedTx = txCaptor.getValue();
+        assertEquals(new BigDecimal("500.00"), savedTx.getAmount(), "交易金額錯誤");
+        assertEquals(TransactionType.DEPOSIT, savedTx.getTransactionType(), "交易類型錯誤");
+        // 同一筆交易紀錄在同一個交易中寫入 outbox
+        verify(outboxWriter, times(1)).append(List.of(savedTx));
+        verify(accountEventHub, times(1)).publishAfterCommit(eq(List.of(savedTx)), any(), any());
     }
 
     @Test
-    @DisplayName("測試-存款鎖定衝突發生-重試後成功")
-    void testDeposit_WhenLockingConflictOccurs_ShouldRetryAndSucceed() {
+    @DisplayName("測試-熱門帳戶存款-寫入子餘額槽且回傳總餘額")
+    void testDeposit_HotAccount_CreditsSlotAndReturnsTotal() {
 
-        // Arrange
-        Account account1 = new Account();
-        account1.setId(1L);
-        account1.setAccountHolderName("tom");
-        account1.setBalance(new BigDecimal("1000.00"));
-
-
-        Account account2 = new Account();
-        account2.setId(1L);
-        account2.setAccountHolderName("tom");
-        account2.setBalance(new BigDecimal("1000.00"));
-
-        // 第一次呼叫 save() 時丟出樂觀鎖例外，第二次才成功
-
-        when(accountRepository.findById(1L))
-                .thenReturn(Optional.of(account1))
-                .thenReturn(Optional.of(account2));
-
-        when(accountRepository.save(any(Account.class)))
-                .thenThrow(new ObjectOptimisticLockingFailureException(Account.class, 1L)) // 第一次衝突
-                .thenAnswer(invocation -> invocation.getArgument(0)); // 第二次成功回傳更新後的帳戶
-
-        // Act
-        AccountDto resultDto = accountService.deposit(1L, new BigDecimal("500.00"));
+        //Arrange
+        Account hotAccount = new Account();
+        hotAccount.setId(1L);
+        hotAccount.setAccountHolderName("merchant");
+        hotAccount.setBalance(new BigDecimal("1000.00"));
+        hotAccount.setHotSlots(8);
+
+        when(hotAccountService.isHot(1L)).thenReturn(true);
+        when(hotAccountService.credit(1L, new BigDecimal("50.00"))).thenReturn(true);
+        when(hotAccountService.totalBalance(1L)).thenReturn(new BigDecimal("1250.00"));
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(hotAccount));
+        when(accountMapper.mapTOAccountDto(hotAccount, new BigDecimal("1250.00")))
+                .thenReturn(new AccountDto(1L, "merchant", new BigDecimal("1250.00")));
 
-        // Assert
-        ArgumentCaptor<Account> accountCaptor = ArgumentCaptor.forClass(Account.class);
-        verify(accountRepository, times(2)).save(accountCaptor.capture()); // 確認有重試兩次
+        //Act
+        AccountDto accountDto = accountService.deposit(1L, new BigDecimal("50.00"));
 
-        Account lastSavedAccount = accountCaptor.getValue();
-        assertEquals(0, new BigDecimal("1500.00").compareTo(lastSavedAccount.getBalance()), "存款後餘額有誤");
+        //Assert
+        verify(accountRepository, never()).incrementBalance(any(Long.class), any(BigDecimal.class));
+        assertEquals(new BigDecimal("1250.00"), accountDto.balance(), "熱門帳戶餘額必須包含子餘額槽");
+        verify(transactionJournalWriter, times(1)).append(any(Transaction.class));
+    }
 
-        // 驗證交易紀錄仍然有被建立一次
-        ArgumentCaptor<Transaction> txCaptor = ArgumentCaptor.forClass(Transaction.class);
-        verify(transactionRepository, times(1)).save(txCaptor.capture());
+    @Test
+    @DisplayName("測試-熱門帳戶提款-主餘額不足時歸併子餘額槽後重試")
+    void testWithdraw_HotAccountMainBalanceShort_FoldsSlotsAndRetries() {
 
-        Transaction savedTx = txCaptor.getValue();
-        assertEquals(new BigDecimal("500.00"), savedTx.getAmount(), "交易金額錯誤");
-        assertEquals(TransactionType.DEPOSIT, savedTx.getTransactionType(), "交易類型錯誤");
+        //Arrange
+        fromAccount.setBalance(new BigDecimal("100.00"));
+        when(accountRepository.decrementBalanceIfSufficient(1L, new BigDecimal("300.00"))).thenReturn(0).thenReturn(1);
+        when(hotAccountService.fold(1L)).thenReturn(true);
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(fromAccount));
 
+        //Act
+        accountService.withdraw(1L, new BigDecimal("300.00"));
 
+        //Assert
+        verify(accountRepository, times(2)).decrementBalanceIfSufficient(1L, new BigDecimal("300.00"));
+        verify(transactionJournalWriter, times(1)).append(any(Transaction.class));
     }
 
     @Test
@@ -188,9 +317,11 @@ class AccountServiceImplTest {
         Account account = new Account();
         account.setId(1L);
         account.setAccountHolderName("tom");
-        account.setBalance(new BigDecimal("1000.00"));
+        account.setBalance(new BigDecimal("2000.00"));
 
+        when(accountRepository.incrementBalance(1L, new BigDecimal("1000.00"))).thenReturn(1);
         when(accountRepository.findById(1L)).thenReturn(Optional.of(account));
+        when(accountMapper.mapTOAccountDto(account)).thenReturn(new AccountDto(1L, "tom", new BigDecimal("2000.00")));
 
         //Act
 
@@ -198,17 +329,11 @@ class AccountServiceImplTest {
 
         // Assert
 
-        ArgumentCaptor<Account> accountArgumentCaptor = ArgumentCaptor.forClass(Account.class);
-
-        verify(accountRepository, times(1)).save(accountArgumentCaptor.capture());
-
-        Account value = accountArgumentCaptor.getValue();
-
-        assertEquals(new BigDecimal("2000.00"), value.getBalance(), "存款結算後金額有誤");
+        assertEquals(new BigDecimal("2000.00"), accountDto.balance(), "存款結算後金額有誤");
 
         ArgumentCaptor<Transaction> transactionArgumentCaptor = ArgumentCaptor.forClass(Transaction.class);
 
-        verify(transactionRepository, times(1)).save(transactionArgumentCaptor.capture());
+        verify(transactionJournalWriter, times(1)).append(transactionArgumentCaptor.capture());
 
         Transaction value1 = transactionArgumentCaptor.getValue();
 
@@ -241,7 +366,7 @@ class AccountServiceImplTest {
 
         assertEquals("Account does not exist", accountNotFoundException.getMessage(), "錯誤訊息不一致");
         verify(accountRepository, never()).save(any(Account.class));
-        verify(transactionRepository, never()).save(any(Transaction.class));
+        verify(transactionJournalWriter, never()).appendAll(anyList());
 
     }
 
@@ -265,7 +390,7 @@ class AccountServiceImplTest {
 
         verify(accountRepository, never()).findById(any(Long.class));
         verify(accountRepository, never()).save(any(Account.class));
-        verify(transactionRepository, never()).save(any(Transaction.class));
+        verify(transactionJournalWriter, never()).appendAll(anyList());
     }
 
 
@@ -295,7 +420,7 @@ class AccountServiceImplTest {
         assertEquals("Insufficient amount", insufficientAmountException.getMessage(), "例外錯誤訊息不一致");
 
         verify(accountRepository, never()).save(any(Account.class));
-        verify(transactionRepository, never()).save(any(Transaction.class));
+        verify(transactionJournalWriter, never()).appendAll(anyList());
 
     }
 
@@ -343,12 +468,15 @@ class AccountServiceImplTest {
         assertEquals(0, new BigDecimal("800").compareTo(savedFromAccount.getBalance()));
         assertEquals(0, new BigDecimal("700").compareTo(savedToAccount.getBalance()));
 
-        ArgumentCaptor<Transaction> transactionArgumentCaptor =
-                ArgumentCaptor.forClass(Transaction.class);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Transaction>> transactionArgumentCaptor =
+                ArgumentCaptor.forClass(List.class);
 
-        verify(transactionRepository, times(2)).save(transactionArgumentCaptor.capture());
+        verify(transactionJournalWriter, times(1)).appendAll(transactionArgumentCaptor.capture());
 
-        List<Transaction> allValues1 = transactionArgumentCaptor.getAllValues();
+        List<Transaction> allValues1 = transactionArgumentCaptor.getValue();
+        assertEquals(2, allValues1.size(), "轉帳應寫入兩筆交易紀錄");
+        verify(outboxWriter, times(1)).append(allValues1);
 
         Transaction fromTransaction = null;
         Transaction toTransaction = null;
@@ -370,4 +498,215 @@ class AccountServiceImplTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("測試-批次轉帳-BEST_EFFORT 跳過失敗項目並一次鎖定所有帳戶")
+    void testTransferFundsBatch_BestEffort_SkipsFailedItems() {
+        //Arrange
+        Account thirdAccount = new Account();
+        thirdAccount.setId(3L);
+        thirdAccount.setBalance(new BigDecimal("50.00"));
+
+        BatchTransferRequestDTO request = new BatchTransferRequestDTO(BatchTransferMode.BEST_EFFORT, List.of(
+                new TransferFundDTO(1L, 2L, new BigDecimal("100.00")),
+                new TransferFundDTO(3L, 1L, new BigDecimal("80.00")),
+                new TransferFundDTO(2L, 3L, new BigDecimal("600.00"))));
+
+        given(accountRepository.findAllByIdForUpdate(any())).willReturn(List.of(fromAccount, toAccount, thirdAccount));
+
+        //Act
+        BatchTransferResultDTO result = accountService.transferFundsBatch(request);
+
+        //Assert
+        assertEquals(2, result.succeeded());
+        assertEquals(1, result.failed());
+        assertFalse(result.results().get(1).success());
+        assertEquals("Insufficient amount", result.results().get(1).error());
+
+        // 第三筆使用第一筆轉入後的餘額 500 + 100
+        assertEquals(0, new BigDecimal("900.00").compareTo(fromAccount.getBalance()));
+        assertEquals(0, new BigDecimal("0.00").compareTo(toAccount.getBalance()));
+        assertEquals(0, new BigDecimal("650.00").compareTo(thirdAccount.getBalance()));
+
+        verify(accountRepository, times(1)).findAllByIdForUpdate(any());
+        verify(accountRepository, never()).findByIdForUpdate(any());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Transaction>> journalCaptor = ArgumentCaptor.forClass(List.class);
+        verify(transactionJournalWriter, times(1)).appendAll(journalCaptor.capture());
+        assertEquals(4, journalCaptor.getValue().size(), "兩筆成功的轉帳應寫入四筆交易紀錄");
+    }
+
+    @Test
+    @DisplayName("測試-批次轉帳-ATOMIC 任一筆失敗拋出例外且不寫入交易紀錄")
+    void testTransferFundsBatch_Atomic_ThrowsOnFirstFailure() {
+        //Arrange
+        BatchTransferRequestDTO request = new BatchTransferRequestDTO(BatchTransferMode.ATOMIC, List.of(
+                new TransferFundDTO(1L, 2L, new BigDecimal("100.00")),
+                new TransferFundDTO(1L, 99L, new BigDecimal("10.00"))));
+
+        given(accountRepository.findAllByIdForUpdate(any())).willReturn(List.of(fromAccount, toAccount));
+
+        //Act//Assert
+        assertThrows(AccountNotFoundException.class, () -> accountService.transferFundsBatch(request), "拋出例外有誤");
+
+        verify(transactionJournalWriter, never()).appendAll(anyList());
+    }
+
+    @Test
+    @DisplayName("測試-存款-重用權限檢查載入的帳戶並以 version 條件更新-不再讀回")
+    void testDeposit_WithSnapshotFromSecurityCheck_SkipsReadBack() {
+        //Arrange
+        fromAccount.setVersion(3L);
+        given(accountLoadContext.take(1L)).willReturn(Optional.of(fromAccount));
+        given(accountRepository.incrementBalanceIfVersion(1L, new BigDecimal("200.00"), 3L)).willReturn(1);
+        given(accountMapper.mapTOAccountDto(any(Account.class), any(BigDecimal.class)))
+                .willAnswer(invocation -> new AccountDto(1L, "Sender", invocation.getArgument(1)));
+
+        //Act
+        AccountDto result = accountService.deposit(1L, new BigDecimal("200.00"));
+
+        //Assert
+        assertEquals(0, new BigDecimal("1200.00").compareTo(result.balance()));
+        verify(accountRepository, never()).incrementBalance(any(), any());
+        verify(accountRepository, never()).findById(any());
+        verify(transactionJournalWriter, times(1)).append(any(Transaction.class));
+    }
+
+    @Test
+    @DisplayName("測試-游標分頁-多取一筆判斷下一頁並回傳最後一筆的游標")
+    void testGetAccountTransactionsByCursor_ReturnsNextCursor() {
+        //Arrange
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 12, 0);
+        List<Transaction> rows = List.of(
+                new Transaction(30L, 1L, BigDecimal.ONE, TransactionType.DEPOSIT, now),
+                new Transaction(20L, 1L, BigDecimal.ONE, TransactionType.DEPOSIT, now),
+                new Transaction(10L, 1L, BigDecimal.ONE, TransactionType.DEPOSIT, now.minusMinutes(1)));
+        TransactionCursor cursor = new TransactionCursor(now.plusMinutes(1), 40L);
+        given(transactionRepository.findPageAfter(eq(1L), eq(cursor.timestamp()), eq(40L), any())).willReturn(rows);
+
+        //Act
+        CursorPageResponseDTO<TransactionDTO> page = accountService.getAccountTransactionsByCursor(1L, cursor.encode(), 2);
+
+        //Assert
+        assertTrue(page.hasNext());
+        assertEquals(2, page.content().size());
+        assertEquals(new TransactionCursor(now, 20L), TransactionCursor.decode(page.nextCursor()));
+    }
+
+    @Test
+    @DisplayName("測試-游標分頁-無效的游標拋出例外")
+    void testGetAccountTransactionsByCursor_InvalidCursor_ThrowsException() {
+        assertThrows(AccountException.class, () -> accountService.getAccountTransactionsByCursor(1L, "not-a-cursor", 2), "拋出例外有誤");
+    }
+
+    @Test
+    @DisplayName("測試-交易分頁-非最後一頁使用快取的總筆數-不執行 COUNT")
+    void testGetAccountTransactions_UsesCachedTotal() {
+        //Arrange
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 12, 0);
+        Pageable pageable = PageRequest.of(0, 2);
+        List<TransactionDTO> rows = List.of(
+                new TransactionDTO(30L, 1L, BigDecimal.ONE, TransactionType.DEPOSIT, now),
+                new TransactionDTO(20L, 1L, BigDecimal.ONE, TransactionType.DEPOSIT, now));
+        given(transactionRepository.findDtoSliceByAccountId(1L, pageable)).willReturn(new SliceImpl<>(rows, pageable, true));
+        given(totalCountCache.total(eq("transactions:1"), any())).willReturn(40L);
+
+        //Act
+        Page<TransactionDTO> page = accountService.getAccountTransactions(1L, pageable);
+
+        //Assert
+        assertEquals(40L, page.getTotalElements());
+        assertEquals(20, page.getTotalPages());
+        verify(transactionRepository, never()).countByAccountId(any());
+    }
+
+    @Test
+    @DisplayName("測試-交易分頁-最後一頁直接算出總筆數並更新快取")
+    void testGetAccountTransactions_LastPage_RecordsExactTotal() {
+        //Arrange
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 12, 0);
+        Pageable pageable = PageRequest.of(2, 2);
+        List<TransactionDTO> rows = List.of(new TransactionDTO(10L, 1L, BigDecimal.ONE, TransactionType.DEPOSIT, now));
+        given(transactionRepository.findDtoSliceByAccountId(1L, pageable)).willReturn(new SliceImpl<>(rows, pageable, false));
+
+        //Act
+        Page<TransactionDTO> page = accountService.getAccountTransactions(1L, pageable);
+
+        //Assert
+        assertEquals(5L, page.getTotalElements());
+        assertTrue(page.isLast());
+        verify(totalCountCache, times(1)).record("transactions:1", 5L);
+        verify(totalCountCache, never()).total(any(), any());
+    }
+
+    @Test
+    @DisplayName("測試-交易分頁-資料表不足一頁時從封存檔補齊")
+    void testGetAccountTransactionsSlice_FillsFromArchive() {
+        //Arrange
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 12, 0);
+        Pageable pageable = PageRequest.of(0, 3);
+        List<TransactionDTO> hot = List.of(new TransactionDTO(30L, 1L, BigDecimal.ONE, TransactionType.DEPOSIT, now));
+        List<Transaction> archived = List.of(
+                new Transaction(20L, 1L, BigDecimal.ONE, TransactionType.DEPOSIT, now.minusYears(1)),
+                new Transaction(10L, 1L, BigDecimal.ONE, TransactionType.DEPOSIT, now.minusYears(1)),
+                new Transaction(5L, 1L, BigDecimal.ONE, TransactionType.DEPOSIT, now.minusYears(1)));
+        given(transactionRepository.findDtoSliceByAccountId(1L, pageable)).willReturn(new SliceImpl<>(hot, pageable, false));
+        given(transactionArchive.hasAccount(1L)).willReturn(true);
+        given(transactionArchive.findPageByIdDesc(1L, 0, 3)).willReturn(archived);
+
+        //Act
+        Slice<TransactionDTO> slice = accountService.getAccountTransactionsSlice(1L, pageable);
+
+        //Assert
+        assertEquals(List.of(30L, 20L, 10L), slice.getContent().stream().map(TransactionDTO::id).toList());
+        assertTrue(slice.hasNext());
+        verify(transactionRepository, never()).countByAccountId(any());
+    }
+
+    @Test
+    @DisplayName("測試-帳戶列表-沒有索引的排序欄位拋出例外且不查詢")
+    void testGetAllAccountsSlice_UnindexedSort_Throws() {
+        //Arrange
+        Pageable pageable = PageRequest.of(0, 10, Sort.by("version"));
+
+        //Act & Assert
+        assertThrows(AccountException.class, () -> accountService.getAllAccountsSlice(AccountFilter.none(), pageable), "拋出例外有誤");
+        verify(accountRepository, never()).findDtoSlice(any(), any());
+    }
+
+    @Test
+    @DisplayName("測試-名稱搜尋-以索引找到的 ID 查詢帳戶")
+    void testSearchAccounts_UsesIndexIds() {
+        //Arrange
+        List<AccountDto> found = List.of(new AccountDto(3L, "Alice Chen", BigDecimal.TEN));
+        when(accountNameIndex.search("chen", 20)).thenReturn(Optional.of(new long[]{3L}));
+        when(accountRepository.findDtoSlice(any(), any())).thenReturn(new SliceImpl<>(found));
+
+        //Act
+        List<AccountDto> result = accountService.searchAccounts("chen", 20);
+
+        //Assert
+        assertEquals(found, result);
+    }
+
+    @Test
+    @DisplayName("測試-名稱搜尋-索引沒有符合的帳戶時不查詢資料庫")
+    void testSearchAccounts_NoMatch_SkipsQuery() {
+        //Arrange
+        when(accountNameIndex.search("zzz", 20)).thenReturn(Optional.of(new long[0]));
+
+        //Act
+        List<AccountDto> result = accountService.searchAccounts("zzz", 20);
+
+        //Assert
+        assertTrue(result.isEmpty());
+        verify(accountRepository, never()).findDtoSlice(any(), any());
+    }
+
+    @Test
+    @DisplayName("測試-名稱搜尋-少於三個字元拋出例外")
+    void testSearchAccounts_TooShort_Throws() {
+        assertThrows(AccountException.class, () -> accountService.searchAccounts("ab", 20), "拋出例外有誤");
+        verify(accountNameIndex, never()).search(anyString(), anyInt());
+    }
+}
@@ -0,0 +1,208 @@
+package net.javaguides.banking.service.impl;
+
+import net.javaguides.banking.archive.TransactionArchive;
+import net.javaguides.banking.entity.BalanceCheckpoint;
+import net.javaguides.banking.entity.BalanceCheckpointProgress;
+import net.javaguides.banking.entity.Transaction;
+import net.javaguides.banking.enums.TransactionType;
+import net.javaguides.banking.exception.AccountNotFoundException;
+import net.javaguides.banking.repository.AccountRepository;
+import net.javaguides.banking.repository.BalanceCheckpointProgressRepository;
+import net.javaguides.banking.repository.BalanceCheckpointRepository;
+import net.javaguides.banking.repository.TransactionRepository;
+import net.javaguides.banking.security.AccountLoadContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BalanceCheckpointServiceImplTest {
+
+    @Mock
+    private BalanceCheckpointRepository checkpointRepository;
+    @Mock
+    private BalanceCheckpointProgressRepository progressRepository;
+    @Mock
+    private TransactionRepository transactionRepository;
+    @Mock
+    private AccountRepository accountRepository;
+    // 不在請求中，take 一律為 empty，由 accountRepository.existsById 決定
+    @Spy
+    private AccountLoadContext accountLoadContext;
+    @Mock
+    private TransactionArchive transactionArchive;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private BalanceCheckpointServiceImpl balanceCheckpointService;
+
+    @BeforeEach
+    void setUp() {
+        balanceCheckpointService = new BalanceCheckpointServiceImpl(checkpointRepository, progressRepository,
+                transactionRepository, accountRepository, accountLoadContext, transactionArchive, transactionManager, 10, 366);
+    }
+
+    @Test
+    @DisplayName("測試-查詢歷史餘額-最近檢查點加上之後的交易淨額")
+    void testBalanceAsOf_CheckpointPlusTail() {
+
+        //Arrange
+        LocalDateTime asOf = LocalDateTime.of(2024, 5, 10, 15, 30);
+        when(accountRepository.existsById(1L)).thenReturn(true);
+        when(checkpointRepository.findFirstByAccountIdAndDayLessThanEqualOrderByDayDesc(1L, LocalDate.of(2024, 5, 9)))
+                .thenReturn(Optional.of(new BalanceCheckpoint(1L, LocalDate.of(2024, 5, 7), new BigDecimal("100.00"))));
+        when(transactionRepository.sumSignedAmount(1L, LocalDateTime.of(2024, 5, 8, 0, 0), asOf))
+                .thenReturn(new BigDecimal("-20.00"));
+
+        //Act
+        BigDecimal balance = balanceCheckpointService.balanceAsOf(1L, asOf);
+
+        //Assert
+        assertEquals(new BigDecimal("80.00"), balance);
+        verify(transactionRepository, never()).sumSignedAmountUpTo(any(), any());
+    }
+
+    @Test
+    @DisplayName("測試-查詢歷史餘額-沒有檢查點時加總 asOf 之前的所有交易")
+    void testBalanceAsOf_NoCheckpoint_SumsAllTransactions() {
+
+        //Arrange
+        LocalDateTime asOf = LocalDateTime.of(2024, 5, 10, 0, 0);
+        when(accountRepository.existsById(1L)).thenReturn(true);
+        when(checkpointRepository.findFirstByAccountIdAndDayLessThanEqualOrderByDayDesc(1L, LocalDate.of(2024, 5, 9)))
+                .thenReturn(Optional.empty());
+        when(transactionRepository.sumSignedAmountUpTo(1L, asOf)).thenReturn(new BigDecimal("42.00"));
+
+        //Act & Assert
+        assertEquals(new BigDecimal("42.00"), balanceCheckpointService.balanceAsOf(1L, asOf));
+    }
+
+    @Test
+    @DisplayName("測試-查詢歷史餘額-帳戶不存在")
+    void testBalanceAsOf_AccountNotFound() {
+
+        //Arrange
+        when(accountRepository.existsById(99L)).thenReturn(false);
+
+        //Act & Assert
+        assertThrows(AccountNotFoundException.class, () -> balanceCheckpointService.balanceAsOf(99L, LocalDateTime.now()));
+        verifyNoInteractions(checkpointRepository);
+    }
+
+    @Test
+    @DisplayName("測試-建立檢查點-以前一個檢查點累加當天淨額並推進進度")
+    void testCloseDays_AccumulatesFromPreviousCheckpoint() {
+
+        //Arrange
+        LocalDate day = LocalDate.now().minusDays(5);
+        BalanceCheckpointProgress progress = new BalanceCheckpointProgress(BalanceCheckpointProgress.DAILY);
+        progress.setClosedThrough(day.minusDays(3));
+        when(progressRepository.findByNameForUpdate(BalanceCheckpointProgress.DAILY)).thenReturn(Optional.of(progress));
+        when(transactionRepository.findFirstTimestampFrom(day.minusDays(2).atStartOfDay())).thenReturn(day.atTime(9, 0));
+        when(transactionRepository.findFirstTimestampFrom(day.plusDays(1).atStartOfDay())).thenReturn(null);
+        when(transactionRepository.sumSignedAmountByAccount(eq(day.atStartOfDay()), eq(day.plusDays(1).atStartOfDay()), anyLong()))
+                .thenReturn(List.of(net(1L, "50.00"), net(2L, "-5.00")));
+        when(checkpointRepository.findLatestByAccountIdIn(List.of(1L, 2L)))
+                .thenReturn(List.of(new BalanceCheckpoint(1L, day.minusDays(4), new BigDecimal("100.00"))));
+
+        //Act
+        int closed = balanceCheckpointService.closeDays();
+
+        //Assert
+        assertEquals(1, closed);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<BalanceCheckpoint>> captor = ArgumentCaptor.forClass(List.class);
+        verify(checkpointRepository).saveAll(captor.capture());
+        List<BalanceCheckpoint> saved = captor.getValue();
+        assertEquals(2, saved.size());
+        assertEquals(new BigDecimal("150.00"), saved.get(0).getBalance());
+        assertEquals(new BigDecimal("-5.00"), saved.get(1).getBalance());
+        assertTrue(saved.stream().allMatch(checkpoint -> checkpoint.getDay().equals(day)));
+        // 之後沒有交易，進度直接推進到最後一個可結束的日子
+        assertTrue(progress.getClosedThrough().isAfter(day));
+    }
+
+    @Test
+    @DisplayName("測試-建立檢查點-進度已是最新時不查詢交易紀錄")
+    void testCloseDays_UpToDate_DoesNothing() {
+
+        //Arrange
+        BalanceCheckpointProgress progress = new BalanceCheckpointProgress(BalanceCheckpointProgress.DAILY);
+        progress.setClosedThrough(LocalDate.now());
+        when(progressRepository.findByNameForUpdate(BalanceCheckpointProgress.DAILY)).thenReturn(Optional.of(progress));
+
+        //Act
+        int closed = balanceCheckpointService.closeDays();
+
+        //Assert
+        assertEquals(0, closed);
+        verifyNoInteractions(transactionRepository);
+        verify(checkpointRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    @DisplayName("測試-建立檢查點-上次計入之後才提交的遲到紀錄加進所屬日子之後的檢查點")
+    void testCloseDays_LateRowsAddedToLaterCheckpoints() {
+
+        //Arrange
+        LocalDate closedThrough = LocalDate.now().minusDays(3);
+        BalanceCheckpointProgress progress = new BalanceCheckpointProgress(BalanceCheckpointProgress.DAILY);
+        progress.setClosedThrough(closedThrough);
+        progress.setCountedBelowId(100L);
+        when(progressRepository.findByNameForUpdate(BalanceCheckpointProgress.DAILY)).thenReturn(Optional.of(progress));
+        when(transactionRepository.findLate(eq(100L), anyLong(), eq(closedThrough.plusDays(1).atStartOfDay()))).thenReturn(List.of(
+                row(1L, TransactionType.DEPOSIT, "30.00", closedThrough.minusDays(1).atTime(23, 59)),
+                row(1L, TransactionType.WITHDRAW, "10.00", closedThrough.minusDays(1).atTime(8, 0)),
+                row(2L, TransactionType.DEPOSIT, "5.00", closedThrough.atTime(12, 0))));
+        when(transactionRepository.findFirstTimestampFrom(closedThrough.plusDays(1).atStartOfDay())).thenReturn(null);
+
+        //Act
+        balanceCheckpointService.closeDays();
+
+        //Assert
+        verify(checkpointRepository).addFrom(1L, closedThrough.minusDays(1), new BigDecimal("20.00"));
+        verify(checkpointRepository).addFrom(2L, closedThrough, new BigDecimal("5.00"));
+        assertTrue(progress.getCountedBelowId() > 100L);
+    }
+
+    private static Transaction row(Long accountId, TransactionType type, String amount, LocalDateTime timestamp) {
+        Transaction transaction = new Transaction();
+        transaction.setAccountId(accountId);
+        transaction.setTransactionType(type);
+        transaction.setAmount(new BigDecimal(amount));
+        transaction.setTimestamp(timestamp);
+        return transaction;
+    }
+
+    private static TransactionRepository.AccountNet net(Long accountId, String amount) {
+        return new TransactionRepository.AccountNet() {
+            @Override
+            public Long getAccountId() {
+                return accountId;
+            }
+
+            @Override
+            public BigDecimal getNet() {
+                return new BigDecimal(amount);
+            }
+        };
+    }
+}
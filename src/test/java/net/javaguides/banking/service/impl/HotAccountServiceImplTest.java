@@ -0,0 +1,100 @@
+package net.javaguides.banking.service.impl;
+
+import net.javaguides.banking.entity.Account;
+import net.javaguides.banking.entity.AccountBalanceSlot;
+import net.javaguides.banking.repository.AccountBalanceSlotRepository;
+import net.javaguides.banking.repository.AccountRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HotAccountServiceImplTest {
+
+    @Mock
+    private AccountRepository accountRepository;
+    @Mock
+    private AccountBalanceSlotRepository slotRepository;
+
+    private HotAccountServiceImpl hotAccountService;
+
+    private Account account;
+
+    @BeforeEach
+    void setUp() {
+        hotAccountService = new HotAccountServiceImpl(accountRepository, slotRepository, "random");
+
+        account = new Account();
+        account.setId(1L);
+        account.setBalance(new BigDecimal("1000.00"));
+    }
+
+    @Test
+    @DisplayName("測試-升級為熱門帳戶-建立子餘額槽並開始分流存款")
+    void testChangeSlots_Promote_CreatesSlotsAndRoutesCredits() {
+
+        //Arrange
+        when(accountRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(account));
+        when(slotRepository.findByAccountIdForUpdate(1L)).thenReturn(List.of());
+        when(slotRepository.credit(eq(1L), anyInt(), any(BigDecimal.class))).thenReturn(1);
+
+        //Act
+        hotAccountService.changeSlots(1L, 4);
+
+        //Assert
+        verify(slotRepository, times(4)).save(any(AccountBalanceSlot.class));
+        assertEquals(4, account.getHotSlots());
+        assertTrue(hotAccountService.isHot(1L));
+        assertTrue(hotAccountService.credit(1L, new BigDecimal("10.00")));
+    }
+
+    @Test
+    @DisplayName("測試-退出熱門帳戶-子餘額歸併回主餘額且金額不變")
+    void testChangeSlots_Demote_FoldsSlotsIntoMainBalance() {
+
+        //Arrange
+        account.setHotSlots(2);
+        AccountBalanceSlot slot0 = new AccountBalanceSlot(1L, 0);
+        slot0.setBalance(new BigDecimal("30.00"));
+        AccountBalanceSlot slot1 = new AccountBalanceSlot(1L, 1);
+        slot1.setBalance(new BigDecimal("12.50"));
+        when(accountRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(account));
+        when(slotRepository.findByAccountIdForUpdate(1L)).thenReturn(List.of(slot0, slot1));
+
+        //Act
+        hotAccountService.changeSlots(1L, 0);
+
+        //Assert
+        assertEquals(0, new BigDecimal("1042.50").compareTo(account.getBalance()), "歸併後總餘額不一致");
+        assertEquals(0, account.getHotSlots());
+        ArgumentCaptor<AccountBalanceSlot> deleted = ArgumentCaptor.forClass(AccountBalanceSlot.class);
+        verify(slotRepository, times(2)).delete(deleted.capture());
+        assertFalse(hotAccountService.isHot(1L));
+        assertFalse(hotAccountService.credit(1L, BigDecimal.ONE), "非熱門帳戶應改寫入主餘額");
+    }
+
+    @Test
+    @DisplayName("測試-歸併-非熱門帳戶不會鎖定子餘額槽")
+    void testFold_NotHotAccount_ReturnsFalse() {
+
+        //Arrange
+        when(accountRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(account));
+
+        //Act //Assert
+        assertFalse(hotAccountService.fold(1L));
+        verify(slotRepository, never()).findByAccountIdForUpdate(any(Long.class));
+    }
+}
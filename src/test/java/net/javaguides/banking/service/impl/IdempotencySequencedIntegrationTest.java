@@ -0,0 +1,150 @@
+package net.javaguides.banking.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.javaguides.banking.archive.TransactionArchive;
+import net.javaguides.banking.dto.AccountDto;
+import net.javaguides.banking.entity.Account;
+import net.javaguides.banking.entity.User;
+import net.javaguides.banking.exception.IdempotencyKeyConflictException;
+import net.javaguides.banking.journal.StatementRollupWriter;
+import net.javaguides.banking.journal.TransactionJournalWriter;
+import net.javaguides.banking.mapper.AccountMapper;
+import net.javaguides.banking.outbox.OutboxWriter;
+import net.javaguides.banking.repository.AccountRepository;
+import net.javaguides.banking.repository.IdempotencyRecordRepository;
+import net.javaguides.banking.repository.UserRepository;
+import net.javaguides.banking.retry.RetryExecutor;
+import net.javaguides.banking.search.AccountNameIndex;
+import net.javaguides.banking.security.AccountLoadContext;
+import net.javaguides.banking.security.AccountOwnershipCache;
+import net.javaguides.banking.sequencer.AccountCommandSequencer;
+import net.javaguides.banking.stream.AccountEventHub;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 序列器模式下，兩個節點 (各自的 IdempotencyServiceImpl 與記憶體快取) 同時收到相同 Idempotency-Key 的存款。
+ * 序列器在自己的交易中提交資金異動，因此只能靠先搶下 key 避免重複執行。
+ * 需要多個連線看到已提交的資料，不使用測試交易，結束後自行清除。
+ */
+@DataJpaTest(properties = "banking.write-path=sequenced")
+@Import({AccountServiceImpl.class, RetryExecutor.class, AccountOwnershipCache.class, AccountLoadContext.class, TotalCountCache.class, SimpleMeterRegistry.class, HotAccountServiceImpl.class, AccountMapper.class, TransactionJournalWriter.class, StatementRollupWriter.class,
+        TransactionArchive.class, AccountNameIndex.class, OutboxWriter.class, AccountEventHub.class, AccountCommandSequencer.class, SequencedAccountService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdempotencySequencedIntegrationTest {
+
+    private static final int ROUNDS = 20;
+    private static final BigDecimal OPENING_BALANCE = new BigDecimal("1000.00");
+    private static final BigDecimal AMOUNT = new BigDecimal("10.00");
+
+    @Autowired
+    private SequencedAccountService sequencedAccountService;
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM idempotency_records");
+        jdbcTemplate.update("DELETE FROM outbox_events");
+        jdbcTemplate.update("DELETE FROM statement_rollups");
+        jdbcTemplate.update("DELETE FROM transactions");
+        jdbcTemplate.update("DELETE FROM accounts");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    @Test
+    @DisplayName("整合測試-序列器模式-兩個節點同時收到相同 Idempotency-Key-只存款一次")
+    void testConcurrentSameKey_Sequenced_DepositsOnce() throws Exception {
+        //Arrange
+        Long accountId = createAccount();
+        IdempotencyServiceImpl nodeA = node();
+        IdempotencyServiceImpl nodeB = node();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        AtomicInteger executions = new AtomicInteger();
+        AtomicInteger inProgress = new AtomicInteger();
+
+        //Act
+        for (int round = 0; round < ROUNDS; round++) {
+            String key = "sequenced-" + round;
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<ResponseEntity<AccountDto>>> futures = new ArrayList<>();
+            for (IdempotencyServiceImpl node : List.of(nodeA, nodeB)) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return node.execute(key, "deposit:" + accountId + ":" + AMOUNT, AccountDto.class, () -> {
+                        executions.incrementAndGet();
+                        return ResponseEntity.ok(sequencedAccountService.deposit(accountId, AMOUNT));
+                    });
+                }));
+            }
+            start.countDown();
+            for (Future<ResponseEntity<AccountDto>> future : futures) {
+                try {
+                    assertNotNull(future.get(10, TimeUnit.SECONDS).getBody());
+                } catch (ExecutionException e) {
+                    // 另一個節點仍在執行時回傳「處理中」，用戶端稍後重送
+                    assertInstanceOf(IdempotencyKeyConflictException.class, e.getCause());
+                    inProgress.incrementAndGet();
+                }
+            }
+        }
+        pool.shutdown();
+
+        //Assert
+        assertEquals(ROUNDS, executions.get(), "每個 key 只能執行一次");
+        BigDecimal expected = OPENING_BALANCE.add(AMOUNT.multiply(BigDecimal.valueOf(ROUNDS)));
+        assertEquals(0, expected.compareTo(accountRepository.findById(accountId).orElseThrow().getBalance()));
+        assertEquals(ROUNDS, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions WHERE account_id = ? AND transaction_type = 'DEPOSIT' AND amount = ?",
+                Integer.class, accountId, AMOUNT));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM idempotency_records WHERE status_code = 0", Integer.class),
+                "完成後不應留下處理中的紀錄");
+        assertTrue(inProgress.get() <= ROUNDS);
+    }
+
+    private IdempotencyServiceImpl node() {
+        return new IdempotencyServiceImpl(idempotencyRecordRepository, new ObjectMapper().findAndRegisterModules(), transactionManager, 24, 100, 10_000);
+    }
+
+    private Long createAccount() {
+        User user = new User("idem", "idem@example.com", "Idempotent holder");
+        user.setUserId("idem-uuid");
+        userRepository.save(user);
+
+        Account account = new Account();
+        account.setAccountHolderName("idem");
+        account.setBalance(OPENING_BALANCE);
+        account.setUser(user);
+        return accountRepository.save(account).getId();
+    }
+}
@@ -0,0 +1,155 @@
+package net.javaguides.banking.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.javaguides.banking.dto.AccountDto;
+import net.javaguides.banking.entity.IdempotencyRecord;
+import net.javaguides.banking.exception.IdempotencyKeyConflictException;
+import net.javaguides.banking.exception.InsufficientAmountException;
+import net.javaguides.banking.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceImplTest {
+
+    @Mock
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private IdempotencyServiceImpl idempotencyService;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new IdempotencyServiceImpl(idempotencyRecordRepository, new ObjectMapper(), transactionManager, 24, 100, 1000);
+        given(idempotencyRecordRepository.findById(anyString())).willReturn(Optional.empty());
+    }
+
+    @Test
+    @DisplayName("測試-相同 Idempotency-Key 重送-回傳第一次的回應且不重複執行")
+    void testExecute_DuplicateKey_ReplaysFirstResponse() {
+        //Arrange
+        AtomicInteger executions = new AtomicInteger();
+        AccountDto accountDto = new AccountDto(1L, "Tester", new BigDecimal("1500.00"));
+
+        //Act
+        ResponseEntity<AccountDto> first = idempotencyService.execute("key-1", "deposit:1:500", AccountDto.class, () -> {
+            executions.incrementAndGet();
+            return ResponseEntity.ok(accountDto);
+        });
+        ResponseEntity<AccountDto> second = idempotencyService.execute("key-1", "deposit:1:500", AccountDto.class, () -> {
+            executions.incrementAndGet();
+            return ResponseEntity.ok(accountDto);
+        });
+
+        //Assert
+        assertEquals(1, executions.get(), "重送的請求不應再次執行");
+        assertEquals(first.getBody(), second.getBody());
+        assertEquals("true", second.getHeaders().getFirst(IdempotencyServiceImpl.REPLAYED_HEADER));
+        verify(idempotencyRecordRepository, times(1)).saveAndFlush(any(IdempotencyRecord.class));
+        verify(idempotencyRecordRepository).complete(anyString(), eq(200), anyString());
+    }
+
+    @Test
+    @DisplayName("測試-相同 Idempotency-Key 但請求內容不同-拋出例外")
+    void testExecute_SameKeyDifferentRequest_ThrowsConflict() {
+        //Arrange
+        idempotencyService.execute("key-2", "withdraw:1:100", String.class, () -> ResponseEntity.ok("ok"));
+
+        //Act//Assert
+        assertThrows(IdempotencyKeyConflictException.class,
+                () -> idempotencyService.execute("key-2", "withdraw:1:200", String.class, () -> ResponseEntity.ok("ok")),
+                "拋出例外有誤");
+    }
+
+    @Test
+    @DisplayName("測試-第一次執行失敗-不保存結果且可用相同 key 重試")
+    void testExecute_FailedRequest_IsNotCached() {
+        //Arrange
+        AtomicInteger executions = new AtomicInteger();
+
+        //Act
+        assertThrows(InsufficientAmountException.class, () -> idempotencyService.execute("key-3", "withdraw:1:100", String.class, () -> {
+            executions.incrementAndGet();
+            throw new InsufficientAmountException("Insufficient amount");
+        }));
+        ResponseEntity<String> retry = idempotencyService.execute("key-3", "withdraw:1:100", String.class, () -> {
+            executions.incrementAndGet();
+            return ResponseEntity.ok("ok");
+        });
+
+        //Assert
+        assertEquals(2, executions.get());
+        verify(idempotencyRecordRepository).release(anyString());
+        assertEquals("ok", retry.getBody());
+        assertNull(retry.getHeaders().getFirst(IdempotencyServiceImpl.REPLAYED_HEADER));
+    }
+
+    @Test
+    @DisplayName("測試-其他節點已搶下 key 且仍在處理中-不執行並拋出例外")
+    void testExecute_KeyClaimedByOtherNode_DoesNotExecute() {
+        //Arrange
+        AtomicInteger executions = new AtomicInteger();
+        given(idempotencyRecordRepository.saveAndFlush(any(IdempotencyRecord.class)))
+                .willThrow(new DataIntegrityViolationException("duplicate key"));
+        given(idempotencyRecordRepository.findById(anyString())).willReturn(Optional.empty()).willAnswer(invocation ->
+                Optional.of(new IdempotencyRecord(invocation.getArgument(0), IdempotencyServiceImpl.sha256("deposit:1:500"),
+                        IdempotencyRecord.PENDING_STATUS, null, LocalDateTime.now())));
+
+        //Act
+        assertThrows(IdempotencyKeyConflictException.class, () -> idempotencyService.execute("key-4", "deposit:1:500", String.class, () -> {
+            executions.incrementAndGet();
+            return ResponseEntity.ok("ok");
+        }));
+
+        //Assert
+        assertEquals(0, executions.get(), "沒有搶到 key 的請求不應執行資金異動");
+    }
+
+    @Test
+    @DisplayName("測試-超過記憶體上限-淘汰最舊的項目並保留較新的項目")
+    void testExecute_OverMaxEntries_EvictsOldest() {
+        //Arrange
+        AtomicInteger executions = new AtomicInteger();
+        for (int i = 0; i < 150; i++) {
+            idempotencyService.execute("key-" + i, "deposit:1:" + i, String.class, () -> {
+                executions.incrementAndGet();
+                return ResponseEntity.ok("ok");
+            });
+        }
+
+        //Act
+        idempotencyService.execute("key-0", "deposit:1:0", String.class, () -> {
+            executions.incrementAndGet();
+            return ResponseEntity.ok("ok");
+        });
+        ResponseEntity<String> recent = idempotencyService.execute("key-149", "deposit:1:149", String.class, () -> {
+            executions.incrementAndGet();
+            return ResponseEntity.ok("ok");
+        });
+
+        //Assert
+        assertEquals(151, executions.get(), "最舊的 key 已被淘汰，記憶體中查不到時改查資料庫後重新執行");
+        assertEquals("true", recent.getHeaders().getFirst(IdempotencyServiceImpl.REPLAYED_HEADER));
+    }
+}
@@ -0,0 +1,148 @@
+package net.javaguides.banking.service.impl;
+
+import net.javaguides.banking.archive.TransactionArchive;
+import net.javaguides.banking.entity.Account;
+import net.javaguides.banking.entity.OpeningBalanceBackfill;
+import net.javaguides.banking.entity.Transaction;
+import net.javaguides.banking.enums.TransactionType;
+import net.javaguides.banking.journal.TransactionJournalWriter;
+import net.javaguides.banking.repository.AccountBalanceSlotRepository;
+import net.javaguides.banking.repository.AccountRepository;
+import net.javaguides.banking.repository.OpeningBalanceBackfillRepository;
+import net.javaguides.banking.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OpeningBalanceServiceImplTest {
+
+    @Mock
+    private OpeningBalanceBackfillRepository backfillRepository;
+    @Mock
+    private AccountRepository accountRepository;
+    @Mock
+    private TransactionRepository transactionRepository;
+    @Mock
+    private AccountBalanceSlotRepository slotRepository;
+    @Mock
+    private TransactionArchive transactionArchive;
+    @Mock
+    private TransactionJournalWriter transactionJournalWriter;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private OpeningBalanceServiceImpl openingBalanceService;
+
+    @BeforeEach
+    void setUp() {
+        openingBalanceService = new OpeningBalanceServiceImpl(backfillRepository, accountRepository, transactionRepository,
+                slotRepository, transactionArchive, transactionJournalWriter, jdbcTemplate, transactionManager);
+    }
+
+    @Test
+    @DisplayName("測試-補登開戶存款-餘額多於交易淨額的部分以最早交易的時間記為存款")
+    void testBackfillLegacy_RecordsMissingOpening() {
+
+        //Arrange
+        LocalDateTime firstTransaction = LocalDateTime.of(2023, 3, 1, 9, 0);
+        OpeningBalanceBackfill progress = new OpeningBalanceBackfill(OpeningBalanceBackfill.LEGACY);
+        when(backfillRepository.findByNameForUpdate(OpeningBalanceBackfill.LEGACY)).thenReturn(Optional.of(progress));
+        when(accountRepository.findIdsFrom(eq(Long.MIN_VALUE), any(Pageable.class))).thenReturn(List.of(1L, 2L));
+        when(accountRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(account(1L, "130.00"), account(2L, "40.00")));
+        // 帳戶 1 開戶 100、之後存入 30；帳戶 2 開戶時已記錄存款
+        when(transactionRepository.sumSignedAmountByAccountIdRange(1L, 3L)).thenReturn(List.of(net(1L, "30.00"), net(2L, "40.00")));
+        when(transactionRepository.findFirstTimestampOf(1L)).thenReturn(firstTransaction);
+
+        //Act
+        int processed = openingBalanceService.backfillLegacy(10);
+
+        //Assert
+        assertEquals(2, processed);
+        ArgumentCaptor<Transaction> captor = ArgumentCaptor.forClass(Transaction.class);
+        verify(transactionJournalWriter).append(captor.capture());
+        Transaction opening = captor.getValue();
+        assertEquals(1L, opening.getAccountId());
+        assertEquals(TransactionType.DEPOSIT, opening.getTransactionType());
+        assertEquals(new BigDecimal("100.00"), opening.getAmount());
+        assertEquals(firstTransaction, opening.getTimestamp());
+        assertEquals(2L, progress.getLastAccountId());
+        assertTrue(progress.isCompleted());
+    }
+
+    @Test
+    @DisplayName("測試-補登開戶存款-交易淨額多於餘額時不補登")
+    void testBackfillLegacy_LedgerAboveBalance_Skipped() {
+
+        //Arrange
+        OpeningBalanceBackfill progress = new OpeningBalanceBackfill(OpeningBalanceBackfill.LEGACY);
+        when(backfillRepository.findByNameForUpdate(OpeningBalanceBackfill.LEGACY)).thenReturn(Optional.of(progress));
+        when(accountRepository.findIdsFrom(eq(Long.MIN_VALUE), any(Pageable.class))).thenReturn(List.of(1L));
+        when(accountRepository.findAllById(List.of(1L))).thenReturn(List.of(account(1L, "10.00")));
+        when(transactionRepository.sumSignedAmountByAccountIdRange(1L, 2L)).thenReturn(List.of(net(1L, "25.00")));
+
+        //Act
+        openingBalanceService.backfillLegacy(10);
+
+        //Assert
+        verifyNoInteractions(transactionJournalWriter);
+        assertTrue(progress.isCompleted());
+    }
+
+    @Test
+    @DisplayName("測試-補登開戶存款-已完成時不再讀取帳戶")
+    void testBackfillLegacy_Completed_NoOp() {
+
+        //Arrange
+        OpeningBalanceBackfill progress = new OpeningBalanceBackfill(OpeningBalanceBackfill.LEGACY);
+        progress.setCompleted(true);
+        when(backfillRepository.findByNameForUpdate(OpeningBalanceBackfill.LEGACY)).thenReturn(Optional.of(progress));
+
+        //Act
+        int processed = openingBalanceService.backfillLegacy(10);
+
+        //Assert
+        assertEquals(0, processed);
+        verifyNoInteractions(accountRepository, transactionRepository, transactionJournalWriter);
+    }
+
+    private static Account account(Long id, String balance) {
+        Account account = new Account();
+        account.setId(id);
+        account.setBalance(new BigDecimal(balance));
+        return account;
+    }
+
+    private static TransactionRepository.AccountNet net(Long accountId, String amount) {
+        return new TransactionRepository.AccountNet() {
+            @Override
+            public Long getAccountId() {
+                return accountId;
+            }
+
+            @Override
+            public BigDecimal getNet() {
+                return new BigDecimal(amount);
+            }
+        };
+    }
+}
@@ -0,0 +1,185 @@
+package net.javaguides.banking.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.javaguides.banking.archive.TransactionArchive;
+import net.javaguides.banking.dto.ReconciliationMismatchDTO;
+import net.javaguides.banking.entity.ReconciliationMismatch;
+import net.javaguides.banking.entity.ReconciliationRun;
+import net.javaguides.banking.entity.User;
+import net.javaguides.banking.enums.ReconciliationStatus;
+import net.javaguides.banking.exception.AccountException;
+import net.javaguides.banking.id.SnowflakeIds;
+import net.javaguides.banking.repository.AccountBalanceSlotRepository;
+import net.javaguides.banking.repository.ReconciliationMismatchRepository;
+import net.javaguides.banking.repository.ReconciliationRunRepository;
+import net.javaguides.banking.repository.TransactionRepository;
+import net.javaguides.banking.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 對帳的工作執行緒使用各自的連線，測試資料必須先提交，因此不使用測試交易，結束後自行清除。
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReconciliationServiceImplTest {
+
+    private static final int ACCOUNTS = 25;
+
+    @Autowired
+    private ReconciliationRunRepository runRepository;
+    @Autowired
+    private ReconciliationMismatchRepository mismatchRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private AccountBalanceSlotRepository slotRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private ReconciliationServiceImpl reconciliationService;
+    private final List<Long> accountIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        reconciliationService = new ReconciliationServiceImpl(runRepository, mismatchRepository, transactionRepository, slotRepository,
+                mock(TransactionArchive.class), jdbcTemplate, transactionManager, new SimpleMeterRegistry(), 3, 4, 0, 0, 300_000);
+
+        User owner = new User("recon", "recon@example.com", "Recon");
+        owner.setUserId("recon-owner");
+        userRepository.save(owner);
+
+        LocalDateTime at = LocalDateTime.of(2024, 5, 1, 9, 0);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            long accountId = SnowflakeIds.nextId();
+            accountIds.add(accountId);
+            // 帳簿：存入 100 + i、提款 20、轉入 5、轉出 5，餘額應為 80 + i
+            insertTransaction(accountId, "DEPOSIT", 100 + i, at);
+            insertTransaction(accountId, "WITHDRAW", 20, at.plusMinutes(1));
+            insertTransaction(accountId, "TRANSFER_IN", 5, at.plusMinutes(2));
+            insertTransaction(accountId, "TRANSFER_OUT", 5, at.plusMinutes(3));
+            BigDecimal balance = BigDecimal.valueOf(80 + i);
+            if (i == 5) {
+                balance = balance.add(BigDecimal.TEN);
+            }
+            int hotSlots = i == 9 ? 2 : 0;
+            if (i == 9) {
+                // 熱門帳戶：主餘額 50 + 子餘額槽 30 + 9
+                balance = BigDecimal.valueOf(50);
+                jdbcTemplate.update("INSERT INTO account_balance_slots (id, account_id, slot, balance, update_count) VALUES (?, ?, 0, 30, 1)",
+                        SnowflakeIds.nextId(), accountId);
+                jdbcTemplate.update("INSERT INTO account_balance_slots (id, account_id, slot, balance, update_count) VALUES (?, ?, 1, 9, 1)",
+                        SnowflakeIds.nextId(), accountId);
+            }
+            if (i == 12) {
+                // 事件溯源模式：存款 112 已提交但尚未投影，主餘額 80 + 12 - 112 + 待投影列 112
+                balance = balance.subtract(BigDecimal.valueOf(112));
+                jdbcTemplate.update("INSERT INTO ledger_pending_events (event_id, account_id, signed_amount) VALUES (?, ?, 112)",
+                        SnowflakeIds.nextId(), accountId);
+            }
+            jdbcTemplate.update("INSERT INTO accounts (id, account_holder_name, balance, version, hot_slots, user_id) VALUES (?, ?, ?, 0, ?, ?)",
+                    accountId, "Holder " + i, balance, hotSlots, owner.getUserId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM reconciliation_mismatches");
+        jdbcTemplate.update("DELETE FROM reconciliation_runs");
+        jdbcTemplate.update("DELETE FROM account_balance_slots");
+        jdbcTemplate.update("DELETE FROM ledger_pending_events");
+        jdbcTemplate.update("DELETE FROM transactions");
+        jdbcTemplate.update("DELETE FROM accounts");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    @Test
+    @DisplayName("測試-對帳-平行處理所有範圍-只回報餘額與帳簿不一致的帳戶")
+    void testExecute_ReportsOnlyMismatchedAccounts() {
+        //Arrange
+        ReconciliationRun run = reconciliationService.claimRun();
+
+        //Act
+        reconciliationService.execute(run.getId());
+
+        //Assert
+        ReconciliationRun finished = runRepository.findById(run.getId()).orElseThrow();
+        assertEquals(ReconciliationStatus.COMPLETED, finished.getStatus());
+        assertEquals(ACCOUNTS, finished.getAccountsChecked());
+        assertEquals(7, finished.getRangesCompleted());
+        assertEquals(1, finished.getMismatchCount());
+        assertNotNull(finished.getFinishedAt());
+
+        List<ReconciliationMismatchDTO> mismatches = reconciliationService.getMismatches(run.getId(), PageRequest.of(0, 10)).getContent();
+        assertEquals(1, mismatches.size());
+        assertEquals(accountIds.get(5), mismatches.get(0).accountId());
+        assertEquals(0, BigDecimal.TEN.compareTo(mismatches.get(0).difference()));
+    }
+
+    @Test
+    @DisplayName("測試-對帳-從上次完成的範圍繼續-重做的範圍不會重複回報")
+    void testExecute_ResumesFromLastCompletedRange() {
+        //Arrange
+        // 上次完成前 4 個帳戶 (一個範圍) 後中斷，中斷前已寫入 (之後會重做的) 帳戶 5 的結果
+        ReconciliationRun failed = new ReconciliationRun(LocalDateTime.now().minusHours(1));
+        failed.setStatus(ReconciliationStatus.FAILED);
+        failed.setResumeFromId(accountIds.get(4));
+        failed.setRangesCompleted(1);
+        failed.setAccountsChecked(4);
+        failed.setElapsedMs(10);
+        runRepository.save(failed);
+        mismatchRepository.save(new ReconciliationMismatch(failed.getId(), accountIds.get(5), BigDecimal.ONE, BigDecimal.ZERO));
+
+        //Act
+        ReconciliationRun resumed = reconciliationService.claimRun();
+        reconciliationService.execute(resumed.getId());
+
+        //Assert
+        assertEquals(failed.getId(), resumed.getId());
+        ReconciliationRun finished = runRepository.findById(failed.getId()).orElseThrow();
+        assertEquals(ReconciliationStatus.COMPLETED, finished.getStatus());
+        assertEquals(ACCOUNTS, finished.getAccountsChecked());
+        assertEquals(1, finished.getMismatchCount());
+        assertTrue(finished.getElapsedMs() >= 10);
+        List<ReconciliationMismatchDTO> mismatches = reconciliationService.getMismatches(failed.getId(), PageRequest.of(0, 10)).getContent();
+        assertEquals(List.of(accountIds.get(5)), mismatches.stream().map(ReconciliationMismatchDTO::accountId).toList());
+        assertEquals(0, BigDecimal.TEN.compareTo(mismatches.get(0).difference()));
+    }
+
+    @Test
+    @DisplayName("測試-對帳-其他節點執行中時不可開始")
+    void testClaimRun_RunningElsewhere_Throws() {
+        //Arrange
+        runRepository.save(new ReconciliationRun(LocalDateTime.now()));
+
+        //Act //Assert
+        assertThrows(AccountException.class, () -> reconciliationService.claimRun());
+    }
+
+    private void insertTransaction(long accountId, String type, long amount, LocalDateTime timestamp) {
+        jdbcTemplate.update("INSERT INTO transactions (id, account_id, amount, transaction_type, timestamp) VALUES (?, ?, ?, ?, ?)",
+                SnowflakeIds.nextId(), accountId, BigDecimal.valueOf(amount), type, Timestamp.valueOf(timestamp));
+    }
+}
@@ -0,0 +1,245 @@
+package net.javaguides.banking.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.javaguides.banking.archive.TransactionArchive;
+import net.javaguides.banking.dto.MonthlyStatementDTO;
+import net.javaguides.banking.entity.StatementRollup;
+import net.javaguides.banking.entity.StatementRollupBackfill;
+import net.javaguides.banking.entity.Transaction;
+import net.javaguides.banking.enums.TransactionType;
+import net.javaguides.banking.repository.AccountRepository;
+import net.javaguides.banking.repository.StatementRollupBackfillRepository;
+import net.javaguides.banking.repository.StatementRollupRepository;
+import net.javaguides.banking.repository.TransactionRepository;
+import net.javaguides.banking.security.AccountLoadContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StatementServiceImplTest {
+
+    @Mock
+    private StatementRollupRepository statementRollupRepository;
+    @Mock
+    private TransactionRepository transactionRepository;
+    @Mock
+    private AccountRepository accountRepository;
+    // 不在請求中，take 一律為 empty，由 accountRepository.existsById 決定
+    @Spy
+    private AccountLoadContext accountLoadContext;
+    @Mock
+    private TransactionArchive transactionArchive;
+    @Mock
+    private StatementRollupBackfillRepository backfillRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private StatementServiceImpl statementService;
+
+    private final LocalDate may = LocalDate.of(2024, 5, 1);
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        statementService = new StatementServiceImpl(statementRollupRepository, transactionRepository,
+                accountRepository, accountLoadContext, transactionArchive, backfillRepository, transactionManager, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("測試-月結單-期初餘額加上當月各類型金額得到期末餘額")
+    void testGetMonthlyStatement_FromRollups() {
+
+        //Arrange
+        when(accountRepository.existsById(1L)).thenReturn(true);
+        when(statementRollupRepository.sumSignedBefore(1L, may)).thenReturn(new BigDecimal("500.00"));
+        when(statementRollupRepository.findMonthTotals(1L, may)).thenReturn(List.of(
+                total(TransactionType.DEPOSIT, "200.00", 3),
+                total(TransactionType.WITHDRAW, "50.00", 1),
+                total(TransactionType.TRANSFER_OUT, "25.00", 2)));
+
+        //Act
+        MonthlyStatementDTO statement = statementService.getMonthlyStatement(1L, YearMonth.of(2024, 5));
+
+        //Assert
+        assertEquals(new BigDecimal("500.00"), statement.openingBalance());
+        assertEquals(new BigDecimal("625.00"), statement.closingBalance());
+        assertEquals(6, statement.transactionCount());
+        assertEquals(new BigDecimal("200.00"), statement.totals().get(TransactionType.DEPOSIT));
+        assertFalse(statement.totals().containsKey(TransactionType.TRANSFER_IN));
+        verifyNoInteractions(transactionRepository);
+    }
+
+    @Test
+    @DisplayName("測試-彙總核對-抽樣帳戶的每個月份-缺少彙總的月份也計入 drift 指標")
+    void testCheckConsistency_ReportsDrift() {
+
+        //Arrange
+        when(accountRepository.findMinId()).thenReturn(1L);
+        when(accountRepository.findMaxId()).thenReturn(1L);
+        when(accountRepository.findIdsFrom(anyLong(), any(Pageable.class))).thenReturn(List.of(1L));
+        when(statementRollupRepository.sumByMonthAndType(1L)).thenReturn(List.of(monthTotal(may, TransactionType.DEPOSIT, "100.00", 2)));
+        // 五月筆數不同，四月完全沒有彙總
+        when(transactionRepository.sumByMonthAndType(1L)).thenReturn(List.of(
+                monthTotal(may, TransactionType.DEPOSIT, "100", 3),
+                monthTotal(may.minusMonths(1), TransactionType.WITHDRAW, "20", 1)));
+
+        //Act
+        int drifted = statementService.checkConsistency(5);
+
+        //Assert
+        // 同一個帳戶只核對一次
+        assertEquals(2, drifted);
+        assertEquals(1.0, meterRegistry.counter("banking.statement_rollup.checked").count());
+        assertEquals(2.0, meterRegistry.counter("banking.statement_rollup.drift").count());
+    }
+
+    @Test
+    @DisplayName("測試-彙總核對-金額精度不同但數值相同視為一致")
+    void testCheckConsistency_Matches() {
+
+        //Arrange
+        when(accountRepository.findMinId()).thenReturn(1L);
+        when(accountRepository.findMaxId()).thenReturn(1L);
+        when(accountRepository.findIdsFrom(anyLong(), any(Pageable.class))).thenReturn(List.of(1L));
+        when(statementRollupRepository.sumByMonthAndType(1L)).thenReturn(List.of(monthTotal(may, TransactionType.DEPOSIT, "100.00", 2)));
+        when(transactionRepository.sumByMonthAndType(1L)).thenReturn(List.of(monthTotal(may, TransactionType.DEPOSIT, "100.0", 2)));
+
+        //Act & Assert
+        assertEquals(0, statementService.checkConsistency(1));
+        assertEquals(0.0, meterRegistry.counter("banking.statement_rollup.drift").count());
+    }
+
+    @Test
+    @DisplayName("測試-彙總補齊-交易紀錄與封存檔多出的部分寫入補齊 stripe-並推進進度")
+    void testBackfillLegacy_WritesMissingIntoBackfillStripe() {
+
+        //Arrange
+        StatementRollupBackfill progress = new StatementRollupBackfill(StatementRollupBackfill.LEGACY);
+        when(backfillRepository.findByNameForUpdate(StatementRollupBackfill.LEGACY)).thenReturn(Optional.of(progress));
+        when(accountRepository.findIdsFrom(eq(Long.MIN_VALUE), any(Pageable.class))).thenReturn(List.of(1L));
+        // 五月的存款有一筆在彙總上線後寫入，已經累加過
+        when(transactionRepository.sumByMonthAndType(1L)).thenReturn(List.of(monthTotal(may, TransactionType.DEPOSIT, "150.00", 3)));
+        when(statementRollupRepository.sumByMonthAndType(1L)).thenReturn(List.of(monthTotal(may, TransactionType.DEPOSIT, "50.00", 1)));
+        Transaction archived = new Transaction();
+        archived.setTransactionType(TransactionType.WITHDRAW);
+        archived.setAmount(new BigDecimal("30.00"));
+        archived.setTimestamp(LocalDateTime.of(2023, 1, 15, 10, 0));
+        doAnswer(invocation -> {
+            invocation.<Consumer<Transaction>>getArgument(3).accept(archived);
+            return null;
+        }).when(transactionArchive).forEachInRange(eq(1L), isNull(), isNull(), any());
+        when(statementRollupRepository.findByAccountIdAndMonthAndTransactionTypeAndStripe(anyLong(), any(), any(), anyInt()))
+                .thenReturn(Optional.empty());
+
+        //Act
+        int processed = statementService.backfillLegacy(10);
+
+        //Assert
+        assertEquals(1, processed);
+        ArgumentCaptor<StatementRollup> saved = ArgumentCaptor.forClass(StatementRollup.class);
+        verify(statementRollupRepository, times(2)).save(saved.capture());
+        StatementRollup deposits = saved.getAllValues().stream()
+                .filter(rollup -> rollup.getTransactionType() == TransactionType.DEPOSIT).findFirst().orElseThrow();
+        assertEquals(StatementServiceImpl.BACKFILL_STRIPE, deposits.getStripe());
+        assertEquals(may, deposits.getMonth());
+        assertEquals(0, new BigDecimal("100.00").compareTo(deposits.getTotalAmount()));
+        assertEquals(2, deposits.getTransactionCount());
+        StatementRollup withdrawals = saved.getAllValues().stream()
+                .filter(rollup -> rollup.getTransactionType() == TransactionType.WITHDRAW).findFirst().orElseThrow();
+        assertEquals(LocalDate.of(2023, 1, 1), withdrawals.getMonth());
+        assertEquals(1, withdrawals.getTransactionCount());
+        assertEquals(1L, progress.getLastAccountId());
+        assertTrue(progress.isCompleted());
+    }
+
+    @Test
+    @DisplayName("測試-彙總補齊-已完成時不再讀取帳戶")
+    void testBackfillLegacy_Completed_NoOp() {
+
+        //Arrange
+        StatementRollupBackfill progress = new StatementRollupBackfill(StatementRollupBackfill.LEGACY);
+        progress.setCompleted(true);
+        when(backfillRepository.findByNameForUpdate(StatementRollupBackfill.LEGACY)).thenReturn(Optional.of(progress));
+
+        //Act
+        int processed = statementService.backfillLegacy(10);
+
+        //Assert
+        assertEquals(0, processed);
+        verifyNoInteractions(accountRepository, transactionRepository, statementRollupRepository);
+    }
+
+    private static StatementRollupRepository.MonthTypeTotal monthTotal(LocalDate month, TransactionType type, String amount, long count) {
+        return new StatementRollupRepository.MonthTypeTotal() {
+            @Override
+            public Integer getStatementYear() {
+                return month.getYear();
+            }
+
+            @Override
+            public Integer getStatementMonth() {
+                return month.getMonthValue();
+            }
+
+            @Override
+            public TransactionType getTransactionType() {
+                return type;
+            }
+
+            @Override
+            public BigDecimal getTotalAmount() {
+                return new BigDecimal(amount);
+            }
+
+            @Override
+            public Long getTransactionCount() {
+                return count;
+            }
+        };
+    }
+
+    private static StatementRollupRepository.TypeTotal total(TransactionType type, String amount, long count) {
+        return new StatementRollupRepository.TypeTotal() {
+            @Override
+            public TransactionType getTransactionType() {
+                return type;
+            }
+
+            @Override
+            public BigDecimal getTotalAmount() {
+                return new BigDecimal(amount);
+            }
+
+            @Override
+            public Long getTransactionCount() {
+                return count;
+            }
+        };
+    }
+}
@@ -0,0 +1,234 @@
+package net.javaguides.banking.stream;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.javaguides.banking.dto.AccountEventDTO;
+import net.javaguides.banking.entity.Transaction;
+import net.javaguides.banking.enums.TransactionType;
+import net.javaguides.banking.id.SnowflakeIds;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountEventHubTest {
+
+    private static final int BUFFER_SIZE = 4;
+
+    private AccountEventHub hub;
+
+    @BeforeEach
+    void setUp() {
+        hub = new AccountEventHub(new SimpleMeterRegistry(), BUFFER_SIZE, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        hub.shutdown();
+    }
+
+    @Test
+    @DisplayName("測試-事件串流-先送目前餘額-之後每個交易一個事件-只送給訂閱的帳戶")
+    void testPublish_SnapshotThenEvents() throws Exception {
+        //Arrange
+        RecordingListener listener = new RecordingListener();
+        AccountEventHub.Subscription subscription = hub.subscribe(1L, listener);
+        subscription.offerSnapshot(new AccountEventDTO(1L, new BigDecimal("100"), null, List.of()));
+
+        //Act
+        hub.publishAfterCommit(List.of(transaction(1L, "30"), transaction(2L, "30")), accountId -> new BigDecimal("130"));
+
+        //Assert
+        AccountEventDTO snapshot = listener.next();
+        assertEquals(0, new BigDecimal("100").compareTo(snapshot.balance()));
+        assertTrue(snapshot.transactions().isEmpty());
+        AccountEventDTO event = listener.next();
+        assertEquals(1L, event.accountId());
+        assertEquals(0, new BigDecimal("130").compareTo(event.balance()));
+        assertEquals(1, event.transactions().size());
+        assertNull(listener.events.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    @DisplayName("測試-事件串流-交易提交後才發布-回滾時不發布-沒有訂閱時不讀取餘額")
+    void testPublishAfterCommit_OnlyOnCommit() throws Exception {
+        //Arrange
+        RecordingListener listener = new RecordingListener();
+        hub.subscribe(1L, listener);
+        AtomicInteger balanceReads = new AtomicInteger();
+
+        //Act
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            hub.publishAfterCommit(List.of(transaction(1L, "10")), accountId -> {
+                balanceReads.incrementAndGet();
+                return BigDecimal.TEN;
+            });
+            hub.publishAfterCommit(List.of(transaction(3L, "10")), accountId -> {
+                balanceReads.incrementAndGet();
+                return BigDecimal.TEN;
+            });
+            assertNull(listener.events.poll(100, TimeUnit.MILLISECONDS));
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            hub.publishAfterCommit(List.of(transaction(1L, "20")), accountId -> BigDecimal.ONE);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        //Assert
+        assertEquals(0, BigDecimal.TEN.compareTo(listener.next().balance()));
+        assertNull(listener.events.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(1, balanceReads.get());
+    }
+
+    @Test
+    @DisplayName("測試-事件串流-消費太慢時丟棄舊事件只保留最新-ID 較小但較晚提交的事件仍送出-快照被略過")
+    void testSlowConsumer_DropsToLatest() throws Exception {
+        //Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        RecordingListener listener = new RecordingListener() {
+            @Override
+            public void onEvent(AccountEventDTO event) throws IOException {
+                blocked.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.onEvent(event);
+            }
+        };
+        AccountEventHub.Subscription subscription = hub.subscribe(1L, listener);
+        Transaction older = transaction(1L, "1");
+
+        //Act
+        hub.publishAfterCommit(List.of(transaction(1L, "1")), accountId -> BigDecimal.valueOf(1));
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        for (int i = 2; i <= 10; i++) {
+            hub.publishAfterCommit(List.of(transaction(1L, "1")), accountId -> balanceOf(accountId));
+        }
+        // ID 在提交前產生：ID 較小的交易可能較晚提交，不能當成舊事件略過
+        hub.publishAfterCommit(List.of(older), accountId -> BigDecimal.valueOf(11));
+        subscription.offerSnapshot(new AccountEventDTO(1L, BigDecimal.ZERO, null, List.of()));
+        release.countDown();
+
+        //Assert
+        assertEquals(0, BigDecimal.valueOf(1).compareTo(listener.next().balance()));
+        // 9 筆排隊的事件超過緩衝區 4 筆，只剩最後一次清空後的 1 筆 (第 10 筆)
+        AccountEventDTO latest = listener.next();
+        assertEquals(0, BigDecimal.valueOf(10).compareTo(latest.balance()));
+        AccountEventDTO late = listener.next();
+        assertEquals(older.getId(), late.transactions().get(0).id());
+        assertEquals(0, BigDecimal.valueOf(11).compareTo(late.balance()));
+        assertNull(listener.events.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    @DisplayName("測試-事件串流-版本低於已收到的事件時丟棄-沒有版本的事件仍送出")
+    void testVersionedEvents_OlderDropped() throws Exception {
+        //Arrange
+        RecordingListener listener = new RecordingListener();
+        AccountEventHub.Subscription subscription = hub.subscribe(1L, listener);
+        subscription.offerSnapshot(new AccountEventDTO(1L, new BigDecimal("100"), 5L, List.of()));
+
+        //Act
+        // 版本 5 之前提交、但提交後回呼較晚執行的交易
+        hub.publishAfterCommit(List.of(transaction(1L, "10")), accountId -> new BigDecimal("90"), accountId -> 4L);
+        hub.publishAfterCommit(List.of(transaction(1L, "10")), accountId -> new BigDecimal("110"), accountId -> 6L);
+        hub.publishAfterCommit(List.of(transaction(1L, "10")), accountId -> new BigDecimal("105"), accountId -> 5L);
+        hub.publishAfterCommit(List.of(transaction(1L, "10")), accountId -> new BigDecimal("120"));
+
+        //Assert
+        assertEquals(5L, listener.next().version());
+        AccountEventDTO newer = listener.next();
+        assertEquals(6L, newer.version());
+        assertEquals(0, new BigDecimal("110").compareTo(newer.balance()));
+        AccountEventDTO unversioned = listener.next();
+        assertNull(unversioned.version());
+        assertEquals(0, new BigDecimal("120").compareTo(unversioned.balance()));
+        assertNull(listener.events.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    @DisplayName("測試-事件串流-連線中斷時取消訂閱-閒置時送出 heartbeat")
+    void testBrokenConnection_Cancelled_IdleHeartbeat() throws Exception {
+        //Arrange
+        RecordingListener broken = new RecordingListener() {
+            @Override
+            public void onEvent(AccountEventDTO event) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+        RecordingListener idle = new RecordingListener();
+        hub.subscribe(1L, broken);
+        hub.subscribe(2L, idle);
+        assertEquals(2, hub.subscriberCount());
+
+        //Act
+        hub.publishAfterCommit(List.of(transaction(1L, "5")), accountId -> BigDecimal.ONE);
+        hub.heartbeat();
+
+        //Assert
+        assertTrue(idle.heartbeats.await(5, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (hub.subscriberCount() != 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, hub.subscriberCount());
+    }
+
+    // 每次呼叫時的計數即為第幾筆事件，讓測試可以看出最後送出的是哪一筆
+    private final AtomicInteger published = new AtomicInteger(1);
+
+    private BigDecimal balanceOf(Long accountId) {
+        return BigDecimal.valueOf(published.incrementAndGet());
+    }
+
+    private Transaction transaction(Long accountId, String amount) {
+        return new Transaction(SnowflakeIds.nextId(), accountId, new BigDecimal(amount), TransactionType.DEPOSIT, LocalDateTime.now());
+    }
+
+    private static class RecordingListener implements AccountEventHub.AccountEventListener {
+
+        final BlockingQueue<AccountEventDTO> events = new LinkedBlockingQueue<>();
+
+        final CountDownLatch heartbeats = new CountDownLatch(1);
+
+        @Override
+        public void onEvent(AccountEventDTO event) throws IOException {
+            events.add(event);
+        }
+
+        @Override
+        public void onHeartbeat() {
+            heartbeats.countDown();
+        }
+
+        AccountEventDTO next() throws InterruptedException {
+            AccountEventDTO event = events.poll(5, TimeUnit.SECONDS);
+            assertNotNull(event, "等待事件逾時");
+            return event;
+        }
+    }
+}